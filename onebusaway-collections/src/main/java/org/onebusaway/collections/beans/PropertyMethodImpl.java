@@ -13,32 +13,64 @@
  */
 package org.onebusaway.collections.beans;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 /**
- * An implementation of {@link PropertyMethod} that uses a {@link Method} for the underlying
- * invocation.
+ * An implementation of {@link PropertyMethod} that invokes a {@link Method} through a {@link
+ * MethodHandle}, falling back to the {@link Method} itself if no handle can be made for it.
  *
  * @author bdferris
  * @see PropertyMethod
  */
 class PropertyMethodImpl implements PropertyMethod {
 
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
   private final Method _method;
 
+  /** The method as a handle of type (Object)Object, or null if it can't be looked up */
+  private final MethodHandle _handle;
+
   public PropertyMethodImpl(Method method) {
     _method = method;
+    _handle = getHandle(method);
   }
 
   @Override
   public Object invoke(Object value)
       throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-    return _method.invoke(value);
+    if (_handle == null) {
+      return _method.invoke(value);
+    }
+    // Fail on a bad target the same way Method.invoke does, rather than as if the getter had thrown
+    if (value == null) {
+      throw new NullPointerException("null target for property method " + _method.getName());
+    }
+    if (!_method.getDeclaringClass().isInstance(value)) {
+      throw new IllegalArgumentException("object is not an instance of declaring class");
+    }
+    try {
+      return _handle.invokeExact(value);
+    } catch (Throwable ex) {
+      throw new InvocationTargetException(ex);
+    }
   }
 
   @Override
   public Class<?> getReturnType() {
     return _method.getReturnType();
   }
+
+  private static MethodHandle getHandle(Method method) {
+    try {
+      return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+    } catch (IllegalAccessException | WrongMethodTypeException _) {
+      return null;
+    }
+  }
 }
@@ -15,6 +15,7 @@ package org.onebusaway.collections.beans;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.reflect.InvocationTargetException;
 import org.junit.jupiter.api.Test;
 
 public class PropertyPathExpressionTest {
@@ -84,6 +85,43 @@ public class PropertyPathExpressionTest {
     assertEquals(B.class, exp.getParentType(A.class));
   }
 
+  @Test
+  public void testMethodHandleAndFallback() {
+    C obj = new C();
+
+    // Instance getters are called through a method handle
+    assertEquals("string-value", PropertyPathExpression.evaluate(obj, "stringValue"));
+    assertGetterException(obj, "failingValue");
+    Exception ex =
+        assertThrows(
+            IllegalStateException.class, () -> PropertyPathExpression.evaluate(obj, "error"));
+    assertTrue(ex.getCause() instanceof InvocationTargetException);
+    assertEquals("error", ex.getCause().getCause().getMessage());
+
+    PropertyPathExpression expr = new PropertyPathExpression("stringValue");
+    expr.initialize(C.class);
+    ex = assertThrows(IllegalStateException.class, () -> expr.invoke(new B()));
+    assertTrue(ex.getCause() instanceof IllegalArgumentException);
+
+    ex =
+        assertThrows(
+            IllegalStateException.class,
+            () -> PropertyPathExpression.evaluate(new A(), "nullA.depth"));
+    assertTrue(ex.getCause() instanceof NullPointerException);
+
+    // Static getters don't fit a handle taking the target, so they are called through reflection
+    assertEquals("static-value", PropertyPathExpression.evaluate(obj, "staticValue"));
+    assertGetterException(obj, "failingStaticValue");
+  }
+
+  private static void assertGetterException(Object obj, String property) {
+    Exception ex =
+        assertThrows(
+            IllegalStateException.class, () -> PropertyPathExpression.evaluate(obj, property));
+    assertTrue(ex.getCause() instanceof InvocationTargetException);
+    assertTrue(ex.getCause().getCause() instanceof UnsupportedOperationException);
+  }
+
   public static class Base {
 
     private final int _depth;
@@ -136,6 +174,29 @@ public class PropertyPathExpressionTest {
     }
   }
 
+  public static class C {
+
+    public String getStringValue() {
+      return "string-value";
+    }
+
+    public String getFailingValue() {
+      throw new UnsupportedOperationException();
+    }
+
+    public String getError() {
+      throw new Error("error");
+    }
+
+    public static String getStaticValue() {
+      return "static-value";
+    }
+
+    public static String getFailingStaticValue() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   public static class B extends Base {
 
     public B() {
@@ -0,0 +1,186 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A single row produced by {@link ByteCsvTokenizer}. The row only records where each field starts
+ * and ends in the underlying buffer, and decodes a field to a {@link String} the first time it is
+ * requested with {@link #get(int)}. Numeric field mappings can use {@link #getCharSequence(int)} to
+ * parse a field without decoding it at all.
+ *
+ * <p>Like the lists returned by {@link TokenizerStrategy#parse(String)}, the row can be modified
+ * with {@link #set(int, String)} and {@link #add(String)}.
+ */
+public class ByteCsvRow extends AbstractList<String> implements RandomAccess {
+
+  private final ByteCsvTokenizer _tokenizer;
+
+  private final boolean _ascii;
+
+  private int[] _starts;
+
+  private int[] _ends;
+
+  private String[] _values;
+
+  private int _size;
+
+  ByteCsvRow(ByteCsvTokenizer tokenizer, int capacity, boolean ascii) {
+    _tokenizer = tokenizer;
+    _ascii = ascii;
+    _starts = new int[capacity];
+    _ends = new int[capacity];
+    _values = new String[capacity];
+  }
+
+  /**
+   * @param values the values of a row, as passed to a field mapping
+   * @param index the field index
+   * @return the field at the specified index, as a view of the underlying bytes if the values are a
+   *     {@link ByteCsvRow}
+   */
+  public static CharSequence getCharSequence(List<String> values, int index) {
+    if (values instanceof ByteCsvRow row) return row.getCharSequence(index);
+    return values.get(index);
+  }
+
+  /**
+   * @param index the field index
+   * @return the field at the specified index, without decoding it if it only holds ASCII characters
+   *     and hasn't been decoded already. The returned sequence is only meant to be parsed right
+   *     away, its {@link Object#toString()} decodes the field.
+   */
+  public CharSequence getCharSequence(int index) {
+    String value = _values[checkIndex(index)];
+    if (value != null || !_ascii) return get(index);
+    return new AsciiSequence(index);
+  }
+
+  @Override
+  public String get(int index) {
+    String value = _values[checkIndex(index)];
+    if (value == null) {
+      value = _tokenizer.decode(_starts[index], _ends[index]);
+      _values[index] = value;
+    }
+    return value;
+  }
+
+  @Override
+  public String set(int index, String value) {
+    String existing = get(index);
+    _values[index] = value;
+    return existing;
+  }
+
+  @Override
+  public void add(int index, String value) {
+    if (index != _size) throw new UnsupportedOperationException("values can only be appended");
+    addValue(value);
+  }
+
+  @Override
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Trims every field the way {@link String#trim()} would. Fields that haven't been decoded yet are
+   * trimmed by narrowing them to their non-whitespace bytes, so they still don't have to be decoded
+   * beforehand.
+   */
+  public void trim() {
+    for (int i = 0; i < _size; i++) {
+      String value = _values[i];
+      if (value != null) {
+        _values[i] = value.trim();
+        continue;
+      }
+      int start = _starts[i];
+      int end = _ends[i];
+      while (start < end && isWhitespace(_tokenizer.byteAt(start))) start++;
+      while (start < end && isWhitespace(_tokenizer.byteAt(end - 1))) end--;
+      _starts[i] = start;
+      _ends[i] = end;
+      if (start == end) _values[i] = "";
+    }
+  }
+
+  void addField(int start, int end) {
+    ensureCapacity();
+    _starts[_size] = start;
+    _ends[_size] = end;
+    _values[_size] = start == end ? "" : null;
+    _size++;
+  }
+
+  void addValue(String value) {
+    ensureCapacity();
+    _values[_size] = value;
+    _size++;
+  }
+
+  private void ensureCapacity() {
+    if (_size == _values.length) {
+      int capacity = Math.max(8, _size * 2);
+      _starts = Arrays.copyOf(_starts, capacity);
+      _ends = Arrays.copyOf(_ends, capacity);
+      _values = Arrays.copyOf(_values, capacity);
+    }
+  }
+
+  /** Bytes of multi-byte UTF-8 characters are negative, so they are never trimmed */
+  private static boolean isWhitespace(byte b) {
+    return b >= 0 && b <= ' ';
+  }
+
+  private int checkIndex(int index) {
+    return Objects.checkIndex(index, _size);
+  }
+
+  /** A field of an ASCII-only row, read straight from the underlying bytes */
+  private class AsciiSequence implements CharSequence {
+
+    private final int _index;
+
+    public AsciiSequence(int index) {
+      _index = index;
+    }
+
+    @Override
+    public int length() {
+      return _ends[_index] - _starts[_index];
+    }
+
+    @Override
+    public char charAt(int index) {
+      Objects.checkIndex(index, length());
+      return (char) _tokenizer.byteAt(_starts[_index] + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return get(_index);
+    }
+  }
+}
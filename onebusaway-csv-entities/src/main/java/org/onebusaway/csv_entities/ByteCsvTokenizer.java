@@ -0,0 +1,228 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.UnaryOperator;
+
+/**
+ * Splits UTF-8 encoded CSV data into rows and fields without decoding it first. Field boundaries
+ * are found on the raw bytes, which is safe because the bytes of multi-byte UTF-8 characters never
+ * collide with the ASCII delimiter, quote and line break characters. Each field is only decoded
+ * when it is requested from the {@link ByteCsvRow}.
+ *
+ * <p>Lines and fields are split exactly as {@link java.io.BufferedReader#readLine()} and {@link
+ * DelimitedTextParser} would split them, including skipping a leading byte order mark, empty lines
+ * and lines holding just an end-of-file (0x1A) character.
+ */
+public class ByteCsvTokenizer {
+
+  private final ByteBuffer _buffer;
+
+  private final int _limit;
+
+  private int _position;
+
+  private int _fieldCount = 8;
+
+  private UnaryOperator<String> _interner;
+
+  private byte[] _scratch = new byte[256];
+
+  /**
+   * @param buffer the CSV data, from its position to its limit
+   */
+  public ByteCsvTokenizer(ByteBuffer buffer) {
+    _buffer = buffer;
+    _position = buffer.position();
+    _limit = buffer.limit();
+
+    if (_limit - _position >= 3
+        && _buffer.get(_position) == (byte) 0xEF
+        && _buffer.get(_position + 1) == (byte) 0xBB
+        && _buffer.get(_position + 2) == (byte) 0xBF) {
+      _position += 3;
+    }
+  }
+
+  /**
+   * @param interner applied to every field value as it is decoded, for example to intern repeated
+   *     values
+   */
+  public void setInterner(UnaryOperator<String> interner) {
+    _interner = interner;
+  }
+
+  /**
+   * @return the next row, or null at the end of the data
+   */
+  public ByteCsvRow nextRow() {
+    while (_position < _limit) {
+      int lineStart = _position;
+      int lineEnd = lineStart;
+      boolean ascii = true;
+      byte b = 0;
+      while (lineEnd < _limit) {
+        b = _buffer.get(lineEnd);
+        if (b == '\n' || b == '\r') break;
+        ascii &= b >= 0;
+        lineEnd++;
+      }
+
+      _position = lineEnd + 1;
+      if (b == '\r' && _position < _limit && _buffer.get(_position) == '\n') _position++;
+
+      if (lineEnd == lineStart) continue;
+      // TODO: This is a hack of sorts to deal with a malformed data file...
+      if (lineEnd - lineStart == 1 && _buffer.get(lineStart) == 26) continue;
+
+      ByteCsvRow row = parseRow(lineStart, lineEnd, ascii);
+      _fieldCount = Math.max(_fieldCount, row.size());
+      return row;
+    }
+    return null;
+  }
+
+  String decode(int start, int end) {
+    int length = end - start;
+    String value;
+    if (_buffer.hasArray()) {
+      value =
+          new String(
+              _buffer.array(), _buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+    } else {
+      if (_scratch.length < length) _scratch = new byte[Math.max(length, _scratch.length * 2)];
+      _buffer.get(start, _scratch, 0, length);
+      value = new String(_scratch, 0, length, StandardCharsets.UTF_8);
+    }
+    return intern(value);
+  }
+
+  byte byteAt(int index) {
+    return _buffer.get(index);
+  }
+
+  /** Mirrors {@link DelimitedTextParser#parse(String, java.util.List)} */
+  private ByteCsvRow parseRow(int start, int end, boolean ascii) {
+    ByteCsvRow row = new ByteCsvRow(this, _fieldCount, ascii);
+    int i = start;
+
+    main:
+    while (i < end) {
+      byte c = _buffer.get(i);
+
+      if (c == ',') {
+        // empty column
+        row.addField(i, i);
+        i++;
+        continue;
+      }
+
+      if (c == '"') {
+        // quoted column
+        int startIndex = i + 1;
+
+        do {
+          i++;
+          if (i >= end) {
+            throw new IllegalStateException(
+                "Expected double quoted followed by delimiter or another double quote");
+          }
+        } while (_buffer.get(i) != '"');
+
+        int endIndex = i;
+        i++;
+        if (i >= end) {
+          row.addField(startIndex, endIndex);
+          break main;
+        }
+
+        if (_buffer.get(i) == ',') {
+          row.addField(startIndex, endIndex);
+          i++;
+          continue main;
+        }
+
+        if (_buffer.get(i) != '"') {
+          throw new IllegalStateException(
+              "Expected double quote followed by delimiter or another double quote");
+        }
+
+        i = parseQuotedColumnWithEscape(row, startIndex, endIndex, i, end);
+        continue main;
+      }
+
+      // text column
+      int startIndex = i;
+      do {
+        i++;
+      } while (i < end && _buffer.get(i) != ',');
+
+      row.addField(startIndex, i);
+      i++;
+    }
+
+    if (_buffer.get(end - 1) == ',') {
+      // delimiter followed by end of line
+      row.addField(end, end);
+    }
+
+    return row;
+  }
+
+  private int parseQuotedColumnWithEscape(
+      ByteCsvRow row, int startIndex, int endIndex, int i, int end) {
+    ByteArrayOutputStream builder = new ByteArrayOutputStream((endIndex - startIndex) * 2);
+    append(builder, startIndex, endIndex);
+
+    do {
+      // append double quotes as single quote
+      builder.write('"');
+
+      startIndex = i + 1;
+
+      do {
+        i++;
+        if (i >= end) {
+          throw new IllegalStateException("Expected end-quote");
+        }
+      } while (_buffer.get(i) != '"');
+
+      append(builder, startIndex, i);
+
+      i++; // skip over first double quote
+      if (i >= end) {
+        row.addValue(intern(builder.toString(StandardCharsets.UTF_8)));
+        return i;
+      }
+
+      if (_buffer.get(i) == ',') {
+        row.addValue(intern(builder.toString(StandardCharsets.UTF_8)));
+        i++;
+        return i;
+      } else if (_buffer.get(i) != '"') {
+        throw new IllegalStateException("Expected end of line or divider after double quote");
+      }
+
+    } while (true);
+  }
+
+  private void append(ByteArrayOutputStream builder, int start, int end) {
+    for (int i = start; i < end; i++) builder.write(_buffer.get(i));
+  }
+
+  private String intern(String value) {
+    return _interner == null ? value : _interner.apply(value);
+  }
+}
@@ -19,16 +19,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Predicate;
 import java.util.zip.ZipFile;
 import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
 import org.onebusaway.csv_entities.exceptions.MissingRequiredEntityException;
+import org.onebusaway.csv_entities.schema.AbstractEntitySchemaFactoryImpl;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
 import org.onebusaway.csv_entities.schema.EntitySchema;
 import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
@@ -49,14 +61,24 @@ public class CsvEntityReader {
 
   private List<EntityHandler> _handlers = new ArrayList<>();
 
+  private Map<Class<?>, List<EntityVisitor<Object>>> _visitors = new HashMap<>();
+
   private boolean _trimValues = false;
 
   private boolean _internStrings = false;
 
-  private Map<String, String> _stringTable = new HashMap<>();
+  private Map<String, String> _stringTable = new ConcurrentHashMap<>();
 
   private Predicate<Class> _internStringsDisabled = _ -> false;
 
+  private int _chunkSize = 0;
+
+  private boolean _unorderedChunks = false;
+
+  private ForkJoinPool _chunkPool = ForkJoinPool.commonPool();
+
+  private boolean _parseBytes = false;
+
   /**
    * @return the {@link EntitySchemaFactory} that will be used for introspection of bean classes
    */
@@ -93,6 +115,33 @@ public class CsvEntityReader {
     _handlers.add(handler);
   }
 
+  /**
+   * Streams the entities of the specified type to a visitor instead of the entity handlers, so they
+   * are not retained once the visitors have returned. Visitors are called on the reading thread, in
+   * file order, also when files are read in parallel or in chunks.
+   *
+   * <p>Since streamed entities never reach the entity handlers, other entity types can't refer to
+   * them.
+   *
+   * @param entityClass the exact type of the entities to visit
+   * @param visitor the visitor, which is called in addition to any visitors already registered for
+   *     the type
+   */
+  @SuppressWarnings("unchecked")
+  public <T> void addEntityVisitor(Class<T> entityClass, EntityVisitor<? super T> visitor) {
+    _visitors
+        .computeIfAbsent(entityClass, _ -> new ArrayList<>())
+        .add((EntityVisitor<Object>) visitor);
+  }
+
+  /**
+   * @return the entity types that are streamed to visitors, see {@link #addEntityVisitor(Class,
+   *     EntityVisitor)}
+   */
+  public Set<Class<?>> getVisitedEntityClasses() {
+    return Collections.unmodifiableSet(_visitors.keySet());
+  }
+
   public CsvEntityContext getContext() {
     return _context;
   }
@@ -110,11 +159,67 @@ public class CsvEntityReader {
     this._internStringsDisabled = set::contains;
   }
 
+  /**
+   * Enables chunked parsing of large files. Lines are still read sequentially, which works for both
+   * directory and zip sources, but they are grouped into chunks of the specified number of lines
+   * that are tokenized and mapped to entities on the chunk pool (see {@link
+   * #setChunkPool(ForkJoinPool)}). The entities of each chunk are passed to {@link
+   * EntityHandler#handleEntities(List)} on the reading thread.
+   *
+   * <p>Each chunk is mapped with its own copy of the entity schema, so chunked parsing requires the
+   * entity schema factory to extend {@link AbstractEntitySchemaFactoryImpl}. Files are parsed on
+   * the reading thread otherwise.
+   *
+   * @param chunkSize the number of lines per chunk, or 0 to disable chunked parsing
+   */
+  public void setChunkSize(int chunkSize) {
+    if (chunkSize < 0) throw new IllegalArgumentException("chunkSize must not be negative");
+    _chunkSize = chunkSize;
+  }
+
+  /**
+   * By default, chunks are handed to the entity handlers in file order, so the handlers see the
+   * same sequence of entities as with sequential parsing. In unordered mode each chunk is handed
+   * over as soon as it has been mapped, which avoids waiting on a slow chunk, but the order of
+   * entities across chunks is then unspecified.
+   *
+   * @param unorderedChunks true to hand over chunks in completion order
+   */
+  public void setUnorderedChunks(boolean unorderedChunks) {
+    _unorderedChunks = unorderedChunks;
+  }
+
+  /**
+   * @param chunkPool the pool used for chunked parsing, the common pool by default
+   */
+  public void setChunkPool(ForkJoinPool chunkPool) {
+    _chunkPool = chunkPool;
+  }
+
+  /**
+   * Enables tokenizing files straight from their bytes with {@link ByteCsvTokenizer}, for input
+   * sources that provide them (see {@link CsvInputSource#getResourceBytes(String)}). Fields are
+   * then only decoded to strings when a field mapping asks for them, and numeric field mappings can
+   * parse them without decoding them at all.
+   *
+   * <p>This only applies to the default {@link CsvTokenizerStrategy} and to files that aren't
+   * parsed in chunks (see {@link #setChunkSize(int)}). Note that a directory source memory maps its
+   * files, and on some platforms a mapped file can't be deleted until the mapping has been garbage
+   * collected. A zip file source inflates each entry into memory, so it only provides the bytes of
+   * entries up to a size limit (see {@link ZipFileCsvInputSource#setMaxBufferedEntrySize(long)}).
+   *
+   * @param parseBytes true to tokenize files from their bytes where possible
+   */
+  public void setParseBytes(boolean parseBytes) {
+    _parseBytes = parseBytes;
+  }
+
   public void readEntities(Class<?> entityClass) throws IOException {
     readEntities(entityClass, _source);
   }
 
   public void readEntities(Class<?> entityClass, CsvInputSource source) throws IOException {
+    if (readEntitiesFromBytes(entityClass, source, _handler)) return;
     InputStream is = openInputStreamForEntityClass(source, entityClass);
     if (is != null) readEntities(entityClass, is);
   }
@@ -126,13 +231,76 @@ public class CsvEntityReader {
 
   public void readEntities(Class<?> entityClass, Reader reader)
       throws IOException, CsvEntityIOException {
+    readEntities(entityClass, reader, _handler);
+  }
+
+  /**
+   * Reads entities of the specified type from the specified source, passing each one to the
+   * specified handler instead of the handlers registered with {@link
+   * #addEntityHandler(EntityHandler)}. This is the building block for readers that parse several
+   * entity types concurrently and deliver the results to the registered handlers later from a
+   * single thread.
+   *
+   * @param entityClass the entity type to read
+   * @param source the source to read from
+   * @param handler the handler that will receive each parsed entity
+   */
+  public void readEntities(Class<?> entityClass, CsvInputSource source, EntityHandler handler)
+      throws IOException {
+    if (readEntitiesFromBytes(entityClass, source, handler)) return;
+    InputStream is = openInputStreamForEntityClass(source, entityClass);
+    if (is != null) readEntities(entityClass, new InputStreamReader(is, "UTF-8"), handler);
+  }
+
+  /**
+   * Reads entities of the specified type from the bytes of a UTF-8 encoded CSV file, see {@link
+   * #setParseBytes(boolean)}.
+   *
+   * @param entityClass the entity type to read
+   * @param bytes the file contents, from the buffer position to its limit
+   * @param handler the handler that will receive each parsed entity
+   */
+  protected void readEntities(Class<?> entityClass, ByteBuffer bytes, EntityHandler handler)
+      throws CsvEntityIOException {
 
     EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
 
     IndividualCsvEntityReader entityLoader =
-        createIndividualCsvEntityReader(_context, schema, _handler);
+        createIndividualCsvEntityReader(_context, schema, handler);
     entityLoader.setTrimValues(_trimValues);
 
+    ByteCsvTokenizer tokenizer = new ByteCsvTokenizer(bytes);
+    if (_internStrings && !_internStringsDisabled.test(entityClass)) {
+      tokenizer.setInterner(this::internString);
+    }
+
+    int lineNumber = 1;
+
+    try {
+      ByteCsvRow row;
+      while ((row = tokenizer.nextRow()) != null) {
+        entityLoader.handleLine(row);
+        lineNumber++;
+      }
+    } catch (Exception ex) {
+      throw new CsvEntityIOException(entityClass, schema.getFilename(), lineNumber, ex);
+    }
+  }
+
+  /**
+   * @return true if the specified entity type can be read with {@link #readEntities(Class,
+   *     ByteBuffer, EntityHandler)}, false if it must be read through {@link #readEntities(Class,
+   *     Reader)}
+   */
+  protected boolean isByteParsingSupported(Class<?> entityClass) {
+    return true;
+  }
+
+  protected void readEntities(Class<?> entityClass, Reader reader, EntityHandler handler)
+      throws IOException, CsvEntityIOException {
+
+    EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+
     BufferedReader lineReader = new BufferedReader(reader);
 
     /** Skip the initial UTF BOM, if present */
@@ -143,6 +311,18 @@ public class CsvEntityReader {
       lineReader.reset();
     }
 
+    if (_chunkSize > 0) {
+      EntitySchema chunkSchema = createChunkSchema(entityClass);
+      if (chunkSchema != null) {
+        readEntitiesInChunks(entityClass, schema, chunkSchema, lineReader, handler);
+        return;
+      }
+    }
+
+    IndividualCsvEntityReader entityLoader =
+        createIndividualCsvEntityReader(_context, schema, handler);
+    entityLoader.setTrimValues(_trimValues);
+
     String line = null;
     int lineNumber = 1;
 
@@ -150,9 +330,7 @@ public class CsvEntityReader {
 
     try (lineReader) {
       while ((line = lineReader.readLine()) != null) {
-        if (line.isEmpty()) continue;
-        // TODO: This is a hack of sorts to deal with a malformed data file...
-        if (line.length() == 1 && line.charAt(0) == 26) continue;
+        if (isSkippedLine(line)) continue;
         List<String> values = _tokenizerStrategy.parse(line);
         if (internStrings) internStrings(values);
         entityLoader.handleLine(values);
@@ -163,11 +341,142 @@ public class CsvEntityReader {
     }
   }
 
+  /**
+   * Reads the entities straight from the bytes of their file if byte parsing is enabled and can be
+   * used for the entity type, see {@link #setParseBytes(boolean)}.
+   *
+   * @return true if the entities were read, false if they still have to be read through a {@link
+   *     Reader}
+   */
+  private boolean readEntitiesFromBytes(
+      Class<?> entityClass, CsvInputSource source, EntityHandler handler) throws IOException {
+    if (!_parseBytes
+        || _chunkSize > 0
+        || _tokenizerStrategy.getClass() != CsvTokenizerStrategy.class
+        || !isByteParsingSupported(entityClass)) {
+      return false;
+    }
+    String name = _entitySchemaFactory.getSchema(entityClass).getFilename();
+    // Missing files are reported by the regular path
+    if (!source.hasResource(name)) return false;
+    ByteBuffer bytes = source.getResourceBytes(name);
+    if (bytes == null) return false;
+    readEntities(entityClass, bytes, handler);
+    return true;
+  }
+
+  /**
+   * Reads lines on the calling thread, parses them in chunks on the chunk pool and passes the
+   * resulting entities to the handler on the calling thread. At most two chunks per pool thread are
+   * in flight at any time, which bounds the memory used for lines that are waiting to be parsed.
+   */
+  private void readEntitiesInChunks(
+      Class<?> entityClass,
+      EntitySchema schema,
+      EntitySchema chunkSchema,
+      BufferedReader lineReader,
+      EntityHandler handler)
+      throws IOException, CsvEntityIOException {
+
+    ChunkContext chunkContext =
+        new ChunkContext(entityClass, schema.getFilename(), _unorderedChunks);
+    chunkContext.schemas.add(chunkSchema);
+
+    int maxChunksInFlight = Math.max(2, 2 * _chunkPool.getParallelism());
+    Deque<ChunkTask> chunksInFlight = new ArrayDeque<>();
+
+    String line = null;
+    int lineNumber = 1;
+    List<String> chunk = new ArrayList<>(_chunkSize);
+    int chunkLineNumber = lineNumber;
+
+    try (lineReader) {
+      try {
+        if (schema.getFieldsInOrder().isEmpty()) {
+          while ((line = lineReader.readLine()) != null) {
+            if (isSkippedLine(line)) continue;
+            List<String> values = _tokenizerStrategy.parse(line);
+            lineNumber++;
+            if (!values.isEmpty()) {
+              chunkContext.header = values;
+              break;
+            }
+          }
+        }
+        chunkLineNumber = lineNumber;
+        while ((line = lineReader.readLine()) != null) {
+          if (isSkippedLine(line)) continue;
+          chunk.add(line);
+          lineNumber++;
+          if (chunk.size() == _chunkSize) {
+            if (chunksInFlight.size() == maxChunksInFlight) {
+              handleChunk(chunksInFlight, chunkContext, handler);
+            }
+            chunksInFlight.add(submitChunk(chunkContext, chunk, chunkLineNumber));
+            chunk = new ArrayList<>(_chunkSize);
+            chunkLineNumber = lineNumber;
+          }
+        }
+      } catch (IOException ex) {
+        throw new CsvEntityIOException(entityClass, schema.getFilename(), lineNumber, ex);
+      }
+      if (!chunk.isEmpty()) {
+        chunksInFlight.add(submitChunk(chunkContext, chunk, chunkLineNumber));
+      }
+      while (!chunksInFlight.isEmpty()) {
+        handleChunk(chunksInFlight, chunkContext, handler);
+      }
+    } finally {
+      for (ChunkTask task : chunksInFlight) task.cancel(false);
+    }
+  }
+
+  private ChunkTask submitChunk(ChunkContext chunkContext, List<String> lines, int lineNumber) {
+    ChunkTask task = new ChunkTask(chunkContext, lines, lineNumber);
+    _chunkPool.execute(task);
+    return task;
+  }
+
+  private void handleChunk(
+      Deque<ChunkTask> chunksInFlight, ChunkContext chunkContext, EntityHandler handler) {
+    ChunkTask task;
+    if (chunkContext.completed != null) {
+      try {
+        task = chunkContext.completed.take();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while parsing " + chunkContext.filename, ex);
+      }
+      chunksInFlight.remove(task);
+    } else {
+      task = chunksInFlight.remove();
+    }
+    List<Object> entities = task.join();
+    try {
+      if (!entities.isEmpty()) handler.handleEntities(entities);
+    } catch (Exception ex) {
+      // The handler sees the whole chunk at once, so report the line the chunk started at
+      throw new CsvEntityIOException(
+          chunkContext.entityClass, chunkContext.filename, task._lineNumber, ex);
+    }
+  }
+
   protected IndividualCsvEntityReader createIndividualCsvEntityReader(
       CsvEntityContext context, EntitySchema schema, EntityHandler handler) {
     return new IndividualCsvEntityReader(context, schema, handler);
   }
 
+  /**
+   * @return a schema for the specified entity type that is not shared with any other reader, or
+   *     null if the entity type can't be parsed in chunks
+   */
+  protected EntitySchema createChunkSchema(Class<?> entityClass) {
+    if (_entitySchemaFactory instanceof AbstractEntitySchemaFactoryImpl factory) {
+      return factory.createSchema(entityClass);
+    }
+    return null;
+  }
+
   /**
    * Sometimes it may be necessary to inject an instantiated entity directly instead of loading it
    * from a CSV source. This method allows you to add a new entity, with all handlers called for
@@ -179,40 +488,151 @@ public class CsvEntityReader {
     _handler.handleEntity(entity);
   }
 
+  /**
+   * Injects a batch of entities of a single type, see {@link #injectEntity(Object)}.
+   *
+   * @param entities the entities to be injected
+   */
+  public void injectEntities(List<Object> entities) {
+    _handler.handleEntities(entities);
+  }
+
   public InputStream openInputStreamForEntityClass(CsvInputSource source, Class<?> entityClass)
       throws IOException {
 
     EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
 
     String name = schema.getFilename();
-    if (!_source.hasResource(name)) {
+    if (!source.hasResource(name)) {
       if (schema.isRequired()) throw new MissingRequiredEntityException(entityClass, name);
       return null;
     }
 
-    return _source.getResource(name);
+    return source.getResource(name);
   }
 
   public void close() throws IOException {
     if (_source != null) _source.close();
   }
 
+  private static boolean isSkippedLine(String line) {
+    if (line.isEmpty()) return true;
+    // TODO: This is a hack of sorts to deal with a malformed data file...
+    return line.length() == 1 && line.charAt(0) == 26;
+  }
+
   private void internStrings(List<String> values) {
     for (int i = 0; i < values.size(); i++) {
       String value = values.get(i);
-      String existing = _stringTable.get(value);
+      String existing = _stringTable.putIfAbsent(value, value);
       if (existing != null) {
         values.set(i, existing);
-      } else {
-        _stringTable.put(value, value);
       }
     }
   }
 
+  private String internString(String value) {
+    String existing = _stringTable.putIfAbsent(value, value);
+    return existing != null ? existing : value;
+  }
+
   private class EntityHandlerImpl implements EntityHandler {
 
     public void handleEntity(Object entity) {
+      List<EntityVisitor<Object>> visitors = _visitors.get(entity.getClass());
+      if (visitors != null) {
+        for (EntityVisitor<Object> visitor : visitors) visitor.visit(entity);
+        return;
+      }
       for (EntityHandler handler : _handlers) handler.handleEntity(entity);
     }
+
+    @Override
+    public void handleEntities(List<Object> entities) {
+      // With several handlers, each entity must reach all of them before the next one is handled
+      if (_handlers.size() == 1 && !_visitors.containsKey(entities.getFirst().getClass())) {
+        _handlers.getFirst().handleEntities(entities);
+      } else {
+        EntityHandler.super.handleEntities(entities);
+      }
+    }
+  }
+
+  /** State shared by all the chunks of a single file */
+  private static class ChunkContext {
+
+    private final Class<?> entityClass;
+
+    private final String filename;
+
+    private final Queue<EntitySchema> schemas = new ConcurrentLinkedQueue<>();
+
+    /** Chunks in completion order, only tracked for unordered parsing */
+    private final BlockingQueue<ChunkTask> completed;
+
+    private List<String> header;
+
+    public ChunkContext(Class<?> entityClass, String filename, boolean unordered) {
+      this.entityClass = entityClass;
+      this.filename = filename;
+      this.completed = unordered ? new LinkedBlockingQueue<>() : null;
+    }
+  }
+
+  /** Tokenizes the lines of a single chunk and maps them to entities */
+  @SuppressWarnings("serial")
+  private class ChunkTask extends RecursiveTask<List<Object>> {
+
+    private final ChunkContext _chunkContext;
+
+    private final List<String> _lines;
+
+    private final int _lineNumber;
+
+    public ChunkTask(ChunkContext chunkContext, List<String> lines, int lineNumber) {
+      _chunkContext = chunkContext;
+      _lines = lines;
+      _lineNumber = lineNumber;
+    }
+
+    @Override
+    protected List<Object> compute() {
+      try {
+        return parseLines();
+      } finally {
+        if (_chunkContext.completed != null) _chunkContext.completed.add(this);
+      }
+    }
+
+    private List<Object> parseLines() {
+      Class<?> entityClass = _chunkContext.entityClass;
+      EntitySchema schema = _chunkContext.schemas.poll();
+      if (schema == null) schema = createChunkSchema(entityClass);
+
+      List<Object> entities = new ArrayList<>(_lines.size());
+      IndividualCsvEntityReader entityLoader =
+          createIndividualCsvEntityReader(_context, schema, entities::add);
+      entityLoader.setTrimValues(_trimValues);
+      if (_chunkContext.header != null) {
+        entityLoader.handleLine(new ArrayList<>(_chunkContext.header));
+      }
+
+      boolean internStrings = _internStrings && !_internStringsDisabled.test(entityClass);
+
+      int index = 0;
+      try {
+        for (; index < _lines.size(); index++) {
+          List<String> values = _tokenizerStrategy.parse(_lines.get(index));
+          if (internStrings) internStrings(values);
+          entityLoader.handleLine(values);
+        }
+      } catch (Exception ex) {
+        throw new CsvEntityIOException(
+            entityClass, _chunkContext.filename, _lineNumber + index, ex);
+      }
+
+      _chunkContext.schemas.add(schema);
+      return entities;
+    }
   }
 }
@@ -15,11 +15,24 @@ package org.onebusaway.csv_entities;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public interface CsvInputSource {
   boolean hasResource(String name) throws IOException;
 
   InputStream getResource(String name) throws IOException;
 
+  /**
+   * Provides the raw bytes of a resource for {@link ByteCsvTokenizer}, ideally without copying them
+   * into memory first.
+   *
+   * @param name the resource name
+   * @return the bytes of the resource, or null if the source can't provide them, in which case the
+   *     resource is read with {@link #getResource(String)} instead
+   */
+  default ByteBuffer getResourceBytes(String name) throws IOException {
+    return null;
+  }
+
   void close() throws IOException;
 }
@@ -13,6 +13,19 @@
  */
 package org.onebusaway.csv_entities;
 
+import java.util.List;
+
 public interface EntityHandler {
   public void handleEntity(Object bean);
+
+  /**
+   * Handles a batch of entities at once, as produced by chunked parsing (see {@link
+   * CsvEntityReader#setChunkSize(int)}). Handlers that store entities can override this to store
+   * the whole batch in one step.
+   *
+   * @param beans entities of a single type, in the order they should be handled
+   */
+  public default void handleEntities(List<Object> beans) {
+    for (Object bean : beans) handleEntity(bean);
+  }
 }
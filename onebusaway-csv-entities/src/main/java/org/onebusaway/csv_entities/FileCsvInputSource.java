@@ -17,6 +17,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class FileCsvInputSource implements CsvInputSource {
 
@@ -36,5 +39,16 @@ public class FileCsvInputSource implements CsvInputSource {
     return new FileInputStream(file);
   }
 
+  /** Maps the file into memory, so it is paged in by the OS as it is tokenized */
+  @Override
+  public ByteBuffer getResourceBytes(String name) throws IOException {
+    File file = new File(_sourceDirectory, name);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) return null;
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
   public void close() throws IOException {}
 }
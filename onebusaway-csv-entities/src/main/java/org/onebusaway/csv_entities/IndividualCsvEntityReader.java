@@ -14,13 +14,20 @@
 /** */
 package org.onebusaway.csv_entities;
 
+import java.lang.reflect.Constructor;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.onebusaway.csv_entities.exceptions.EntityInstantiationException;
 import org.onebusaway.csv_entities.schema.BaseEntitySchema;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
 import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import org.onebusaway.csv_entities.schema.CompilableFieldMapping;
+import org.onebusaway.csv_entities.schema.CompiledFieldMapping;
 import org.onebusaway.csv_entities.schema.EntitySchema;
 import org.onebusaway.csv_entities.schema.EntityValidator;
 import org.onebusaway.csv_entities.schema.ExtensionEntitySchema;
@@ -48,6 +55,23 @@ public class IndividualCsvEntityReader implements CSVListener {
 
   private boolean _trimValues = false;
 
+  /** Column index by csv field name, built along with {@link #_compiledMappings} */
+  private Map<String, Integer> _fieldIndices;
+
+  /**
+   * The compiled form of each of the schema field mappings, or null for those that can't be
+   * compiled
+   */
+  private CompiledFieldMapping[] _compiledMappings;
+
+  /**
+   * True if some mapping, extension or validator still needs the csv values by name and a {@link
+   * BeanWrapper} for each entity
+   */
+  private boolean _requiresWrapper;
+
+  private Constructor<?> _constructor;
+
   public IndividualCsvEntityReader(
       CsvEntityContext context, EntitySchema schema, EntityHandler handler) {
     _handler = handler;
@@ -81,7 +105,8 @@ public class IndividualCsvEntityReader implements CSVListener {
     if (line.size() == 0) return;
 
     if (_trimValues) {
-      for (int i = 0; i < line.size(); i++) line.set(i, line.get(i).trim());
+      if (line instanceof ByteCsvRow row) row.trim();
+      else for (int i = 0; i < line.size(); i++) line.set(i, line.get(i).trim());
     }
 
     if (!_initialized) {
@@ -110,22 +135,33 @@ public class IndividualCsvEntityReader implements CSVListener {
               + _fields.size()
               + " actual="
               + line.size());
+      if (line.size() > _fields.size()) {
+        throw new IndexOutOfBoundsException(
+            "more csv fields than header fields: expected="
+                + _fields.size()
+                + " actual="
+                + line.size());
+      }
       while (line.size() < _fields.size()) line.add("");
     }
 
-    Object object = createNewEntityInstance(_schema);
-    BeanWrapper wrapper = BeanWrapperFactory.wrap(object);
+    if (_compiledMappings == null) compileMappings();
 
-    Map<String, Object> values = new HashMap<>();
+    Object object = createNewEntityInstance();
 
-    for (int i = 0; i < line.size(); i++) {
-      String csvFieldName = _fields.get(i);
-      String value = line.get(i);
-      values.put(csvFieldName, value);
+    Map<String, Object> values = null;
+    BeanWrapper wrapper = null;
+    if (_requiresWrapper) {
+      values = new CsvValuesMap(_fieldIndices, line);
+      wrapper = BeanWrapperFactory.wrap(object);
     }
 
-    for (FieldMapping mapping : _schema.getFields())
-      mapping.translateFromCSVToObject(_context, values, wrapper);
+    List<FieldMapping> mappings = _schema.getFields();
+    for (int i = 0; i < _compiledMappings.length; i++) {
+      CompiledFieldMapping compiled = _compiledMappings[i];
+      if (compiled != null) compiled.translateFromCSVToObject(_context, line, object);
+      else mappings.get(i).translateFromCSVToObject(_context, values, wrapper);
+    }
 
     if (object instanceof HasExtensions hasExtensions) {
       for (ExtensionEntitySchema extensionSchema : _schema.getExtensions()) {
@@ -144,6 +180,38 @@ public class IndividualCsvEntityReader implements CSVListener {
     _handler.handleEntity(object);
   }
 
+  /**
+   * Binds the schema field mappings to the columns of the current file. Rows then only need a map
+   * of values and a bean wrapper if some mapping can't be compiled.
+   */
+  private void compileMappings() {
+    _fieldIndices = new HashMap<>();
+    for (int i = 0; i < _fields.size(); i++) _fieldIndices.put(_fields.get(i), i);
+
+    List<FieldMapping> mappings = _schema.getFields();
+    _compiledMappings = new CompiledFieldMapping[mappings.size()];
+    _requiresWrapper =
+        !_schema.getValidators().isEmpty()
+            || (HasExtensions.class.isAssignableFrom(_schema.getEntityClass())
+                && !_schema.getExtensions().isEmpty());
+    for (int i = 0; i < mappings.size(); i++) {
+      if (mappings.get(i) instanceof CompilableFieldMapping mapping) {
+        _compiledMappings[i] = mapping.compile(_fields);
+      }
+      if (_compiledMappings[i] == null) _requiresWrapper = true;
+    }
+  }
+
+  private Object createNewEntityInstance() {
+    Class<?> entityClass = _schema.getEntityClass();
+    try {
+      if (_constructor == null) _constructor = entityClass.getDeclaredConstructor();
+      return _constructor.newInstance();
+    } catch (Exception ex) {
+      throw new EntityInstantiationException(entityClass, ex);
+    }
+  }
+
   private static Object createNewEntityInstance(BaseEntitySchema schema) {
     Class<?> entityClass = schema.getEntityClass();
     try {
@@ -152,4 +220,65 @@ public class IndividualCsvEntityReader implements CSVListener {
       throw new EntityInstantiationException(entityClass, ex);
     }
   }
+
+  /**
+   * Read-only view of the values of a single row by csv field name, so that the values don't have
+   * to be copied into a new map for every row.
+   */
+  private static class CsvValuesMap extends AbstractMap<String, Object> {
+
+    private final Map<String, Integer> _fieldIndices;
+
+    private final List<String> _values;
+
+    public CsvValuesMap(Map<String, Integer> fieldIndices, List<String> values) {
+      _fieldIndices = fieldIndices;
+      _values = values;
+    }
+
+    @Override
+    public Object get(Object key) {
+      Integer index = _fieldIndices.get(key);
+      return index == null ? null : _values.get(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return _fieldIndices.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return _fieldIndices.size();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<>() {
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          Iterator<Entry<String, Integer>> it = _fieldIndices.entrySet().iterator();
+          return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+              return it.hasNext();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              Entry<String, Integer> entry = it.next();
+              return new SimpleImmutableEntry<>(entry.getKey(), _values.get(entry.getValue()));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return _fieldIndices.size();
+        }
+      };
+    }
+  }
 }
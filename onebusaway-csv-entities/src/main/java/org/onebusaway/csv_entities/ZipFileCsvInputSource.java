@@ -15,17 +15,32 @@ package org.onebusaway.csv_entities;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class ZipFileCsvInputSource implements CsvInputSource {
 
+  /** The default for {@link #setMaxBufferedEntrySize(long)} */
+  public static final long DEFAULT_MAX_BUFFERED_ENTRY_SIZE = 64 * 1024 * 1024;
+
   private ZipFile _zipFile;
 
+  private long _maxBufferedEntrySize = DEFAULT_MAX_BUFFERED_ENTRY_SIZE;
+
   public ZipFileCsvInputSource(ZipFile zipFile) {
     _zipFile = zipFile;
   }
 
+  /**
+   * @param maxBufferedEntrySize the uncompressed size up to which {@link #getResourceBytes(String)}
+   *     inflates an entry into memory. Larger entries, such as the stop times of a large feed, are
+   *     streamed line by line with {@link #getResource(String)} instead.
+   */
+  public void setMaxBufferedEntrySize(long maxBufferedEntrySize) {
+    _maxBufferedEntrySize = Math.min(maxBufferedEntrySize, Integer.MAX_VALUE - 8);
+  }
+
   public boolean hasResource(String name) throws IOException {
     ZipEntry entry = _zipFile.getEntry(name);
     return entry != null;
@@ -36,6 +51,22 @@ public class ZipFileCsvInputSource implements CsvInputSource {
     return _zipFile.getInputStream(entry);
   }
 
+  /**
+   * Zip entries can't be mapped in place, as {@link ZipFile} doesn't expose where their data starts
+   * and most of them are compressed anyway, so the entry is inflated into a heap buffer in one go.
+   * That is only done for entries up to the {@link #setMaxBufferedEntrySize(long) maximum size}.
+   */
+  @Override
+  public ByteBuffer getResourceBytes(String name) throws IOException {
+    ZipEntry entry = _zipFile.getEntry(name);
+    if (entry == null || entry.getSize() < 0 || entry.getSize() > _maxBufferedEntrySize) {
+      return null;
+    }
+    try (InputStream in = _zipFile.getInputStream(entry)) {
+      return ByteBuffer.wrap(in.readNBytes((int) entry.getSize()));
+    }
+  }
+
   public void close() throws IOException {
     _zipFile.close();
   }
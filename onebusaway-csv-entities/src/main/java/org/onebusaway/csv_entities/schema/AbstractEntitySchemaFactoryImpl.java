@@ -98,6 +98,19 @@ public abstract class AbstractEntitySchemaFactoryImpl
     return schema;
   }
 
+  /**
+   * Creates a new schema for the specified entity type without caching it. Field mappings may keep
+   * parsing state between lines, so a separate schema is needed for each thread that parses
+   * entities of the same type concurrently.
+   *
+   * @param entityClass the entity type
+   * @return a schema that shares no field mapping instances with {@link #getSchema(Class)}
+   */
+  public EntitySchema createSchema(Class<?> entityClass) {
+    initialize();
+    return createSchemaForEntityClass(entityClass);
+  }
+
   /****
    * Protected Methods
    ****/
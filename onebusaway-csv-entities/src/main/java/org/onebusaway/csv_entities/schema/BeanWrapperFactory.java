@@ -15,19 +15,65 @@ package org.onebusaway.csv_entities.schema;
 
 import java.beans.BeanInfo;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import org.onebusaway.csv_entities.exceptions.IntrospectionException;
 import org.onebusaway.csv_entities.exceptions.MethodInvocationException;
 import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
 
 public class BeanWrapperFactory {
 
-  private static Map<Class<?>, BeanClassWrapperImpl> _classWrappers = new HashMap<>();
+  private static Map<Class<?>, BeanClassWrapperImpl> _classWrappers = new ConcurrentHashMap<>();
 
   public static BeanWrapper wrap(Object object) {
-    Class<? extends Object> c = object.getClass();
+    return new BeanWrapperImpl(getClassWrapper(object.getClass()), object);
+  }
+
+  /**
+   * Returns a getter for the specified property that can be called directly with the bean, without
+   * wrapping the bean first. Exceptions thrown while getting the value are wrapped in a {@link
+   * MethodInvocationException}, as with {@link BeanWrapper#getPropertyValue(String)}.
+   *
+   * @param type the bean type
+   * @param propertyName the name of the property to get
+   * @return the property getter
+   * @throws NoSuchPropertyException if the property doesn't exist or isn't readable
+   */
+  public static Function<Object, Object> getPropertyGetter(Class<?> type, String propertyName) {
+    PropertyImpl property = getClassWrapper(type).getProperty(propertyName);
+    if (property == null || property.readMethod == null)
+      throw new NoSuchPropertyException(type, propertyName);
+    return property::getValue;
+  }
+
+  /**
+   * Returns a setter for the specified property that can be called directly with the bean and the
+   * new value, without wrapping the bean first. Exceptions thrown while setting the value are
+   * wrapped in a {@link MethodInvocationException}, as with {@link
+   * BeanWrapper#setPropertyValue(String, Object)}.
+   *
+   * @param type the bean type
+   * @param propertyName the name of the property to set
+   * @return the property setter
+   * @throws NoSuchPropertyException if the property doesn't exist or isn't writable
+   */
+  public static BiConsumer<Object, Object> getPropertySetter(Class<?> type, String propertyName) {
+    PropertyImpl property = getClassWrapper(type).getProperty(propertyName);
+    if (property == null || property.writeMethod == null)
+      throw new NoSuchPropertyException(type, propertyName);
+    return property::setValue;
+  }
+
+  private static BeanClassWrapperImpl getClassWrapper(Class<?> c) {
     BeanClassWrapperImpl classWrapper = _classWrappers.get(c);
     if (classWrapper == null) {
       try {
@@ -38,52 +84,150 @@ public class BeanWrapperFactory {
         throw new IntrospectionException(c);
       }
     }
-
-    return new BeanWrapperImpl(classWrapper, object);
+    return classWrapper;
   }
 
   private static class BeanClassWrapperImpl {
 
-    private Map<String, Method> _readMethods = new HashMap<>();
-
-    private Map<String, Method> _writeMethods = new HashMap<>();
+    private Map<String, PropertyImpl> _properties = new HashMap<>();
 
     public BeanClassWrapperImpl(BeanInfo info) {
       PropertyDescriptor[] properties = info.getPropertyDescriptors();
       for (PropertyDescriptor property : properties) {
-        String name = property.getName();
-        _readMethods.put(name, property.getReadMethod());
-        _writeMethods.put(name, property.getWriteMethod());
+        _properties.put(
+            property.getName(),
+            new PropertyImpl(property.getReadMethod(), property.getWriteMethod()));
       }
     }
 
+    public PropertyImpl getProperty(String propertyName) {
+      return _properties.get(propertyName);
+    }
+
     public Class<?> getPropertyType(Object object, String propertyName) {
-      Method method = _readMethods.get(propertyName);
-      if (method == null) throw new NoSuchPropertyException(object.getClass(), propertyName);
-      return method.getReturnType();
+      PropertyImpl property = _properties.get(propertyName);
+      if (property == null || property.readMethod == null)
+        throw new NoSuchPropertyException(object.getClass(), propertyName);
+      return property.readMethod.getReturnType();
     }
 
     public Object getPropertyValue(Object object, String propertyName) {
-      Method method = _readMethods.get(propertyName);
-      if (method == null) throw new NoSuchPropertyException(object.getClass(), propertyName);
+      PropertyImpl property = _properties.get(propertyName);
+      if (property == null || property.readMethod == null)
+        throw new NoSuchPropertyException(object.getClass(), propertyName);
+      return property.getValue(object);
+    }
+
+    public void setPropertyValue(Object object, String propertyName, Object value) {
+      PropertyImpl property = _properties.get(propertyName);
+      if (property == null || property.writeMethod == null)
+        throw new NoSuchPropertyException(object.getClass(), propertyName);
+      property.setValue(object, value);
+    }
+  }
+
+  /**
+   * Accessors for a single bean property. The first access spins a lambda that calls the getter or
+   * setter directly, which avoids the overhead of {@link Method#invoke(Object, Object...)} on every
+   * call. If the lambda can't be created, for example because the bean class isn't accessible, we
+   * fall back to reflection.
+   */
+  private static class PropertyImpl {
+
+    private final Method readMethod;
+
+    private final Method writeMethod;
+
+    private Function<Object, Object> getter;
+
+    private BiConsumer<Object, Object> setter;
+
+    private volatile boolean getterCompiled = false;
+
+    private volatile boolean setterCompiled = false;
+
+    public PropertyImpl(Method readMethod, Method writeMethod) {
+      this.readMethod = readMethod;
+      this.writeMethod = writeMethod;
+    }
+
+    public Object getValue(Object object) {
+      if (!getterCompiled) {
+        getter = compileGetter(readMethod);
+        getterCompiled = true;
+      }
       try {
-        return method.invoke(object);
+        if (getter != null) return getter.apply(object);
+        return readMethod.invoke(object);
       } catch (Exception ex) {
-        throw new MethodInvocationException(object.getClass(), method, ex);
+        throw new MethodInvocationException(object.getClass(), readMethod, ex);
       }
     }
 
-    public void setPropertyValue(Object object, String propertyName, Object value) {
-      Method method = _writeMethods.get(propertyName);
-      if (method == null) throw new NoSuchPropertyException(object.getClass(), propertyName);
+    public void setValue(Object object, Object value) {
+      if (!setterCompiled) {
+        setter = compileSetter(writeMethod);
+        setterCompiled = true;
+      }
       try {
-        method.invoke(object, value);
+        if (setter != null) setter.accept(object, value);
+        else writeMethod.invoke(object, value);
       } catch (Exception ex) {
-        throw new MethodInvocationException(object.getClass(), method, ex);
+        throw new MethodInvocationException(object.getClass(), writeMethod, ex);
       }
     }
   }
 
+  /**
+   * @return a getter that calls the specified method directly, or null if it can't be created
+   */
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> compileGetter(Method method) {
+    try {
+      Class<?> beanType = method.getDeclaringClass();
+      MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(beanType, MethodHandles.lookup());
+      MethodHandle handle = lookup.unreflect(method);
+      CallSite site =
+          LambdaMetafactory.metafactory(
+              lookup,
+              "apply",
+              MethodType.methodType(Function.class),
+              MethodType.methodType(Object.class, Object.class),
+              handle,
+              MethodType.methodType(boxed(method.getReturnType()), beanType));
+      return (Function<Object, Object>) site.getTarget().invoke();
+    } catch (Throwable _) {
+      return null;
+    }
+  }
+
+  /**
+   * @return a setter that calls the specified method directly, or null if it can't be created
+   */
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> compileSetter(Method method) {
+    try {
+      Class<?> beanType = method.getDeclaringClass();
+      MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(beanType, MethodHandles.lookup());
+      MethodHandle handle = lookup.unreflect(method);
+      CallSite site =
+          LambdaMetafactory.metafactory(
+              lookup,
+              "accept",
+              MethodType.methodType(BiConsumer.class),
+              MethodType.methodType(void.class, Object.class, Object.class),
+              handle,
+              MethodType.methodType(void.class, beanType, boxed(method.getParameterTypes()[0])));
+      return (BiConsumer<Object, Object>) site.getTarget().invoke();
+    } catch (Throwable _) {
+      return null;
+    }
+  }
+
+  private static Class<?> boxed(Class<?> type) {
+    return MethodType.methodType(type).wrap().returnType();
+  }
+
   private static class BeanWrapperImpl implements BeanWrapper {
 
     private BeanClassWrapperImpl _classWrapper;
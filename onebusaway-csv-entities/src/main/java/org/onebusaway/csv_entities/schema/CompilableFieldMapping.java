@@ -0,0 +1,29 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.schema;
+
+import java.util.List;
+
+/**
+ * A {@link FieldMapping} that can be compiled against the columns of a particular CSV file, so that
+ * each row can be mapped by column index instead of through a map of values and a {@link
+ * BeanWrapper}.
+ */
+public interface CompilableFieldMapping extends FieldMapping {
+
+  /**
+   * @param csvFieldNames the columns of the CSV file, in order
+   * @return a mapping with the same behavior as {@link #translateFromCSVToObject}, or null if this
+   *     mapping can't be compiled
+   */
+  public CompiledFieldMapping compile(List<String> csvFieldNames);
+}
@@ -0,0 +1,33 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.schema;
+
+import java.util.List;
+import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.exceptions.CsvEntityException;
+
+/**
+ * A field mapping bound to the columns of a particular CSV file.
+ *
+ * @see CompilableFieldMapping
+ */
+@FunctionalInterface
+public interface CompiledFieldMapping {
+
+  /**
+   * @param context the reader context
+   * @param csvValues the values of a single row, in column order
+   * @param object the entity being read
+   */
+  public void translateFromCSVToObject(
+      CsvEntityContext context, List<String> csvValues, Object object) throws CsvEntityException;
+}
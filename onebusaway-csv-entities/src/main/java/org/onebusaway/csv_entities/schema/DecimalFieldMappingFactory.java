@@ -22,6 +22,7 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.util.Currency;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import org.onebusaway.csv_entities.CsvEntityContext;
@@ -137,6 +138,12 @@ public class DecimalFieldMappingFactory implements FieldMappingFactory {
       _numberFormat = numberFormat;
     }
 
+    /** Only the writing of values is customized, so reading can be compiled as usual */
+    @Override
+    public CompiledFieldMapping compile(List<String> csvFieldNames) {
+      return compileRead(csvFieldNames);
+    }
+
     @Override
     public void translateFromObjectToCSV(
         CsvEntityContext context, BeanWrapper object, Map<String, Object> csvValues)
@@ -13,18 +13,37 @@
  */
 package org.onebusaway.csv_entities.schema;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import org.apache.commons.beanutils2.ConvertUtils;
 import org.apache.commons.beanutils2.Converter;
+import org.apache.commons.beanutils2.converters.ConverterFacade;
+import org.onebusaway.csv_entities.ByteCsvRow;
 import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.exceptions.MissingRequiredFieldException;
 import org.onebusaway.csv_entities.exceptions.NoDefaultConverterException;
+import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
 
-public class DefaultFieldMapping extends AbstractFieldMapping {
+public class DefaultFieldMapping extends AbstractFieldMapping implements CompilableFieldMapping {
 
   protected Class<?> _objFieldType;
 
   private Converter _converter;
 
+  /**
+   * True if the converter is one of the beanutils defaults, which it wraps in a {@link
+   * ConverterFacade}, rather than one registered with {@link ConvertUtils#register(Converter,
+   * Class)}. Only then may numbers be parsed without going through it.
+   */
+  private boolean _parseNumbers;
+
+  /** Exact powers of ten, for the fast path of {@link #parseDouble(CharSequence)} */
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
   public DefaultFieldMapping(
       Class<?> entityType,
       String csvFieldName,
@@ -36,6 +55,7 @@ public class DefaultFieldMapping extends AbstractFieldMapping {
     _converter = ConvertUtils.lookup(objFieldType);
     if (_converter == null && objFieldType.equals(Object.class))
       _converter = new DefaultConverter();
+    _parseNumbers = _converter instanceof ConverterFacade;
   }
 
   public void translateFromCSVToObject(
@@ -48,6 +68,48 @@ public class DefaultFieldMapping extends AbstractFieldMapping {
     object.setPropertyValue(_objFieldName, objValue);
   }
 
+  /**
+   * Subclasses customize the reading of values, so only plain instances are compiled.
+   *
+   * @see CompilableFieldMapping#compile(List)
+   */
+  @Override
+  public CompiledFieldMapping compile(List<String> csvFieldNames) {
+    if (getClass() != DefaultFieldMapping.class) return null;
+    return compileRead(csvFieldNames);
+  }
+
+  /**
+   * Compiles the reading of values, for subclasses that only customize writing.
+   *
+   * @param csvFieldNames the columns of the CSV file, in order
+   * @return the compiled mapping, or null if the property has no setter
+   */
+  protected CompiledFieldMapping compileRead(List<String> csvFieldNames) {
+    BiConsumer<Object, Object> setter;
+    try {
+      setter = BeanWrapperFactory.getPropertySetter(_entityType, _objFieldName);
+    } catch (NoSuchPropertyException _) {
+      // Only fail if a value is actually present, as the uncompiled mapping does
+      return null;
+    }
+
+    // With duplicate column names, the last column wins, as with the map of csv values
+    int index = csvFieldNames.lastIndexOf(_csvFieldName);
+
+    return (context, csvValues, object) -> {
+      CharSequence csvValue =
+          index != -1 && index < csvValues.size()
+              ? ByteCsvRow.getCharSequence(csvValues, index)
+              : null;
+      if (csvValue == null || csvValue.isEmpty()) {
+        if (_required) throw new MissingRequiredFieldException(_entityType, _csvFieldName);
+        return;
+      }
+      setter.accept(object, convertCsvSequence(csvValue));
+    };
+  }
+
   public void translateFromObjectToCSV(
       CsvEntityContext context, BeanWrapper object, Map<String, Object> csvValues) {
 
@@ -57,6 +119,25 @@ public class DefaultFieldMapping extends AbstractFieldMapping {
     csvValues.put(_csvFieldName, objValue);
   }
 
+  /**
+   * Parses plain integers and decimals straight from the sequence, which may be a view of the raw
+   * bytes of the field (see {@link ByteCsvRow#getCharSequence(int)}). Anything else goes through
+   * the converter as a string, so the result is the same either way. Custom converters always see
+   * every value.
+   */
+  private Object convertCsvSequence(CharSequence csvValue) {
+    if (_parseNumbers && !(csvValue instanceof String)) {
+      if (_objFieldType == int.class || _objFieldType == Integer.class) {
+        long value = parseInt(csvValue);
+        if (value != Long.MIN_VALUE) return (int) value;
+      } else if (_objFieldType == double.class || _objFieldType == Double.class) {
+        double value = parseDouble(csvValue);
+        if (!Double.isNaN(value)) return value;
+      }
+    }
+    return convertCsvValue(csvValue.toString());
+  }
+
   private Object convertCsvValue(Object csvValue) {
     if (_converter != null) {
       return _converter.convert(_objFieldType, csvValue);
@@ -67,4 +148,68 @@ public class DefaultFieldMapping extends AbstractFieldMapping {
           _entityType, _csvFieldName, _objFieldName, _objFieldType);
     }
   }
+
+  /**
+   * @return the value of an optionally signed sequence of digits that fits an int, or {@link
+   *     Long#MIN_VALUE} for anything else
+   */
+  private static long parseInt(CharSequence value) {
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+    char c = value.charAt(0);
+    if (c == '-' || c == '+') {
+      negative = c == '-';
+      i++;
+    }
+    if (i == length || length - i > 10) return Long.MIN_VALUE;
+    long result = 0;
+    for (; i < length; i++) {
+      c = value.charAt(i);
+      if (c < '0' || c > '9') return Long.MIN_VALUE;
+      result = result * 10 + (c - '0');
+    }
+    if (negative) result = -result;
+    if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) return Long.MIN_VALUE;
+    return result;
+  }
+
+  /**
+   * Parses decimals of up to 15 digits without an exponent, such as coordinates. Both the digits
+   * and the power of ten are then exact doubles, so a single division is correctly rounded and
+   * gives the same result as {@link Double#parseDouble(String)}.
+   *
+   * @return the parsed value, or NaN for anything else
+   */
+  private static double parseDouble(CharSequence value) {
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+    char c = value.charAt(0);
+    if (c == '-' || c == '+') {
+      negative = c == '-';
+      i++;
+    }
+    long digits = 0;
+    int digitCount = 0;
+    int fractionDigits = 0;
+    boolean fraction = false;
+    for (; i < length; i++) {
+      c = value.charAt(i);
+      if (c == '.' && !fraction) {
+        fraction = true;
+      } else if (c >= '0' && c <= '9') {
+        digits = digits * 10 + (c - '0');
+        digitCount++;
+        if (fraction) fractionDigits++;
+      } else {
+        return Double.NaN;
+      }
+    }
+    if (digitCount == 0 || digitCount > 15 || fractionDigits >= POWERS_OF_TEN.length) {
+      return Double.NaN;
+    }
+    double result = digits / POWERS_OF_TEN[fractionDigits];
+    return negative ? -result : result;
+  }
 }
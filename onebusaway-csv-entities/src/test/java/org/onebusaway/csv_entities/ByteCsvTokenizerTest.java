@@ -0,0 +1,151 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ByteCsvTokenizerTest {
+
+  private static final String[] LINES = {
+    "abcdef,,\"\"",
+    "a,b,",
+    ",",
+    "\"\"\"quoted value\"\"\",\"Pre \"\"quoted value\"\" post\",x",
+    "\"a,b\",\"\"\"quoted value\"\" post\"",
+    "Zürich,Gare de Genève,東京",
+    "\"Zürich \"\"Hbf\"\"\",1",
+    "x"
+  };
+
+  @Test
+  public void testSameFieldsAsDelimitedTextParser() {
+    for (String separator : new String[] {"\n", "\r\n", "\r"}) {
+      String content = String.join(separator, LINES) + separator;
+      List<List<String>> rows = tokenize(wrap(content));
+      assertEquals(LINES.length, rows.size());
+      for (int i = 0; i < LINES.length; i++) {
+        assertEquals(DelimitedTextParser.parse(LINES[i]), rows.get(i), LINES[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testDirectBuffer() {
+    String content = String.join("\n", LINES);
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    List<List<String>> rows = tokenize(buffer);
+    for (int i = 0; i < LINES.length; i++) {
+      assertEquals(DelimitedTextParser.parse(LINES[i]), rows.get(i), LINES[i]);
+    }
+  }
+
+  @Test
+  public void testSkippedLines() {
+    String content = "\uFEFFa,b\n\n\u001a\r\n\r\nc,d";
+    List<List<String>> rows = tokenize(wrap(content));
+    assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), rows);
+  }
+
+  @Test
+  public void testInvalidQuotes() {
+    for (String line : new String[] {"\"open quote", "a,\"x\"y", "\"a\"\"b", "\"a\"\"b\"c"}) {
+      IllegalStateException expected =
+          assertThrows(IllegalStateException.class, () -> DelimitedTextParser.parse(line));
+      IllegalStateException actual =
+          assertThrows(
+              IllegalStateException.class, () -> new ByteCsvTokenizer(wrap(line)).nextRow());
+      assertEquals(expected.getMessage(), actual.getMessage(), line);
+    }
+  }
+
+  @Test
+  public void testCharSequence() {
+    ByteCsvTokenizer tokenizer = new ByteCsvTokenizer(wrap("12:30:00,-122.5,\"x\"\"y\"\nü,1\n"));
+    ByteCsvRow row = tokenizer.nextRow();
+
+    CharSequence time = row.getCharSequence(0);
+    assertFalse(time instanceof String);
+    assertEquals(8, time.length());
+    assertEquals(':', time.charAt(2));
+    assertEquals("30", time.subSequence(3, 5).toString());
+    assertSame(row.get(0), time.toString());
+    assertSame(row.get(0), row.getCharSequence(0));
+
+    assertTrue(row.getCharSequence(2) instanceof String);
+    assertEquals("x\"y", row.getCharSequence(2));
+
+    row = tokenizer.nextRow();
+    assertTrue(row.getCharSequence(1) instanceof String);
+    assertNull(tokenizer.nextRow());
+  }
+
+  @Test
+  public void testModifyRow() {
+    ByteCsvRow row = new ByteCsvTokenizer(wrap("a, b")).nextRow();
+    row.set(1, row.get(1).trim());
+    row.add("");
+    assertEquals(List.of("a", "b", ""), row);
+    assertEquals("b", row.getCharSequence(1));
+  }
+
+  @Test
+  public void testTrim() {
+    ByteCsvTokenizer tokenizer = new ByteCsvTokenizer(wrap(" a ,\t,\" b \",\"\"\"c \"\n ü \n"));
+    ByteCsvRow row = tokenizer.nextRow();
+    row.trim();
+    assertFalse(row.getCharSequence(0) instanceof String);
+    assertEquals(List.of("a", "", "b", "\"c"), row);
+
+    row = tokenizer.nextRow();
+    row.trim();
+    assertEquals(List.of("ü"), row);
+  }
+
+  @Test
+  public void testInterner() {
+    ByteCsvTokenizer tokenizer = new ByteCsvTokenizer(wrap("abc,abc\n"));
+    List<String> seen = new ArrayList<>();
+    tokenizer.setInterner(
+        value -> {
+          for (String existing : seen) if (existing.equals(value)) return existing;
+          seen.add(value);
+          return value;
+        });
+    ByteCsvRow row = tokenizer.nextRow();
+    assertSame(row.get(0), row.get(1));
+  }
+
+  private static ByteBuffer wrap(String content) {
+    return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static List<List<String>> tokenize(ByteBuffer buffer) {
+    ByteCsvTokenizer tokenizer = new ByteCsvTokenizer(buffer);
+    List<List<String>> rows = new ArrayList<>();
+    ByteCsvRow row;
+    while ((row = tokenizer.nextRow()) != null) rows.add(new ArrayList<>(row));
+    return rows;
+  }
+}
@@ -16,8 +16,17 @@ package org.onebusaway.csv_entities;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.beanutils2.ConvertUtils;
+import org.apache.commons.beanutils2.Converter;
 import org.junit.jupiter.api.Test;
 import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
 import org.onebusaway.csv_entities.schema.AnnotationDrivenEntitySchemaFactory;
@@ -67,4 +76,262 @@ public class CsvEntityReaderTest {
     AnnotatedTestBean b = values.get(1);
     assertSame(a.getValue(), b.getValue());
   }
+
+  @Test
+  public void testColumnOrderAndMissingOptionalValues() throws IOException {
+
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.addEntityHandler(handler);
+
+    String content = "value,extra,name\nb,x,a\n,y,c\n";
+    reader.readEntities(AnnotatedTestBean.class, new StringReader(content));
+
+    List<AnnotatedTestBean> values = handler.getValues();
+    assertEquals(2, values.size());
+    assertEquals("a", values.getFirst().getName());
+    assertEquals("b", values.getFirst().getValue());
+    assertEquals("c", values.get(1).getName());
+    assertNull(values.get(1).getValue());
+  }
+
+  @Test
+  public void testEntityVisitor() throws IOException {
+
+    ListEntityHandler<Object> handler = new ListEntityHandler<>();
+    List<String> names = new ArrayList<>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.addEntityHandler(handler);
+    reader.addEntityVisitor(AnnotatedTestBean.class, bean -> names.add(bean.getName()));
+
+    reader.readEntities(AnnotatedTestBean.class, new StringReader(content(10)));
+    reader.injectEntity(new TestBean());
+
+    assertEquals(10, names.size());
+    assertEquals("n9", names.getLast());
+    assertEquals(1, handler.getValues().size());
+    assertTrue(handler.getValues().getFirst() instanceof TestBean);
+  }
+
+  @Test
+  public void testChunkedBadLine() throws IOException {
+
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setChunkSize(2);
+
+    StringBuilder content = new StringBuilder("name,value\n");
+    for (int i = 0; i < 10; i++) content.append("a").append(i).append(",b\n");
+    content.append(",d\n");
+
+    try {
+      reader.readEntities(AnnotatedTestBean.class, new StringReader(content.toString()));
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(AnnotatedTestBean.class, e.getEntityType());
+      assertEquals("test_beans", e.getPath());
+      assertEquals(12, e.getLineNumber());
+    }
+  }
+
+  @Test
+  public void testChunkedInOrder() throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<>();
+      CsvEntityReader reader = new CsvEntityReader();
+      reader.setChunkSize(7);
+      reader.setChunkPool(pool);
+      reader.addEntityHandler(handler);
+      reader.readEntities(AnnotatedTestBean.class, new StringReader(content(1000)));
+
+      List<AnnotatedTestBean> values = handler.getValues();
+      assertEquals(1000, values.size());
+      for (int i = 0; i < values.size(); i++) {
+        assertEquals("n" + i, values.get(i).getName());
+        assertEquals("v" + i, values.get(i).getValue());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testChunkedUnordered() throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<Integer> batchSizes = new ArrayList<>();
+      Set<String> names = new HashSet<>();
+      CsvEntityReader reader = new CsvEntityReader();
+      reader.setChunkSize(10);
+      reader.setUnorderedChunks(true);
+      reader.setChunkPool(pool);
+      reader.addEntityHandler(
+          new EntityHandler() {
+            @Override
+            public void handleEntity(Object bean) {
+              names.add(((AnnotatedTestBean) bean).getName());
+            }
+
+            @Override
+            public void handleEntities(List<Object> beans) {
+              batchSizes.add(beans.size());
+              EntityHandler.super.handleEntities(beans);
+            }
+          });
+      reader.readEntities(AnnotatedTestBean.class, new StringReader(content(995)));
+
+      assertEquals(995, names.size());
+      assertEquals(100, batchSizes.size());
+      for (int i = 0; i < 995; i++) assertTrue(names.contains("n" + i));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testParseBytes() throws IOException {
+    String content =
+        "name,count,value\n"
+            + "a,1,-122.419416\n"
+            + "\"b,\"\"c\"\"\",+7,0.1\r\n"
+            + "d,-0,1e3\n"
+            + "\n"
+            + "e,007,12345678901234567.5\n"
+            + "f,,-0.0\n"
+            + "Zürich,2147483647,37.77\n";
+
+    ListEntityHandler<NumericTestBean> expected = new ListEntityHandler<>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.addEntityHandler(expected);
+    reader.readEntities(NumericTestBean.class, new StringReader(content));
+
+    ListEntityHandler<NumericTestBean> actual = new ListEntityHandler<>();
+    reader = new CsvEntityReader();
+    reader.setParseBytes(true);
+    reader.setInternStrings(true);
+    reader.addEntityHandler(actual);
+    reader.readEntities(NumericTestBean.class, new BytesInputSource("numeric_beans", content));
+
+    assertEquals(6, actual.getValues().size());
+    for (int i = 0; i < 6; i++) {
+      NumericTestBean a = expected.getValues().get(i);
+      NumericTestBean b = actual.getValues().get(i);
+      assertEquals(a.getName(), b.getName());
+      assertEquals(a.getCount(), b.getCount());
+      assertEquals(a.getValue(), b.getValue());
+    }
+    assertEquals("b,\"c\"", actual.getValues().get(1).getName());
+    assertEquals(-0.0, actual.getValues().get(4).getValue());
+  }
+
+  @Test
+  public void testParseBytesCustomConverter() throws IOException {
+    Converter<Integer> defaultConverter = ConvertUtils.lookup(int.class);
+    Converter<Integer> converter =
+        new Converter<>() {
+          @Override
+          @SuppressWarnings("unchecked")
+          public <R> R convert(Class<R> type, Object value) {
+            return (R) Integer.valueOf(Integer.parseInt(value.toString()) * 10);
+          }
+        };
+    ConvertUtils.register(converter, int.class);
+    try {
+      ListEntityHandler<NumericTestBean> handler = new ListEntityHandler<>();
+      CsvEntityReader reader = new CsvEntityReader();
+      reader.setParseBytes(true);
+      reader.addEntityHandler(handler);
+      reader.readEntities(
+          NumericTestBean.class, new BytesInputSource("numeric_beans", "name,count\na,7\n"));
+      assertEquals(70, handler.getValues().get(0).getCount());
+    } finally {
+      ConvertUtils.register(defaultConverter, int.class);
+    }
+  }
+
+  @Test
+  public void testParseBytesTrimValues() throws IOException {
+    String content =
+        " name , count,value\t\n"
+            + "  a ,1 , -122.5\n"
+            + "\" b \",\t7\t, \n"
+            + "\" \"\"c\"\" \",, 0.1\n"
+            + " Zürich ,  ,1e3 \n";
+
+    ListEntityHandler<NumericTestBean> expected = new ListEntityHandler<>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setTrimValues(true);
+    reader.addEntityHandler(expected);
+    reader.readEntities(NumericTestBean.class, new StringReader(content));
+
+    ListEntityHandler<NumericTestBean> actual = new ListEntityHandler<>();
+    reader = new CsvEntityReader();
+    reader.setTrimValues(true);
+    reader.setParseBytes(true);
+    reader.addEntityHandler(actual);
+    reader.readEntities(NumericTestBean.class, new BytesInputSource("numeric_beans", content));
+
+    assertEquals(4, actual.getValues().size());
+    for (int i = 0; i < 4; i++) {
+      NumericTestBean a = expected.getValues().get(i);
+      NumericTestBean b = actual.getValues().get(i);
+      assertEquals(a.getName(), b.getName());
+      assertEquals(a.getCount(), b.getCount());
+      assertEquals(a.getValue(), b.getValue());
+    }
+    assertEquals("b", actual.getValues().get(1).getName());
+    assertEquals("\"c\"", actual.getValues().get(2).getName());
+    assertEquals("Zürich", actual.getValues().get(3).getName());
+  }
+
+  @Test
+  public void testParseBytesBadLine() throws IOException {
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setParseBytes(true);
+    CsvInputSource source = new BytesInputSource("test_beans", "name,value\na,b\n\n\"c,d\n");
+    CsvEntityIOException e =
+        assertThrows(
+            CsvEntityIOException.class, () -> reader.readEntities(AnnotatedTestBean.class, source));
+    assertEquals("test_beans", e.getPath());
+    assertEquals(3, e.getLineNumber());
+  }
+
+  private static String content(int rows) {
+    StringBuilder b = new StringBuilder("name,value\n");
+    for (int i = 0; i < rows; i++) {
+      b.append("n").append(i).append(",v").append(i).append("\n");
+      if (i % 100 == 0) b.append("\n");
+    }
+    return b.toString();
+  }
+
+  private static class BytesInputSource implements CsvInputSource {
+
+    private final String _name;
+
+    private final byte[] _content;
+
+    public BytesInputSource(String name, String content) {
+      _name = name;
+      _content = content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean hasResource(String name) {
+      return _name.equals(name);
+    }
+
+    @Override
+    public InputStream getResource(String name) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ByteBuffer getResourceBytes(String name) {
+      return ByteBuffer.wrap(_content);
+    }
+
+    @Override
+    public void close() {}
+  }
 }
@@ -0,0 +1,52 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+public class ZipFileCsvInputSourceTest {
+
+  @Test
+  public void testMaxBufferedEntrySize() throws IOException {
+    File zip = File.createTempFile("csv-", ".zip");
+    zip.deleteOnExit();
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      out.putNextEntry(new ZipEntry("small.txt"));
+      out.write("a,b\n".getBytes(StandardCharsets.UTF_8));
+      out.putNextEntry(new ZipEntry("large.txt"));
+      out.write("a,b\n1,2\n3,4\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    ZipFileCsvInputSource source = new ZipFileCsvInputSource(new ZipFile(zip));
+    try {
+      source.setMaxBufferedEntrySize(4);
+      ByteBuffer bytes = source.getResourceBytes("small.txt");
+      assertEquals("a,b\n", StandardCharsets.UTF_8.decode(bytes).toString());
+      // Too large to inflate into memory, so it is left to be streamed
+      assertNull(source.getResourceBytes("large.txt"));
+      assertNull(source.getResourceBytes("missing.txt"));
+    } finally {
+      source.close();
+    }
+  }
+}
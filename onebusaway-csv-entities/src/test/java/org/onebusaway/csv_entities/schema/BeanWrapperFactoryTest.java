@@ -14,8 +14,12 @@
 package org.onebusaway.csv_entities.schema;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.function.BiConsumer;
 import org.junit.jupiter.api.Test;
+import org.onebusaway.csv_entities.exceptions.MethodInvocationException;
+import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
 
 public class BeanWrapperFactoryTest {
 
@@ -47,12 +51,52 @@ public class BeanWrapperFactoryTest {
     assertEquals("f", wrapper.getPropertyValue("b"));
   }
 
+  @Test
+  public void testPrimitiveProperty() {
+    AB ab = new AB();
+    BeanWrapper wrapper = BeanWrapperFactory.wrap(ab);
+
+    wrapper.setPropertyValue("count", 3);
+    assertEquals(3, ab.getCount());
+    assertEquals(3, wrapper.getPropertyValue("count"));
+    assertEquals(Integer.TYPE, wrapper.getPropertyType("count"));
+
+    assertThrows(MethodInvocationException.class, () -> wrapper.setPropertyValue("count", null));
+    assertThrows(MethodInvocationException.class, () -> wrapper.setPropertyValue("count", "x"));
+    assertThrows(NoSuchPropertyException.class, () -> wrapper.setPropertyValue("missing", 1));
+  }
+
+  @Test
+  public void testPropertySetter() {
+    AB ab = new AB();
+    BiConsumer<Object, Object> setter = BeanWrapperFactory.getPropertySetter(AB.class, "a");
+    setter.accept(ab, "a");
+    assertEquals("a", ab.getA());
+
+    assertThrows(
+        NoSuchPropertyException.class, () -> BeanWrapperFactory.getPropertySetter(AB.class, "c"));
+  }
+
+  @Test
+  public void testPropertyGetter() {
+    AB ab = new AB();
+    ab.setA("a");
+    ab.setCount(3);
+    assertEquals("a", BeanWrapperFactory.getPropertyGetter(AB.class, "a").apply(ab));
+    assertEquals(3, BeanWrapperFactory.getPropertyGetter(AB.class, "count").apply(ab));
+
+    assertThrows(
+        NoSuchPropertyException.class, () -> BeanWrapperFactory.getPropertyGetter(AB.class, "c"));
+  }
+
   private static class AB {
 
     private String a;
 
     private String b;
 
+    private int count;
+
     public String getA() {
       return a;
     }
@@ -68,5 +112,13 @@ public class BeanWrapperFactoryTest {
     public void setB(String b) {
       this.b = b;
     }
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
   }
 }
@@ -68,6 +68,11 @@ public class GtfsMergerMain implements Callable<Integer> {
       description = "Error on dropped duplicates")
   boolean errorOnDroppedDuplicates;
 
+  @Option(
+      names = {"--prefetchFeeds"},
+      description = "Number of input feeds to read in parallel ahead of the feed being merged")
+  int prefetchFeeds;
+
   @Option(
       names = {"--debug"},
       description = "Show detailed options before starting merge")
@@ -119,6 +124,7 @@ public class GtfsMergerMain implements Callable<Integer> {
 
   private GtfsMerger buildMerger() {
     var merger = new GtfsMerger(debug);
+    merger.setPrefetchFeeds(prefetchFeeds);
 
     for (int i = 0; i < fileOptions.size(); i++) {
       String filename = fileOptions.get(i);
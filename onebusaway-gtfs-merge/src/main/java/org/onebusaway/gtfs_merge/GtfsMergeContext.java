@@ -19,6 +19,7 @@ import java.util.Set;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.strategies.EDuplicateDetectionStrategy;
+import org.onebusaway.gtfs_merge.util.FeatureCache;
 
 /**
  * Manages state for the current merge operation, which is specific to particular feed and GTFS
@@ -38,6 +39,8 @@ public class GtfsMergeContext {
 
   private final Set<String> entitiesJustAdded = new HashSet<>();
 
+  private final FeatureCache featureCache;
+
   private int _sequenceCounter = 1;
 
   private EDuplicateDetectionStrategy _resolvedDuplicateDetectionStrategy;
@@ -47,10 +50,20 @@ public class GtfsMergeContext {
       GtfsMutableRelationalDao target,
       String prefix,
       Map<String, Object> entityByRawId) {
+    this(source, target, prefix, entityByRawId, new FeatureCache());
+  }
+
+  public GtfsMergeContext(
+      GtfsRelationalDao source,
+      GtfsMutableRelationalDao target,
+      String prefix,
+      Map<String, Object> entityByRawId,
+      FeatureCache featureCache) {
     this.source = source;
     this.target = target;
     this.prefix = prefix;
     this.entityByRawId = entityByRawId;
+    this.featureCache = featureCache;
   }
 
   /**
@@ -121,6 +134,14 @@ public class GtfsMergeContext {
     return _sequenceCounter++;
   }
 
+  /**
+   * @return the cache of entity features for duplicate scoring, shared by all entity types of the
+   *     current source feed.
+   */
+  public FeatureCache getFeatureCache() {
+    return featureCache;
+  }
+
   /**
    * @return the duplicate detection strategy that has been chosen for the current entity type.
    */
@@ -14,23 +14,43 @@
 package org.onebusaway.gtfs_merge;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.FileTime;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.onebusaway.csv_entities.schema.EntitySchema;
+import org.onebusaway.csv_entities.schema.ExcludeOptionalAndMissingEntitySchemaFactory;
+import org.onebusaway.csv_entities.schema.ExtensionEntitySchema;
+import org.onebusaway.csv_entities.schema.FieldMapping;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.serialization.GtfsReader;
 import org.onebusaway.gtfs.serialization.GtfsWriter;
 import org.onebusaway.gtfs_merge.strategies.*;
+import org.onebusaway.gtfs_merge.util.FeatureCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,6 +88,12 @@ public class GtfsMerger {
 
   private EntityMergeStrategy _feedInfoStrategy = new FeedInfoMergeStrategy();
 
+  private int _featureCacheSize = FeatureCache.DEFAULT_MAXIMUM_SIZE;
+
+  private boolean _streamingOutput = false;
+
+  private int _prefetchFeeds = 0;
+
   public GtfsMerger(boolean debug) {
     this.debug = debug;
   }
@@ -120,6 +146,44 @@ public class GtfsMerger {
     _feedInfoStrategy = feedInfoStrategy;
   }
 
+  /**
+   * @param featureCacheSize the maximum number of entity features, such as the stops of a trip, to
+   *     keep for duplicate scoring while merging each input feed
+   */
+  public void setFeatureCacheSize(int featureCacheSize) {
+    _featureCacheSize = featureCacheSize;
+  }
+
+  /**
+   * In streaming mode, the entity types that the merge strategies never read back from the merged
+   * feed (see {@link EntityMergeStrategy#getFinalizedEntityTypes(Collection)}) are written out as
+   * soon as each input feed has been merged, rather than being held in memory until the end. That
+   * always covers shape points, covers stop times when duplicate detection is turned off for both
+   * trips and routes, and covers calendars when it is turned off for service calendars.
+   *
+   * <p>Streamed files leave out the optional columns that have no values in the first input feed
+   * merged, which is the newest one, and the merge fails if a later feed has values in one of those
+   * columns. Their entities are sorted within each input feed rather than across the whole merged
+   * feed.
+   *
+   * @param streamingOutput
+   */
+  public void setStreamingOutput(boolean streamingOutput) {
+    _streamingOutput = streamingOutput;
+  }
+
+  /**
+   * Sets how many input feeds are read ahead on background threads while the current feed is being
+   * merged. Feeds are still merged one at a time, newest first. Each feed read ahead is held in
+   * memory until it is merged, so this also bounds the extra memory used.
+   *
+   * @param prefetchFeeds the number of feeds to read ahead, or zero to read each feed just before
+   *     it is merged
+   */
+  public void setPrefetchFeeds(int prefetchFeeds) {
+    _prefetchFeeds = prefetchFeeds;
+  }
+
   public EntityMergeStrategy getEntityMergeStrategyForEntityType(Class<?> entityType) {
     List<EntityMergeStrategy> strategies = new ArrayList<>();
     buildStrategies(strategies);
@@ -155,51 +219,104 @@ public class GtfsMerger {
       rawEntityIdMapsByMergeStrategy.put(strategy, new HashMap<>());
     }
 
+    /**
+     * In streaming mode, finalized entities are appended to their files as we go. A zip entry can't
+     * be appended to once the next one has started, so zip output is assembled from a directory at
+     * the end.
+     */
+    GtfsWriter writer = null;
+    Set<Class<?>> finalizedTypes = new HashSet<>();
+    Map<Class<?>, Set<String>> streamedColumns = new HashMap<>();
+    File writerPath = outputPath;
+    if (_streamingOutput) {
+      Set<Class<?>> scoredTypes = new HashSet<>();
+      for (EntityMergeStrategy strategy : strategies) {
+        strategy.getFinalizedEntityTypes(finalizedTypes);
+        strategy.getScoredEntityTypes(scoredTypes);
+      }
+      finalizedTypes.removeAll(scoredTypes);
+      if (isZip(outputPath)) {
+        writerPath = Files.createTempDirectory("gtfs-merge-").toFile();
+      }
+      LOG.info("streaming entity types: " + finalizedTypes);
+      writer = new GtfsWriter();
+      writer.setOutputLocation(writerPath);
+    }
+
     /**
      * We iterate over the input feeds in reverse order, such that entities from the newest feeds
      * are added first and older entities are potentially dropped.
      */
     long newestFile = Long.MIN_VALUE;
-    for (int index = inputPaths.size() - 1; index >= 0; --index) {
-      File inputPath = inputPaths.get(index);
-      String prefix = getIndexAsPrefix(index, inputPaths.size());
-
-      FileTime fileTime = null;
-      if (inputPath.isFile()) {
-        fileTime =
-            ((FileTime)
-                Files.readAttributes(inputPath.toPath(), "lastModifiedTime")
-                    .get("lastModifiedTime"));
-        if (fileTime != null && fileTime.toMillis() > newestFile) {
-          newestFile = fileTime.toMillis();
+    ExecutorService prefetchExecutor =
+        _prefetchFeeds > 0 ? Executors.newFixedThreadPool(_prefetchFeeds) : null;
+    Deque<Future<GtfsRelationalDaoImpl>> prefetchedFeeds = new ArrayDeque<>();
+    int nextFeedToRead = inputPaths.size() - 1;
+    try {
+      for (int index = inputPaths.size() - 1; index >= 0; --index) {
+        File inputPath = inputPaths.get(index);
+        String prefix = getIndexAsPrefix(index, inputPaths.size());
+
+        FileTime fileTime = null;
+        if (inputPath.isFile()) {
+          fileTime =
+              ((FileTime)
+                  Files.readAttributes(inputPath.toPath(), "lastModifiedTime")
+                      .get("lastModifiedTime"));
+          if (fileTime != null && fileTime.toMillis() > newestFile) {
+            newestFile = fileTime.toMillis();
+          }
+        }
+        LOG.info("reading input: " + inputPath + " with lastModifiedTime " + fileTime);
+        GtfsRelationalDaoImpl dao;
+        if (prefetchExecutor == null) {
+          dao = readFeed(inputPath);
+        } else {
+          /** Keep reading up to the configured number of feeds ahead of the one being merged. */
+          while (nextFeedToRead >= 0 && prefetchedFeeds.size() <= _prefetchFeeds) {
+            File path = inputPaths.get(nextFeedToRead--);
+            prefetchedFeeds.add(prefetchExecutor.submit(() -> readFeed(path)));
+          }
+          dao = awaitFeed(prefetchedFeeds.remove());
         }
-      }
-      LOG.info("reading input: " + inputPath + " with lastModifiedTime " + fileTime);
-      GtfsReader reader = new GtfsReader();
-      reader.setInputLocation(inputPath);
 
-      GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
-      dao.setPackShapePoints(true);
-      dao.setPackStopTimes(true);
-      reader.setEntityStore(dao);
-      reader.run();
+        FeatureCache featureCache = new FeatureCache(_featureCacheSize);
+        for (EntityMergeStrategy strategy : strategies) {
+          if (debug) {
+            LOG.info(strategy.toString());
+          }
+          GtfsMergeContext context =
+              new GtfsMergeContext(
+                  dao,
+                  mergedDao,
+                  prefix,
+                  rawEntityIdMapsByMergeStrategy.get(strategy),
+                  featureCache);
+          strategy.merge(context);
+        }
+        LOG.info("feature cache for input " + inputPath + ": " + featureCache);
+        featureCache.clear();
 
-      for (EntityMergeStrategy strategy : strategies) {
-        if (debug) {
-          LOG.info(strategy.toString());
+        if (!finalizedTypes.isEmpty()) {
+          writeFinalizedEntities(writer, mergedDao, finalizedTypes, streamedColumns);
         }
-        GtfsMergeContext context =
-            new GtfsMergeContext(
-                dao, mergedDao, prefix, rawEntityIdMapsByMergeStrategy.get(strategy));
-        strategy.merge(context);
+      }
+    } finally {
+      if (prefetchExecutor != null) {
+        prefetchExecutor.shutdownNow();
       }
     }
 
     LOG.info("writing merged output: " + outputPath);
 
-    GtfsWriter writer = new GtfsWriter();
-    writer.setOutputLocation(outputPath);
+    if (writer == null) {
+      writer = new GtfsWriter();
+      writer.setOutputLocation(outputPath);
+    }
     writer.run(mergedDao);
+    if (writerPath != outputPath) {
+      zipDirectory(writerPath, outputPath);
+    }
     if (outputPath.isFile()) {
       LOG.info("setting merged file lastModified to " + new Date(newestFile));
       Files.setAttribute(outputPath.toPath(), "lastModifiedTime", FileTime.fromMillis(newestFile));
@@ -208,6 +325,129 @@ public class GtfsMerger {
     }
   }
 
+  /**
+   * Writes out the finalized entities merged so far and drops them from the merged feed.
+   *
+   * @param streamedColumns the columns of each file written so far, as chosen from its first batch
+   */
+  @SuppressWarnings("unchecked")
+  private void writeFinalizedEntities(
+      GtfsWriter writer,
+      GtfsRelationalDaoImpl mergedDao,
+      Set<Class<?>> finalizedTypes,
+      Map<Class<?>, Set<String>> streamedColumns)
+      throws IOException {
+    for (Class<?> entityClass : writer.getEntityClasses()) {
+      if (!finalizedTypes.contains(entityClass)) {
+        continue;
+      }
+      Collection<?> entities = mergedDao.getAllEntitiesForType(entityClass);
+      if (entities.isEmpty()) {
+        continue;
+      }
+      List<Object> sorted = new ArrayList<>(entities);
+      Comparator<Object> comparator =
+          (Comparator<Object>) writer.getEntityComparators().get(entityClass);
+      if (comparator != null) {
+        sorted.sort(comparator);
+      }
+      /**
+       * The columns of a file are fixed by its first batch, so a later batch can't bring back an
+       * optional column that was left out.
+       */
+      Set<String> columns = getColumnsWithValues(writer, entityClass, sorted);
+      Set<String> written = streamedColumns.putIfAbsent(entityClass, columns);
+      if (written == null) {
+        writer.excludeOptionalAndMissingFields(entityClass, sorted);
+      } else if (!written.containsAll(columns)) {
+        Set<String> missing = new TreeSet<>(columns);
+        missing.removeAll(written);
+        throw new IllegalStateException(
+            "values found for columns left out of streamed output: type="
+                + entityClass.getName()
+                + " columns="
+                + missing
+                + " (disable streaming output to merge these feeds)");
+      }
+      for (Object entity : sorted) {
+        writer.handleEntity(entity);
+      }
+      writer.flush();
+      mergedDao.clearAllEntitiesForType(entityClass);
+      LOG.info("streamed " + sorted.size() + " entities: " + entityClass.getName());
+    }
+  }
+
+  /** The columns written for the entities, without the optional ones that have no values. */
+  private static Set<String> getColumnsWithValues(
+      GtfsWriter writer, Class<?> entityClass, List<Object> entities) {
+    ExcludeOptionalAndMissingEntitySchemaFactory factory =
+        new ExcludeOptionalAndMissingEntitySchemaFactory(writer.getEntitySchemaFactory());
+    factory.scanEntities(entityClass, entities);
+    EntitySchema schema = factory.getSchema(entityClass);
+    Set<String> columns = new HashSet<>();
+    for (FieldMapping field : schema.getFields()) {
+      field.getCSVFieldNames(columns);
+    }
+    for (ExtensionEntitySchema extension : schema.getExtensions()) {
+      for (FieldMapping field : extension.getFields()) {
+        field.getCSVFieldNames(columns);
+      }
+    }
+    return columns;
+  }
+
+  private static GtfsRelationalDaoImpl readFeed(File inputPath) throws IOException {
+    GtfsReader reader = new GtfsReader();
+    reader.setInputLocation(inputPath);
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackShapePoints(true);
+    dao.setPackStopTimes(true);
+    reader.setEntityStore(dao);
+    reader.run();
+    return dao;
+  }
+
+  private static GtfsRelationalDaoImpl awaitFeed(Future<GtfsRelationalDaoImpl> feed)
+      throws IOException {
+    try {
+      return feed.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading input feed");
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (ex.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("error reading input feed", ex.getCause());
+    }
+  }
+
+  private static boolean isZip(File path) {
+    return path.getName().toLowerCase(Locale.ROOT).endsWith(".zip");
+  }
+
+  /** Zips up the files of a directory, then deletes the directory. */
+  private static void zipDirectory(File directory, File zipFile) throws IOException {
+    File[] files = directory.listFiles();
+    Arrays.sort(files);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
+      for (File file : files) {
+        out.putNextEntry(new ZipEntry(file.getName()));
+        Files.copy(file.toPath(), out);
+        out.closeEntry();
+      }
+    }
+    for (File file : files) {
+      Files.delete(file.toPath());
+    }
+    Files.delete(directory.toPath());
+  }
+
   private String getIndexAsPrefix(int index, int total) {
     if (total <= _alphaPrefix.length()) {
       return _alphaPrefix.charAt(index) + "-";
@@ -14,15 +14,22 @@
 package org.onebusaway.gtfs_merge.strategies;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.onebusaway.collections.MappingLibrary;
 import org.onebusaway.collections.Max;
@@ -32,6 +39,7 @@ import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
 import org.onebusaway.gtfs_merge.strategies.scoring.AndDuplicateScoringStrategy;
+import org.onebusaway.gtfs_merge.strategies.scoring.BlockingIndex;
 import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateScoringSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,10 +64,77 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
   protected AndDuplicateScoringStrategy<T> _duplicateScoringStrategy =
       new AndDuplicateScoringStrategy<>();
 
+  /**
+   * The number of target entities scored when auto-detecting whether fuzzy duplicate detection
+   * should be used, or zero to score all of them.
+   */
+  private int _fuzzyAutoDetectSampleSize = 0;
+
+  /** Runs the scoring of entities when auto-detecting fuzzy duplicate detection */
+  private ForkJoinPool _forkJoinPool = ForkJoinPool.commonPool();
+
+  private FuzzyScoringProgressListener _progressListener =
+      (entityType, scored, total) ->
+          _log.info(
+              "fuzzy scoring {}: {} of {} ({}% complete)",
+              entityType.getSimpleName(), scored, total, total == 0 ? 100 : scored * 100 / total);
+
+  private Duration _progressInterval = Duration.ofSeconds(30);
+
+  /** The merge pass that {@link #_targetBlockingIndex} was built for */
+  private GtfsMergeContext _targetBlockingIndexContext = null;
+
+  private BlockingIndex<T> _targetBlockingIndex = null;
+
   public AbstractIdentifiableSingleEntityMergeStrategy(Class<T> entityType) {
     super(entityType);
   }
 
+  /**
+   * By default, every target entity is scored when auto-detecting whether fuzzy duplicate detection
+   * should be used. Scoring an evenly spread sample of them instead is faster for large feeds, at
+   * the cost of an estimated overlap.
+   *
+   * @param fuzzyAutoDetectSampleSize the number of target entities to score, or zero for all
+   */
+  public void setFuzzyAutoDetectSampleSize(int fuzzyAutoDetectSampleSize) {
+    _fuzzyAutoDetectSampleSize = fuzzyAutoDetectSampleSize;
+  }
+
+  /**
+   * @param forkJoinPool the pool that scores entities when auto-detecting whether fuzzy duplicate
+   *     detection should be used, shared with other strategies. Defaults to the common pool.
+   */
+  public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+    _forkJoinPool = forkJoinPool;
+  }
+
+  /**
+   * @param progressListener called with the progress of the scoring of entities while
+   *     auto-detecting whether fuzzy duplicate detection should be used. Logs the progress by
+   *     default.
+   */
+  public void setProgressListener(FuzzyScoringProgressListener progressListener) {
+    _progressListener = progressListener;
+  }
+
+  /**
+   * @param progressInterval how often the progress listener is called while scoring
+   */
+  public void setProgressInterval(Duration progressInterval) {
+    _progressInterval = progressInterval;
+  }
+
+  @Override
+  public void merge(GtfsMergeContext context) {
+    super.merge(context);
+    if (_targetBlockingIndex != null) {
+      logCandidatePairs("fuzzy duplicate detection", _targetBlockingIndex);
+    }
+    _targetBlockingIndex = null;
+    _targetBlockingIndexContext = null;
+  }
+
   @Override
   protected EDuplicateDetectionStrategy pickBestDuplicateDetectionStrategy(
       GtfsMergeContext context) {
@@ -139,102 +214,71 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     GtfsMutableRelationalDao target = context.getTarget();
 
     /**
-     * TODO: Fuzzy matching is expensive. Do we really want to compare all of the entities? Or would
-     * a sufficiently-large subset do the trick? Can any of this be cached for the actual duplicate
-     * detection later on?
+     * Fuzzy matching is expensive, so only the pairs of entities that share blocking keys are
+     * scored, and only a sample of the target entities if a sample size was set.
      */
-    Collection<T> targetEntities = (Collection<T>) target.getAllEntitiesForType(_entityType);
+    Collection<T> allTargetEntities = (Collection<T>) target.getAllEntitiesForType(_entityType);
+    Collection<T> targetEntities = sample(allTargetEntities);
     Collection<T> sourceEntities = (Collection<T>) source.getAllEntitiesForType(_entityType);
 
-    double duplicateElements = 0;
-    double totalScore = 0.0;
+    BlockingIndex<T> sourceIndex = createBlockingIndex(context, source, sourceEntities);
+    Function<T, Collection<T>> sourceCandidates = targetEntity -> sourceEntities;
+    if (sourceIndex != null) {
+      // Looked up ahead of time, as the scoring threads shouldn't all query the target at once
+      Map<T, List<Set<?>>> targetKeys = new IdentityHashMap<>();
+      for (T targetEntity : targetEntities) {
+        targetKeys.put(targetEntity, sourceIndex.getQueryKeys(target, targetEntity));
+      }
+      sourceCandidates = targetEntity -> sourceIndex.getCandidates(targetKeys.get(targetEntity));
+    }
 
     /**
      * First we determine a rough set of potentially overlapping entities based on a fuzzy match.
      *
-     * <p>We break up the list of searches and spread it across available CPUs.
+     * <p>The target entities are split into small chunks that idle threads of the pool steal from
+     * busy ones, so a few expensive entities don't hold up a whole partition.
      */
-    int cpus = Runtime.getRuntime().availableProcessors();
-    int start = 0;
-    int end = targetEntities.size() / cpus;
-    int increment = targetEntities.size() / cpus;
-    ExecutorService executorService = Executors.newFixedThreadPool(cpus);
-    List<Result> results = new ArrayList<>(cpus);
-    if (end < 10) {
-      // no need to segregate is set is small
-      Set<T> remainingSourceEntities = new HashSet<>(sourceEntities);
-      Result result = new Result();
-      results.add(result);
-      executorService.submit(
-          new ScoringTask<T>(
-              context,
-              _duplicateScoringStrategy,
-              targetEntities,
-              remainingSourceEntities,
-              0,
-              targetEntities.size(),
-              _minElementsInCommonScoreForAutoDetect,
-              result));
-    } else {
-      for (int i = 0; i < cpus; i++) {
-        Collection<T> t_targetEntities = (Collection<T>) target.getAllEntitiesForType(_entityType);
-        Collection<T> t_sourceEntities = (Collection<T>) source.getAllEntitiesForType(_entityType);
-        Set<T> t_remainingSourceEntities = new HashSet<>(t_sourceEntities);
-
-        Result result = new Result();
-        results.add(result);
-        executorService.submit(
-            new ScoringTask<T>(
+    LongAdder scored = new LongAdder();
+    ForkJoinTask<ScoringResult> future =
+        _forkJoinPool.submit(
+            new ScoringTask(
                 context,
-                _duplicateScoringStrategy,
-                t_targetEntities,
-                t_remainingSourceEntities,
-                start,
-                end,
-                _minElementsInCommonScoreForAutoDetect,
-                result));
-        start = end + 1;
-        end = end + increment;
-      }
-    }
+                new ArrayList<>(targetEntities),
+                0,
+                targetEntities.size(),
+                sourceCandidates,
+                sourceEntities.size(),
+                scored));
+    ScoringResult result;
     try {
-      // give the executor a chance to run
-      Thread.sleep(1 * 1000);
+      result = awaitScoring(future, scored, targetEntities.size());
     } catch (InterruptedException _) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
       return false;
     }
-
-    int i = 0;
-    for (Result result : results) {
-      while (!result.isDone()) {
-        try {
-          _log.info(
-              "waiting on thread["
-                  + i
-                  + "] at "
-                  + (int) (result.getPercentComplete() * 100)
-                  + "% complete ("
-                  + _entityType
-                  + ")");
-          Thread.sleep(30 * 1000);
-        } catch (InterruptedException _) {
-          return false;
-        }
-      }
-      duplicateElements += result.getDuplicateElements();
-      totalScore += result.getTotalScore();
-      i++;
-      // we no longer remove the best match to avoid concurrency issues
+    // Scoring broke, so the feeds are treated as having no overlap
+    if (result == null) {
+      return false;
     }
+    double duplicateElements = result.duplicateElements;
+    double totalScore = result.totalScore;
 
-    executorService.shutdown();
+    if (sourceIndex != null) {
+      logCandidatePairs("fuzzy duplicate auto-detection", sourceIndex);
+    }
 
     /**
      * There needs to be sufficient overlap between the two feeds for us to consider using fuzzy
-     * duplicate detection in the first place.
+     * duplicate detection in the first place. When only a sample was scored, the number of
+     * duplicates is scaled up to all the target entities.
      */
+    double allDuplicateElements =
+        duplicateElements * allTargetEntities.size() / targetEntities.size();
     double elementsInCommon =
-        (duplicateElements / targetEntities.size() + duplicateElements / sourceEntities.size()) / 2;
+        (allDuplicateElements / allTargetEntities.size()
+                + allDuplicateElements / sourceEntities.size())
+            / 2;
     if (elementsInCommon < _minElementsInCommonScoreForAutoDetect) {
       return false;
     }
@@ -261,8 +305,20 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     if (targets.isEmpty()) {
       return null;
     }
+    Collection<T> candidates = targets;
+    // Entities left out score zero, which is never a match while the threshold is above zero
+    if (_minElementsDuplicateScoreForAutoDetect > 0) {
+      if (_targetBlockingIndexContext != context) {
+        // Entities added to the target during the pass are skipped below anyway
+        _targetBlockingIndex = createBlockingIndex(context, targetDao, targets);
+        _targetBlockingIndexContext = context;
+      }
+      if (_targetBlockingIndex != null) {
+        candidates = _targetBlockingIndex.getCandidates(context.getSource(), (T) entity);
+      }
+    }
     Max<T> best = new Max<>();
-    for (T target : targets) {
+    for (T target : candidates) {
       /**
        * If we just added the target entity as part of the current feed, do not attempt a fuzzy
        * match against it.
@@ -280,6 +336,46 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     return (IdentityBean<?>) best.getMaxElement();
   }
 
+  /**
+   * Builds the index that narrows down fuzzy duplicate detection to the entities that might score
+   * above zero against a given entity, rather than scoring every pair of entities. By default, the
+   * index uses the blocking keys of {@link #_duplicateScoringStrategy}.
+   *
+   * @param context the current merge operation
+   * @param dao the feed the entities belong to
+   * @param entities the entities that will be scored against
+   * @return the index, or null to score every entity
+   */
+  protected BlockingIndex<T> createBlockingIndex(
+      GtfsMergeContext context, GtfsRelationalDao dao, Collection<T> entities) {
+    return BlockingIndex.create(context, _duplicateScoringStrategy, dao, entities);
+  }
+
+  private Collection<T> sample(Collection<T> entities) {
+    int size = entities.size();
+    if (_fuzzyAutoDetectSampleSize <= 0 || _fuzzyAutoDetectSampleSize >= size) {
+      return entities;
+    }
+    List<T> sample = new ArrayList<>(_fuzzyAutoDetectSampleSize);
+    long i = 0;
+    for (T entity : entities) {
+      if (i * _fuzzyAutoDetectSampleSize / size != (i + 1) * _fuzzyAutoDetectSampleSize / size) {
+        sample.add(entity);
+      }
+      i++;
+    }
+    return sample;
+  }
+
+  private void logCandidatePairs(String phase, BlockingIndex<T> index) {
+    _log.info(
+        "{} of {}: scored {} candidate pairs out of {}",
+        phase,
+        _entityType.getSimpleName(),
+        index.getCandidatePairCount(),
+        index.getQueryCount() * index.size());
+  }
+
   /**
    * Saves the specified entity to the merged output feed. If the raw id of the entity duplicates an
    * existing entity in the output feed, its id will be renamed.
@@ -342,135 +438,118 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     }
   }
 
-  private static class Result {
-    private double duplicateElements = 0.0;
-    private double totalScore = 0.0;
-    private boolean done = false;
-    private double percentComplete = 0.0;
+  /**
+   * @return the result of the scoring, or null if it failed
+   */
+  private ScoringResult awaitScoring(
+      ForkJoinTask<ScoringResult> future, LongAdder scored, long total)
+      throws InterruptedException {
+    while (true) {
+      try {
+        ScoringResult result = future.get(_progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+        _progressListener.progress(_entityType, total, total);
+        return result;
+      } catch (TimeoutException _) {
+        _progressListener.progress(_entityType, scored.sum(), total);
+      } catch (ExecutionException ex) {
+        _log.error("scoring thread broke:", ex.getCause());
+        return null;
+      }
+    }
+  }
 
-    public Result() {}
+  private static final class ScoringResult {
 
-    public double getDuplicateElements() {
-      return duplicateElements;
-    }
+    private final double duplicateElements;
+
+    private final double totalScore;
 
-    public void setDuplicateElements(double duplicateElements) {
+    private ScoringResult(double duplicateElements, double totalScore) {
       this.duplicateElements = duplicateElements;
+      this.totalScore = totalScore;
     }
+  }
 
-    public double getTotalScore() {
-      return totalScore;
-    }
+  /**
+   * Scores a range of the target entities against the source entities, splitting the range in
+   * halves until it is small enough to score directly.
+   */
+  @SuppressWarnings("serial")
+  private final class ScoringTask extends RecursiveTask<ScoringResult> {
 
-    public void setTotalScore(double totalScore) {
-      this.totalScore = totalScore;
-    }
+    private static final int CHUNK_SIZE = 16;
 
-    public void setDone() {
-      done = true;
-    }
+    private final GtfsMergeContext _context;
 
-    public boolean isDone() {
-      return done;
-    }
+    private final List<T> _targetEntities;
 
-    public double getPercentComplete() {
-      return percentComplete;
-    }
+    private final int _from;
 
-    public void setPercentComplete(double percentComplete) {
-      this.percentComplete = percentComplete;
-    }
-  }
+    private final int _to;
 
-  public static class ScoringTask<T> implements Runnable {
-    private GtfsMergeContext context;
-    protected AndDuplicateScoringStrategy<T> duplicateScoringStrategy;
-    private Collection<T> targetEntities;
-    private Collection<T> remainingSourceEntities;
-    private int start;
-    private int end;
-    private double min;
-    private Result result;
-
-    public Result getResult() {
-      return result;
-    }
+    private final Function<T, Collection<T>> _sourceCandidates;
+
+    private final int _sourceCount;
 
-    public ScoringTask(
+    private final LongAdder _scored;
+
+    private ScoringTask(
         GtfsMergeContext context,
-        AndDuplicateScoringStrategy<T> duplicateScoringStrategy,
-        Collection<T> targetEntities,
-        Collection<T> remainingSourceEntities,
-        int start,
-        int end,
-        double min,
-        Result result) {
-      this.context = context;
-      this.duplicateScoringStrategy = duplicateScoringStrategy;
-      this.targetEntities = targetEntities;
-      this.remainingSourceEntities = remainingSourceEntities;
-      this.start = start;
-      this.end = end;
-      this.result = result;
+        List<T> targetEntities,
+        int from,
+        int to,
+        Function<T, Collection<T>> sourceCandidates,
+        int sourceCount,
+        LongAdder scored) {
+      _context = context;
+      _targetEntities = targetEntities;
+      _from = from;
+      _to = to;
+      _sourceCandidates = sourceCandidates;
+      _sourceCount = sourceCount;
+      _scored = scored;
     }
 
     @Override
-    public void run() {
-      try {
-        score(
-            context,
-            duplicateScoringStrategy,
-            targetEntities,
-            remainingSourceEntities,
-            start,
-            end,
-            min,
-            result);
-      } catch (Throwable t) {
-        _log.error("scoring thread broke:", t);
-      } finally {
-        result.setDone();
+    protected ScoringResult compute() {
+      if (_to - _from > CHUNK_SIZE) {
+        int middle = (_from + _to) >>> 1;
+        ScoringTask left = split(_from, middle);
+        ScoringTask right = split(middle, _to);
+        left.fork();
+        ScoringResult rightResult = right.compute();
+        ScoringResult leftResult = left.join();
+        return new ScoringResult(
+            leftResult.duplicateElements + rightResult.duplicateElements,
+            leftResult.totalScore + rightResult.totalScore);
       }
-    }
-
-    private void score(
-        GtfsMergeContext context,
-        AndDuplicateScoringStrategy<T> duplicateScoringStrategy,
-        Collection<T> targetEntities,
-        Collection<T> remainingSourceEntities,
-        int start,
-        int end,
-        double min,
-        Result result) {
       double duplicateElements = 0;
       double totalScore = 0;
-      Iterator<T> iterator = targetEntities.iterator();
-      for (int i = 0; i < start; i++) {
-        iterator.next();
-      }
-      for (int i = start; i < end; i++) {
-        if (i % 20 == 0) {
-          double percent = ((double) i - start) / (end - start);
-          result.setPercentComplete(percent);
-        }
-        T targetEntity = iterator.next();
+      for (int i = _from; i < _to; i++) {
+        T targetEntity = _targetEntities.get(i);
+        Collection<T> candidates = _sourceCandidates.apply(targetEntity);
         Max<T> best = new Max<>();
-        for (T sourceEntity : remainingSourceEntities) {
-          double score = duplicateScoringStrategy.score(context, sourceEntity, targetEntity);
-          if (score < min) {
-            continue;
-          }
+        for (T sourceEntity : candidates) {
+          double score = _duplicateScoringStrategy.score(_context, sourceEntity, targetEntity);
           best.add(score, sourceEntity);
         }
-
-        if (best.getMaxElement() != null) {
+        double score = best.getMaxValue();
+        // The source entities that weren't candidates would have scored zero
+        if (candidates.size() < _sourceCount) {
+          score = Math.max(score, 0.0);
+        }
+        if (score != Double.NEGATIVE_INFINITY) {
           duplicateElements++;
-          totalScore += best.getMaxValue();
+          totalScore += score;
         }
+        _scored.increment();
       }
-      result.setDuplicateElements(duplicateElements);
-      result.setTotalScore(totalScore);
+      return new ScoringResult(duplicateElements, totalScore);
+    }
+
+    private ScoringTask split(int from, int to) {
+      return new ScoringTask(
+          _context, _targetEntities, from, to, _sourceCandidates, _sourceCount, _scored);
     }
   }
 
@@ -33,6 +33,24 @@ public interface EntityMergeStrategy {
    */
   public void getEntityTypes(Collection<Class<?>> entityTypes);
 
+  /**
+   * Determine the entity types handled by this merge strategy that are never read back from the
+   * merged feed while merging subsequent input feeds. In streaming mode, the {@link GtfsMerger}
+   * writes these out and drops them from memory as soon as each input feed has been merged.
+   *
+   * @param entityTypes the finalized types should be added to this output collection.
+   */
+  public default void getFinalizedEntityTypes(Collection<Class<?>> entityTypes) {}
+
+  /**
+   * Determine the entity types, whichever merge strategy handles them, that this merge strategy
+   * reads back from the merged feed to score duplicates. The {@link GtfsMerger} never finalizes
+   * these, even if another merge strategy reports them as finalized.
+   *
+   * @param entityTypes the scored types should be added to this output collection.
+   */
+  public default void getScoredEntityTypes(Collection<Class<?>> entityTypes) {}
+
   /**
    * Perform a merge operation for the entities specified in the {@link GtfsMergeContext}. This
    * method will be called repeated by the {@link GtfsMerger}, once for each input feed.
@@ -0,0 +1,30 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies;
+
+/**
+ * Receives the progress of the scoring of entities while a merge strategy auto-detects whether
+ * fuzzy duplicate detection should be used.
+ *
+ * @see AbstractIdentifiableSingleEntityMergeStrategy#setProgressListener(
+ *     FuzzyScoringProgressListener)
+ */
+@FunctionalInterface
+public interface FuzzyScoringProgressListener {
+
+  /**
+   * @param entityType the type of the entities being scored
+   * @param scored the number of entities scored so far
+   * @param total the number of entities to score
+   */
+  void progress(Class<?> entityType, long scored, long total);
+}
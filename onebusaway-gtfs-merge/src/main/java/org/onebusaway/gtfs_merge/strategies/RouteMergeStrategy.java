@@ -13,7 +13,9 @@
  */
 package org.onebusaway.gtfs_merge.strategies;
 
+import java.util.Collection;
 import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
@@ -34,6 +36,15 @@ public class RouteMergeStrategy extends AbstractIdentifiableSingleEntityMergeStr
     _duplicateScoringStrategy.addStrategy(new RouteStopsInCommonDuplicateScoringStrategy());
   }
 
+  /** Routes are scored by the stops of their trips in the merged feed. */
+  @Override
+  public void getScoredEntityTypes(Collection<Class<?>> entityTypes) {
+    if (_duplicateDetectionStrategy != EDuplicateDetectionStrategy.NONE) {
+      entityTypes.add(Trip.class);
+      entityTypes.add(StopTime.class);
+    }
+  }
+
   @Override
   protected void replaceDuplicateEntry(GtfsMergeContext context, Route oldRoute, Route newRoute) {
     GtfsRelationalDao source = context.getSource();
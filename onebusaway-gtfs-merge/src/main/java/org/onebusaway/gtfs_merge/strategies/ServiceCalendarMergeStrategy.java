@@ -47,6 +47,18 @@ public class ServiceCalendarMergeStrategy
     entityTypes.add(ServiceCalendarDate.class);
   }
 
+  /**
+   * Duplicate service ids are scored by the service dates of the calendars in the merged feed, so
+   * the calendars are only final when duplicate detection is turned off.
+   */
+  @Override
+  public void getFinalizedEntityTypes(Collection<Class<?>> entityTypes) {
+    if (_duplicateDetectionStrategy == EDuplicateDetectionStrategy.NONE) {
+      entityTypes.add(ServiceCalendar.class);
+      entityTypes.add(ServiceCalendarDate.class);
+    }
+  }
+
   @Override
   protected Collection<AgencyAndId> getKeys(GtfsRelationalDao dao) {
     return dao.getAllServiceIds();
@@ -38,6 +38,15 @@ public class ShapePointMergeStrategy extends AbstractCollectionEntityMergeStrate
     entityTypes.add(ShapePoint.class);
   }
 
+  /**
+   * Shape keys are never scored, so duplicates are only ever detected by the raw ids of the shapes
+   * merged so far, never by looking at their points.
+   */
+  @Override
+  public void getFinalizedEntityTypes(Collection<Class<?>> entityTypes) {
+    entityTypes.add(ShapePoint.class);
+  }
+
   @Override
   protected Collection<AgencyAndId> getKeys(GtfsRelationalDao dao) {
     return dao.getAllShapeIds();
@@ -48,6 +48,17 @@ public class TripMergeStrategy extends AbstractIdentifiableSingleEntityMergeStra
     entityTypes.add(StopTime.class);
   }
 
+  /**
+   * Duplicate trips are scored and compared by their stop times in the merged feed, so the stop
+   * times are only final when duplicate detection is turned off.
+   */
+  @Override
+  public void getFinalizedEntityTypes(Collection<Class<?>> entityTypes) {
+    if (_duplicateDetectionStrategy == EDuplicateDetectionStrategy.NONE) {
+      entityTypes.add(StopTime.class);
+    }
+  }
+
   /**
    * Even if we have detected that two trips are duplicates, they might have slight differences that
    * prevent them from being represented as one merged trip. For example, if a trip in a subsequent
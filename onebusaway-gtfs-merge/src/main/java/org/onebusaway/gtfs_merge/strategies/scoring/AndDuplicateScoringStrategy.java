@@ -14,10 +14,13 @@
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
 import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
 
 public class AndDuplicateScoringStrategy<T> implements DuplicateScoringStrategy<T> {
@@ -32,6 +35,14 @@ public class AndDuplicateScoringStrategy<T> implements DuplicateScoringStrategy<
     strategies.add(strategy);
   }
 
+  /**
+   * @return the strategies whose scores are multiplied, for {@link BlockingIndex} to use their
+   *     blocking keys
+   */
+  public List<DuplicateScoringStrategy<T>> getStrategies() {
+    return Collections.unmodifiableList(strategies);
+  }
+
   @Override
   public double score(GtfsMergeContext context, T source, T target) {
     double score = 1.0;
@@ -63,6 +74,12 @@ public class AndDuplicateScoringStrategy<T> implements DuplicateScoringStrategy<
           : 0.0;
     }
 
+    /** Only entities with equal values score above zero */
+    @Override
+    public Set<?> getBlockingKeys(GtfsMergeContext context, GtfsRelationalDao dao, T entity) {
+      return Collections.singleton(BeanWrapperFactory.wrap(entity).getPropertyValue(property));
+    }
+
     @Override
     public String toString() {
       return new ToStringBuilder(this).append("property", property).toString();
@@ -0,0 +1,248 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+import org.onebusaway.gtfs_merge.GtfsMergeContext;
+
+/**
+ * Finds the entities that might be duplicates of a given entity, using the blocking keys of the
+ * strategies that make up a duplicate scoring strategy (see {@link
+ * DuplicateScoringStrategy#getBlockingKeys(GtfsMergeContext, GtfsRelationalDao, Object)}).
+ *
+ * <p>The strategies of an {@link AndDuplicateScoringStrategy} multiply their scores, so an entity
+ * is only a candidate if it shares a key with the query entity for every strategy that has keys for
+ * both of them. Entities are never left out if they might score above zero.
+ *
+ * <p>The index counts the candidates it hands out, so the reduction in the number of pairs to score
+ * can be reported. It is safe to query from several threads at once.
+ *
+ * @param <T> the entity type
+ */
+public class BlockingIndex<T> {
+
+  private final GtfsMergeContext _context;
+
+  private final List<DuplicateScoringStrategy<T>> _strategies;
+
+  private final List<T> _entities;
+
+  /** For each strategy, the keys of each entity, or null for the entities without keys */
+  private final List<Set<?>[]> _keys;
+
+  /** For each strategy, the positions of the entities with each key, in ascending order */
+  private final List<Map<Object, int[]>> _positionsByKey;
+
+  /** For each strategy, the positions of the entities without keys */
+  private final List<int[]> _unblocked;
+
+  private final AtomicLong _queries = new AtomicLong();
+
+  private final AtomicLong _candidatePairs = new AtomicLong();
+
+  private BlockingIndex(
+      GtfsMergeContext context,
+      List<DuplicateScoringStrategy<T>> strategies,
+      List<T> entities,
+      List<Set<?>[]> keys) {
+    _context = context;
+    _strategies = strategies;
+    _entities = Collections.unmodifiableList(entities);
+    _keys = keys;
+    _positionsByKey = new ArrayList<>();
+    _unblocked = new ArrayList<>();
+    for (Set<?>[] entityKeys : keys) {
+      Map<Object, List<Integer>> positions = new HashMap<>();
+      List<Integer> unblocked = new ArrayList<>();
+      for (int i = 0; i < entityKeys.length; i++) {
+        if (entityKeys[i] == null) {
+          unblocked.add(i);
+          continue;
+        }
+        for (Object key : entityKeys[i]) {
+          positions.computeIfAbsent(key, _ -> new ArrayList<>()).add(i);
+        }
+      }
+      Map<Object, int[]> positionsByKey = new HashMap<>();
+      for (Map.Entry<Object, List<Integer>> entry : positions.entrySet()) {
+        positionsByKey.put(entry.getKey(), toArray(entry.getValue()));
+      }
+      _positionsByKey.add(positionsByKey);
+      _unblocked.add(toArray(unblocked));
+    }
+  }
+
+  /**
+   * @param context the current merge operation
+   * @param strategy the duplicate scoring strategy the candidates will be scored with
+   * @param dao the feed the entities belong to
+   * @param entities the entities to index
+   * @return the index, or null if none of the strategies has blocking keys, so that every entity is
+   *     a candidate
+   */
+  public static <T> BlockingIndex<T> create(
+      GtfsMergeContext context,
+      DuplicateScoringStrategy<T> strategy,
+      GtfsRelationalDao dao,
+      Collection<T> entities) {
+    List<DuplicateScoringStrategy<T>> strategies = new ArrayList<>();
+    List<Set<?>[]> keys = new ArrayList<>();
+    List<T> indexed = new ArrayList<>(entities);
+    for (DuplicateScoringStrategy<T> component : flatten(strategy)) {
+      Set<?>[] entityKeys = new Set<?>[indexed.size()];
+      boolean hasKeys = false;
+      for (int i = 0; i < entityKeys.length; i++) {
+        entityKeys[i] = component.getBlockingKeys(context, dao, indexed.get(i));
+        hasKeys |= entityKeys[i] != null;
+      }
+      if (hasKeys) {
+        strategies.add(component);
+        keys.add(entityKeys);
+      }
+    }
+    if (strategies.isEmpty()) {
+      return null;
+    }
+    return new BlockingIndex<>(context, strategies, indexed, keys);
+  }
+
+  public int size() {
+    return _entities.size();
+  }
+
+  /**
+   * @param dao the feed the entity belongs to
+   * @param entity the entity to find candidates for
+   * @return the blocking keys of the entity, to look up candidates with {@link
+   *     #getCandidates(List)}
+   */
+  public List<Set<?>> getQueryKeys(GtfsRelationalDao dao, T entity) {
+    List<Set<?>> keys = new ArrayList<>(_strategies.size());
+    for (DuplicateScoringStrategy<T> strategy : _strategies) {
+      keys.add(strategy.getBlockingKeys(_context, dao, entity));
+    }
+    return keys;
+  }
+
+  /**
+   * @return the indexed entities that might score above zero against the entity, in the order they
+   *     were indexed
+   */
+  public List<T> getCandidates(GtfsRelationalDao dao, T entity) {
+    return getCandidates(getQueryKeys(dao, entity));
+  }
+
+  /**
+   * @param queryKeys keys returned by {@link #getQueryKeys(GtfsRelationalDao, Object)}
+   * @return the indexed entities that might score above zero against the entity with the keys, in
+   *     the order they were indexed
+   */
+  public List<T> getCandidates(List<Set<?>> queryKeys) {
+    _queries.incrementAndGet();
+
+    // Start from the strategy that narrows down the candidates the most
+    int driver = -1;
+    long driverCount = Long.MAX_VALUE;
+    for (int s = 0; s < _strategies.size(); s++) {
+      Set<?> keys = queryKeys.get(s);
+      if (keys == null) continue;
+      long count = _unblocked.get(s).length;
+      for (Object key : keys) {
+        int[] positions = _positionsByKey.get(s).get(key);
+        if (positions != null) count += positions.length;
+      }
+      if (count < driverCount) {
+        driver = s;
+        driverCount = count;
+      }
+    }
+    if (driver == -1) {
+      _candidatePairs.addAndGet(_entities.size());
+      return _entities;
+    }
+
+    int[] positions = new int[(int) driverCount];
+    int n = 0;
+    for (Object key : queryKeys.get(driver)) {
+      int[] keyPositions = _positionsByKey.get(driver).get(key);
+      if (keyPositions != null) {
+        System.arraycopy(keyPositions, 0, positions, n, keyPositions.length);
+        n += keyPositions.length;
+      }
+    }
+    int[] unblocked = _unblocked.get(driver);
+    System.arraycopy(unblocked, 0, positions, n, unblocked.length);
+    Arrays.sort(positions);
+
+    List<T> candidates = new ArrayList<>();
+    for (int i = 0; i < positions.length; i++) {
+      int position = positions[i];
+      if (i > 0 && positions[i - 1] == position) continue;
+      if (sharesKeys(position, queryKeys, driver)) candidates.add(_entities.get(position));
+    }
+    _candidatePairs.addAndGet(candidates.size());
+    return candidates;
+  }
+
+  /**
+   * @return the number of candidate lookups
+   */
+  public long getQueryCount() {
+    return _queries.get();
+  }
+
+  /**
+   * @return the number of candidates handed out so far, which is the number of pairs of entities
+   *     left to score, instead of {@link #size()} times {@link #getQueryCount()}
+   */
+  public long getCandidatePairCount() {
+    return _candidatePairs.get();
+  }
+
+  private boolean sharesKeys(int position, List<Set<?>> queryKeys, int skip) {
+    for (int s = 0; s < _strategies.size(); s++) {
+      if (s == skip) continue;
+      Set<?> keys = queryKeys.get(s);
+      Set<?> entityKeys = _keys.get(s)[position];
+      if (keys != null && entityKeys != null && Collections.disjoint(keys, entityKeys)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static <T> List<DuplicateScoringStrategy<T>> flatten(
+      DuplicateScoringStrategy<T> strategy) {
+    List<DuplicateScoringStrategy<T>> strategies = new ArrayList<>();
+    if (strategy instanceof AndDuplicateScoringStrategy<T> and) {
+      for (DuplicateScoringStrategy<T> component : and.getStrategies()) {
+        strategies.addAll(flatten(component));
+      }
+    } else {
+      strategies.add(strategy);
+    }
+    return strategies;
+  }
+
+  private static int[] toArray(List<Integer> values) {
+    return values.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
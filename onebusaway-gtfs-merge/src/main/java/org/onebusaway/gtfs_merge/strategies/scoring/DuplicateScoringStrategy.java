@@ -13,8 +13,26 @@
  */
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
+import java.util.Set;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
 
 public interface DuplicateScoringStrategy<T> {
   double score(GtfsMergeContext context, T source, T target);
+
+  /**
+   * Blocking keys let fuzzy duplicate detection skip the pairs of entities that can't possibly
+   * match. A strategy that returns keys guarantees that two entities that both have keys but share
+   * none of them score zero, so they don't have to be scored at all.
+   *
+   * @param context the current merge operation
+   * @param dao the feed the entity belongs to, either the source or the target of the merge
+   * @param entity the entity
+   * @return the blocking keys of the entity, or null if it might score above zero against any
+   *     entity
+   * @see BlockingIndex
+   */
+  default Set<?> getBlockingKeys(GtfsMergeContext context, GtfsRelationalDao dao, T entity) {
+    return null;
+  }
 }
@@ -19,9 +19,46 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.BiFunction;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+import org.onebusaway.gtfs_merge.GtfsMergeContext;
+import org.onebusaway.gtfs_merge.util.ElementIdIndex;
+import org.onebusaway.gtfs_merge.util.SortedIntSet;
 
 public class DuplicateScoringSupport {
 
+  /**
+   * Gets a feature of an entity from the feature cache of the current merge operation, computing it
+   * if needed.
+   *
+   * @param context the current merge operation, or null to always compute the feature
+   * @param feature identifies the feature
+   * @param dao the feed the entity belongs to
+   * @param entity the entity to get the feature for
+   * @param getter computes the feature, must not return null
+   * @return the feature of the entity
+   */
+  public static <S, T> T getFeature(
+      GtfsMergeContext context,
+      Object feature,
+      GtfsRelationalDao dao,
+      S entity,
+      BiFunction<GtfsRelationalDao, S, T> getter) {
+    if (context == null || context.getFeatureCache() == null) {
+      return getter.apply(dao, entity);
+    }
+    return context.getFeatureCache().get(feature, dao, entity, getter);
+  }
+
+  /**
+   * @param context the current merge operation
+   * @return the ids to use for the elements of features, such as stops, so that the features of the
+   *     source and target feeds can be compared
+   */
+  public static ElementIdIndex getElementIds(GtfsMergeContext context) {
+    return context.getFeatureCache().getElementIds();
+  }
+
   /**
    * Computes a numeric score that captures how much overlap there is between the elements in two
    * collections, given their set of overlapping elements. The score is [0.0, 1.0], where a score of
@@ -71,6 +108,22 @@ public class DuplicateScoringSupport {
     return ((double) nIntersect / a.size() + (double) nIntersect / b.size()) / 2;
   }
 
+  /**
+   * Same as {@link #scoreElementOverlap(Collection, Collection)} for sets of element ids, without
+   * allocating anything.
+   *
+   * @param a
+   * @param b
+   * @return the numeric overlap score
+   */
+  public static double scoreElementOverlap(SortedIntSet a, SortedIntSet b) {
+    if (a.isEmpty() || b.isEmpty()) {
+      return 0.0;
+    }
+    int nIntersect = a.countCommon(b);
+    return ((double) nIntersect / a.size() + (double) nIntersect / b.size()) / 2;
+  }
+
   private static <T> int calculateIntersection(SortedSet<T> aSet, SortedSet<T> bSet) {
     Comparator<? super T> comparator = aSet.comparator();
 
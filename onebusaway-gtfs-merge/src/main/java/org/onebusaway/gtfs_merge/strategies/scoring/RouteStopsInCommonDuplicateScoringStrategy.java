@@ -14,37 +14,65 @@
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import org.onebusaway.gtfs.model.Route;
-import org.onebusaway.gtfs.model.StopLocation;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
+import org.onebusaway.gtfs_merge.util.ElementIdIndex;
+import org.onebusaway.gtfs_merge.util.SortedIntSet;
 
 public class RouteStopsInCommonDuplicateScoringStrategy implements DuplicateScoringStrategy<Route> {
 
+  /** Identifies the stops of a route in the feature cache */
+  private static final Object STOPS_FEATURE = new Object();
+
   @Override
   public double score(GtfsMergeContext context, Route source, Route target) {
-    Set<StopLocation> sourceStops = getAllStopsForRoute(context.getSource(), source);
-    Set<StopLocation> targetStops = getAllStopsForRoute(context.getTarget(), target);
+    SortedIntSet sourceStops = getAllStopsForRoute(context, context.getSource(), source);
+    SortedIntSet targetStops = getAllStopsForRoute(context, context.getTarget(), target);
     return DuplicateScoringSupport.scoreElementOverlap(sourceStops, targetStops);
   }
 
-  private Set<StopLocation> getAllStopsForRoute(GtfsRelationalDao dao, Route route) {
-    Set<StopLocation> stops = new HashSet<>();
-    List<Trip> tripsForRoute = new ArrayList<>();
+  /** Only routes with stops in common score above zero */
+  @Override
+  public Set<?> getBlockingKeys(GtfsMergeContext context, GtfsRelationalDao dao, Route route) {
+    return getAllStopsForRoute(context, dao, route);
+  }
+
+  private SortedIntSet getAllStopsForRoute(
+      GtfsMergeContext context, GtfsRelationalDao dao, Route route) {
+    ElementIdIndex stopIds = DuplicateScoringSupport.getElementIds(context);
+    return DuplicateScoringSupport.getFeature(
+        context, STOPS_FEATURE, dao, route, (d, r) -> computeAllStopsForRoute(stopIds, d, r));
+  }
+
+  private static SortedIntSet computeAllStopsForRoute(
+      ElementIdIndex stopIds, GtfsRelationalDao dao, Route route) {
+    int[] stops = new int[16];
+    int n = 0;
     // make this thread safe
-    tripsForRoute.addAll(dao.getTripsForRoute(route));
+    List<Trip> tripsForRoute = new ArrayList<>(dao.getTripsForRoute(route));
     for (Trip trip : tripsForRoute) {
-      List<StopTime> stopTimesForTrip = new ArrayList<>();
-      stopTimesForTrip.addAll(dao.getStopTimesForTrip(trip));
+      List<StopTime> stopTimesForTrip = new ArrayList<>(dao.getStopTimesForTrip(trip));
       for (StopTime stopTime : stopTimesForTrip) {
-        stops.add(stopTime.getStop());
+        int stopId = stopIds.getId(stopTime.getStop());
+        // Consecutive trips of a route mostly visit the same stops, skip the obvious repeats
+        if (n > 0 && stops[n - 1] == stopId) {
+          continue;
+        }
+        if (n == stops.length) {
+          n = SortedIntSet.sortDistinct(stops, n);
+          if (n > stops.length / 2) {
+            stops = Arrays.copyOf(stops, stops.length * 2);
+          }
+        }
+        stops[n++] = stopId;
       }
     }
-    return stops;
+    return SortedIntSet.of(stops, n);
   }
 }
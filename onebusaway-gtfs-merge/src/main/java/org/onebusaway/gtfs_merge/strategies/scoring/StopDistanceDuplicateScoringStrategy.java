@@ -15,16 +15,32 @@ package org.onebusaway.gtfs_merge.strategies.scoring;
 
 import static java.lang.Math.atan2;
 import static java.lang.Math.cos;
+import static java.lang.Math.floor;
 import static java.lang.Math.sin;
 import static java.lang.Math.sqrt;
 import static java.lang.Math.toRadians;
 
+import java.util.HashSet;
+import java.util.Set;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
 
 public class StopDistanceDuplicateScoringStrategy implements DuplicateScoringStrategy<Stop> {
 
+  /** Radius of earth in meters */
+  static final double EARTH_RADIUS = 6371.01 * 1000.0;
+
+  /** Stops at least this many meters apart always score zero */
+  public static final double MAX_DUPLICATE_DISTANCE = 500;
+
+  /**
+   * Half the size of a grid cell, a little over the largest distance so that rounding can't split
+   * two stops right at that distance
+   */
+  private static final double HALF_CELL_SIZE = MAX_DUPLICATE_DISTANCE + 1;
+
   @Override
   public double score(GtfsMergeContext context, Stop source, Stop target) {
     double distance = distance(source.getLat(), source.getLon(), target.getLat(), target.getLon());
@@ -32,17 +48,44 @@ public class StopDistanceDuplicateScoringStrategy implements DuplicateScoringStr
       return 1.0;
     } else if (distance < 100) {
       return 0.75;
-    } else if (distance < 500) {
+    } else if (distance < MAX_DUPLICATE_DISTANCE) {
       return 0.5;
     } else {
       return 0.0;
     }
   }
 
-  private double distance(double lat1, double lon1, double lat2, double lon2) {
+  /**
+   * The stop is placed on a sphere of the earth's radius, and its keys are the cells it falls into
+   * in eight cubic grids with cells twice as large as the largest distance. The grids are shifted
+   * by half a cell along each combination of axes. The straight line between two points is never
+   * longer than the great circle between them, so along each axis two stops closer than the largest
+   * distance can be split by a cell boundary in at most one of the two shifts, and they share a
+   * cell in at least one of the grids. This holds everywhere, including near the poles and across
+   * the antimeridian.
+   */
+  @Override
+  public Set<?> getBlockingKeys(GtfsMergeContext context, GtfsRelationalDao dao, Stop stop) {
+    double lat = toRadians(stop.getLat());
+    double lon = toRadians(stop.getLon());
+    double[] position = {
+      cos(lat) * cos(lon) * EARTH_RADIUS,
+      cos(lat) * sin(lon) * EARTH_RADIUS,
+      sin(lat) * EARTH_RADIUS
+    };
+    Set<GridCell> keys = new HashSet<>();
+    for (int grid = 0; grid < 8; grid++) {
+      long[] cell = new long[3];
+      for (int axis = 0; axis < 3; axis++) {
+        double shift = (grid >> axis & 1) * HALF_CELL_SIZE;
+        cell[axis] = (long) floor((position[axis] + shift) / (2 * HALF_CELL_SIZE));
+      }
+      keys.add(new GridCell(grid, cell[0], cell[1], cell[2]));
+    }
+    return keys;
+  }
 
-    // Radius of earth in meters
-    double radius = 6371.01 * 1000.0;
+  private double distance(double lat1, double lon1, double lat2, double lon2) {
 
     // http://en.wikipedia.org/wiki/Great-circle_distance
     lat1 = toRadians(lat1); // Theta-s
@@ -58,13 +101,15 @@ public class StopDistanceDuplicateScoringStrategy implements DuplicateScoringStr
                 + p2(cos(lat1) * sin(lat2) - sin(lat1) * cos(lat2) * cos(deltaLon)));
     double x = sin(lat1) * sin(lat2) + cos(lat1) * cos(lat2) * cos(deltaLon);
 
-    return radius * atan2(y, x);
+    return EARTH_RADIUS * atan2(y, x);
   }
 
   private static double p2(double a) {
     return a * a;
   }
 
+  private record GridCell(int grid, long x, long y, long z) {}
+
   @Override
   public String toString() {
     return new ToStringBuilder(this).toString();
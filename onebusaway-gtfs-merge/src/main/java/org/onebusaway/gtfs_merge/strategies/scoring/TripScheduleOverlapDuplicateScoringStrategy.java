@@ -13,7 +13,9 @@
  */
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
@@ -21,32 +23,82 @@ import org.onebusaway.gtfs_merge.GtfsMergeContext;
 
 public class TripScheduleOverlapDuplicateScoringStrategy implements DuplicateScoringStrategy<Trip> {
 
+  /** The length of the time buckets used as blocking keys, in seconds */
+  private static final int BUCKET_SIZE = 60 * 60;
+
+  /** Identifies the schedule of a trip in the feature cache */
+  private static final Object SCHEDULE_FEATURE = new Object();
+
   @Override
   public double score(GtfsMergeContext context, Trip source, Trip target) {
-    int[] sourceInterval = getScheduleIntervalForTrip(context.getSource(), source);
-    int[] targetInterval = getScheduleIntervalForTrip(context.getTarget(), target);
+    int[] sourceInterval = getScheduleIntervalForTrip(context, context.getSource(), source);
+    int[] targetInterval = getScheduleIntervalForTrip(context, context.getTarget(), target);
     if (sourceInterval == null || targetInterval == null) {
       return 0.0;
     }
     return DuplicateScoringSupport.scoreIntervalOverlap(sourceInterval, targetInterval);
   }
 
-  private int[] getScheduleIntervalForTrip(GtfsRelationalDao dao, Trip trip) {
+  /**
+   * Only trips whose schedules overlap score above zero, and they have a second in common, so their
+   * keys are the hours their schedules span.
+   */
+  @Override
+  public Set<?> getBlockingKeys(GtfsMergeContext context, GtfsRelationalDao dao, Trip trip) {
+    Schedule schedule = getSchedule(context, dao, trip);
+    // Leave it to scoring to report the missing times
+    if (!schedule.timesSet()) {
+      return null;
+    }
+    if (schedule.interval() == null) {
+      return Set.of();
+    }
+    Set<Integer> buckets = new HashSet<>();
+    int from = Math.floorDiv(schedule.interval()[0], BUCKET_SIZE);
+    int to = Math.floorDiv(schedule.interval()[1] - 1, BUCKET_SIZE);
+    for (int bucket = from; bucket <= to; bucket++) {
+      buckets.add(bucket);
+    }
+    return buckets;
+  }
+
+  private int[] getScheduleIntervalForTrip(
+      GtfsMergeContext context, GtfsRelationalDao dao, Trip trip) {
+    Schedule schedule = getSchedule(context, dao, trip);
+    if (!schedule.timesSet()) {
+      throw new IllegalStateException(
+          "expected departure time for first stop and arrival time for last stop to be set for trip"
+              + " with id "
+              + trip.getId());
+    }
+    return schedule.interval();
+  }
+
+  private Schedule getSchedule(GtfsMergeContext context, GtfsRelationalDao dao, Trip trip) {
+    return DuplicateScoringSupport.getFeature(
+        context, SCHEDULE_FEATURE, dao, trip, TripScheduleOverlapDuplicateScoringStrategy::compute);
+  }
+
+  private static Schedule compute(GtfsRelationalDao dao, Trip trip) {
     List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
     if (stopTimes.isEmpty()) {
-      return null;
+      return new Schedule(null, true);
     }
 
     StopTime first = stopTimes.getFirst();
 
     StopTime last = stopTimes.getLast();
     if (!first.isDepartureTimeSet() || !last.isArrivalTimeSet()) {
-      throw new IllegalStateException(
-          "expected departure time for first stop and arrival time for last stop to be set for trip with id "
-              + trip.getId());
+      return new Schedule(null, false);
     }
     int minTime = first.getDepartureTime();
     int maxTime = last.getArrivalTime();
-    return new int[] {minTime, maxTime};
+    return new Schedule(new int[] {minTime, maxTime}, true);
   }
+
+  /**
+   * @param interval the span of the schedule of a trip, or null if the trip has no stop times
+   * @param timesSet false if the trip starts without a departure or ends without an arrival time
+   */
+  private record Schedule(int[] interval, boolean timesSet) {}
 }
@@ -13,43 +13,52 @@
  */
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
-import java.util.Comparator;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import org.onebusaway.gtfs.model.StopLocation;
+import java.util.List;
+import java.util.Set;
+import org.onebusaway.gtfs.impl.StopTimeArray;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
-import org.onebusaway.gtfs_merge.util.CacheByEntity;
-import org.onebusaway.gtfs_merge.util.CacheByEntity.CacheGetter;
+import org.onebusaway.gtfs_merge.util.ElementIdIndex;
+import org.onebusaway.gtfs_merge.util.SortedIntSet;
 
 public class TripStopsInCommonDuplicateScoringStrategy implements DuplicateScoringStrategy<Trip> {
 
-  private CacheByEntity<Trip, SortedSet<StopLocation>> _cache = new CacheByEntity<>(getStops);
+  /** Identifies the stops of a trip in the feature cache */
+  private static final Object STOPS_FEATURE = new Object();
 
   @Override
   public double score(GtfsMergeContext context, Trip source, Trip target) {
-    SortedSet<StopLocation> sourceStops = getStopsForTrip(context.getSource(), source);
-    SortedSet<StopLocation> targetStops = getStopsForTrip(context.getTarget(), target);
+    SortedIntSet sourceStops = getStopsForTrip(context, context.getSource(), source);
+    SortedIntSet targetStops = getStopsForTrip(context, context.getTarget(), target);
     return DuplicateScoringSupport.scoreElementOverlap(sourceStops, targetStops);
   }
 
-  private SortedSet<StopLocation> getStopsForTrip(GtfsRelationalDao dao, Trip trip) {
-    return _cache.getItemForEntity(dao, trip);
+  /** Only trips with stops in common score above zero */
+  @Override
+  public Set<?> getBlockingKeys(GtfsMergeContext context, GtfsRelationalDao dao, Trip trip) {
+    return getStopsForTrip(context, dao, trip);
   }
 
-  // It's sufficient that they're sorted in SOME way
-  private static final Comparator<StopLocation> stopComparator =
-      Comparator.comparingInt(Object::hashCode);
-
-  private static CacheGetter<Trip, SortedSet<StopLocation>> getStops =
-      (dao, trip) -> {
-        SortedSet<StopLocation> stops = new TreeSet<>(stopComparator);
+  private SortedIntSet getStopsForTrip(GtfsMergeContext context, GtfsRelationalDao dao, Trip trip) {
+    ElementIdIndex stopIds = DuplicateScoringSupport.getElementIds(context);
+    return DuplicateScoringSupport.getFeature(
+        context, STOPS_FEATURE, dao, trip, (d, t) -> getStops(stopIds, d, t));
+  }
 
-        for (StopTime stopTime : dao.getStopTimesForTrip(trip)) {
-          stops.add(stopTime.getStop());
-        }
-        return stops;
-      };
+  private static SortedIntSet getStops(ElementIdIndex stopIds, GtfsRelationalDao dao, Trip trip) {
+    List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
+    int[] stops = new int[stopTimes.size()];
+    int n = 0;
+    if (stopTimes instanceof StopTimeArray.StopTimeSlice slice) {
+      // Packed stop times, which don't need a StopTime view each
+      for (int i = 0; i < slice.size(); i++) stops[n++] = stopIds.getId(slice.getStop(i));
+    } else {
+      for (StopTime stopTime : stopTimes) {
+        stops[n++] = stopIds.getId(stopTime.getStop());
+      }
+    }
+    return SortedIntSet.of(stops, n);
+  }
 }
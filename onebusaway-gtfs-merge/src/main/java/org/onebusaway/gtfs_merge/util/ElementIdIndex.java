@@ -0,0 +1,45 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns dense int ids to elements, such as stops, so that sets of elements can be represented as
+ * {@link SortedIntSet}s. Elements that are equal get the same id. It is safe to use from several
+ * threads at once.
+ */
+public class ElementIdIndex {
+
+  /** The id of the null element */
+  public static final int NULL_ID = -1;
+
+  private final Map<Object, Integer> _ids = new ConcurrentHashMap<>();
+
+  private final AtomicInteger _nextId = new AtomicInteger();
+
+  public int getId(Object element) {
+    if (element == null) {
+      return NULL_ID;
+    }
+    return _ids.computeIfAbsent(element, _ -> _nextId.getAndIncrement());
+  }
+
+  /**
+   * @return the number of elements that have an id
+   */
+  public int size() {
+    return _ids.size();
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+
+/**
+ * Memoizes features of entities, such as the stops a trip visits, that duplicate scoring strategies
+ * compute over and over while comparing entities. A cache belongs to the merge of a single input
+ * feed (see {@link org.onebusaway.gtfs_merge.GtfsMergeContext#getFeatureCache()}), and is cleared
+ * when the merge moves on to the next feed, so it never holds on to a feed that is done.
+ *
+ * <p>The cache holds at most a fixed number of features, evicting the least recently used first. It
+ * is safe to use from several threads at once. Features are computed outside the lock, so two
+ * threads might compute the same feature, which is harmless since features are pure functions of
+ * the entity and its feed.
+ *
+ * <p>Features that are sets of elements, such as stops, can use the {@link ElementIdIndex} of the
+ * cache, so that the sets of all entities of the feed and of the merged feed are comparable.
+ */
+public class FeatureCache {
+
+  public static final int DEFAULT_MAXIMUM_SIZE = 100_000;
+
+  private final int _maximumSize;
+
+  private final Map<Key, Object> _features;
+
+  private final ElementIdIndex _elementIds = new ElementIdIndex();
+
+  private long _hits;
+
+  private long _misses;
+
+  private long _evictions;
+
+  public FeatureCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * @param maximumSize the maximum number of features to hold, or zero to not cache at all
+   */
+  public FeatureCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximum size must not be negative: " + maximumSize);
+    }
+    _maximumSize = maximumSize;
+    _features =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+            if (size() > _maximumSize) {
+              _evictions++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * @param feature identifies the feature, typically a constant of the strategy that computes it
+   * @param dao the feed the entity belongs to
+   * @param entity the entity to get the feature for
+   * @param getter computes the feature when it isn't cached, must not return null
+   * @return the feature of the entity
+   */
+  @SuppressWarnings("unchecked")
+  public <S, T> T get(
+      Object feature, GtfsRelationalDao dao, S entity, BiFunction<GtfsRelationalDao, S, T> getter) {
+    Key key = new Key(feature, dao, entity);
+    synchronized (this) {
+      Object value = _features.get(key);
+      if (value != null) {
+        _hits++;
+        return (T) value;
+      }
+      _misses++;
+    }
+    T value = getter.apply(dao, entity);
+    if (_maximumSize > 0) {
+      synchronized (this) {
+        _features.put(key, value);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return the ids of the elements of features in this cache, which live as long as the cache
+   */
+  public ElementIdIndex getElementIds() {
+    return _elementIds;
+  }
+
+  /** Drops all cached features, keeping the statistics. */
+  public synchronized void clear() {
+    _features.clear();
+  }
+
+  public int getMaximumSize() {
+    return _maximumSize;
+  }
+
+  public synchronized int size() {
+    return _features.size();
+  }
+
+  public synchronized long getHitCount() {
+    return _hits;
+  }
+
+  public synchronized long getMissCount() {
+    return _misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return _evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "FeatureCache(size="
+        + _features.size()
+        + " hits="
+        + _hits
+        + " misses="
+        + _misses
+        + " evictions="
+        + _evictions
+        + ")";
+  }
+
+  private record Key(Object feature, GtfsRelationalDao dao, Object entity) {}
+}
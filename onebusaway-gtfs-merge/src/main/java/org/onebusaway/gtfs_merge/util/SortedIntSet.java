@@ -0,0 +1,126 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of ints, stored as a sorted array without duplicates. Counting the elements two
+ * sets have in common is a single pass over both arrays that allocates nothing, see {@link
+ * #countCommon(SortedIntSet)}.
+ */
+public final class SortedIntSet extends AbstractSet<Integer> {
+
+  private static final SortedIntSet EMPTY = new SortedIntSet(new int[0]);
+
+  private final int[] _values;
+
+  private SortedIntSet(int[] values) {
+    _values = values;
+  }
+
+  public static SortedIntSet empty() {
+    return EMPTY;
+  }
+
+  /**
+   * @param values the elements of the set in any order, with or without duplicates, the array is
+   *     sorted in place
+   * @param length the number of values to use from the start of the array
+   */
+  public static SortedIntSet of(int[] values, int length) {
+    if (length == 0) {
+      return EMPTY;
+    }
+    return new SortedIntSet(Arrays.copyOf(values, sortDistinct(values, length)));
+  }
+
+  /**
+   * Sorts the first values of an array in place and moves duplicates out of the way, which can be
+   * used to compact a buffer of values before it grows.
+   *
+   * @param values the array to sort
+   * @param length the number of values to sort from the start of the array
+   * @return the number of distinct values, which are now at the start of the array
+   */
+  public static int sortDistinct(int[] values, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    Arrays.sort(values, 0, length);
+    int n = 1;
+    for (int i = 1; i < length; i++) {
+      if (values[i] != values[n - 1]) {
+        values[n++] = values[i];
+      }
+    }
+    return n;
+  }
+
+  public boolean containsInt(int value) {
+    return Arrays.binarySearch(_values, value) >= 0;
+  }
+
+  /**
+   * @return the number of elements in both this and the other set
+   */
+  public int countCommon(SortedIntSet other) {
+    int[] a = _values;
+    int[] b = other._values;
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < a.length && j < b.length) {
+      int x = a[i];
+      int y = b[j];
+      // Advance without branching on the comparison, which is unpredictable
+      n += x == y ? 1 : 0;
+      i += x <= y ? 1 : 0;
+      j += x >= y ? 1 : 0;
+    }
+    return n;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof Integer value && containsInt(value);
+  }
+
+  @Override
+  public int size() {
+    return _values.length;
+  }
+
+  @Override
+  public Iterator<Integer> iterator() {
+    return new Iterator<>() {
+
+      private int _index;
+
+      @Override
+      public boolean hasNext() {
+        return _index < _values.length;
+      }
+
+      @Override
+      public Integer next() {
+        if (_index == _values.length) {
+          throw new NoSuchElementException();
+        }
+        return _values[_index++];
+      }
+    };
+  }
+}
@@ -14,13 +14,20 @@
 package org.onebusaway.gtfs_merge;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -84,6 +91,42 @@ public class GtfsMergerTest {
     assertEquals(2, dao.getAllTrips().size());
   }
 
+  @Test
+  public void testPrefetchFeeds() throws IOException {
+    _oldGtfs.putAgencies(1);
+    _oldGtfs.putRoutes(1);
+    _oldGtfs.putStops(3);
+    _oldGtfs.putCalendars(1, "mask=1111100", "start_date=20120504", "end_date=20120608");
+    _oldGtfs.putTrips(1, "r0", "sid0");
+    _oldGtfs.putStopTimes("t0", "s0,s1,s2");
+
+    _newGtfs.putAgencies(1);
+    _newGtfs.putRoutes(1);
+    _newGtfs.putStops(3);
+    _newGtfs.putCalendars(1, "mask=1111100", "start_date=20120601", "end_date=20120630");
+    _newGtfs.putTrips(1, "r0", "sid0");
+    _newGtfs.putStopTimes("t0", "s0,s1");
+
+    _pugetGtfs = MockGtfs.create();
+    _pugetGtfs.putAgencies(1);
+    _pugetGtfs.putRoutes(1);
+    _pugetGtfs.putStops(3);
+    _pugetGtfs.putCalendars(1, "mask=1111100", "start_date=20120701", "end_date=20120731");
+    _pugetGtfs.putTrips(1, "r0", "sid0");
+    _pugetGtfs.putStopTimes("t0", "s0");
+
+    _merger.setPrefetchFeeds(1);
+
+    GtfsRelationalDao dao = merge();
+    assertEquals(1, dao.getAllAgencies().size());
+    assertEquals(1, dao.getAllRoutes().size());
+    assertEquals(3, dao.getAllStops().size());
+    assertEquals(3, dao.getAllTrips().size());
+    // The newest feed is merged first and keeps its ids
+    Trip trip = dao.getTripForId(new AgencyAndId("a0", "t0"));
+    assertEquals(1, dao.getStopTimesForTrip(trip).size());
+  }
+
   /** Test that when renaming trips stop times are preserved (issue 14) */
   @Test
   public void testRenamingTrips() throws IOException {
@@ -112,6 +155,147 @@ public class GtfsMergerTest {
     }
   }
 
+  @Test
+  public void testStreamingOutputColumns() throws IOException {
+    _oldGtfs.putAgencies(1);
+    _oldGtfs.putRoutes(1);
+    _oldGtfs.putStops(3);
+    _oldGtfs.putCalendars(1, "mask=1111100", "start_date=20120504", "end_date=20120608");
+    _oldGtfs.putTrips(1, "r0", "sid0");
+    _oldGtfs.putStopTimes("t0", "s0,s1,s2");
+
+    _newGtfs.putAgencies(1);
+    _newGtfs.putRoutes(1);
+    _newGtfs.putStops(3);
+    _newGtfs.putCalendars(1, "mask=1111100", "start_date=20120601", "end_date=20120630");
+    _newGtfs.putTrips(1, "r0", "sid0");
+    _newGtfs.putStopTimesWithDistances("t0", "s0,s1", "0.0,100.0", "1,1");
+
+    _merger.setTripStrategy(tripStrategyWithoutDuplicateDetection());
+    _merger.setRouteStrategy(routeStrategyWithoutDuplicateDetection());
+    merge();
+    String expected = readHeader(_mergedGtfs.getPath(), "stop_times.txt");
+
+    _mergedGtfs = MockGtfs.create();
+    _merger = new GtfsMerger(false);
+    _merger.setTripStrategy(tripStrategyWithoutDuplicateDetection());
+    _merger.setRouteStrategy(routeStrategyWithoutDuplicateDetection());
+    _merger.setStreamingOutput(true);
+    GtfsRelationalDao dao = merge();
+    assertEquals(expected, readHeader(_mergedGtfs.getPath(), "stop_times.txt"));
+    assertTrue(expected.contains("shape_dist_traveled"));
+    assertFalse(expected.contains("stop_headsign"));
+    assertEquals(5, dao.getAllStopTimes().size());
+  }
+
+  @Test
+  public void testStreamingOutputColumnMissingFromNewestFeed() throws IOException {
+    _oldGtfs.putAgencies(1);
+    _oldGtfs.putRoutes(1);
+    _oldGtfs.putStops(3);
+    _oldGtfs.putCalendars(1, "mask=1111100", "start_date=20120504", "end_date=20120608");
+    _oldGtfs.putTrips(1, "r0", "sid0");
+    _oldGtfs.putStopTimesWithDistances("t0", "s0,s1", "0.0,100.0", "1,1");
+
+    _newGtfs.putAgencies(1);
+    _newGtfs.putRoutes(1);
+    _newGtfs.putStops(3);
+    _newGtfs.putCalendars(1, "mask=1111100", "start_date=20120601", "end_date=20120630");
+    _newGtfs.putTrips(1, "r0", "sid0");
+    _newGtfs.putStopTimes("t0", "s0,s1,s2");
+
+    // The newest feed is streamed first, so its columns are the ones written
+    _merger.setTripStrategy(tripStrategyWithoutDuplicateDetection());
+    _merger.setRouteStrategy(routeStrategyWithoutDuplicateDetection());
+    _merger.setStreamingOutput(true);
+    assertThrows(IllegalStateException.class, this::merge);
+  }
+
+  @Test
+  public void testStreamingOutputKeepsStopTimesForRouteScoring() throws IOException {
+    _oldGtfs.putAgencies(1);
+    _oldGtfs.putRoutes(1);
+    _oldGtfs.putStops(3);
+    _oldGtfs.putCalendars(1, "mask=1111100", "start_date=20120504", "end_date=20120608");
+    _oldGtfs.putTrips(1, "r0", "sid0");
+    _oldGtfs.putStopTimes("t0", "s0,s1,s2");
+
+    _newGtfs.putAgencies(1);
+    _newGtfs.putRoutes(1);
+    _newGtfs.putStops(3);
+    _newGtfs.putCalendars(1, "mask=1111100", "start_date=20120601", "end_date=20120630");
+    _newGtfs.putTrips(1, "r0", "sid0");
+    _newGtfs.putStopTimes("t0", "s0,s1,s2");
+
+    _pugetGtfs = MockGtfs.create();
+    _pugetGtfs.putAgencies(1);
+    _pugetGtfs.putRoutes(1);
+    _pugetGtfs.putStops(3);
+    _pugetGtfs.putCalendars(1, "mask=1111100", "start_date=20120701", "end_date=20120731");
+    _pugetGtfs.putTrips(1, "r0", "sid0");
+    _pugetGtfs.putStopTimes("t0", "s0,s1,s2");
+
+    // Routes are still scored by the stop times of their trips in the merged feed
+    TripMergeStrategy tripStrategy = new TripMergeStrategy();
+    tripStrategy.setDuplicateDetectionStrategy(EDuplicateDetectionStrategy.NONE);
+    _merger.setTripStrategy(tripStrategy);
+    _merger.setStreamingOutput(true);
+
+    GtfsRelationalDao dao = merge();
+    assertEquals(1, dao.getAllRoutes().size());
+    assertEquals(3, dao.getAllTrips().size());
+    assertEquals(9, dao.getAllStopTimes().size());
+  }
+
+  @Test
+  public void testStreamingOutput() throws IOException {
+    _oldGtfs.putAgencies(1);
+    _oldGtfs.putRoutes(1);
+    _oldGtfs.putStops(3);
+    _oldGtfs.putCalendars(1, "mask=1111100", "start_date=20120504", "end_date=20120608");
+    _oldGtfs.putTrips(1, "r0", "sid0", "shape_id=shp0");
+    _oldGtfs.putStopTimes("t0", "s0,s1,s2");
+    _oldGtfs.putLines(
+        "shapes.txt",
+        "shape_id,shape_pt_lat,shape_pt_lon,shape_pt_sequence",
+        "shp0,47.6,-122.3,0",
+        "shp0,47.7,-122.3,1");
+
+    _newGtfs.putAgencies(1);
+    _newGtfs.putRoutes(1);
+    _newGtfs.putStops(3);
+    _newGtfs.putCalendars(1, "mask=1111100", "start_date=20120601", "end_date=20120630");
+    _newGtfs.putTrips(1, "r0", "sid0", "shape_id=shp0");
+    _newGtfs.putStopTimes("t0", "s0,s1");
+    _newGtfs.putLines(
+        "shapes.txt",
+        "shape_id,shape_pt_lat,shape_pt_lon,shape_pt_sequence",
+        "shp0,47.6,-122.4,0",
+        "shp0,47.7,-122.4,1",
+        "shp0,47.8,-122.4,2");
+
+    TripMergeStrategy tripStrategy = new TripMergeStrategy();
+    tripStrategy.setDuplicateDetectionStrategy(EDuplicateDetectionStrategy.NONE);
+    _merger.setTripStrategy(tripStrategy);
+    ServiceCalendarMergeStrategy serviceStrategy = new ServiceCalendarMergeStrategy();
+    serviceStrategy.setDuplicateDetectionStrategy(EDuplicateDetectionStrategy.NONE);
+    _merger.setServiceCalendarStrategy(serviceStrategy);
+    _merger.setStreamingOutput(true);
+
+    GtfsRelationalDao dao = merge();
+    assertEquals(2, dao.getAllTrips().size());
+    assertEquals(2, dao.getAllCalendars().size());
+    assertEquals(5, dao.getAllStopTimes().size());
+    assertEquals(5, dao.getAllShapePoints().size());
+    for (Trip trip : dao.getAllTrips()) {
+      List<ShapePoint> shapePoints = dao.getShapePointsForShapeId(trip.getShapeId());
+      List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
+      assertEquals(trip.getId().getId().equals("t0") ? 3 : 2, shapePoints.size());
+      assertEquals(trip.getId().getId().equals("t0") ? 2 : 3, stopTimes.size());
+      assertTrue(dao.getCalendarForServiceId(trip.getServiceId()) != null);
+    }
+  }
+
   @Test
   public void testAgencyPreference() throws IOException {
 
@@ -471,6 +655,29 @@ public class GtfsMergerTest {
     }
   }
 
+  private static TripMergeStrategy tripStrategyWithoutDuplicateDetection() {
+    TripMergeStrategy strategy = new TripMergeStrategy();
+    strategy.setDuplicateDetectionStrategy(EDuplicateDetectionStrategy.NONE);
+    return strategy;
+  }
+
+  private static RouteMergeStrategy routeStrategyWithoutDuplicateDetection() {
+    RouteMergeStrategy strategy = new RouteMergeStrategy();
+    strategy.setDuplicateDetectionStrategy(EDuplicateDetectionStrategy.NONE);
+    return strategy;
+  }
+
+  private static String readHeader(File path, String fileName) throws IOException {
+    try (ZipFile zipFile = new ZipFile(path)) {
+      ZipEntry entry = zipFile.getEntry(fileName);
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+        return reader.readLine();
+      }
+    }
+  }
+
   private GtfsRelationalDao merge() throws IOException {
     List<File> paths = new ArrayList<>();
     paths.add(_oldGtfs.getPath());
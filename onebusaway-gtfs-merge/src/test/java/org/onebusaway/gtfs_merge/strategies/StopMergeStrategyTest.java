@@ -0,0 +1,107 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs_merge.GtfsMergeContext;
+
+public class StopMergeStrategyTest extends EntityMergeTestSupport {
+
+  private StopMergeStrategy _strategy;
+
+  private GtfsRelationalDaoImpl _target;
+
+  @BeforeEach
+  public void before() {
+    _strategy = new StopMergeStrategy();
+    _target = new GtfsRelationalDaoImpl();
+  }
+
+  @Test
+  public void testFuzzyMatch() {
+    GtfsRelationalDaoImpl sourceA = new GtfsRelationalDaoImpl();
+    GtfsRelationalDaoImpl sourceB = new GtfsRelationalDaoImpl();
+    for (int i = 0; i < 200; i++) {
+      sourceA.saveEntity(stop("a", "A" + i, "Stop " + i, 47.6 + i * 0.01, -122.3));
+      // A few meters away from the matching stop in the first feed
+      sourceB.saveEntity(stop("b", "B" + i, "Stop " + i, 47.60001 + i * 0.01, -122.3));
+    }
+    sourceB.saveEntity(stop("b", "C", "Elsewhere", 40, -100));
+
+    List<long[]> progress = new ArrayList<>();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    _strategy.setForkJoinPool(pool);
+    _strategy.setProgressListener(
+        (entityType, scored, total) -> {
+          assertSame(Stop.class, entityType);
+          progress.add(new long[] {scored, total});
+        });
+
+    _strategy.merge(context(sourceA, _target, "a-"));
+    GtfsMergeContext contextB = context(sourceB, _target, "b-");
+    _strategy.merge(contextB);
+    pool.shutdown();
+
+    assertEquals(
+        EDuplicateDetectionStrategy.FUZZY, contextB.getResolvedDuplicateDetectionStrategy());
+    assertEquals(201, _target.getAllStops().size());
+    AgencyAndId stopId = new AgencyAndId("a", "A7");
+    assertSame(sourceA.getStopForId(stopId), _target.getStopForId(stopId));
+    assertNotNull(_target.getStopForId(new AgencyAndId("b", "C")));
+
+    long[] last = progress.getLast();
+    assertEquals(200, last[0]);
+    assertEquals(200, last[1]);
+  }
+
+  @Test
+  public void testFuzzyMatchSampled() {
+    GtfsRelationalDaoImpl sourceA = new GtfsRelationalDaoImpl();
+    GtfsRelationalDaoImpl sourceB = new GtfsRelationalDaoImpl();
+    for (int i = 0; i < 100; i++) {
+      sourceA.saveEntity(stop("a", "A" + i, "Stop " + i, 47.6 + i * 0.01, -122.3));
+      sourceB.saveEntity(stop("b", "B" + i, "Stop " + i, 47.6 + i * 0.01, -122.3));
+    }
+    List<long[]> progress = new ArrayList<>();
+    _strategy.setFuzzyAutoDetectSampleSize(10);
+    _strategy.setProgressListener((entityType, scored, total) -> progress.add(new long[] {total}));
+
+    _strategy.merge(context(sourceA, _target, "a-"));
+    GtfsMergeContext contextB = context(sourceB, _target, "b-");
+    _strategy.merge(contextB);
+
+    assertEquals(
+        EDuplicateDetectionStrategy.FUZZY, contextB.getResolvedDuplicateDetectionStrategy());
+    assertEquals(100, _target.getAllStops().size());
+    assertEquals(10, progress.getLast()[0]);
+  }
+
+  private static Stop stop(String agencyId, String id, String name, double lat, double lon) {
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId(agencyId, id));
+    stop.setName(name);
+    stop.setLat(lat);
+    stop.setLon(lon);
+    return stop;
+  }
+}
@@ -13,4 +13,54 @@
  */
 package org.onebusaway.gtfs_merge.strategies;
 
-public class TripMergeStrategyTest extends EntityMergeTestSupport {}
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs_merge.GtfsMergeContext;
+
+public class TripMergeStrategyTest extends EntityMergeTestSupport {
+
+  @Test
+  public void testScoringFailureMeansNoOverlap() {
+    // Trips without times, as for flex trips, can't have their schedules compared
+    GtfsRelationalDaoImpl sourceA = feed("A");
+    GtfsRelationalDaoImpl sourceB = feed("B");
+    GtfsRelationalDaoImpl target = new GtfsRelationalDaoImpl();
+
+    TripMergeStrategy strategy = new TripMergeStrategy();
+    strategy.merge(context(sourceA, target, "a-"));
+    GtfsMergeContext contextB = context(sourceB, target, "b-");
+    strategy.merge(contextB);
+
+    assertEquals(
+        EDuplicateDetectionStrategy.NONE, contextB.getResolvedDuplicateDetectionStrategy());
+    assertEquals(2, target.getAllTrips().size());
+  }
+
+  private static GtfsRelationalDaoImpl feed(String tripId) {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Route route = new Route();
+    route.setId(new AgencyAndId("a", "route"));
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("a", tripId));
+    trip.setRoute(route);
+    trip.setServiceId(new AgencyAndId("a", "service"));
+    dao.saveEntity(trip);
+    for (int i = 0; i < 2; i++) {
+      Stop stop = new Stop();
+      stop.setId(new AgencyAndId("a", "stop" + i));
+      StopTime stopTime = new StopTime();
+      stopTime.setTrip(trip);
+      stopTime.setStop(stop);
+      stopTime.setStopSequence(i);
+      dao.saveEntity(stopTime);
+    }
+    return dao;
+  }
+}
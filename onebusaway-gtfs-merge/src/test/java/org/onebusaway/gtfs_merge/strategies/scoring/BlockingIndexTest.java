@@ -0,0 +1,125 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+
+public class BlockingIndexTest {
+
+  @Test
+  public void testStopDistance() {
+    AndDuplicateScoringStrategy<Stop> strategy = new AndDuplicateScoringStrategy<>();
+    strategy.addStrategy(new StopDistanceDuplicateScoringStrategy());
+    assertSameAsScoringAll(
+        strategy, randomStops(47.6, -122.3, 0.05, 2000), randomStops(47.6, -122.3, 0.05, 500));
+  }
+
+  @Test
+  public void testStopDistanceAcrossAntimeridian() {
+    AndDuplicateScoringStrategy<Stop> strategy = new AndDuplicateScoringStrategy<>();
+    strategy.addStrategy(new StopDistanceDuplicateScoringStrategy());
+    assertSameAsScoringAll(
+        strategy, randomStops(-17.7, 180, 0.02, 500), randomStops(-17.7, 180, 0.02, 200));
+  }
+
+  @Test
+  public void testStopDistanceNearPole() {
+    AndDuplicateScoringStrategy<Stop> strategy = new AndDuplicateScoringStrategy<>();
+    strategy.addStrategy(new StopDistanceDuplicateScoringStrategy());
+    assertSameAsScoringAll(
+        strategy, randomStops(89.99, 0, 0.01, 500), randomStops(89.99, 0, 0.01, 200));
+  }
+
+  @Test
+  public void testStopNameAndDistance() {
+    AndDuplicateScoringStrategy<Stop> strategy = new AndDuplicateScoringStrategy<>();
+    strategy.addPropertyMatch("name");
+    strategy.addStrategy(new StopDistanceDuplicateScoringStrategy());
+    List<Stop> stops = randomStops(47.6, -122.3, 0.02, 2000);
+    List<Stop> queries = randomStops(47.6, -122.3, 0.02, 300);
+    assertSameAsScoringAll(strategy, stops, queries);
+
+    BlockingIndex<Stop> index = BlockingIndex.create(null, strategy, null, stops);
+    for (Stop query : queries) index.getCandidates(null, query);
+    assertEquals(queries.size(), index.getQueryCount());
+    assertTrue(index.getCandidatePairCount() < queries.size() * stops.size() / 10);
+  }
+
+  @Test
+  public void testKeepsOrder() {
+    AndDuplicateScoringStrategy<Stop> strategy = new AndDuplicateScoringStrategy<>();
+    strategy.addPropertyMatch("name");
+    List<Stop> stops = new ArrayList<>();
+    stops.add(stop("a", "Main St", 47.60, -122.30));
+    stops.add(stop("b", "1st Ave", 47.61, -122.30));
+    stops.add(stop("c", "Main St", 47.60, -122.301));
+    stops.add(stop("d", null, 47.5999, -122.30));
+    stops.add(stop("e", "Main St", 47.5999, -122.30));
+    BlockingIndex<Stop> index = BlockingIndex.create(null, strategy, null, stops);
+    assertEquals(
+        List.of(stops.get(0), stops.get(2), stops.get(4)),
+        index.getCandidates(null, stop("q", "Main St", 47.6, -122.3)));
+    assertEquals(List.of(stops.get(3)), index.getCandidates(null, stop("q", null, 0, 0)));
+  }
+
+  @Test
+  public void testNoBlockingKeys() {
+    AndDuplicateScoringStrategy<Stop> strategy = new AndDuplicateScoringStrategy<>();
+    strategy.addStrategy((context, source, target) -> 1.0);
+    assertNull(BlockingIndex.create(null, strategy, null, randomStops(0, 0, 1, 10)));
+  }
+
+  private static void assertSameAsScoringAll(
+      DuplicateScoringStrategy<Stop> strategy, List<Stop> stops, List<Stop> queries) {
+    BlockingIndex<Stop> index = BlockingIndex.create(null, strategy, null, stops);
+    for (Stop query : queries) {
+      List<Stop> expected = new ArrayList<>();
+      for (Stop stop : stops) {
+        if (strategy.score(null, query, stop) > 0) expected.add(stop);
+      }
+      List<Stop> actual = new ArrayList<>(index.getCandidates(null, query));
+      actual.removeIf(stop -> strategy.score(null, query, stop) == 0);
+      assertEquals(expected, actual);
+    }
+  }
+
+  private static List<Stop> randomStops(double lat, double lon, double spread, int count) {
+    Random random = new Random(count);
+    List<Stop> stops = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      double stopLon = lon + (random.nextDouble() - 0.5) * spread * 2;
+      if (stopLon > 180) stopLon -= 360;
+      double stopLat = lat + (random.nextDouble() - 0.5) * spread;
+      String name = "stop " + random.nextInt(5);
+      stops.add(stop(Integer.toString(i), name, stopLat, stopLon));
+    }
+    return stops;
+  }
+
+  private static Stop stop(String id, String name, double lat, double lon) {
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId("a", id));
+    stop.setName(name);
+    stop.setLat(lat);
+    stop.setLon(lon);
+    return stop;
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Trip;
+
+public class FeatureCacheTest {
+
+  private static final Object FEATURE = new Object();
+
+  private final AtomicInteger _computed = new AtomicInteger();
+
+  @Test
+  public void testHitsAndMisses() {
+    FeatureCache cache = new FeatureCache(10);
+    GtfsRelationalDaoImpl daoA = new GtfsRelationalDaoImpl();
+    GtfsRelationalDaoImpl daoB = new GtfsRelationalDaoImpl();
+    Trip trip = trip("t1");
+
+    Object value = cache.get(FEATURE, daoA, trip, this::compute);
+    assertSame(value, cache.get(FEATURE, daoA, trip, this::compute));
+    assertSame(value, cache.get(FEATURE, daoA, trip("t1"), this::compute));
+    assertNotSame(value, cache.get(FEATURE, daoB, trip, this::compute));
+    assertNotSame(value, cache.get(new Object(), daoA, trip, this::compute));
+
+    assertEquals(3, _computed.get());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    FeatureCache cache = new FeatureCache(2);
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Trip a = trip("a");
+    Trip b = trip("b");
+    Trip c = trip("c");
+
+    Object valueA = cache.get(FEATURE, dao, a, this::compute);
+    cache.get(FEATURE, dao, b, this::compute);
+    cache.get(FEATURE, dao, a, this::compute);
+    cache.get(FEATURE, dao, c, this::compute);
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.size());
+
+    assertSame(valueA, cache.get(FEATURE, dao, a, this::compute));
+    cache.get(FEATURE, dao, b, this::compute);
+    assertEquals(4, _computed.get());
+  }
+
+  @Test
+  public void testClear() {
+    FeatureCache cache = new FeatureCache(10);
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Trip trip = trip("t1");
+    cache.get(FEATURE, dao, trip, this::compute);
+    cache.clear();
+    assertEquals(0, cache.size());
+    cache.get(FEATURE, dao, trip, this::compute);
+    assertEquals(2, _computed.get());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  private Object compute(Object dao, Trip trip) {
+    _computed.incrementAndGet();
+    return new Object();
+  }
+
+  private static Trip trip(String id) {
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("a", id));
+    return trip;
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class SortedIntSetTest {
+
+  @Test
+  public void testOf() {
+    SortedIntSet set = SortedIntSet.of(new int[] {5, 3, 5, -1, 3, 9, 0}, 6);
+    assertEquals(List.of(-1, 3, 5, 9), List.copyOf(set));
+    assertEquals(Set.of(-1, 3, 5, 9), set);
+    assertTrue(set.contains(5));
+    assertFalse(set.contains(0));
+    assertFalse(set.contains("5"));
+    assertTrue(SortedIntSet.of(new int[0], 0).isEmpty());
+  }
+
+  @Test
+  public void testCountCommon() {
+    Random random = new Random(42);
+    for (int trial = 0; trial < 100; trial++) {
+      int[] a = randomValues(random);
+      int[] b = randomValues(random);
+      Set<Integer> expected = new HashSet<>();
+      for (int value : a) expected.add(value);
+      Set<Integer> other = new HashSet<>();
+      for (int value : b) other.add(value);
+      expected.retainAll(other);
+
+      SortedIntSet setA = SortedIntSet.of(a, a.length);
+      SortedIntSet setB = SortedIntSet.of(b, b.length);
+      assertEquals(expected.size(), setA.countCommon(setB));
+      assertEquals(expected.size(), setB.countCommon(setA));
+    }
+  }
+
+  private static int[] randomValues(Random random) {
+    int[] values = new int[random.nextInt(50)];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextInt(60);
+    }
+    return values;
+  }
+}
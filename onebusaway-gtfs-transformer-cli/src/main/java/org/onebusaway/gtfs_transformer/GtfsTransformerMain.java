@@ -84,6 +84,10 @@ public class GtfsTransformerMain {
 
   private static final String ARG_OVERWRITE_DUPLICATES = "overwriteDuplicates";
 
+  private static final String ARG_STRATEGY_PARALLELISM = "strategyParallelism";
+
+  private static final String ARG_STRATEGY_REPORT = "strategyReport";
+
   private static final CommandLineParser parser = new PosixParser();
 
   private final Options options = new Options();
@@ -163,6 +167,9 @@ public class GtfsTransformerMain {
     options.addOption(ARG_REMOVE_REPEATED_STOP_TIMES, false, "remove repeated stop times");
     options.addOption(ARG_REMOVE_DUPLICATE_TRIPS, false, "remove duplicate trips");
     options.addOption(ARG_OVERWRITE_DUPLICATES, false, "overwrite duplicate elements");
+    options.addOption(
+        ARG_STRATEGY_PARALLELISM, true, "number of non-conflicting transforms to run at once");
+    options.addOption(ARG_STRATEGY_REPORT, true, "file to write per-transform statistics to");
   }
 
   private void printHelp() throws IOException {
@@ -257,6 +264,14 @@ public class GtfsTransformerMain {
       if (name.equals(ARG_OVERWRITE_DUPLICATES)) {
         transformer.getReader().setOverwriteDuplicates(true);
       }
+
+      if (name.equals(ARG_STRATEGY_PARALLELISM)) {
+        transformer.setStrategyParallelism(Integer.parseInt(option.getValue()));
+      }
+
+      if (name.equals(ARG_STRATEGY_REPORT)) {
+        transformer.setStrategyReport(new File(option.getValue()));
+      }
     }
 
     transformer.run();
@@ -19,8 +19,10 @@ import java.nio.file.Files;
 import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -81,6 +83,12 @@ public class GtfsTransformer {
 
   private String _routeMappingOutputName = "ListOfRoutesInGtfs.txt";
 
+  private int _strategyParallelism = 1;
+
+  private File _strategyReport;
+
+  private final List<StrategyRun> _strategyRuns = new ArrayList<>();
+
   public void setGtfsInputDirectory(File gtfsInputDirectory) {
     setGtfsInputDirectories(Arrays.asList(gtfsInputDirectory));
   }
@@ -93,6 +101,28 @@ public class GtfsTransformer {
     _routeMappingOutputName = routeMappingOutputName;
   }
 
+  /**
+   * Sets how many transform strategies may run at the same time. Strategies run concurrently only
+   * when their {@link GtfsTransformStrategy#getReadEntityTypes() read} and {@link
+   * GtfsTransformStrategy#getWriteEntityTypes() write} sets show that they don't conflict, and
+   * otherwise in the order they were added.
+   *
+   * @param strategyParallelism the number of worker threads, 1 to run strategies one at a time
+   */
+  public void setStrategyParallelism(int strategyParallelism) {
+    if (strategyParallelism < 1)
+      throw new IllegalArgumentException("strategy parallelism must be at least 1");
+    _strategyParallelism = strategyParallelism;
+  }
+
+  /**
+   * Sets where to write the {@link #getStrategyStatistics() statistics} of each strategy after the
+   * strategies have run, as CSV if the file name ends in {@code .csv} and as JSON otherwise.
+   */
+  public void setStrategyReport(File strategyReport) {
+    _strategyReport = strategyReport;
+  }
+
   public void setGtfsReferenceDirectory(File referenceDirectory) {
     _gtfsReferenceDirectory = referenceDirectory;
   }
@@ -150,6 +180,16 @@ public class GtfsTransformer {
     return _transformFactory;
   }
 
+  /**
+   * @return the statistics of each strategy that has run to completion, in the order the strategies
+   *     were added
+   */
+  public List<StrategyStatistics> getStrategyStatistics() {
+    synchronized (_strategyRuns) {
+      return _strategyRuns.stream().map(StrategyRun::statistics).toList();
+    }
+  }
+
   public void run() throws Exception {
 
     if (_outputDirectory != null
@@ -173,6 +213,9 @@ public class GtfsTransformer {
     _context.setReader(_reader);
 
     updateGtfs();
+    if (_strategyReport != null) {
+      StrategyReportWriter.write(getStrategyStatistics(), _strategyReport);
+    }
     writeGtfs();
     if (_writeZoneRouteMapping) {
       writeRoutes();
@@ -232,24 +275,46 @@ public class GtfsTransformer {
   }
 
   private void updateGtfs() {
-    for (GtfsTransformStrategy strategy : _transformStrategies) {
-      String strategyName = strategy.toString();
+    if (_strategyParallelism > 1) {
       try {
-        strategyName = strategy.getName();
-      } catch (AbstractMethodError _) {
-        _log.info("(AbstractMethodError) strategy " + strategy + " does not support getName");
-      }
-      _log.info("Running strategy {} ....", strategyName);
-      try {
-        strategy.run(_context, _dao);
-      } catch (Throwable t) {
-        _log.error("Exception in strategy (v1) " + strategyName, t);
-        throw new RuntimeException(t);
+        new StrategyScheduler(_transformStrategies).run(_strategyParallelism, this::runStrategy);
+      } finally {
+        // Strategies that ran at the same time may have completed in any order
+        Map<GtfsTransformStrategy, Integer> positions = new IdentityHashMap<>();
+        for (int i = _transformStrategies.size() - 1; i >= 0; i--) {
+          positions.put(_transformStrategies.get(i), i);
+        }
+        _strategyRuns.sort(Comparator.comparing(run -> positions.get(run.strategy())));
       }
-      _log.info("Strategy {} complete.", strategyName);
+      return;
+    }
+    for (GtfsTransformStrategy strategy : _transformStrategies) {
+      runStrategy(strategy);
     }
   }
 
+  private void runStrategy(GtfsTransformStrategy strategy) {
+    String strategyName = strategy.toString();
+    try {
+      strategyName = strategy.getName();
+    } catch (AbstractMethodError _) {
+      _log.info("(AbstractMethodError) strategy " + strategy + " does not support getName");
+    }
+    _log.info("Running strategy {} ....", strategyName);
+    StrategyProfiler profiler = StrategyProfiler.start(strategyName, _dao);
+    try {
+      strategy.run(_context, _dao);
+    } catch (Throwable t) {
+      _log.error("Exception in strategy (v1) " + strategyName, t);
+      throw new RuntimeException(t);
+    }
+    StrategyStatistics statistics = profiler.stop();
+    synchronized (_strategyRuns) {
+      _strategyRuns.add(new StrategyRun(strategy, statistics));
+    }
+    _log.info("Strategy {} complete: {}", strategyName, statistics);
+  }
+
   private void writeGtfs() throws IOException {
     if (_outputDirectory == null) {
       return;
@@ -280,6 +345,8 @@ public class GtfsTransformer {
     _routeWriter.run(_dao);
   }
 
+  private record StrategyRun(GtfsTransformStrategy strategy, StrategyStatistics statistics) {}
+
   private class DaoInterceptor extends GenericMutableDaoWrapper {
 
     public DaoInterceptor(GenericMutableDao source) {
@@ -0,0 +1,153 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.onebusaway.gtfs.impl.GenericDaoImpl;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.serialization.GtfsEntitySchemaFactory;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+
+/**
+ * Measures one run of a transform strategy, on the thread that runs it, as {@link
+ * StrategyStatistics}. Each run is also a {@link StrategyEvent} for Java Flight Recorder, which
+ * costs next to nothing unless a recording is enabled.
+ */
+class StrategyProfiler {
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final String _name;
+
+  private final GtfsRelationalDao _dao;
+
+  private final Map<Class<?>, Integer> _entityCounts;
+
+  private final StrategyEvent _event = new StrategyEvent();
+
+  private final long _wallTime;
+
+  private final long _cpuTime;
+
+  private final long _allocatedBytes;
+
+  private StrategyProfiler(String name, GtfsRelationalDao dao) {
+    _name = name;
+    _dao = dao;
+    _entityCounts = countEntities(dao);
+    _event.name = name;
+    _event.begin();
+    _cpuTime = getCpuTime();
+    _allocatedBytes = getAllocatedBytes();
+    _wallTime = System.nanoTime();
+  }
+
+  static StrategyProfiler start(String name, GtfsRelationalDao dao) {
+    return new StrategyProfiler(name, dao);
+  }
+
+  StrategyStatistics stop() {
+    long wallTime = System.nanoTime() - _wallTime;
+    long cpuTime = _cpuTime < 0 ? -1 : getCpuTime() - _cpuTime;
+    long allocatedBytes = _allocatedBytes < 0 ? -1 : getAllocatedBytes() - _allocatedBytes;
+    _event.end();
+
+    Map<Class<?>, Integer> entityCounts = countEntities(_dao);
+    Set<Class<?>> types = new LinkedHashSet<>(_entityCounts.keySet());
+    types.addAll(entityCounts.keySet());
+    Map<Class<?>, Long> changes = new LinkedHashMap<>();
+    long totalChange = 0;
+    for (Class<?> type : types) {
+      long change = (long) entityCounts.getOrDefault(type, 0) - _entityCounts.getOrDefault(type, 0);
+      if (change != 0) {
+        changes.put(type, change);
+        totalChange += change;
+      }
+    }
+
+    if (_event.shouldCommit()) {
+      _event.cpuTime = cpuTime;
+      _event.allocatedBytes = allocatedBytes;
+      _event.entityCountChange = totalChange;
+      _event.commit();
+    }
+    return new StrategyStatistics(_name, wallTime, cpuTime, allocatedBytes, changes);
+  }
+
+  private static Map<Class<?>, Integer> countEntities(GtfsRelationalDao dao) {
+    Set<Class<?>> types = new LinkedHashSet<>(GtfsEntitySchemaFactory.getEntityClasses());
+    if (dao instanceof GenericDaoImpl generic) {
+      types.addAll(generic.getEntityClasses());
+    }
+    Map<Class<?>, Integer> counts = new LinkedHashMap<>();
+    for (Class<?> type : types) {
+      // Packed stop times and shape points aren't stored by id
+      Collection<?> entities =
+          type == StopTime.class
+              ? dao.getAllStopTimes()
+              : type == ShapePoint.class
+                  ? dao.getAllShapePoints()
+                  : dao.getAllEntitiesForType(type);
+      counts.put(type, entities.size());
+    }
+    return counts;
+  }
+
+  private static long getCpuTime() {
+    if (!THREADS.isCurrentThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled()) {
+      return -1;
+    }
+    return THREADS.getCurrentThreadCpuTime();
+  }
+
+  private static long getAllocatedBytes() {
+    if (THREADS instanceof com.sun.management.ThreadMXBean threads
+        && threads.isThreadAllocatedMemorySupported()
+        && threads.isThreadAllocatedMemoryEnabled()) {
+      return threads.getCurrentThreadAllocatedBytes();
+    }
+    return -1;
+  }
+
+  @Name("org.onebusaway.gtfs_transformer.Strategy")
+  @Label("GTFS Transform Strategy")
+  @Category("OneBusAway")
+  @StackTrace(false)
+  static class StrategyEvent extends Event {
+
+    @Label("Strategy")
+    String name;
+
+    @Label("CPU Time (ns)")
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Entity Count Change")
+    long entityCountChange;
+  }
+}
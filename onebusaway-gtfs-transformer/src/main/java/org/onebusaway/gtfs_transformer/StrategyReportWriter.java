@@ -0,0 +1,87 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.onebusaway.csv_entities.CSVLibrary;
+
+/** Writes {@link StrategyStatistics} as CSV, one row per strategy, or as a JSON array. */
+class StrategyReportWriter {
+
+  private static final String CSV_HEADER =
+      "strategy,wall_time_ns,cpu_time_ns,allocated_bytes,entity_count_changes";
+
+  static void write(List<StrategyStatistics> statistics, File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.exists()) {
+      parent.mkdirs();
+    }
+    try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      if (file.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+        writeCsv(statistics, writer);
+      } else {
+        writer.write(toJson(statistics).toString(2));
+        writer.newLine();
+      }
+    }
+  }
+
+  static JSONArray toJson(List<StrategyStatistics> statistics) {
+    JSONArray array = new JSONArray();
+    for (StrategyStatistics s : statistics) {
+      JSONObject changes = new JSONObject();
+      for (Map.Entry<Class<?>, Long> entry : s.getEntityCountChanges().entrySet()) {
+        changes.put(entry.getKey().getSimpleName(), entry.getValue().longValue());
+      }
+      JSONObject object = new JSONObject();
+      object.put("strategy", s.getName());
+      object.put("wallTimeNanos", s.getWallTimeNanos());
+      object.put("cpuTimeNanos", s.getCpuTimeNanos());
+      object.put("allocatedBytes", s.getAllocatedBytes());
+      object.put("entityCountChanges", changes);
+      array.put(object);
+    }
+    return array;
+  }
+
+  private static void writeCsv(List<StrategyStatistics> statistics, BufferedWriter writer)
+      throws IOException {
+    writer.write(CSV_HEADER);
+    writer.newLine();
+    for (StrategyStatistics s : statistics) {
+      StringBuilder changes = new StringBuilder();
+      for (Map.Entry<Class<?>, Long> entry : s.getEntityCountChanges().entrySet()) {
+        if (!changes.isEmpty()) {
+          changes.append(' ');
+        }
+        changes.append(entry.getKey().getSimpleName()).append('=').append(entry.getValue());
+      }
+      writer.write(
+          CSVLibrary.getAsCSV(
+              s.getName(),
+              s.getWallTimeNanos(),
+              s.getCpuTimeNanos(),
+              s.getAllocatedBytes(),
+              changes));
+      writer.newLine();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.onebusaway.gtfs_transformer.services.GtfsTransformStrategy;
+
+/**
+ * Runs transform strategies on a pool of threads. Each strategy starts once every strategy
+ * configured before it that it conflicts with is done, so strategies that write the same entity
+ * types, or that read what another one writes, still run in the configured order. A strategy that
+ * doesn't declare its read and write sets conflicts with every other one.
+ *
+ * <p>Once a strategy fails, no further strategy is started, and the failure of the first failing
+ * strategy in configured order is rethrown after the running ones are done.
+ */
+class StrategyScheduler {
+
+  private final List<GtfsTransformStrategy> _strategies;
+
+  private final List<List<Integer>> _dependencies;
+
+  StrategyScheduler(List<GtfsTransformStrategy> strategies) {
+    _strategies = strategies;
+    _dependencies = new ArrayList<>();
+    for (int i = 0; i < strategies.size(); i++) {
+      List<Integer> dependencies = new ArrayList<>();
+      for (int j = 0; j < i; j++) {
+        if (isConflicting(strategies.get(j), strategies.get(i))) {
+          dependencies.add(j);
+        }
+      }
+      _dependencies.add(dependencies);
+    }
+  }
+
+  /**
+   * @return the indices of the earlier strategies that the strategy at the index has to wait for
+   */
+  List<Integer> getDependencies(int index) {
+    return Collections.unmodifiableList(_dependencies.get(index));
+  }
+
+  void run(int parallelism, Consumer<GtfsTransformStrategy> runner) {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    AtomicBoolean failed = new AtomicBoolean(false);
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    try {
+      for (int i = 0; i < _strategies.size(); i++) {
+        GtfsTransformStrategy strategy = _strategies.get(i);
+        CompletableFuture<?>[] dependencies =
+            _dependencies.get(i).stream().map(done::get).toArray(CompletableFuture[]::new);
+        done.add(
+            CompletableFuture.allOf(dependencies)
+                .thenRunAsync(
+                    () -> {
+                      if (failed.get()) {
+                        return;
+                      }
+                      try {
+                        runner.accept(strategy);
+                      } catch (RuntimeException | Error ex) {
+                        failed.set(true);
+                        throw ex;
+                      }
+                    },
+                    executor));
+      }
+
+      Throwable failure = null;
+      for (CompletableFuture<Void> future : done) {
+        try {
+          future.join();
+        } catch (CompletionException ex) {
+          // Strategies that depend on a failed one fail the same way, but come after it
+          if (failure == null) {
+            failure = ex.getCause();
+          }
+        }
+      }
+      if (failure instanceof RuntimeException ex) {
+        throw ex;
+      } else if (failure instanceof Error error) {
+        throw error;
+      } else if (failure != null) {
+        throw new IllegalStateException(failure);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @return true if the strategies have to run one after the other, as one might write entities
+   *     that the other reads or writes
+   */
+  static boolean isConflicting(GtfsTransformStrategy a, GtfsTransformStrategy b) {
+    Set<Class<?>> writesA = a.getWriteEntityTypes();
+    Set<Class<?>> writesB = b.getWriteEntityTypes();
+    return overlap(writesA, b.getReadEntityTypes())
+        || overlap(writesA, writesB)
+        || overlap(writesB, a.getReadEntityTypes());
+  }
+
+  /**
+   * @param a a set of types, or null for all types
+   * @param b a set of types, or null for all types
+   */
+  private static boolean overlap(Set<Class<?>> a, Set<Class<?>> b) {
+    if (a == null) {
+      return b == null || !b.isEmpty();
+    }
+    if (b == null) {
+      return !a.isEmpty();
+    }
+    return !Collections.disjoint(a, b);
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** What running one transform strategy cost, and how it changed the number of entities. */
+public final class StrategyStatistics {
+
+  private final String _name;
+
+  private final long _wallTimeNanos;
+
+  private final long _cpuTimeNanos;
+
+  private final long _allocatedBytes;
+
+  private final Map<Class<?>, Long> _entityCountChanges;
+
+  public StrategyStatistics(
+      String name,
+      long wallTimeNanos,
+      long cpuTimeNanos,
+      long allocatedBytes,
+      Map<Class<?>, Long> entityCountChanges) {
+    _name = name;
+    _wallTimeNanos = wallTimeNanos;
+    _cpuTimeNanos = cpuTimeNanos;
+    _allocatedBytes = allocatedBytes;
+    _entityCountChanges = Collections.unmodifiableMap(entityCountChanges);
+  }
+
+  /**
+   * @return the name of the strategy
+   */
+  public String getName() {
+    return _name;
+  }
+
+  public long getWallTimeNanos() {
+    return _wallTimeNanos;
+  }
+
+  /**
+   * @return the CPU time used by the thread that ran the strategy, not counting any threads the
+   *     strategy started itself, or -1 if the JVM doesn't measure it
+   */
+  public long getCpuTimeNanos() {
+    return _cpuTimeNanos;
+  }
+
+  /**
+   * @return the bytes allocated by the thread that ran the strategy, or -1 if the JVM doesn't
+   *     measure them
+   */
+  public long getAllocatedBytes() {
+    return _allocatedBytes;
+  }
+
+  /**
+   * @return by how much the strategy changed the number of entities of each type, for the types
+   *     whose number changed. Strategies that ran at the same time see each other's changes.
+   */
+  public Map<Class<?>, Long> getEntityCountChanges() {
+    return _entityCountChanges;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder b = new StringBuilder(_name);
+    b.append(" wallTime=").append(TimeUnit.NANOSECONDS.toMillis(_wallTimeNanos)).append("ms");
+    if (_cpuTimeNanos >= 0) {
+      b.append(" cpuTime=").append(TimeUnit.NANOSECONDS.toMillis(_cpuTimeNanos)).append("ms");
+    }
+    if (_allocatedBytes >= 0) {
+      b.append(" allocated=").append(_allocatedBytes / (1024 * 1024)).append("MB");
+    }
+    for (Map.Entry<Class<?>, Long> entry : _entityCountChanges.entrySet()) {
+      b.append(' ').append(entry.getKey().getSimpleName()).append('=');
+      if (entry.getValue() > 0) {
+        b.append('+');
+      }
+      b.append(entry.getValue());
+    }
+    return b.toString();
+  }
+}
@@ -13,6 +13,7 @@
  */
 package org.onebusaway.gtfs_transformer.deferred;
 
+import java.util.regex.Pattern;
 import org.apache.commons.beanutils2.Converter;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.IdentityBean;
@@ -25,6 +26,9 @@ public class DeferredValueMatcher implements ValueMatcher {
 
   private final Object _value;
 
+  /** The compiled {@code m/.../} expression of the value, or null if it isn't one */
+  private final Pattern _pattern;
+
   private Object _resolvedValue = null;
 
   private boolean _resolvedValueSet = false;
@@ -32,6 +36,8 @@ public class DeferredValueMatcher implements ValueMatcher {
   public DeferredValueMatcher(GtfsReader reader, EntitySchemaCache schemaCache, Object value) {
     _support = new DeferredValueSupport(reader, schemaCache);
     _value = value;
+    _pattern =
+        value instanceof String s && isRegex(s) ? Pattern.compile(getRegexFromPattern(s)) : null;
   }
 
   public boolean matches(Class<?> parentEntityType, String propertyName, Object value) {
@@ -46,8 +52,8 @@ public class DeferredValueMatcher implements ValueMatcher {
     Class<?> expectedValueType = value.getClass();
     Class<?> actualValueType = _value.getClass();
     if (expectedValueType.isAssignableFrom(actualValueType)) {
-      if (isRegexObj(_value)) {
-        return regexMatch((String) value, ((String) _value));
+      if (_pattern != null) {
+        return _pattern.matcher((String) value).matches();
       }
       return value.equals(_value);
     }
@@ -55,8 +61,8 @@ public class DeferredValueMatcher implements ValueMatcher {
       String actualValue = (String) _value;
       if (expectedValueType == AgencyAndId.class) {
         AgencyAndId expectedId = (AgencyAndId) value;
-        if (isRegexObj(_value)) {
-          return regexMatch(expectedId.getId(), actualValue);
+        if (_pattern != null) {
+          return _pattern.matcher(expectedId.getId()).matches();
         }
         return expectedId.getId().equals(actualValue);
       } else if (IdentityBean.class.isAssignableFrom(expectedValueType)) {
@@ -93,26 +99,25 @@ public class DeferredValueMatcher implements ValueMatcher {
             + "\" for value comparison");
   }
 
-  private Boolean isRegexObj = null;
-
-  private boolean isRegexObj(Object value) {
-    if (isRegexObj == null) {
-      isRegexObj = (_value instanceof String s && isRegex(s));
+  /**
+   * @return the string that values must be equal to, or have as their id, for this matcher to match
+   *     them, or null if it matches values some other way, such as with a regular expression
+   */
+  public String getExactValue() {
+    if (_resolvedValueSet
+        || !(_value instanceof String value)
+        || value.isEmpty()
+        || _pattern != null) {
+      return null;
     }
-    return isRegexObj;
+    return value;
   }
 
-  private boolean isRegex(String pattern) {
-    return pattern.startsWith("m/") && pattern.endsWith("/");
+  private static boolean isRegex(String pattern) {
+    return pattern.length() > 2 && pattern.startsWith("m/") && pattern.endsWith("/");
   }
 
-  private String getRegexFromPattern(String pattern) {
+  private static String getRegexFromPattern(String pattern) {
     return pattern.substring(2, pattern.length() - 1);
   }
-
-  private boolean regexMatch(String value, String pattern) {
-    String regexPattern = getRegexFromPattern(pattern);
-    boolean rc = value.matches(regexPattern);
-    return rc;
-  }
 }
@@ -19,6 +19,7 @@ import java.util.List;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs_transformer.collections.IdKey;
 import org.onebusaway.gtfs_transformer.collections.IdKeyMatch;
+import org.onebusaway.gtfs_transformer.impl.RemoveEntityUpdateStrategy;
 import org.onebusaway.gtfs_transformer.match.TypedEntityMatch;
 import org.onebusaway.gtfs_transformer.services.EntityTransformStrategy;
 import org.onebusaway.gtfs_transformer.services.GtfsTransformStrategy;
@@ -44,24 +45,76 @@ public class EntitiesTransformStrategy implements GtfsTransformStrategy {
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
-    for (MatchAndTransform modification : _modifications) {
+    MatchPlanner planner = new MatchPlanner(dao);
+
+    for (int i = 0; i < _modifications.size(); ) {
+      MatchAndTransform modification = _modifications.get(i);
       TypedEntityMatch match = modification.getMatch();
       Class<?> entityType = match.getType();
       EntityTransformStrategy transform = modification.getTransform();
       if (IdKey.class.isAssignableFrom(entityType)) {
         IdKeyMatch keyMatch = (IdKeyMatch) match.getPropertyMatches();
         transform.run(context, dao, keyMatch.getKey());
-      } else {
-        Collection<Object> entities = new ArrayList<>(dao.getAllEntitiesForType(entityType));
-        for (Object object : entities) {
+        planner.invalidate();
+        i++;
+        continue;
+      }
+
+      List<Object> candidates = planner.getCandidates(match);
+      if (transform instanceof RemoveEntityUpdateStrategy remove) {
+        // Removed together, as each removal of a packed stop time would renumber the others
+        if (candidates == null) {
+          candidates = new ArrayList<>(dao.getAllEntitiesForType(entityType));
+        }
+        List<Object> matches = new ArrayList<>();
+        for (Object object : candidates) {
+          if (match.isApplicableToObject(object)) {
+            matches.add(object);
+          }
+        }
+        remove.runAll(context, dao, matches);
+        planner.invalidate();
+        i++;
+        continue;
+      }
+      if (candidates != null) {
+        for (Object object : candidates) {
           if (match.isApplicableToObject(object)) {
-            transform.run(context, dao, object);
+            planner.run(context, transform, object);
           }
         }
+        i++;
+        continue;
       }
+
+      // Entity-local modifications that follow each other can share a single pass over the
+      // entities, as running them one entity at a time gives the same result
+      int end = i + 1;
+      if (MatchPlanner.isEntityLocal(transform)) {
+        while (end < _modifications.size() && isBatchable(planner, entityType, end)) {
+          end++;
+        }
+      }
+      List<MatchAndTransform> batch = _modifications.subList(i, end);
+      Collection<Object> entities = new ArrayList<>(dao.getAllEntitiesForType(entityType));
+      for (Object object : entities) {
+        for (MatchAndTransform m : batch) {
+          if (m.getMatch().isApplicableToObject(object)) {
+            planner.run(context, m.getTransform(), object);
+          }
+        }
+      }
+      i = end;
     }
   }
 
+  private boolean isBatchable(MatchPlanner planner, Class<?> entityType, int index) {
+    MatchAndTransform modification = _modifications.get(index);
+    return modification.getMatch().getType() == entityType
+        && MatchPlanner.isEntityLocal(modification.getTransform())
+        && !planner.isIndexed(modification.getMatch());
+  }
+
   public static class MatchAndTransform {
     private final TypedEntityMatch match;
     private final EntityTransformStrategy transform;
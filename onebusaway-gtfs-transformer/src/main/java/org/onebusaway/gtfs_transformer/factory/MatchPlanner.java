@@ -0,0 +1,249 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer.factory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.onebusaway.collections.beans.PropertyPathExpression;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
+import org.onebusaway.gtfs_transformer.deferred.DeferredValueMatcher;
+import org.onebusaway.gtfs_transformer.deferred.DeferredValueSetter;
+import org.onebusaway.gtfs_transformer.deferred.ValueSetter;
+import org.onebusaway.gtfs_transformer.impl.SimpleModificationStrategy;
+import org.onebusaway.gtfs_transformer.impl.StringModificationStrategy;
+import org.onebusaway.gtfs_transformer.match.EntityMatch;
+import org.onebusaway.gtfs_transformer.match.EntityMatchCollection;
+import org.onebusaway.gtfs_transformer.match.PropertyValueEntityMatch;
+import org.onebusaway.gtfs_transformer.match.TypedEntityMatch;
+import org.onebusaway.gtfs_transformer.services.EntityTransformStrategy;
+import org.onebusaway.gtfs_transformer.services.TransformContext;
+
+/**
+ * Finds the entities a match might apply to during one run of an {@link EntitiesTransformStrategy},
+ * without looking at every entity of the type when it can.
+ *
+ * <p>A match that requires a property to equal a plain value, such as {@code
+ * {"file":"trips.txt","trip_id":"t1"}}, can only apply to the entities with that value, or with a
+ * value with that id, which an index of the property finds. Indices are built on first use and kept
+ * up to date as entity-local transforms (see {@link #isEntityLocal(EntityTransformStrategy)})
+ * change entities. Any other transform, such as a removal, might add, remove or replace entities of
+ * any type, so it drops all indices.
+ *
+ * <p>The candidates are a superset of the entities the match applies to, in the order of the dao,
+ * and still have to be checked against the full match.
+ */
+class MatchPlanner {
+
+  /** The key of values that an index can't tell apart the way {@link DeferredValueMatcher} does */
+  private static final Object UNINDEXABLE = new Object();
+
+  private final GtfsMutableRelationalDao _dao;
+
+  /** Indices by type and property path, or null if the property can't be indexed */
+  private final Map<IndexId, PropertyIndex> _indices = new HashMap<>();
+
+  MatchPlanner(GtfsMutableRelationalDao dao) {
+    _dao = dao;
+  }
+
+  /**
+   * @return true if {@link #getCandidates(TypedEntityMatch)} finds candidates for the match without
+   *     looking at every entity of its type
+   */
+  boolean isIndexed(TypedEntityMatch match) {
+    return getCandidates(match) != null;
+  }
+
+  /**
+   * @return the entities the match might apply to, or null if only looking at every entity of its
+   *     type can tell
+   */
+  List<Object> getCandidates(TypedEntityMatch match) {
+    if (!(match.getPropertyMatches() instanceof EntityMatchCollection collection)) {
+      return null;
+    }
+    for (EntityMatch propertyMatch : collection.getMatches()) {
+      if (!(propertyMatch instanceof PropertyValueEntityMatch valueMatch)
+          || !(valueMatch.getMatcher() instanceof DeferredValueMatcher matcher)) {
+        continue;
+      }
+      String value = matcher.getExactValue();
+      PropertyPathExpression expression = valueMatch.getExpression();
+      if (value == null || expression.getPath().indexOf('.') >= 0) {
+        continue;
+      }
+      IndexId id = new IndexId(match.getType(), expression.getPath());
+      if (!_indices.containsKey(id)) {
+        _indices.put(id, PropertyIndex.build(_dao.getAllEntitiesForType(id.type()), expression));
+      }
+      PropertyIndex index = _indices.get(id);
+      if (index != null) {
+        return index.get(value);
+      }
+    }
+    return null;
+  }
+
+  /** Runs a transform on an entity, keeping the indices up to date. */
+  void run(TransformContext context, EntityTransformStrategy transform, Object entity) {
+    if (!isEntityLocal(transform)) {
+      transform.run(context, _dao, entity);
+      invalidate();
+      return;
+    }
+    // Indices of other types might be keyed by the id of the entity
+    String id = entity instanceof IdentityBean<?> bean ? Objects.toString(bean.getId()) : null;
+    transform.run(context, _dao, entity);
+    if (entity instanceof IdentityBean<?> bean && !Objects.toString(bean.getId()).equals(id)) {
+      invalidate();
+      return;
+    }
+    // An index that can't hold the new value is built again, and found unusable, on next use
+    _indices.values().removeIf(index -> index != null && !index.update(entity));
+  }
+
+  /** Drops all indices, after entities might have been added, removed or replaced. */
+  void invalidate() {
+    _indices.clear();
+  }
+
+  /**
+   * @return true if the transform only changes the entity it runs on, by setting its properties to
+   *     values that don't depend on other entities of its type, so it never adds or removes
+   *     entities, and running it on several entities gives the same result in any order
+   */
+  static boolean isEntityLocal(EntityTransformStrategy transform) {
+    if (transform instanceof StringModificationStrategy) {
+      return true;
+    }
+    if (transform instanceof SimpleModificationStrategy modification) {
+      // Other setters read other entities, or modify ids that entities share in place
+      for (ValueSetter setter : modification.getPropertyUpdates().values()) {
+        if (!(setter instanceof DeferredValueSetter)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the key a value is matched by an exact value by {@link DeferredValueMatcher}, null if
+   *     no exact value matches it, or {@link #UNINDEXABLE}
+   */
+  private static Object getKey(Object value) {
+    if (value == null || value instanceof String) {
+      return value;
+    }
+    if (value instanceof AgencyAndId id) {
+      return id.getId() != null ? id.getId() : UNINDEXABLE;
+    }
+    if (value instanceof IdentityBean<?> bean) {
+      Object id = bean.getId();
+      if (id == null || id instanceof String) {
+        return id;
+      }
+      if (id instanceof AgencyAndId fullId && fullId.getId() != null) {
+        return fullId.getId();
+      }
+    }
+    return UNINDEXABLE;
+  }
+
+  private record IndexId(Class<?> type, String path) {}
+
+  private static final class PropertyIndex {
+
+    private final PropertyPathExpression _expression;
+
+    private final Map<Object, List<Object>> _entitiesByKey = new HashMap<>();
+
+    private final Map<Object, Object> _keysByEntity = new IdentityHashMap<>();
+
+    /** The position of each entity in the dao, to return candidates in the same order */
+    private final Map<Object, Integer> _positions = new IdentityHashMap<>();
+
+    private PropertyIndex(PropertyPathExpression expression) {
+      _expression = expression;
+    }
+
+    /**
+     * @return the index, or null if some entity has a value that can't be indexed
+     */
+    static PropertyIndex build(Collection<?> entities, PropertyPathExpression expression) {
+      PropertyIndex index = new PropertyIndex(expression);
+      for (Object entity : entities) {
+        index._positions.put(entity, index._positions.size());
+        if (!index.add(entity)) {
+          return null;
+        }
+      }
+      return index;
+    }
+
+    List<Object> get(String key) {
+      List<Object> entities = _entitiesByKey.get(key);
+      if (entities == null) {
+        return Collections.emptyList();
+      }
+      List<Object> candidates = new ArrayList<>(entities);
+      candidates.sort(Comparator.comparing(_positions::get));
+      return candidates;
+    }
+
+    /**
+     * @return false if the new value of the entity can't be indexed
+     */
+    boolean update(Object entity) {
+      if (!_positions.containsKey(entity)) {
+        return true;
+      }
+      Object key = _keysByEntity.remove(entity);
+      if (key != null) {
+        List<Object> entities = _entitiesByKey.get(key);
+        entities.removeIf(e -> e == entity);
+        if (entities.isEmpty()) {
+          _entitiesByKey.remove(key);
+        }
+      }
+      return add(entity);
+    }
+
+    private boolean add(Object entity) {
+      Object key;
+      try {
+        key = getKey(_expression.invoke(entity));
+      } catch (IllegalStateException ex) {
+        // Matching the entity fails the same way
+        return false;
+      }
+      if (key == UNINDEXABLE) {
+        return false;
+      }
+      if (key != null) {
+        _entitiesByKey.computeIfAbsent(key, _ -> new ArrayList<>(1)).add(entity);
+        _keysByEntity.put(entity, key);
+      }
+      return true;
+    }
+  }
+}
@@ -13,13 +13,11 @@
  */
 package org.onebusaway.gtfs_transformer.factory;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.onebusaway.gtfs.model.IdentityBean;
 import org.onebusaway.gtfs.serialization.GtfsEntitySchemaFactory;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs_transformer.collections.IdKey;
@@ -54,7 +52,6 @@ public class RetainEntitiesTransformStrategy implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
@@ -92,8 +89,7 @@ public class RetainEntitiesTransformStrategy implements GtfsTransformStrategy {
       for (Object entity : dao.getAllEntitiesForType(entityClass)) {
         if (!graph.isRetained(entity)) objectsToRemove.add(entity);
       }
-      for (Object toRemove : objectsToRemove)
-        dao.removeEntity((IdentityBean<Serializable>) toRemove);
+      dao.removeEntities(objectsToRemove);
     }
   }
 
@@ -67,6 +67,11 @@ public class AnomalyCheckFutureTripCounts implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
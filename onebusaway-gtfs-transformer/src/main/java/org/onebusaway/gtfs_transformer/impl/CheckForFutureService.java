@@ -14,6 +14,7 @@
 package org.onebusaway.gtfs_transformer.impl;
 
 import java.util.Date;
+import java.util.Set;
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
 import org.onebusaway.gtfs.model.*;
 import org.onebusaway.gtfs.model.calendar.ServiceDate;
@@ -41,6 +42,11 @@ public class CheckForFutureService implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
@@ -37,6 +37,11 @@ public class CheckForLengthyRouteNames implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
     //        this is inneficient, but if there are ever so many routes or a route
@@ -117,8 +117,6 @@ public class CheckForPlausibleStopTimes implements GtfsTransformStrategy {
               + collectedRemoveString.substring(2);
       _log.info(collectedRemoveString);
     }
-    for (Trip trip : stopsRemove) {
-      removeEntityLibrary.removeTrip(dao, trip);
-    }
+    removeEntityLibrary.removeTrips(dao, stopsRemove);
   }
 }
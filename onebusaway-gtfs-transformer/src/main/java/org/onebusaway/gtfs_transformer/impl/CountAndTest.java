@@ -32,6 +32,11 @@ public class CountAndTest implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
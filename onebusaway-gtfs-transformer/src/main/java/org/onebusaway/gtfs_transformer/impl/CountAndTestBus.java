@@ -34,6 +34,11 @@ public class CountAndTestBus implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
     GtfsMutableRelationalDao reference =
@@ -207,7 +212,8 @@ public class CountAndTestBus implements GtfsTransformStrategy {
     }
 
     _log.info(
-        "ATIS Trips: {}, Reference: {}, match: {}, In ref NotInATIS: {}, In ref NotInATIS Sdon: {}, In ref NotInATIS not Sdon is H9: {}, Current Service: {}",
+        "ATIS Trips: {}, Reference: {}, match: {}, In ref NotInATIS: {}, In ref NotInATIS Sdon: {},"
+            + " In ref NotInATIS not Sdon is H9: {}, Current Service: {}",
         dao.getAllTrips().size(),
         reference.getAllTrips().size(),
         matches,
@@ -216,13 +222,15 @@ public class CountAndTestBus implements GtfsTransformStrategy {
         refTripsWoutSdonWithh9,
         curSerTrips);
     _log.info(
-        "ATIS Trips this week {}, Reference trips this week {}, ATIS Trips this week that are also Reference Trips this week {}",
+        "ATIS Trips this week {}, Reference trips this week {}, ATIS Trips this week that are also"
+            + " Reference Trips this week {}",
         atisTripsThisWeek,
         refTripsThisWeek,
         matchingTripsThisWeek);
     _log.info("Matches this week {}", matchingTripsThisWeek);
     _log.info(
-        "This week matches: {}. This week doesn't match {}, in ref NotInATIS Sdon: {}, In ref NotInATIS not Sdon is A9: {}, B9: {} E9: {}, H9: {}, Leftover: {}",
+        "This week matches: {}. This week doesn't match {}, in ref NotInATIS Sdon: {}, In ref"
+            + " NotInATIS not Sdon is A9: {}, B9: {} E9: {}, H9: {}, Leftover: {}",
         matchingTripsThisWeek,
         doesntMatchThisWeek,
         refTripsThisWeekWithSdon,
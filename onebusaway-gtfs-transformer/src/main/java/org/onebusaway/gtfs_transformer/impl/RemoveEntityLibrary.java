@@ -13,6 +13,10 @@
  */
 package org.onebusaway.gtfs_transformer.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.FeedInfo;
@@ -26,22 +30,60 @@ import org.onebusaway.gtfs.model.Transfer;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 
+/**
+ * Removes entities along with the entities that depend on them. The methods that take a batch of
+ * entities work out everything to remove first and then remove it one entity type at a time, with
+ * {@link GtfsMutableRelationalDao#removeEntities(Collection)}, which also removes packed stop
+ * times. Prefer them to removing entities one at a time in a loop, which with packed stop times
+ * compacts the stop times once per entity.
+ */
 public class RemoveEntityLibrary {
 
   public void removeAgency(GtfsMutableRelationalDao dao, Agency agency) {
-    for (Route route : dao.getRoutesForAgency(agency)) removeRoute(dao, route);
-    dao.removeEntity(agency);
+    removeAgencies(dao, List.of(agency));
+  }
+
+  public void removeAgencies(GtfsMutableRelationalDao dao, Collection<Agency> agencies) {
+    List<Route> routes = new ArrayList<>();
+    for (Agency agency : agencies) routes.addAll(dao.getRoutesForAgency(agency));
+    removeRoutes(dao, routes);
+    dao.removeEntities(agencies);
   }
 
   public void removeRoute(GtfsMutableRelationalDao dao, Route route) {
-    for (Trip trip : dao.getTripsForRoute(route)) removeTrip(dao, trip);
-    dao.removeEntity(route);
+    removeRoutes(dao, List.of(route));
+  }
+
+  public void removeRoutes(GtfsMutableRelationalDao dao, Collection<Route> routes) {
+    List<Trip> trips = new ArrayList<>();
+    for (Route route : routes) trips.addAll(dao.getTripsForRoute(route));
+    removeTrips(dao, trips);
+    dao.removeEntities(routes);
   }
 
   public void removeTrip(GtfsMutableRelationalDao dao, Trip trip) {
-    for (StopTime stopTime : dao.getStopTimesForTrip(trip)) removeStopTime(dao, stopTime);
-    for (Frequency frequency : dao.getFrequenciesForTrip(trip)) removeFrequency(dao, frequency);
-    dao.removeEntity(trip);
+    removeTrips(dao, List.of(trip));
+  }
+
+  public void removeTrips(GtfsMutableRelationalDao dao, Collection<Trip> trips) {
+    List<StopTime> stopTimes = new ArrayList<>();
+    List<Frequency> frequencies = new ArrayList<>();
+    for (Trip trip : trips) {
+      stopTimes.addAll(dao.getStopTimesForTrip(trip));
+      frequencies.addAll(dao.getFrequenciesForTrip(trip));
+    }
+    dao.removeEntities(stopTimes);
+    dao.removeEntities(frequencies);
+    dao.removeEntities(trips);
+  }
+
+  /** Removes the trips that match the predicate, along with their stop times and frequencies. */
+  public void removeTrips(GtfsMutableRelationalDao dao, Predicate<? super Trip> predicate) {
+    List<Trip> trips = new ArrayList<>();
+    for (Trip trip : dao.getAllTrips()) {
+      if (predicate.test(trip)) trips.add(trip);
+    }
+    removeTrips(dao, trips);
   }
 
   public void removeFrequency(GtfsMutableRelationalDao dao, Frequency frequency) {
@@ -49,14 +91,38 @@ public class RemoveEntityLibrary {
   }
 
   public void removeStop(GtfsMutableRelationalDao dao, Stop stop) {
-    for (StopTime stopTime : dao.getStopTimesForStop(stop)) removeStopTime(dao, stopTime);
-    dao.removeEntity(stop);
+    removeStops(dao, List.of(stop));
   }
 
+  public void removeStops(GtfsMutableRelationalDao dao, Collection<Stop> stops) {
+    List<StopTime> stopTimes = new ArrayList<>();
+    for (Stop stop : stops) stopTimes.addAll(dao.getStopTimesForStop(stop));
+    dao.removeEntities(stopTimes);
+    dao.removeEntities(stops);
+  }
+
+  /**
+   * Packed stop times can't be removed one at a time, as each removal renumbers the stop times
+   * after it, so this fails for them. Use {@link #removeStopTimes(GtfsMutableRelationalDao,
+   * Collection)} instead.
+   */
   public void removeStopTime(GtfsMutableRelationalDao dao, StopTime stopTime) {
     dao.removeEntity(stopTime);
   }
 
+  public void removeStopTimes(GtfsMutableRelationalDao dao, Collection<StopTime> stopTimes) {
+    dao.removeEntities(stopTimes);
+  }
+
+  /** Removes the stop times that match the predicate, going through all stop times once. */
+  public void removeStopTimes(GtfsMutableRelationalDao dao, Predicate<? super StopTime> predicate) {
+    List<StopTime> stopTimes = new ArrayList<>();
+    for (StopTime stopTime : dao.getAllStopTimes()) {
+      if (predicate.test(stopTime)) stopTimes.add(stopTime);
+    }
+    dao.removeEntities(stopTimes);
+  }
+
   public void removeServiceCalendar(GtfsMutableRelationalDao dao, ServiceCalendar calendar) {
     dao.removeEntity(calendar);
   }
@@ -67,16 +133,28 @@ public class RemoveEntityLibrary {
   }
 
   public void removeCalendar(GtfsMutableRelationalDao dao, AgencyAndId serviceId) {
-    ServiceCalendar calendar = dao.getCalendarForServiceId(serviceId);
-    if (calendar != null) {
-      removeServiceCalendar(dao, calendar);
-    }
-    for (ServiceCalendarDate calendarDate : dao.getCalendarDatesForServiceId(serviceId)) {
-      removeServiceCalendarDate(dao, calendarDate);
-    }
-    for (Trip trip : dao.getTripsForServiceId(serviceId)) {
-      removeTrip(dao, trip);
+    removeCalendars(dao, List.of(serviceId));
+  }
+
+  /**
+   * Removes the calendars and calendar dates of the service ids, along with the trips that run on
+   * them.
+   */
+  public void removeCalendars(GtfsMutableRelationalDao dao, Collection<AgencyAndId> serviceIds) {
+    List<ServiceCalendar> calendars = new ArrayList<>();
+    List<ServiceCalendarDate> calendarDates = new ArrayList<>();
+    List<Trip> trips = new ArrayList<>();
+    for (AgencyAndId serviceId : serviceIds) {
+      ServiceCalendar calendar = dao.getCalendarForServiceId(serviceId);
+      if (calendar != null) {
+        calendars.add(calendar);
+      }
+      calendarDates.addAll(dao.getCalendarDatesForServiceId(serviceId));
+      trips.addAll(dao.getTripsForServiceId(serviceId));
     }
+    dao.removeEntities(calendars);
+    dao.removeEntities(calendarDates);
+    removeTrips(dao, trips);
   }
 
   public void removeTransfer(GtfsMutableRelationalDao dao, Transfer transfer) {
@@ -13,6 +13,9 @@
  */
 package org.onebusaway.gtfs_transformer.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.FeedInfo;
 import org.onebusaway.gtfs.model.Frequency;
@@ -51,4 +54,33 @@ public class RemoveEntityUpdateStrategy implements EntityTransformStrategy {
           throw new NoSuchMethodError("attempt to remove entity of type " + obj.getClass());
     }
   }
+
+  /**
+   * Removes the entities as {@link #run(TransformContext, GtfsMutableRelationalDao, Object)} would
+   * one at a time, but with one batch removal per entity type. Packed stop times can only be
+   * removed this way.
+   */
+  public void runAll(
+      TransformContext context, GtfsMutableRelationalDao dao, Collection<?> entities) {
+    List<Agency> agencies = new ArrayList<>();
+    List<Route> routes = new ArrayList<>();
+    List<Stop> stops = new ArrayList<>();
+    List<Trip> trips = new ArrayList<>();
+    List<StopTime> stopTimes = new ArrayList<>();
+    for (Object obj : entities) {
+      switch (obj) {
+        case Agency agency -> agencies.add(agency);
+        case Route route -> routes.add(route);
+        case Stop stop -> stops.add(stop);
+        case Trip trip -> trips.add(trip);
+        case StopTime time -> stopTimes.add(time);
+        case null, default -> run(context, dao, obj);
+      }
+    }
+    _library.removeStopTimes(dao, stopTimes);
+    _library.removeTrips(dao, trips);
+    _library.removeStops(dao, stops);
+    _library.removeRoutes(dao, routes);
+    _library.removeAgencies(dao, agencies);
+  }
 }
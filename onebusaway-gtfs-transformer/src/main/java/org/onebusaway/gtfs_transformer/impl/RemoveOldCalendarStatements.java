@@ -13,9 +13,12 @@
  */
 package org.onebusaway.gtfs_transformer.impl;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
+import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.model.ServiceCalendarDate;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
@@ -60,9 +63,11 @@ public class RemoveOldCalendarStatements implements GtfsTransformStrategy {
         serviceCalendarsToRemove.add(calendar);
       }
     }
+    List<AgencyAndId> serviceIdsToRemove = new ArrayList<>();
     for (ServiceCalendar serviceCalendar : serviceCalendarsToRemove) {
-      removeEntityLibrary.removeCalendar(gtfsMutableRelationalDao, serviceCalendar.getServiceId());
+      serviceIdsToRemove.add(serviceCalendar.getServiceId());
     }
+    removeEntityLibrary.removeCalendars(gtfsMutableRelationalDao, serviceIdsToRemove);
 
     Set<ServiceCalendarDate> serviceCalendarDatesToRemove = new HashSet<>();
     for (ServiceCalendarDate calendarDate : gtfsMutableRelationalDao.getAllCalendarDates()) {
@@ -70,9 +75,7 @@ public class RemoveOldCalendarStatements implements GtfsTransformStrategy {
         serviceCalendarDatesToRemove.add(calendarDate);
       }
     }
-    for (ServiceCalendarDate serviceCalendarDate : serviceCalendarDatesToRemove) {
-      // here we can't delete the trips as the serviceid may be active elsewhere
-      removeEntityLibrary.removeServiceCalendarDate(gtfsMutableRelationalDao, serviceCalendarDate);
-    }
+    // here we can't delete the trips as the serviceid may be active elsewhere
+    gtfsMutableRelationalDao.removeEntities(serviceCalendarDatesToRemove);
   }
 }
@@ -41,8 +41,6 @@ public class RemoveUnusedRoutes implements GtfsTransformStrategy {
       }
     }
 
-    for (Route route : routesToRemove) {
-      removeEntityLibrary.removeRoute(gtfsMutableRelationalDao, route);
-    }
+    removeEntityLibrary.removeRoutes(gtfsMutableRelationalDao, routesToRemove);
   }
 }
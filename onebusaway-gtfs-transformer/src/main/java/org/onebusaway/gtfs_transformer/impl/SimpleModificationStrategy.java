@@ -29,6 +29,10 @@ public class SimpleModificationStrategy implements EntityTransformStrategy {
     _propertyUpdates = propertyUpdates;
   }
 
+  public Map<String, ValueSetter> getPropertyUpdates() {
+    return _propertyUpdates;
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao, Object entity) {
 
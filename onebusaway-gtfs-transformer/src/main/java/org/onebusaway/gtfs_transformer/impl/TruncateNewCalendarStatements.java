@@ -13,10 +13,13 @@
  */
 package org.onebusaway.gtfs_transformer.impl;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
+import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.model.ServiceCalendarDate;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
@@ -72,10 +75,12 @@ public class TruncateNewCalendarStatements implements GtfsTransformStrategy {
         serviceCalendarsToRemove.add(calendar);
       }
     }
+    List<AgencyAndId> serviceIdsToRemove = new ArrayList<>();
     for (ServiceCalendar serviceCalendar : serviceCalendarsToRemove) {
-      // this method also deletes trips belonging to this calendar
-      removeEntityLibrary.removeCalendar(gtfsMutableRelationalDao, serviceCalendar.getServiceId());
+      serviceIdsToRemove.add(serviceCalendar.getServiceId());
     }
+    // this method also deletes trips belonging to these calendars
+    removeEntityLibrary.removeCalendars(gtfsMutableRelationalDao, serviceIdsToRemove);
 
     Set<ServiceCalendarDate> serviceCalendarDatesToRemove = new HashSet<>();
     for (ServiceCalendarDate calendarDate : gtfsMutableRelationalDao.getAllCalendarDates()) {
@@ -83,9 +88,7 @@ public class TruncateNewCalendarStatements implements GtfsTransformStrategy {
         serviceCalendarDatesToRemove.add(calendarDate);
       }
     }
-    for (ServiceCalendarDate serviceCalendarDate : serviceCalendarDatesToRemove) {
-      // here we can't delete the trips as the serviceid may be active elsewhere
-      removeEntityLibrary.removeServiceCalendarDate(gtfsMutableRelationalDao, serviceCalendarDate);
-    }
+    // here we can't delete the trips as the serviceid may be active elsewhere
+    gtfsMutableRelationalDao.removeEntities(serviceCalendarDatesToRemove);
   }
 }
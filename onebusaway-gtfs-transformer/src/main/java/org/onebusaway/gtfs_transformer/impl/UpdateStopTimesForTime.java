@@ -69,7 +69,7 @@ public class UpdateStopTimesForTime implements GtfsTransformStrategy {
     StringBuffer illegalTripList = new StringBuffer();
     for (Trip trip : tripsToRemove) {
       illegalTripList.append(trip.getId().toString()).append(" ");
-      removeEntityLibrary.removeTrip(dao, trip);
     }
+    removeEntityLibrary.removeTrips(dao, tripsToRemove);
   }
 }
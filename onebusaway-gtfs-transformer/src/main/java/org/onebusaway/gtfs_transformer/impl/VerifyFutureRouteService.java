@@ -55,6 +55,11 @@ public class VerifyFutureRouteService implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
     Collection<String> problemRoutes = new HashSet<>();
@@ -152,7 +157,8 @@ public class VerifyFutureRouteService implements GtfsTransformStrategy {
           if (activeDates.contains(sDate)) {
             if (problemRoutes.contains(route.getId().getId())) {
               _log.info(
-                  "On {} Reference has service for this route, but ATIS has none: {}, Trip {}, Serviceid {}",
+                  "On {} Reference has service for this route, but ATIS has none: {}, Trip {},"
+                      + " Serviceid {}",
                   testDate,
                   route.getId(),
                   refTrip.getId(),
@@ -160,7 +166,8 @@ public class VerifyFutureRouteService implements GtfsTransformStrategy {
               alarmingRoutes++;
             } else {
               _log.error(
-                  "On {} Reference has service for this route but ATIS has none: {}, Trip {}, Serviceid {}",
+                  "On {} Reference has service for this route but ATIS has none: {}, Trip {},"
+                      + " Serviceid {}",
                   testDate,
                   route.getId(),
                   refTrip.getId(),
@@ -48,6 +48,11 @@ public class VerifyReferenceService implements GtfsTransformStrategy {
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
     GtfsMutableRelationalDao reference =
@@ -151,7 +156,8 @@ public class VerifyReferenceService implements GtfsTransformStrategy {
               if (calDate.getExceptionType() == 1) {
                 if (problemRoutes.contains(route.getId().getId())) {
                   _log.info(
-                      "On {} ATIS has service for this route but Reference has none: {}. Excused route, no further action",
+                      "On {} ATIS has service for this route but Reference has none: {}. Excused"
+                          + " route, no further action",
                       testDate,
                       route.getId());
                   break reftriploop;
@@ -15,6 +15,7 @@ package org.onebusaway.gtfs_transformer.impl;
 
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
@@ -35,6 +36,11 @@ public class VerifyRouteIds implements GtfsTransformStrategy {
     return this.getClass().getName();
   }
 
+  @Override
+  public Set<Class<?>> getWriteEntityTypes() {
+    return Set.of();
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
@@ -68,17 +74,20 @@ public class VerifyRouteIds implements GtfsTransformStrategy {
       if (route != null) {
         if (!route.getLongName().contains(routeName)) {
           _log.error(
-              "NJT MNR West of Hudson Route Id->Route name error. CSV routeId: {} routeName: {} GTFS Route id: {}, longName {}",
+              "NJT MNR West of Hudson Route Id->Route name error. CSV routeId: {} routeName: {}"
+                  + " GTFS Route id: {}, longName {}",
               routeId,
               routeName,
               route.getId().getId(),
               route.getLongName());
           throw new IllegalStateException(
-              "NJT MNR West of Hudson Route Id->Route name error. Route id is for unexpected route name");
+              "NJT MNR West of Hudson Route Id->Route name error. Route id is for unexpected route"
+                  + " name");
         }
       } else {
         _log.error(
-            "NJT MNR West of Hudson Route Id->Route name error. Route id is not present in GTFS. Expected CSV routeId: {} routeName: {}",
+            "NJT MNR West of Hudson Route Id->Route name error. Route id is not present in GTFS."
+                + " Expected CSV routeId: {} routeName: {}",
             routeId,
             routeName);
         throw new IllegalStateException(
@@ -23,6 +23,10 @@ public class EntityMatchCollection implements EntityMatch {
     _matches = matches;
   }
 
+  public List<EntityMatch> getMatches() {
+    return _matches;
+  }
+
   @Override
   public boolean isApplicableToObject(Object object) {
     for (EntityMatch match : _matches) {
@@ -13,6 +13,7 @@
  */
 package org.onebusaway.gtfs_transformer.services;
 
+import java.util.Set;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 
@@ -25,4 +26,26 @@ public interface GtfsTransformStrategy {
   public default void updateReadSchema(DefaultEntitySchemaFactory factory) {}
 
   public default void updateWriteSchema(DefaultEntitySchemaFactory factory) {}
+
+  /**
+   * The entity types, such as {@code Trip.class}, that the strategy reads from the dao being
+   * transformed, including types it only reaches through references from other entities. Used by
+   * {@link org.onebusaway.gtfs_transformer.GtfsTransformer#setStrategyParallelism(int)} to tell
+   * which strategies can run at the same time.
+   *
+   * @return the types read, or null if the strategy might read any type
+   */
+  public default Set<Class<?>> getReadEntityTypes() {
+    return null;
+  }
+
+  /**
+   * The entity types that the strategy adds, removes or modifies in the dao being transformed.
+   *
+   * @return the types written, an empty set if the strategy only reads, or null if the strategy
+   *     might write any type
+   */
+  public default Set<Class<?>> getWriteEntityTypes() {
+    return null;
+  }
 }
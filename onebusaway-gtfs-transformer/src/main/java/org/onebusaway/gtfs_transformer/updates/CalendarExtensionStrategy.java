@@ -116,7 +116,6 @@ public class CalendarExtensionStrategy implements GtfsTransformStrategy {
         }
       }
     }
-    UpdateLibrary.clearDaoCache(dao);
   }
 
   /**
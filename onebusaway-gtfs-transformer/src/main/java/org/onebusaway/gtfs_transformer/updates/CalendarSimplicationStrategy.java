@@ -93,6 +93,8 @@ public class CalendarSimplicationStrategy implements GtfsTransformStrategy {
 
     Map<AgencyAndId, List<AgencyAndId>> mergeToolIdMapping = computeMergeToolIdMapping(dao);
 
+    List<Trip> tripsToRemove = new ArrayList<>();
+
     for (Route route : dao.getAllRoutes()) {
       Map<TripKey, List<Trip>> tripsByKey = TripKey.groupTripsForRouteByKey(dao, route);
       Map<Set<AgencyAndId>, List<TripKey>> tripKeysByServiceIds =
@@ -107,10 +109,7 @@ public class CalendarSimplicationStrategy implements GtfsTransformStrategy {
           List<Trip> tripsForKey = tripsByKey.get(tripKey);
           Trip tripToKeep = tripsForKey.getFirst();
           tripToKeep.setServiceId(updatedServiceId);
-          for (int i = 1; i < tripsForKey.size(); i++) {
-            Trip trip = tripsForKey.get(i);
-            removeEntityLibrary.removeTrip(dao, trip);
-          }
+          tripsToRemove.addAll(tripsForKey.subList(1, tripsForKey.size()));
 
           if (undoGoogleTransitDataFeedMergeTool) {
             AgencyAndId updatedTripId =
@@ -123,6 +122,8 @@ public class CalendarSimplicationStrategy implements GtfsTransformStrategy {
       }
     }
 
+    removeEntityLibrary.removeTrips(dao, tripsToRemove);
+
     CalendarService calendarService = CalendarServiceDataFactoryImpl.createService(dao);
     List<Object> newEntities = new ArrayList<>();
     for (Map.Entry<Set<AgencyAndId>, AgencyAndId> entry : serviceIdsToUpdatedServiceId.entrySet()) {
@@ -86,6 +86,6 @@ public class DeduplicateServiceIdsStrategy implements GtfsTransformStrategy {
     }
 
     _log.info("removed {} duplicate service ids", serviceIdMapping.size());
-    UpdateLibrary.clearDaoCache(dao);
+    UpdateLibrary.clearDaoCache(dao, Trip.class);
   }
 }
@@ -32,7 +32,7 @@ public class NoTripsWithBlockIdAndFrequenciesStrategy implements EntityTransform
       }
     }
 
-    UpdateLibrary.clearDaoCache(dao);
+    UpdateLibrary.clearDaoCache(dao, Trip.class);
   }
 
   private boolean isLabelOnly(List<Frequency> frequencies) {
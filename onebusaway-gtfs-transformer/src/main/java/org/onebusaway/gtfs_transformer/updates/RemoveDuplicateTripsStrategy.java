@@ -61,8 +61,6 @@ public class RemoveDuplicateTripsStrategy implements GtfsTransformStrategy {
       }
     }
 
-    UpdateLibrary.clearDaoCache(dao);
-
     _log.info("removed " + duplicateTrips + " duplicate trips");
   }
 
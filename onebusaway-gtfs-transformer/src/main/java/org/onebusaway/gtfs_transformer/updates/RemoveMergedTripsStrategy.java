@@ -119,7 +119,7 @@ public class RemoveMergedTripsStrategy implements GtfsTransformStrategy {
       }
     }
 
-    UpdateLibrary.clearDaoCache(dao);
+    UpdateLibrary.clearDaoCache(dao, Trip.class);
   }
 
   private static class TripComparator implements Comparator<Trip> {
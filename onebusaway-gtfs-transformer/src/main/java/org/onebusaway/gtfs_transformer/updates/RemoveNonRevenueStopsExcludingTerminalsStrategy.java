@@ -59,8 +59,6 @@ public class RemoveNonRevenueStopsExcludingTerminalsStrategy implements GtfsTran
     }
 
     _log.info("removed=" + removedStopTimeCount + " total=" + totalStopTimeCount);
-
-    UpdateLibrary.clearDaoCache(dao);
   }
 
   private boolean isNonRevenue(StopTime s) {
@@ -56,8 +56,6 @@ public class RemoveNonRevenueStopsStrategy implements GtfsTransformStrategy {
     }
 
     _log.info("removed=" + removedStopTimeCount + " total=" + totalStopTimeCount);
-
-    UpdateLibrary.clearDaoCache(dao);
   }
 
   private boolean isNonRevenue(StopTime s) {
@@ -67,7 +67,5 @@ public class RemoveRepeatedStopTimesStrategy implements GtfsTransformStrategy {
     }
 
     _log.info("removed=" + removed + " total=" + total);
-
-    UpdateLibrary.clearDaoCache(dao);
   }
 }
@@ -40,8 +40,6 @@ public class RemoveStopsFromShapesStrategy implements GtfsTransformStrategy {
     for (AgencyAndId aid : allShapeIds) {
       fixShape(dao, allStopPoints, aid);
     }
-
-    UpdateLibrary.clearDaoCache(dao);
   }
 
   private List<Coord> loadAllStopPoints(GtfsMutableRelationalDao dao) {
@@ -103,7 +103,7 @@ public class ShapeTransformStrategy implements GtfsTransformStrategy {
 
     for (ShapePoint point : segment) dao.saveEntity(point);
 
-    UpdateLibrary.clearDaoCache(dao);
+    UpdateLibrary.clearDaoCache(dao, ShapePoint.class);
   }
 
   private int closest(List<ShapePoint> shapePoints, ShapePoint point, int index) {
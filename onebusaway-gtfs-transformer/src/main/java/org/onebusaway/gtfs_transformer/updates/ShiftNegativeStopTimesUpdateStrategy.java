@@ -70,7 +70,7 @@ public class ShiftNegativeStopTimesUpdateStrategy implements GtfsTransformStrate
       }
     }
 
-    UpdateLibrary.clearDaoCache(dao);
+    UpdateLibrary.clearDaoCache(dao, Trip.class);
   }
 
   private int getMinStopTime(List<StopTime> stopTimes) {
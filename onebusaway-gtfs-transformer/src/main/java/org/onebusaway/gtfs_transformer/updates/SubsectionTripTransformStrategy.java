@@ -19,7 +19,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ShapePoint;
 import org.onebusaway.gtfs.model.Stop;
@@ -119,12 +118,8 @@ public class SubsectionTripTransformStrategy implements GtfsTransformStrategy {
         stopTimesToRemove.addAll(stopTimes);
       }
     }
-    for (StopTime stopTime : stopTimesToRemove) {
-      dao.removeEntity(stopTime);
-    }
-    for (Trip trip : tripsToRemove) {
-      dao.removeEntity(trip);
-    }
+    dao.removeEntities(stopTimesToRemove);
+    dao.removeEntities(tripsToRemove);
     for (Trip trip : tripsToAdd) {
       dao.saveEntity(trip);
     }
@@ -132,16 +127,15 @@ public class SubsectionTripTransformStrategy implements GtfsTransformStrategy {
       dao.saveEntity(stopTime);
     }
 
-    ((GtfsRelationalDaoImpl) dao).clearAllCaches();
     Set<AgencyAndId> shapeIds = new HashSet<>(dao.getAllShapeIds());
     for (Trip trip : dao.getAllTrips()) {
       shapeIds.remove(trip.getShapeId());
     }
+    List<ShapePoint> shapePointsToRemove = new ArrayList<>();
     for (AgencyAndId shapeId : shapeIds) {
-      for (ShapePoint point : dao.getShapePointsForShapeId(shapeId)) {
-        dao.removeEntity(point);
-      }
+      shapePointsToRemove.addAll(dao.getShapePointsForShapeId(shapeId));
     }
+    dao.removeEntities(shapePointsToRemove);
   }
 
   private void updateShape(
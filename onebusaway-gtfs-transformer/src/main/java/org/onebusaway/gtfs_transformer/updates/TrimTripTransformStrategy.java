@@ -111,12 +111,8 @@ public class TrimTripTransformStrategy implements GtfsTransformStrategy {
         stopTimesToRemove.addAll(stopTimes);
       }
     }
-    for (StopTime stopTime : stopTimesToRemove) {
-      dao.removeEntity(stopTime);
-    }
-    for (Trip trip : tripsToRemove) {
-      dao.removeEntity(trip);
-    }
+    dao.removeEntities(stopTimesToRemove);
+    dao.removeEntities(tripsToRemove);
     for (Trip trip : tripsToAdd) {
       dao.saveEntity(trip);
     }
@@ -124,16 +120,15 @@ public class TrimTripTransformStrategy implements GtfsTransformStrategy {
       dao.saveEntity(stopTime);
     }
 
-    UpdateLibrary.clearDaoCache(dao);
     Set<AgencyAndId> shapeIds = new HashSet<>(dao.getAllShapeIds());
     for (Trip trip : dao.getAllTrips()) {
       shapeIds.remove(trip.getShapeId());
     }
+    List<ShapePoint> shapePointsToRemove = new ArrayList<>();
     for (AgencyAndId shapeId : shapeIds) {
-      for (ShapePoint point : dao.getShapePointsForShapeId(shapeId)) {
-        dao.removeEntity(point);
-      }
+      shapePointsToRemove.addAll(dao.getShapePointsForShapeId(shapeId));
     }
+    dao.removeEntities(shapePointsToRemove);
   }
 
   private List<TrimOperation> getMatchingOperations(Trip trip) {
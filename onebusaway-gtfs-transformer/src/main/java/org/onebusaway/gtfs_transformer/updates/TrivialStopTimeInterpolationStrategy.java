@@ -74,8 +74,6 @@ public class TrivialStopTimeInterpolationStrategy implements GtfsTransformStrate
     }
 
     _log.info("updated=" + updated + " total=" + total);
-
-    UpdateLibrary.clearDaoCache(dao);
   }
 
   // count the next N number of matches of arrival/departure times
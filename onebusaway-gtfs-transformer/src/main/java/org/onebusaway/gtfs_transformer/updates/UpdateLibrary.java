@@ -17,9 +17,22 @@ import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 
 public class UpdateLibrary {
-  public static void clearDaoCache(GtfsRelationalDao dao) {
+
+  /**
+   * Drops the relation indexes of the dao after entities have been modified in place. Entities that
+   * were only saved or removed through the dao don't require this, as the indexes are kept up to
+   * date as they are.
+   *
+   * @param dao the dao
+   * @param entityTypes the types of the modified entities, or none to drop all the indexes
+   */
+  public static void clearDaoCache(GtfsRelationalDao dao, Class<?>... entityTypes) {
     if (dao instanceof GtfsRelationalDaoImpl daoImpl) {
-      daoImpl.clearAllCaches();
+      if (entityTypes.length == 0) {
+        daoImpl.clearAllCaches();
+      } else {
+        for (Class<?> entityType : entityTypes) daoImpl.clearCachesForEntityType(entityType);
+      }
     }
   }
 }
@@ -23,14 +23,18 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
+import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.serialization.GtfsReader;
@@ -70,7 +74,8 @@ public class GtfsTransformerTest {
   public void testUpdateTrips() throws Exception {
     GtfsRelationalDao dao =
         transform(
-            "{'op':'update', 'match':{'file':'trips.txt', 'route_id':'r0'}, 'update':{'route_id': 'r1'}}");
+            "{'op':'update', 'match':{'file':'trips.txt', 'route_id':'r0'}, 'update':{'route_id':"
+                + " 'r1'}}");
     assertEquals(2, dao.getTripsForRoute(dao.getRouteForId(new AgencyAndId("a0", "r1"))).size());
   }
 
@@ -94,7 +99,8 @@ public class GtfsTransformerTest {
   public void testUpdateCalendarCollection() throws Exception {
     GtfsRelationalDao dao =
         transform(
-            "{'op':'update', 'match':{'collection':'calendar', 'service_id':'sid1'}, 'update':{'service_id':'WEEK'}}");
+            "{'op':'update', 'match':{'collection':'calendar', 'service_id':'sid1'},"
+                + " 'update':{'service_id':'WEEK'}}");
     assertNotNull(dao.getCalendarForServiceId(new AgencyAndId("a0", "WEEK")));
     assertEquals(
         new AgencyAndId("a0", "WEEK"),
@@ -194,6 +200,27 @@ public class GtfsTransformerTest {
     }
   }
 
+  @Test
+  public void testStrategyStatistics(@TempDir Path tempDir) throws Exception {
+    Path report = tempDir.resolve("report.csv");
+    _transformer.setStrategyReport(report.toFile());
+    transform("{'op':'remove', 'match':{'file':'routes.txt', 'route_id':'r0'}}");
+
+    List<StrategyStatistics> statistics = _transformer.getStrategyStatistics();
+    assertEquals(1, statistics.size());
+    Map<Class<?>, Long> changes = statistics.getFirst().getEntityCountChanges();
+    assertEquals(Map.of(Route.class, -1L, Trip.class, -1L, StopTime.class, -2L), changes);
+    assertTrue(statistics.getFirst().getWallTimeNanos() > 0);
+
+    List<String> lines = Files.readAllLines(report);
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(0).startsWith("strategy,"));
+    assertTrue(lines.get(1).endsWith(",Route=-1 Trip=-1 StopTime=-2"), lines.get(1));
+
+    JSONObject json = StrategyReportWriter.toJson(statistics).getJSONObject(0);
+    assertEquals(-2, json.getJSONObject("entityCountChanges").getLong("StopTime"));
+  }
+
   private GtfsRelationalDao transform(String transformSpec) throws Exception {
     _transformer.getTransformFactory().addModificationsFromString(transformSpec);
     _transformer.setGtfsInputDirectory(_gtfs.getPath());
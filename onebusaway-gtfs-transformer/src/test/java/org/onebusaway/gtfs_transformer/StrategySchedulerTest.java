@@ -0,0 +1,140 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
+import org.onebusaway.gtfs_transformer.services.GtfsTransformStrategy;
+import org.onebusaway.gtfs_transformer.services.TransformContext;
+
+public class StrategySchedulerTest {
+
+  @Test
+  public void testDependencies() {
+    Strategy unknown = new Strategy("unknown", null, null);
+    Strategy readTrips = new Strategy("readTrips", Set.of(Trip.class), Set.of());
+    Strategy readAll = new Strategy("readAll", null, Set.of());
+    Strategy writeStops = new Strategy("writeStops", Set.of(Stop.class), Set.of(Stop.class));
+    Strategy writeTrips = new Strategy("writeTrips", Set.of(Route.class), Set.of(Trip.class));
+    StrategyScheduler scheduler =
+        new StrategyScheduler(
+            List.of(unknown, readTrips, readAll, writeStops, writeTrips, readTrips));
+
+    assertEquals(List.of(), scheduler.getDependencies(0));
+    assertEquals(List.of(0), scheduler.getDependencies(1));
+    assertEquals(List.of(0), scheduler.getDependencies(2));
+    // Reading all types conflicts with any write
+    assertEquals(List.of(0, 2), scheduler.getDependencies(3));
+    assertEquals(List.of(0, 1, 2), scheduler.getDependencies(4));
+    assertEquals(List.of(0, 4), scheduler.getDependencies(5));
+  }
+
+  @Test
+  public void testReadersRunConcurrently() {
+    CountDownLatch started = new CountDownLatch(2);
+    List<String> completed = Collections.synchronizedList(new ArrayList<>());
+    Strategy first = new Strategy("first", null, Set.of());
+    Strategy second = new Strategy("second", null, Set.of());
+    Strategy writer = new Strategy("writer", null, null);
+    StrategyScheduler scheduler = new StrategyScheduler(List.of(first, second, writer));
+
+    scheduler.run(
+        2,
+        strategy -> {
+          if (strategy != writer) {
+            started.countDown();
+            try {
+              // Only returns if both readers are running at the same time
+              assertTrue(started.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException ex) {
+              throw new IllegalStateException(ex);
+            }
+          }
+          completed.add(strategy.getName());
+        });
+
+    assertEquals(3, completed.size());
+    assertEquals("writer", completed.get(2));
+  }
+
+  @Test
+  public void testFailure() {
+    IllegalStateException failure = new IllegalStateException("failed");
+    List<String> completed = Collections.synchronizedList(new ArrayList<>());
+    Strategy failing = new Strategy("failing", null, null);
+    Strategy after = new Strategy("after", null, null);
+    StrategyScheduler scheduler = new StrategyScheduler(List.of(failing, after));
+
+    IllegalStateException thrown =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                scheduler.run(
+                    2,
+                    strategy -> {
+                      if (strategy == failing) {
+                        throw failure;
+                      }
+                      completed.add(strategy.getName());
+                    }));
+    assertSame(failure, thrown);
+    assertFalse(completed.contains("after"));
+  }
+
+  private static class Strategy implements GtfsTransformStrategy {
+
+    private final String _name;
+
+    private final Set<Class<?>> _reads;
+
+    private final Set<Class<?>> _writes;
+
+    Strategy(String name, Set<Class<?>> reads, Set<Class<?>> writes) {
+      _name = name;
+      _reads = reads;
+      _writes = writes;
+    }
+
+    @Override
+    public String getName() {
+      return _name;
+    }
+
+    @Override
+    public void run(TransformContext context, GtfsMutableRelationalDao dao) {}
+
+    @Override
+    public Set<Class<?>> getReadEntityTypes() {
+      return _reads;
+    }
+
+    @Override
+    public Set<Class<?>> getWriteEntityTypes() {
+      return _writes;
+    }
+  }
+}
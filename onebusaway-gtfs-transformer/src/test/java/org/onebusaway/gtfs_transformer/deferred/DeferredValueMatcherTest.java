@@ -13,7 +13,9 @@
  */
 package org.onebusaway.gtfs_transformer.deferred;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -109,6 +111,23 @@ public class DeferredValueMatcherTest {
     assertTrue(matcher.matches(Trip.class, "shapeId", new AgencyAndId("1", "shape-1")));
   }
 
+  @Test
+  public void testRegex() {
+    DeferredValueMatcher matcher = matcher("m/R1\\d/");
+    assertTrue(matcher.matches(Stop.class, "name", "R10"));
+    assertFalse(matcher.matches(Stop.class, "name", "R100"));
+    assertTrue(matcher.matches(Route.class, "id", new AgencyAndId("1", "R11")));
+    assertFalse(matcher.matches(Route.class, "id", new AgencyAndId("1", "R20")));
+    assertNull(matcher.getExactValue());
+  }
+
+  @Test
+  public void testRegexMarkersAlone() {
+    DeferredValueMatcher matcher = matcher("m/");
+    assertTrue(matcher.matches(Stop.class, "name", "m/"));
+    assertEquals("m/", matcher.getExactValue());
+  }
+
   private DeferredValueMatcher matcher(Object value) {
     return new DeferredValueMatcher(_reader, _schemaCache, value);
   }
@@ -0,0 +1,145 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer.factory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
+import org.onebusaway.gtfs_transformer.GtfsTransformer;
+import org.onebusaway.gtfs_transformer.TransformSpecificationException;
+import org.onebusaway.gtfs_transformer.services.TransformContext;
+
+public class EntitiesTransformStrategyTest {
+
+  private GtfsTransformer _transformer = new GtfsTransformer();
+
+  private TransformFactory _factory = new TransformFactory(_transformer);
+
+  @Test
+  public void testIndexedMatches() throws IOException, TransformSpecificationException {
+    GtfsMutableRelationalDao dao = (GtfsMutableRelationalDao) _transformer.getDao();
+    Route r1 = route(dao, "r1");
+    Route r2 = route(dao, "r2");
+    trip(dao, "t1", r1).setBlockId("b1");
+    trip(dao, "t2", r1);
+    trip(dao, "t3", r2);
+    trip(dao, "t4", r2);
+    trip(dao, "t5", r2);
+
+    _factory.addModificationsFromString(
+        String.join(
+            "\n",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'trip_id':'t1'}, "
+                + "'update':{'trip_headsign':'A'}}",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'trip_id':'t2'}, "
+                + "'update':{'trip_headsign':'B'}}",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'trip_id':'t3'}, "
+                + "'update':{'block_id':'b1'}}",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'block_id':'b1'}, "
+                + "'update':{'trip_short_name':'B1'}}",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'route_id':'r1'}, "
+                + "'update':{'direction_id':'1'}}",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'trip_id':'m/t[45]/'}, "
+                + "'update':{'trip_short_name':'X'}}",
+            "{'op':'remove', 'match':{'file':'trips.txt', 'trip_id':'t5'}}",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'trip_id':'t4'}, "
+                + "'update':{'trip_headsign':'D'}}",
+            "{'op':'update', "
+                + "'match':{'file':'trips.txt', 'trip_id':'t4', 'trip_short_name':'Y'}, "
+                + "'update':{'trip_headsign':'E'}}"));
+    _transformer.getLastTransform().run(new TransformContext(), dao);
+
+    assertEquals("A", trip(dao, "t1").getTripHeadsign());
+    assertEquals("B", trip(dao, "t2").getTripHeadsign());
+    assertEquals("B1", trip(dao, "t1").getTripShortName());
+    assertNull(trip(dao, "t2").getTripShortName());
+    assertEquals("B1", trip(dao, "t3").getTripShortName());
+    assertEquals("1", trip(dao, "t1").getDirectionId());
+    assertEquals("1", trip(dao, "t2").getDirectionId());
+    assertNull(trip(dao, "t3").getDirectionId());
+    assertEquals("X", trip(dao, "t4").getTripShortName());
+    assertEquals("D", trip(dao, "t4").getTripHeadsign());
+    assertNull(trip(dao, "t5"));
+    assertEquals(4, dao.getAllTrips().size());
+  }
+
+  @Test
+  public void testRemovePackedStopTimes() throws IOException, TransformSpecificationException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(true);
+    Route route = route(dao, "r1");
+    List<Stop> stops = new ArrayList<>();
+    for (String stopId : List.of("s0", "s1", "s2")) {
+      Stop stop = new Stop();
+      stop.setId(new AgencyAndId("1", stopId));
+      dao.saveEntity(stop);
+      stops.add(stop);
+    }
+    for (String tripId : List.of("t1", "t2")) {
+      Trip trip = trip(dao, tripId, route);
+      for (int i = 0; i < stops.size(); i++) {
+        StopTime stopTime = new StopTime();
+        stopTime.setTrip(trip);
+        stopTime.setStop(stops.get(i));
+        stopTime.setStopSequence(i);
+        dao.saveEntity(stopTime);
+      }
+    }
+
+    _factory.addModificationsFromString(
+        "{'op':'remove', 'match':{'file':'stop_times.txt', 'stop_id':'s1'}}");
+    _transformer.getLastTransform().run(new TransformContext(), dao);
+
+    assertEquals(4, dao.getAllStopTimes().size());
+    for (StopTime stopTime : dao.getAllStopTimes()) {
+      assertNotEquals("s1", stopTime.getStop().getId().getId());
+    }
+  }
+
+  private static Route route(GtfsMutableRelationalDao dao, String id) {
+    Route route = new Route();
+    route.setId(new AgencyAndId("1", id));
+    dao.saveEntity(route);
+    return route;
+  }
+
+  private static Trip trip(GtfsMutableRelationalDao dao, String id, Route route) {
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("1", id));
+    trip.setRoute(route);
+    dao.saveEntity(trip);
+    return trip;
+  }
+
+  private static Trip trip(GtfsMutableRelationalDao dao, String id) {
+    return dao.getTripForId(new AgencyAndId("1", id));
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ServiceCalendar;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.serialization.GtfsEntitySchemaFactory;
+import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
+import org.onebusaway.gtfs.services.MockGtfs;
+
+public class RemoveEntityLibraryTest {
+
+  private final RemoveEntityLibrary _library = new RemoveEntityLibrary();
+
+  private MockGtfs _gtfs;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    _gtfs = MockGtfs.create();
+    _gtfs.putAgencies(1);
+    _gtfs.putStops(3);
+    _gtfs.putRoutes(3);
+    _gtfs.putTrips(4, "r0,r0,r1,r2", "sid0,sid1,sid0,sid1");
+    _gtfs.putStopTimes("t0,t1,t2,t3", "s0,s1,s2");
+    _gtfs.putCalendars(2);
+  }
+
+  @Test
+  public void testRemoveRoutes() throws IOException {
+    for (GtfsMutableRelationalDao dao : readPlainAndPacked()) {
+      List<Route> routes = new ArrayList<>();
+      for (Route route : dao.getAllRoutes()) {
+        if (!route.getId().getId().equals("r1")) routes.add(route);
+      }
+      _library.removeRoutes(dao, routes);
+
+      assertEquals(List.of("r1"), ids(dao.getAllRoutes()));
+      assertEquals(List.of("t2"), ids(dao.getAllTrips()));
+      assertEquals(3, dao.getAllStopTimes().size());
+      for (StopTime stopTime : dao.getAllStopTimes()) {
+        assertEquals("t2", stopTime.getTrip().getId().getId());
+      }
+    }
+  }
+
+  @Test
+  public void testRemoveCalendars() throws IOException {
+    for (GtfsMutableRelationalDao dao : readPlainAndPacked()) {
+      _library.removeCalendars(dao, List.of(new AgencyAndId("a0", "sid1")));
+
+      assertEquals(
+          List.of("sid0"), ids(dao.getAllCalendars().stream().map(ServiceCalendar::getServiceId)));
+      assertEquals(List.of("t0", "t2"), ids(dao.getAllTrips()));
+      assertEquals(6, dao.getAllStopTimes().size());
+      assertEquals(List.of("r0", "r1", "r2"), ids(dao.getAllRoutes()));
+    }
+  }
+
+  @Test
+  public void testRemoveStopTimes() throws IOException {
+    for (GtfsMutableRelationalDao dao : readPlainAndPacked()) {
+      _library.removeStopTimes(dao, stopTime -> stopTime.getStopSequence() == 1);
+
+      assertEquals(8, dao.getAllStopTimes().size());
+      for (String tripId : List.of("t0", "t1", "t2", "t3")) {
+        List<StopTime> stopTimes =
+            dao.getStopTimesForTrip(dao.getTripForId(new AgencyAndId("a0", tripId)));
+        assertEquals(2, stopTimes.size());
+        assertEquals("s0", stopTimes.get(0).getStop().getId().getId());
+        assertEquals("s2", stopTimes.get(1).getStop().getId().getId());
+      }
+    }
+  }
+
+  @Test
+  public void testRemovePackedStopTime() throws IOException {
+    GtfsMutableRelationalDao packed = readPlainAndPacked().get(1);
+    StopTime stopTime = packed.getAllStopTimes().iterator().next();
+    assertThrows(
+        UnsupportedOperationException.class, () -> _library.removeStopTime(packed, stopTime));
+    assertEquals(12, packed.getAllStopTimes().size());
+  }
+
+  /** The same feed read into a dao, and copied into one with packed stop times */
+  private List<GtfsMutableRelationalDao> readPlainAndPacked() throws IOException {
+    GtfsMutableRelationalDao source = _gtfs.read();
+    GtfsRelationalDaoImpl packed = new GtfsRelationalDaoImpl();
+    packed.setPackStopTimes(true);
+    for (Class<?> entityClass : GtfsEntitySchemaFactory.getEntityClasses()) {
+      packed.saveEntities(new ArrayList<>(source.getAllEntitiesForType(entityClass)));
+    }
+    return List.of(_gtfs.read(), packed);
+  }
+
+  private static List<String> ids(Collection<? extends IdentityBean<AgencyAndId>> entities) {
+    return ids(entities.stream().map(IdentityBean::getId));
+  }
+
+  private static List<String> ids(Stream<AgencyAndId> ids) {
+    return ids.map(AgencyAndId::getId).sorted().toList();
+  }
+}
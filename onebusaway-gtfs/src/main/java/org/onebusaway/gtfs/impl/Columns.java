@@ -0,0 +1,482 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columns of a packed entity array such as {@link StopTimeArray}. The columns either keep their
+ * values in plain arrays on the heap, or in off-heap memory segments that the garbage collector
+ * never has to scan or copy. Off-heap, a column of references only stores the index of each value
+ * in a table of the distinct values, which stays on the heap.
+ *
+ * <p>Off-heap memory is allocated in automatic arenas, so it is released once the column no longer
+ * references it, without having to close anything.
+ */
+final class Columns {
+
+  private final boolean offHeap;
+
+  private final List<Column> columns = new ArrayList<>();
+
+  private int length = 0;
+
+  public Columns(boolean offHeap) {
+    this.offHeap = offHeap;
+  }
+
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  public IntColumn newIntColumn() {
+    return add(offHeap ? new OffHeapIntColumn() : new HeapIntColumn());
+  }
+
+  public DoubleColumn newDoubleColumn() {
+    return add(offHeap ? new OffHeapDoubleColumn() : new HeapDoubleColumn());
+  }
+
+  /**
+   * @param internByEquals true to share a table entry between equal values, false to only share it
+   *     between references to the same instance. Entities compare equal by id, so they should only
+   *     be interned by identity.
+   */
+  public <T> ObjectColumn<T> newObjectColumn(boolean internByEquals) {
+    return add(offHeap ? new OffHeapObjectColumn<>(internByEquals) : new HeapObjectColumn<>());
+  }
+
+  /**
+   * @return the number of values each column can hold
+   */
+  public int getLength() {
+    return length;
+  }
+
+  public void setLength(int length) {
+    for (Column column : columns) column.setLength(length);
+    this.length = length;
+  }
+
+  /**
+   * Reorders the first values of every column, so that the value at {@code i} becomes the value
+   * that was at {@code order[i]}. The columns are trimmed to the number of reordered values.
+   */
+  public void permute(int[] order, int size) {
+    for (Column column : columns) column.permute(order, size);
+    length = size;
+  }
+
+  /**
+   * Removes the values at the set indices from the first {@code size} values of every column,
+   * moving each run of the remaining values down in place, in their order. The length of the
+   * columns doesn't change, but off-heap tables of distinct values drop the values that were only
+   * referenced by removed rows.
+   *
+   * @return the number of remaining values
+   */
+  public int compact(BitSet removed, int size) {
+    int to = 0;
+    int from = removed.nextClearBit(0);
+    while (from < size) {
+      int end = removed.nextSetBit(from);
+      if (end < 0 || end > size) end = size;
+      if (from != to) {
+        for (Column column : columns) column.move(from, to, end - from);
+      }
+      to += end - from;
+      from = removed.nextClearBit(end);
+    }
+    if (to < size) {
+      for (Column column : columns) {
+        column.clear(to, size);
+        column.compactTable(to);
+      }
+    }
+    return to;
+  }
+
+  /** Writes the first values of every column, in a format that doesn't depend on the storage */
+  public void write(ObjectOutput out, int size) throws IOException {
+    for (Column column : columns) column.write(out, size);
+  }
+
+  /**
+   * Reads values written by {@link #write(ObjectOutput, int)} from columns created in the same
+   * order, storing them from the specified offset on
+   */
+  public void read(ObjectInput in, int offset, int count)
+      throws IOException, ClassNotFoundException {
+    for (Column column : columns) column.read(in, offset, count);
+  }
+
+  /**
+   * @return the number of off-heap bytes held by the columns
+   */
+  public long getOffHeapBytes() {
+    long bytes = 0;
+    for (Column column : columns) {
+      if (column instanceof OffHeapColumn offHeapColumn) bytes += offHeapColumn.getByteSize();
+    }
+    return bytes;
+  }
+
+  private <C extends Column> C add(C column) {
+    column.setLength(length);
+    columns.add(column);
+    return column;
+  }
+
+  interface Column {
+
+    void setLength(int length);
+
+    void permute(int[] order, int size);
+
+    /** Copies {@code count} values from index {@code from} to index {@code to} */
+    void move(int from, int to, int count);
+
+    /** Resets the values from index {@code from}, inclusive, to {@code to}, exclusive */
+    void clear(int from, int to);
+
+    /**
+     * Drops any shared values that none of the first {@code size} rows refer to anymore, once rows
+     * have been removed
+     */
+    default void compactTable(int size) {}
+
+    void write(ObjectOutput out, int size) throws IOException;
+
+    void read(ObjectInput in, int offset, int count) throws IOException, ClassNotFoundException;
+  }
+
+  interface IntColumn extends Column {
+
+    int get(int index);
+
+    void set(int index, int value);
+
+    @Override
+    default void write(ObjectOutput out, int size) throws IOException {
+      for (int i = 0; i < size; i++) out.writeInt(get(i));
+    }
+
+    @Override
+    default void read(ObjectInput in, int offset, int count) throws IOException {
+      for (int i = 0; i < count; i++) set(offset + i, in.readInt());
+    }
+  }
+
+  interface DoubleColumn extends Column {
+
+    double get(int index);
+
+    void set(int index, double value);
+
+    @Override
+    default void write(ObjectOutput out, int size) throws IOException {
+      for (int i = 0; i < size; i++) out.writeDouble(get(i));
+    }
+
+    @Override
+    default void read(ObjectInput in, int offset, int count) throws IOException {
+      for (int i = 0; i < count; i++) set(offset + i, in.readDouble());
+    }
+  }
+
+  interface ObjectColumn<T> extends Column {
+
+    T get(int index);
+
+    void set(int index, T value);
+
+    /** Shared values are only written once, as the stream refers back to them afterwards */
+    @Override
+    default void write(ObjectOutput out, int size) throws IOException {
+      for (int i = 0; i < size; i++) out.writeObject(get(i));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    default void read(ObjectInput in, int offset, int count)
+        throws IOException, ClassNotFoundException {
+      for (int i = 0; i < count; i++) set(offset + i, (T) in.readObject());
+    }
+  }
+
+  private static final class HeapIntColumn implements IntColumn {
+
+    private int[] values = new int[0];
+
+    @Override
+    public int get(int index) {
+      return values[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+      values[index] = value;
+    }
+
+    @Override
+    public void setLength(int length) {
+      values = Arrays.copyOf(values, length);
+    }
+
+    @Override
+    public void permute(int[] order, int size) {
+      int[] permuted = new int[size];
+      for (int i = 0; i < size; i++) permuted[i] = values[order[i]];
+      values = permuted;
+    }
+
+    @Override
+    public void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override
+    public void clear(int from, int to) {
+      Arrays.fill(values, from, to, 0);
+    }
+  }
+
+  private static final class HeapDoubleColumn implements DoubleColumn {
+
+    private double[] values = new double[0];
+
+    @Override
+    public double get(int index) {
+      return values[index];
+    }
+
+    @Override
+    public void set(int index, double value) {
+      values[index] = value;
+    }
+
+    @Override
+    public void setLength(int length) {
+      values = Arrays.copyOf(values, length);
+    }
+
+    @Override
+    public void permute(int[] order, int size) {
+      double[] permuted = new double[size];
+      for (int i = 0; i < size; i++) permuted[i] = values[order[i]];
+      values = permuted;
+    }
+
+    @Override
+    public void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override
+    public void clear(int from, int to) {
+      Arrays.fill(values, from, to, 0);
+    }
+  }
+
+  private static final class HeapObjectColumn<T> implements ObjectColumn<T> {
+
+    private Object[] values = new Object[0];
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int index) {
+      return (T) values[index];
+    }
+
+    @Override
+    public void set(int index, T value) {
+      values[index] = value;
+    }
+
+    @Override
+    public void setLength(int length) {
+      values = Arrays.copyOf(values, length);
+    }
+
+    @Override
+    public void permute(int[] order, int size) {
+      Object[] permuted = new Object[size];
+      for (int i = 0; i < size; i++) permuted[i] = values[order[i]];
+      values = permuted;
+    }
+
+    @Override
+    public void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override
+    public void clear(int from, int to) {
+      Arrays.fill(values, from, to, null);
+    }
+  }
+
+  /** A column of fixed-size values in an off-heap segment */
+  private abstract static class OffHeapColumn implements Column {
+
+    private final long valueSize;
+
+    protected MemorySegment segment = MemorySegment.NULL;
+
+    protected OffHeapColumn(long valueSize) {
+      this.valueSize = valueSize;
+    }
+
+    public long getByteSize() {
+      return segment.byteSize();
+    }
+
+    @Override
+    public void setLength(int length) {
+      MemorySegment resized = allocate(length);
+      long copied = Math.min(segment.byteSize(), resized.byteSize());
+      MemorySegment.copy(segment, 0, resized, 0, copied);
+      resized.asSlice(copied).fill((byte) 0);
+      segment = resized;
+    }
+
+    @Override
+    public void permute(int[] order, int size) {
+      MemorySegment permuted = allocate(size);
+      for (int i = 0; i < size; i++) {
+        MemorySegment.copy(segment, order[i] * valueSize, permuted, i * valueSize, valueSize);
+      }
+      segment = permuted;
+    }
+
+    @Override
+    public void move(int from, int to, int count) {
+      // Copying between overlapping slices of a segment is safe
+      MemorySegment.copy(segment, from * valueSize, segment, to * valueSize, count * valueSize);
+    }
+
+    @Override
+    public void clear(int from, int to) {
+      segment.asSlice(from * valueSize, (to - from) * valueSize).fill((byte) 0);
+    }
+
+    private MemorySegment allocate(int length) {
+      if (length == 0) return MemorySegment.NULL;
+      return Arena.ofAuto().allocate(length * valueSize, valueSize);
+    }
+  }
+
+  private static final class OffHeapIntColumn extends OffHeapColumn implements IntColumn {
+
+    public OffHeapIntColumn() {
+      super(ValueLayout.JAVA_INT.byteSize());
+    }
+
+    @Override
+    public int get(int index) {
+      return segment.getAtIndex(ValueLayout.JAVA_INT, index);
+    }
+
+    @Override
+    public void set(int index, int value) {
+      segment.setAtIndex(ValueLayout.JAVA_INT, index, value);
+    }
+  }
+
+  private static final class OffHeapDoubleColumn extends OffHeapColumn implements DoubleColumn {
+
+    public OffHeapDoubleColumn() {
+      super(ValueLayout.JAVA_DOUBLE.byteSize());
+    }
+
+    @Override
+    public double get(int index) {
+      return segment.getAtIndex(ValueLayout.JAVA_DOUBLE, index);
+    }
+
+    @Override
+    public void set(int index, double value) {
+      segment.setAtIndex(ValueLayout.JAVA_DOUBLE, index, value);
+    }
+  }
+
+  /**
+   * Stores the position of each value in {@link #table}, plus one so that the zeroed memory of new
+   * rows reads as null. The table only grows as values are set, until it is rebuilt from the
+   * remaining rows by {@link #compactTable(int)} or emptied by {@code setLength(0)}.
+   */
+  private static final class OffHeapObjectColumn<T> extends OffHeapColumn
+      implements ObjectColumn<T> {
+
+    private final List<T> table = new ArrayList<>();
+
+    private final Map<T, Integer> positions;
+
+    public OffHeapObjectColumn(boolean internByEquals) {
+      super(ValueLayout.JAVA_INT.byteSize());
+      positions = internByEquals ? new HashMap<>() : new IdentityHashMap<>();
+    }
+
+    @Override
+    public T get(int index) {
+      int position = segment.getAtIndex(ValueLayout.JAVA_INT, index);
+      return position == 0 ? null : table.get(position - 1);
+    }
+
+    @Override
+    public void set(int index, T value) {
+      int position = 0;
+      if (value != null) {
+        Integer existing = positions.get(value);
+        if (existing == null) {
+          table.add(value);
+          existing = table.size();
+          positions.put(value, existing);
+        }
+        position = existing;
+      }
+      segment.setAtIndex(ValueLayout.JAVA_INT, index, position);
+    }
+
+    @Override
+    public void setLength(int length) {
+      super.setLength(length);
+      if (length == 0) {
+        table.clear();
+        positions.clear();
+      }
+    }
+
+    @Override
+    public void compactTable(int size) {
+      List<T> values = new ArrayList<>(table);
+      table.clear();
+      positions.clear();
+      for (int i = 0; i < size; i++) {
+        int position = segment.getAtIndex(ValueLayout.JAVA_INT, i);
+        if (position != 0) set(i, values.get(position - 1));
+      }
+    }
+  }
+}
@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.onebusaway.gtfs.model.IdentityBean;
 import org.onebusaway.gtfs.services.GenericMutableDao;
 import org.slf4j.Logger;
@@ -29,9 +30,15 @@ public class GenericDaoImpl implements GenericMutableDao {
 
   private final Logger _log = LoggerFactory.getLogger(GenericDaoImpl.class);
 
-  private final Map<Class<?>, Map<Object, Object>> _entitiesByClassAndId = new HashMap<>();
+  /**
+   * Concurrent so that fully loaded entity types can be looked up from other threads while new
+   * entity types are still being added, see {@link
+   * org.onebusaway.gtfs.serialization.GtfsReader#setParallelism(int)}.
+   */
+  private final Map<Class<?>, Map<Object, Object>> _entitiesByClassAndId =
+      new ConcurrentHashMap<>();
 
-  private final Map<Class<?>, EntityHandler<Serializable>> _handlers = new HashMap<>();
+  private final Map<Class<?>, EntityHandler<Serializable>> _handlers = new ConcurrentHashMap<>();
 
   private boolean _generateIds = true;
 
@@ -153,6 +160,26 @@ public class GenericDaoImpl implements GenericMutableDao {
     if (found == null) _log.warn("no stored entity with type " + type + " and id " + id);
   }
 
+  @Override
+  public void removeEntities(Collection<?> entities) {
+    if (entities.isEmpty()) return;
+
+    Class<?> type = entities.iterator().next().getClass();
+    Map<Object, Object> byId = _entitiesByClassAndId.get(type);
+
+    if (byId == null) {
+      _log.warn("no stored entities type " + type);
+      return;
+    }
+
+    int missing = 0;
+    for (Object entity : entities) {
+      if (byId.remove(((IdentityBean<?>) entity).getId()) == null) missing++;
+    }
+
+    if (missing > 0) _log.warn("no stored entities with type " + type + " for " + missing + " ids");
+  }
+
   @Override
   public void open() {}
 
@@ -59,6 +59,11 @@ public class GenericMutableDaoWrapper implements GenericMutableDao {
     _source.removeEntity(entity);
   }
 
+  @Override
+  public void removeEntities(Collection<?> entities) {
+    _source.removeEntities(entities);
+  }
+
   @Override
   public void updateEntity(Object entity) {
     _source.updateEntity(entity);
@@ -69,6 +74,11 @@ public class GenericMutableDaoWrapper implements GenericMutableDao {
     _source.saveEntity(entity);
   }
 
+  @Override
+  public void saveEntities(Collection<?> entities) {
+    _source.saveEntities(entities);
+  }
+
   @Override
   public void saveOrUpdateEntity(Object entity) {
     _source.saveOrUpdateEntity(entity);
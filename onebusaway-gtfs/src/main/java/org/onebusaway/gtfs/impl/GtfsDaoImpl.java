@@ -22,14 +22,16 @@ import org.onebusaway.gtfs.services.GtfsMutableDao;
 
 public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
 
-  private final StopTimeArray stopTimes = new StopTimeArray();
+  private StopTimeArray stopTimes = new StopTimeArray();
 
-  private final ShapePointArray shapePoints = new ShapePointArray();
+  private ShapePointArray shapePoints = new ShapePointArray();
 
   private boolean packStopTimes = false;
 
   private boolean packShapePoints = false;
 
+  private boolean sortPackedStopTimesByTrip = false;
+
   public boolean isPackStopTimes() {
     return packStopTimes;
   }
@@ -38,6 +40,35 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
     this.packStopTimes = packStopTimes;
   }
 
+  public boolean isPackOffHeap() {
+    return stopTimes.isOffHeap();
+  }
+
+  /**
+   * When stop times or shape points are packed, keep their columns in off-heap memory instead of
+   * arrays on the heap. Must be set before any of them are saved.
+   */
+  public void setPackOffHeap(boolean packOffHeap) {
+    if (!stopTimes.isEmpty() || !shapePoints.isEmpty()) {
+      throw new IllegalStateException("packed entities have already been saved");
+    }
+    stopTimes = new StopTimeArray(packOffHeap);
+    shapePoints = new ShapePointArray(packOffHeap);
+  }
+
+  public boolean isSortPackedStopTimesByTrip() {
+    return sortPackedStopTimesByTrip;
+  }
+
+  /**
+   * When stop times are packed, sort them by trip and stop sequence once loading is done, so the
+   * stop times of a trip can be looked up as a slice of the packed arrays. The ids of the packed
+   * stop times change, as does the order of {@link #getAllStopTimes()}.
+   */
+  public void setSortPackedStopTimesByTrip(boolean sortPackedStopTimesByTrip) {
+    this.sortPackedStopTimesByTrip = sortPackedStopTimesByTrip;
+  }
+
   public boolean isPackShapePoints() {
     return packShapePoints;
   }
@@ -369,6 +400,19 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
     super.saveEntity(entity);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public void saveEntities(Collection<?> entities) {
+    if (packStopTimes && allOfType(entities, StopTime.class)) {
+      stopTimes.addAll((Collection<StopTime>) entities);
+      return;
+    } else if (packShapePoints && allOfType(entities, ShapePoint.class)) {
+      shapePoints.addAll((Collection<ShapePoint>) entities);
+      return;
+    }
+    super.saveEntities(entities);
+  }
+
   @Override
   public <T> void clearAllEntitiesForType(Class<T> type) {
     if (packStopTimes && type.equals(StopTime.class)) {
@@ -381,19 +425,43 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
     super.clearAllEntitiesForType(type);
   }
 
+  /**
+   * Packed stop times and shape points can't be removed one at a time, as removing one changes the
+   * ids of the ones after it. Remove them with {@link #removeEntities(Collection)} instead.
+   */
   @Override
   public <K extends Serializable, T extends IdentityBean<K>> void removeEntity(T entity) {
     if (packStopTimes && entity.getClass().equals(StopTime.class)) {
-      throw new UnsupportedOperationException();
+      throw new UnsupportedOperationException("remove packed stop times with removeEntities");
     } else if (packShapePoints && entity.getClass().equals(ShapePoint.class)) {
-      throw new UnsupportedOperationException();
+      throw new UnsupportedOperationException("remove packed shape points with removeEntities");
     }
     super.removeEntity(entity);
   }
 
+  /**
+   * Packed stop times and shape points are removed by compacting their arrays in place, which
+   * changes the ids of the ones that are left. Stop times and shape points taken from this dao
+   * before no longer refer to the same values.
+   */
+  @Override
+  public void removeEntities(Collection<?> entities) {
+    if (packStopTimes && allOfType(entities, StopTime.class)) {
+      stopTimes.removeIndices(getIds(entities));
+      return;
+    } else if (packShapePoints && allOfType(entities, ShapePoint.class)) {
+      shapePoints.removeIndices(getIds(entities));
+      return;
+    }
+    super.removeEntities(entities);
+  }
+
   @Override
   public void close() {
     if (packStopTimes) {
+      if (sortPackedStopTimesByTrip) {
+        stopTimes.sortByTrip();
+      }
       stopTimes.trimToSize();
     }
     if (packShapePoints) {
@@ -406,6 +474,21 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
    * Private Methods
    ****/
 
+  private static boolean allOfType(Collection<?> entities, Class<?> type) {
+    for (Object entity : entities) {
+      if (!entity.getClass().equals(type)) return false;
+    }
+    return true;
+  }
+
+  /** The ids of packed entities, which are their indices in the packed arrays */
+  @SuppressWarnings("unchecked")
+  private static BitSet getIds(Collection<?> entities) {
+    BitSet ids = new BitSet();
+    for (Object entity : entities) ids.set(((IdentityBean<Integer>) entity).getId());
+    return ids;
+  }
+
   private <K> void noKeyCheck(Class<K> keyType) {
     if (packStopTimes && keyType.equals(StopTime.class)) {
       throw new UnsupportedOperationException();
@@ -14,17 +14,19 @@
  */
 package org.onebusaway.gtfs.impl;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import org.onebusaway.csv_entities.exceptions.EntityInstantiationException;
-import org.onebusaway.csv_entities.schema.BeanWrapper;
-import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.onebusaway.gtfs.model.*;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 
@@ -32,219 +34,218 @@ import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
  * A in-memory implementation of GtfsRelationalDaoImpl. It's super fast for most methods, but only
  * if you have enough memory to load your entire GTFS into memory.
  *
+ * <p>The relations are indexed the first time they are used. From then on, the indexes are kept up
+ * to date as entities are saved, removed or passed to {@link #updateEntity(Object)} after being
+ * modified. Entities that are modified without telling the dao require a call to {@link
+ * #clearCachesForEntityType(Class)} or {@link #clearAllCaches()}.
+ *
  * @author bdferris
  */
 public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements GtfsMutableRelationalDao {
 
-  private Map<AgencyAndId, List<String>> _tripAgencyIdsByServiceId = null;
-
-  private Map<Agency, List<Route>> _routesByAgency = null;
-
-  private Map<Stop, List<Stop>> _stopsByStation = null;
-
-  private Map<String, List<Stop>> _stopsByZoneId = null;
-
-  private Map<Trip, List<StopTime>> _stopTimesByTrip = null;
-
-  private Map<Stop, List<StopTime>> _stopTimesByStop = null;
-
-  private Map<Route, List<Trip>> _tripsByRoute = null;
-
-  private Map<AgencyAndId, List<Trip>> _tripsByShapeId = null;
-
-  private Map<AgencyAndId, List<Trip>> _tripsByServiceId = null;
-
-  private Map<AgencyAndId, List<Trip>> _tripsByBlockId = null;
-
-  private Map<AgencyAndId, List<ShapePoint>> _shapePointsByShapeId = null;
-
-  private Map<Trip, List<Frequency>> _frequenciesByTrip = null;
-
-  private Map<AgencyAndId, List<ServiceCalendarDate>> _calendarDatesByServiceId = null;
+  private final List<RelationIndex<?, ?>> _indexes = new ArrayList<>();
+
+  private final Map<Class<?>, List<RelationIndex<?, Object>>> _indexesByEntityType =
+      new HashMap<>();
+
+  private final RelationIndex<AgencyAndId, String> _tripAgencyIdsByServiceId =
+      index(
+          Trip.class,
+          RelationIndex.derived("tripAgencyIdsByServiceId", this::buildTripAgencyIdsByServiceId));
+
+  private final RelationIndex<Agency, Route> _routesByAgency =
+      index(Route.class, "routesByAgency", this::getAllRoutes, Route::getAgency);
+
+  private final RelationIndex<Stop, Stop> _stopsByStation =
+      index(Stop.class, RelationIndex.derived("stopsByStation", this::buildStopsByStation));
+
+  private final RelationIndex<String, Stop> _stopsByZoneId =
+      index(Stop.class, "stopsByZoneId", this::getAllStops, Stop::getZoneId);
+
+  private final RelationIndex<Trip, StopTime> _stopTimesByTrip =
+      index(
+          StopTime.class,
+          RelationIndex.incremental(
+              "stopTimesByTrip",
+              this::getAllStopTimes,
+              StopTime::getTrip,
+              true,
+              Comparator.naturalOrder(),
+              this::buildPackedStopTimesByTrip));
+
+  private final RelationIndex<StopLocation, StopTime> _stopTimesByStop =
+      index(
+          StopTime.class,
+          RelationIndex.incremental(
+              "stopTimesByStop",
+              this::getAllStopTimes,
+              StopTime::getStop,
+              true,
+              null,
+              this::buildPackedStopTimesByStop));
+
+  private final RelationIndex<Route, Trip> _tripsByRoute =
+      index(Trip.class, "tripsByRoute", this::getAllTrips, Trip::getRoute);
+
+  private final RelationIndex<AgencyAndId, Trip> _tripsByShapeId =
+      index(Trip.class, "tripsByShapeId", this::getAllTrips, Trip::getShapeId);
+
+  private final RelationIndex<AgencyAndId, Trip> _tripsByServiceId =
+      index(Trip.class, "tripsByServiceId", this::getAllTrips, Trip::getServiceId);
+
+  private final RelationIndex<AgencyAndId, Trip> _tripsByBlockId =
+      index(
+          Trip.class,
+          RelationIndex.incremental(
+              "tripsByBlockId",
+              this::getAllTrips,
+              trip ->
+                  trip.getBlockId() == null
+                      ? null
+                      : new AgencyAndId(trip.getId().getAgencyId(), trip.getBlockId()),
+              false,
+              null));
+
+  private final RelationIndex<AgencyAndId, ShapePoint> _shapePointsByShapeId =
+      index(
+          ShapePoint.class,
+          RelationIndex.incremental(
+              "shapePointsByShapeId",
+              this::getAllShapePoints,
+              ShapePoint::getShapeId,
+              true,
+              Comparator.naturalOrder()));
+
+  private final RelationIndex<Trip, Frequency> _frequenciesByTrip =
+      index(Frequency.class, "frequenciesByTrip", this::getAllFrequencies, Frequency::getTrip);
+
+  private final RelationIndex<AgencyAndId, ServiceCalendarDate> _calendarDatesByServiceId =
+      index(
+          ServiceCalendarDate.class,
+          "calendarDatesByServiceId",
+          this::getAllCalendarDates,
+          ServiceCalendarDate::getServiceId);
+
+  private final RelationIndex<AgencyAndId, ServiceCalendar> _calendarsByServiceId =
+      index(
+          ServiceCalendar.class,
+          "calendarsByServiceId",
+          this::getAllCalendars,
+          ServiceCalendar::getServiceId);
+
+  private final RelationIndex<FareAttribute, FareRule> _fareRulesByFareAttribute =
+      index(FareRule.class, "fareRulesByFareAttribute", this::getAllFareRules, FareRule::getFare);
+
+  private final RelationIndex<Route, FareRule> _fareRulesByRoute =
+      index(FareRule.class, "fareRulesByRoute", this::getAllFareRules, FareRule::getRoute);
+
+  private final RelationIndex<String, FareRule> _fareRulesByZoneId =
+      index(
+          FareRule.class, RelationIndex.derived("fareRulesByZoneId", this::buildFareRulesByZoneId));
+
+  private final RelationIndex<AgencyAndId, Ridership> _ridershipByTrip =
+      index(
+          Ridership.class,
+          RelationIndex.incremental(
+              "ridershipByTrip",
+              this::getAllRiderships,
+              r -> new AgencyAndId(r.getAgencyId(), r.getTripId()),
+              true,
+              null));
 
-  private Map<AgencyAndId, List<ServiceCalendar>> _calendarsByServiceId = null;
-
-  private Map<FareAttribute, List<FareRule>> _fareRulesByFareAttribute = null;
-
-  private Map<Route, List<FareRule>> _fareRulesByRoute = null;
-
-  private Map<String, List<FareRule>> _fareRulesByZoneId = null;
+  public void clearAllCaches() {
+    for (RelationIndex<?, ?> index : _indexes) index.invalidate();
+  }
 
-  private Map<AgencyAndId, List<Ridership>> _ridershipByTrip = null;
+  /**
+   * Drops the indexes over entities of the specified type, for when such entities have been
+   * modified without passing them to {@link #updateEntity(Object)}. Unlike {@link
+   * #clearAllCaches()}, the indexes over other entity types are kept.
+   *
+   * @param entityType the type of the modified entities
+   */
+  public void clearCachesForEntityType(Class<?> entityType) {
+    for (RelationIndex<?, Object> index : getIndexes(entityType)) index.invalidate();
+  }
 
-  public void clearAllCaches() {
-    _tripAgencyIdsByServiceId = clearMap(_tripAgencyIdsByServiceId);
-    _routesByAgency = clearMap(_routesByAgency);
-    _stopsByStation = clearMap(_stopsByStation);
-    _stopTimesByTrip = clearMap(_stopTimesByTrip);
-    _stopTimesByStop = clearMap(_stopTimesByStop);
-    _tripsByRoute = clearMap(_tripsByRoute);
-    _tripsByShapeId = clearMap(_tripsByShapeId);
-    _tripsByServiceId = clearMap(_tripsByServiceId);
-    _tripsByBlockId = clearMap(_tripsByBlockId);
-    _shapePointsByShapeId = clearMap(_shapePointsByShapeId);
-    _frequenciesByTrip = clearMap(_frequenciesByTrip);
-    _calendarDatesByServiceId = clearMap(_calendarDatesByServiceId);
-    _calendarsByServiceId = clearMap(_calendarsByServiceId);
-    _fareRulesByFareAttribute = clearMap(_fareRulesByFareAttribute);
-    _fareRulesByRoute = clearMap(_fareRulesByRoute);
-    _fareRulesByZoneId = clearMap(_fareRulesByZoneId);
-    _ridershipByTrip = clearMap(_ridershipByTrip);
+  /**
+   * @return how often each index has been used and rebuilt
+   */
+  public List<RelationIndexStatistics> getIndexStatistics() {
+    List<RelationIndexStatistics> statistics = new ArrayList<>();
+    for (RelationIndex<?, ?> index : _indexes) statistics.add(index.getStatistics());
+    return statistics;
   }
 
   @Override
   public List<String> getTripAgencyIdsReferencingServiceId(AgencyAndId serviceId) {
-
-    if (_tripAgencyIdsByServiceId == null) {
-
-      Map<AgencyAndId, Set<String>> agencyIdsByServiceIds = new HashMap<>();
-
-      for (Trip trip : getAllTrips()) {
-        AgencyAndId tripId = trip.getId();
-        String tripAgencyId = tripId.getAgencyId();
-        AgencyAndId tripServiceId = trip.getServiceId();
-        Set<String> agencyIds = agencyIdsByServiceIds.get(tripServiceId);
-        if (agencyIds == null) {
-          agencyIds = new HashSet<>();
-          agencyIdsByServiceIds.put(tripServiceId, agencyIds);
-        }
-        agencyIds.add(tripAgencyId);
-      }
-
-      _tripAgencyIdsByServiceId = new HashMap<>();
-
-      for (Map.Entry<AgencyAndId, Set<String>> entry : agencyIdsByServiceIds.entrySet()) {
-        AgencyAndId tripServiceId = entry.getKey();
-        List<String> agencyIds = new ArrayList<>(entry.getValue());
-        Collections.sort(agencyIds);
-        _tripAgencyIdsByServiceId.put(tripServiceId, agencyIds);
-      }
-    }
-
-    List<String> agencyIds = _tripAgencyIdsByServiceId.get(serviceId);
+    List<String> agencyIds = _tripAgencyIdsByServiceId.getOrNull(serviceId);
     if (agencyIds == null) agencyIds = new ArrayList<>();
     return agencyIds;
   }
 
   @Override
   public List<Route> getRoutesForAgency(Agency agency) {
-    if (_routesByAgency == null)
-      _routesByAgency = mapToValueList(getAllRoutes(), "agency", Agency.class);
-    return list(_routesByAgency.get(agency));
+    return _routesByAgency.get(agency);
   }
 
   @Override
   public List<Stop> getStopsForStation(Stop station) {
-    if (_stopsByStation == null) {
-      _stopsByStation = new HashMap<>();
-      for (Stop stop : getAllStops()) {
-        if (stop.getLocationType() == 0 && stop.getParentStation() != null) {
-          Stop parentStation =
-              getStopForId(new AgencyAndId(stop.getId().getAgencyId(), stop.getParentStation()));
-          List<Stop> subStops = _stopsByStation.get(parentStation);
-          if (subStops == null) {
-            subStops = new ArrayList<>(2);
-            _stopsByStation.put(parentStation, subStops);
-          }
-          subStops.add(stop);
-        }
-      }
-    }
-    return list(_stopsByStation.get(station));
+    return _stopsByStation.get(station);
   }
 
   @Override
   public List<Stop> getStopsForZoneId(String zoneId) {
-    if (_stopsByZoneId == null) {
-      _stopsByZoneId = mapToValueList(getAllStops(), "zoneId", String.class);
-    }
-    return list(_stopsByZoneId.get(zoneId));
+    return _stopsByZoneId.get(zoneId);
   }
 
   @Override
   public List<AgencyAndId> getAllShapeIds() {
-    ensureShapePointRelation();
     return new ArrayList<>(_shapePointsByShapeId.keySet());
   }
 
   @Override
   public List<ShapePoint> getShapePointsForShapeId(AgencyAndId shapeId) {
-    ensureShapePointRelation();
-    return list(_shapePointsByShapeId.get(shapeId));
+    return _shapePointsByShapeId.get(shapeId);
   }
 
   @Override
   public List<StopTime> getStopTimesForTrip(Trip trip) {
-
-    if (_stopTimesByTrip == null) {
-      _stopTimesByTrip = mapToValueList(getAllStopTimes(), "trip", Trip.class);
-      for (List<StopTime> stopTimes : _stopTimesByTrip.values()) Collections.sort(stopTimes);
-    }
-
-    return list(_stopTimesByTrip.get(trip));
+    return _stopTimesByTrip.get(trip);
   }
 
   @Override
   public List<StopTime> getStopTimesForStop(Stop stop) {
-    if (_stopTimesByStop == null)
-      _stopTimesByStop = mapToValueList(getAllStopTimes(), "stop", Stop.class);
-    return list(_stopTimesByStop.get(stop));
+    return _stopTimesByStop.get(stop);
   }
 
   @Override
   public List<Trip> getTripsForRoute(Route route) {
-    if (_tripsByRoute == null) _tripsByRoute = mapToValueList(getAllTrips(), "route", Route.class);
-    return list(_tripsByRoute.get(route));
+    return _tripsByRoute.get(route);
   }
 
   @Override
   public List<Trip> getTripsForShapeId(AgencyAndId shapeId) {
-    if (_tripsByShapeId == null) {
-      _tripsByShapeId = mapToValueList(getAllTrips(), "shapeId", AgencyAndId.class);
-    }
-    return list(_tripsByShapeId.get(shapeId));
+    return _tripsByShapeId.get(shapeId);
   }
 
   @Override
   public List<Trip> getTripsForServiceId(AgencyAndId serviceId) {
-    if (_tripsByServiceId == null) {
-      _tripsByServiceId = mapToValueList(getAllTrips(), "serviceId", AgencyAndId.class);
-    }
-    return list(_tripsByServiceId.get(serviceId));
+    return _tripsByServiceId.get(serviceId);
   }
 
   @Override
   public List<Trip> getTripsForBlockId(AgencyAndId blockId) {
-
-    if (_tripsByBlockId == null) {
-      _tripsByBlockId = new HashMap<>();
-      for (Trip trip : getAllTrips()) {
-        if (trip.getBlockId() != null) {
-          AgencyAndId bid = new AgencyAndId(trip.getId().getAgencyId(), trip.getBlockId());
-          List<Trip> trips = _tripsByBlockId.get(bid);
-          if (trips == null) {
-            trips = new ArrayList<>();
-            _tripsByBlockId.put(bid, trips);
-          }
-          trips.add(trip);
-        }
-      }
-    }
-
-    return list(_tripsByBlockId.get(blockId));
+    return _tripsByBlockId.get(blockId);
   }
 
   @Override
   public List<Frequency> getFrequenciesForTrip(Trip trip) {
-    if (_frequenciesByTrip == null)
-      _frequenciesByTrip = mapToValueList(getAllFrequencies(), "trip", Trip.class);
-    return list(_frequenciesByTrip.get(trip));
+    return _frequenciesByTrip.get(trip);
   }
 
   @Override
   public List<AgencyAndId> getAllServiceIds() {
-    ensureCalendarDatesByServiceIdRelation();
-    ensureCalendarsByServiceIdRelation();
     Set<AgencyAndId> serviceIds = new HashSet<>();
     serviceIds.addAll(_calendarDatesByServiceId.keySet());
     serviceIds.addAll(_calendarsByServiceId.keySet());
@@ -253,14 +254,12 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements GtfsMutableRel
 
   @Override
   public List<ServiceCalendarDate> getCalendarDatesForServiceId(AgencyAndId serviceId) {
-    ensureCalendarDatesByServiceIdRelation();
-    return list(_calendarDatesByServiceId.get(serviceId));
+    return _calendarDatesByServiceId.get(serviceId);
   }
 
   @Override
   public ServiceCalendar getCalendarForServiceId(AgencyAndId serviceId) {
-    ensureCalendarsByServiceIdRelation();
-    List<ServiceCalendar> calendars = list(_calendarsByServiceId.get(serviceId));
+    List<ServiceCalendar> calendars = _calendarsByServiceId.get(serviceId);
     switch (calendars.size()) {
       case 0:
         return null;
@@ -272,18 +271,12 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements GtfsMutableRel
 
   @Override
   public List<FareRule> getFareRulesForFareAttribute(FareAttribute fareAttribute) {
-    if (_fareRulesByFareAttribute == null) {
-      _fareRulesByFareAttribute = mapToValueList(getAllFareRules(), "fare", FareAttribute.class);
-    }
-    return list(_fareRulesByFareAttribute.get(fareAttribute));
+    return _fareRulesByFareAttribute.get(fareAttribute);
   }
 
   @Override
   public List<FareRule> getFareRulesForRoute(Route route) {
-    if (_fareRulesByRoute == null) {
-      _fareRulesByRoute = mapToValueList(getAllFareRules(), "route", Route.class);
-    }
-    return list(_fareRulesByRoute.get(route));
+    return _fareRulesByRoute.get(route);
   }
 
   private static Set<String> getUniqueValues(String... values) {
@@ -298,124 +291,225 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements GtfsMutableRel
 
   @Override
   public List<FareRule> getFareRulesForZoneId(String zoneId) {
-    if (_fareRulesByZoneId == null) {
-      _fareRulesByZoneId = new HashMap<>();
-      for (FareRule rule : getAllFareRules()) {
-        Set<String> uniqueIds =
-            getUniqueValues(rule.getOriginId(), rule.getContainsId(), rule.getDestinationId());
-        for (String id : uniqueIds) {
-          List<FareRule> fareRules = _fareRulesByZoneId.get(id);
-          if (fareRules == null) {
-            fareRules = new ArrayList<>();
-            _fareRulesByZoneId.put(id, fareRules);
-          }
-          fareRules.add(rule);
-        }
-      }
-    }
-    return list(_fareRulesByZoneId.get(zoneId));
+    return _fareRulesByZoneId.get(zoneId);
   }
 
   @Override
   public List<Ridership> getRidershipForTrip(AgencyAndId tripId) {
-    if (_ridershipByTrip == null) {
-      _ridershipByTrip = new HashMap<>();
-      for (Ridership r : getAllRiderships()) {
-        AgencyAndId aid = new AgencyAndId(r.getAgencyId(), r.getTripId());
-        if (_ridershipByTrip.containsKey(aid)) {
-          _ridershipByTrip.get(aid).add(r);
-        } else {
-          List<Ridership> list = new ArrayList<>();
-          list.add(r);
-          _ridershipByTrip.put(aid, list);
-        }
-      }
-    }
-    return _ridershipByTrip.get(tripId);
+    return _ridershipByTrip.getOrNull(tripId);
   }
 
   /****
-   * Private Methods
+   * {@link GtfsMutableRelationalDao} Interface
    ****/
 
-  private void ensureCalendarDatesByServiceIdRelation() {
-    if (_calendarDatesByServiceId == null) {
-      _calendarDatesByServiceId =
-          mapToValueList(getAllCalendarDates(), "serviceId", AgencyAndId.class);
+  @Override
+  public void saveEntity(Object entity) {
+    Class<?> type = entity.getClass();
+    List<RelationIndex<?, Object>> indexes = getIndexes(type);
+    if (!isAnyBuilt(indexes)) {
+      super.saveEntity(entity);
+      return;
+    }
+    if (isPacked(type)) {
+      super.saveEntity(entity);
+      for (RelationIndex<?, Object> index : indexes) index.invalidate();
+      return;
+    }
+
+    // Saving an entity replaces any entity with the same id, unless an id gets generated for it
+    IdentityBean<?> bean = (IdentityBean<?>) entity;
+    Object id = bean.getId();
+    Object existing = id == null ? null : getEntityForId(type, (Serializable) id);
+    super.saveEntity(entity);
+    if (!Objects.equals(id, bean.getId())) existing = null;
+    for (RelationIndex<?, Object> index : indexes) {
+      if (existing != null) index.remove(existing);
+      index.add(entity);
     }
   }
 
-  private void ensureCalendarsByServiceIdRelation() {
-    if (_calendarsByServiceId == null) {
-      _calendarsByServiceId = mapToValueList(getAllCalendars(), "serviceId", AgencyAndId.class);
+  @Override
+  public void saveEntities(Collection<?> entities) {
+    if (entities.isEmpty()) return;
+    Class<?> type = entities.iterator().next().getClass();
+    List<RelationIndex<?, Object>> indexes = getIndexes(type);
+    if (!isAnyBuilt(indexes)) {
+      super.saveEntities(entities);
+    } else if (isPacked(type)) {
+      super.saveEntities(entities);
+      for (RelationIndex<?, Object> index : indexes) index.invalidate();
+    } else {
+      for (Object entity : entities) saveEntity(entity);
     }
   }
 
-  private void ensureShapePointRelation() {
-    if (_shapePointsByShapeId == null) {
-      _shapePointsByShapeId = mapToValueList(getAllShapePoints(), "shapeId", AgencyAndId.class);
-      for (List<ShapePoint> shapePoints : _shapePointsByShapeId.values())
-        Collections.sort(shapePoints);
+  @Override
+  public void updateEntity(Object entity) {
+    super.updateEntity(entity);
+    boolean packed = isPacked(entity.getClass());
+    for (RelationIndex<?, Object> index : getIndexes(entity.getClass())) {
+      if (packed) index.invalidate();
+      else index.update(entity);
     }
   }
 
-  private static <T> List<T> list(List<T> list) {
-    if (list == null) list = new ArrayList<>();
-    return Collections.unmodifiableList(list);
+  @Override
+  public void saveOrUpdateEntity(Object entity) {
+    @SuppressWarnings("unchecked")
+    IdentityBean<Serializable> bean = ((IdentityBean<Serializable>) entity);
+    if (getEntityForId(entity.getClass(), bean.getId()) == entity) updateEntity(entity);
+    else saveEntity(entity);
   }
 
-  @SuppressWarnings("unchecked")
-  private static <K, V> Map<K, List<V>> mapToValueList(
-      Iterable<V> values, String property, Class<K> keyType) {
-    return mapToValueCollection(values, property, keyType, new ArrayList<V>().getClass());
+  @Override
+  public <K extends Serializable, T extends IdentityBean<K>> void removeEntity(T entity) {
+    super.removeEntity(entity);
+    for (RelationIndex<?, Object> index : getIndexes(entity.getClass())) index.remove(entity);
   }
 
-  @SuppressWarnings("unchecked")
-  private static <K, V, C extends Collection<V>, CIMPL extends C> Map<K, C> mapToValueCollection(
-      Iterable<V> values, String property, Class<K> keyType, Class<CIMPL> collectionType) {
+  @Override
+  public void removeEntities(Collection<?> entities) {
+    if (entities.isEmpty()) return;
+    Class<?> type = entities.iterator().next().getClass();
+    super.removeEntities(entities);
+    // Removing packed entities changes the ids of the others
+    boolean packed = isPacked(type);
+    for (RelationIndex<?, Object> index : getIndexes(type)) {
+      if (packed) index.invalidate();
+      else index.removeAll(entities);
+    }
+  }
 
-    Map<K, C> byKey = new HashMap<>();
-    SimplePropertyQuery query = new SimplePropertyQuery(property);
+  @Override
+  public <T> void clearAllEntitiesForType(Class<T> type) {
+    super.clearAllEntitiesForType(type);
+    clearCachesForEntityType(type);
+  }
 
-    for (V value : values) {
+  @Override
+  public void close() {
+    super.close();
+    // Sorting the packed stop times changes their ids
+    if (isPackStopTimes()) clearCachesForEntityType(StopTime.class);
+  }
 
-      K key = (K) query.invoke(value);
-      C valuesForKey = byKey.get(key);
-      if (valuesForKey == null) {
+  @Override
+  public void clear() {
+    super.clear();
+    clearAllCaches();
+  }
 
-        try {
-          valuesForKey = collectionType.getDeclaredConstructor().newInstance();
-        } catch (Exception ex) {
-          throw new EntityInstantiationException(collectionType, ex);
-        }
+  /****
+   * Private Methods
+   ****/
 
-        byKey.put(key, valuesForKey);
-      }
-      valuesForKey.add(value);
+  private <K, V> RelationIndex<K, V> index(
+      Class<V> entityType, String name, Supplier<Collection<V>> values, Function<V, K> key) {
+    return index(entityType, RelationIndex.incremental(name, values, key, true, null));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <I extends RelationIndex<?, ?>> I index(Class<?> entityType, I index) {
+    _indexes.add(index);
+    _indexesByEntityType
+        .computeIfAbsent(entityType, _ -> new ArrayList<>())
+        .add((RelationIndex<?, Object>) index);
+    return index;
+  }
+
+  private List<RelationIndex<?, Object>> getIndexes(Class<?> entityType) {
+    List<RelationIndex<?, Object>> indexes = _indexesByEntityType.get(entityType);
+    return indexes == null ? Collections.emptyList() : indexes;
+  }
+
+  private static boolean isAnyBuilt(List<RelationIndex<?, Object>> indexes) {
+    for (RelationIndex<?, Object> index : indexes) {
+      if (index.isBuilt()) return true;
     }
+    return false;
+  }
 
-    return byKey;
+  /** Groups packed stop times straight from their columns, instead of one stop time at a time */
+  private Map<Trip, List<StopTime>> buildPackedStopTimesByTrip() {
+    StopTimeArray stopTimes = getPackedStopTimes();
+    return stopTimes == null ? null : stopTimes.getStopTimesByTrip();
   }
 
-  private <K, V> Map<K, V> clearMap(Map<K, V> map) {
-    if (map != null) map.clear();
-    return null;
+  private Map<StopLocation, List<StopTime>> buildPackedStopTimesByStop() {
+    StopTimeArray stopTimes = getPackedStopTimes();
+    return stopTimes == null ? null : stopTimes.getStopTimesByStop();
   }
 
-  private static final class SimplePropertyQuery {
+  private StopTimeArray getPackedStopTimes() {
+    return isPackStopTimes() && getAllStopTimes() instanceof StopTimeArray array ? array : null;
+  }
+
+  /** Packed entities are copied on save, so the saved instance isn't the one that is indexed */
+  private boolean isPacked(Class<?> entityType) {
+    return (entityType == StopTime.class && isPackStopTimes())
+        || (entityType == ShapePoint.class && isPackShapePoints());
+  }
 
-    private String[] _properties;
+  private Map<AgencyAndId, List<String>> buildTripAgencyIdsByServiceId() {
 
-    public SimplePropertyQuery(String query) {
-      _properties = query.split("\\.");
+    Map<AgencyAndId, Set<String>> agencyIdsByServiceIds = new HashMap<>();
+
+    for (Trip trip : getAllTrips()) {
+      AgencyAndId tripId = trip.getId();
+      String tripAgencyId = tripId.getAgencyId();
+      AgencyAndId tripServiceId = trip.getServiceId();
+      Set<String> agencyIds = agencyIdsByServiceIds.get(tripServiceId);
+      if (agencyIds == null) {
+        agencyIds = new HashSet<>();
+        agencyIdsByServiceIds.put(tripServiceId, agencyIds);
+      }
+      agencyIds.add(tripAgencyId);
+    }
+
+    Map<AgencyAndId, List<String>> tripAgencyIdsByServiceId = new HashMap<>();
+
+    for (Map.Entry<AgencyAndId, Set<String>> entry : agencyIdsByServiceIds.entrySet()) {
+      AgencyAndId tripServiceId = entry.getKey();
+      List<String> agencyIds = new ArrayList<>(entry.getValue());
+      Collections.sort(agencyIds);
+      tripAgencyIdsByServiceId.put(tripServiceId, agencyIds);
+    }
+    return tripAgencyIdsByServiceId;
+  }
+
+  /** Depends on the parent stations being saved, so it is rebuilt on any stop change */
+  private Map<Stop, List<Stop>> buildStopsByStation() {
+    Map<Stop, List<Stop>> stopsByStation = new HashMap<>();
+    for (Stop stop : getAllStops()) {
+      if (stop.getLocationType() == 0 && stop.getParentStation() != null) {
+        Stop parentStation =
+            getStopForId(new AgencyAndId(stop.getId().getAgencyId(), stop.getParentStation()));
+        List<Stop> subStops = stopsByStation.get(parentStation);
+        if (subStops == null) {
+          subStops = new ArrayList<>(2);
+          stopsByStation.put(parentStation, subStops);
+        }
+        subStops.add(stop);
+      }
     }
+    return stopsByStation;
+  }
 
-    public Object invoke(Object value) {
-      for (String property : _properties) {
-        BeanWrapper wrapper = BeanWrapperFactory.wrap(value);
-        value = wrapper.getPropertyValue(property);
+  private Map<String, List<FareRule>> buildFareRulesByZoneId() {
+    Map<String, List<FareRule>> fareRulesByZoneId = new HashMap<>();
+    for (FareRule rule : getAllFareRules()) {
+      Set<String> uniqueIds =
+          getUniqueValues(rule.getOriginId(), rule.getContainsId(), rule.getDestinationId());
+      for (String id : uniqueIds) {
+        List<FareRule> fareRules = fareRulesByZoneId.get(id);
+        if (fareRules == null) {
+          fareRules = new ArrayList<>();
+          fareRulesByZoneId.put(id, fareRules);
+        }
+        fareRules.add(rule);
       }
-      return value;
     }
+    return fareRulesByZoneId;
   }
 }
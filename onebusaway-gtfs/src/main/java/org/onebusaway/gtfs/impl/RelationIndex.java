@@ -0,0 +1,327 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A lazily built lookup of values by key, as used by {@link GtfsRelationalDaoImpl}. Once built, an
+ * incremental index is kept up to date as entities are saved, removed and updated, instead of being
+ * rebuilt from scratch. Derived indexes, whose keys depend on more than a single entity, are simply
+ * dropped on any change and rebuilt on the next lookup.
+ *
+ * <p>An incremental index can also be given a builder that builds the whole index at once, for
+ * values stored in a way that makes it faster than looking up the key of each value in turn.
+ *
+ * <p>Lists handed out by the index are never modified afterwards: a list is copied before it is
+ * changed if it has been handed out, so callers can keep iterating over it while they remove the
+ * entities it holds.
+ *
+ * <p>All methods are synchronized, so that a dao can be read from several threads at once even
+ * though its indexes are built on first use.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class RelationIndex<K, V> {
+
+  private final String _name;
+
+  private final Supplier<? extends Iterable<V>> _values;
+
+  private final Function<V, K> _key;
+
+  private final boolean _indexNullKeys;
+
+  private final Comparator<? super V> _order;
+
+  /** Builds the whole index, or returns null if the values must be indexed one by one */
+  private final Supplier<Map<K, List<V>>> _builder;
+
+  /** Null until the index is first used and after it has been invalidated */
+  private Map<K, Bucket<V>> _buckets = null;
+
+  private boolean _everBuilt = false;
+
+  private long _hits = 0;
+
+  private long _misses = 0;
+
+  private long _rebuilds = 0;
+
+  private RelationIndex(
+      String name,
+      Supplier<? extends Iterable<V>> values,
+      Function<V, K> key,
+      boolean indexNullKeys,
+      Comparator<? super V> order,
+      Supplier<Map<K, List<V>>> builder) {
+    _name = name;
+    _values = values;
+    _key = key;
+    _indexNullKeys = indexNullKeys;
+    _order = order;
+    _builder = builder;
+  }
+
+  /**
+   * @param name the name reported in the statistics
+   * @param values all the values to index
+   * @param key the key of a value
+   * @param indexNullKeys false to leave out values with a null key
+   * @param order the order of the values for each key, or null to keep them in the order of {@code
+   *     values}
+   */
+  public static <K, V> RelationIndex<K, V> incremental(
+      String name,
+      Supplier<? extends Iterable<V>> values,
+      Function<V, K> key,
+      boolean indexNullKeys,
+      Comparator<? super V> order) {
+    return incremental(name, values, key, indexNullKeys, order, null);
+  }
+
+  /**
+   * @param builder builds the whole index, with the same keys and order as indexing {@code values}
+   *     one by one would, or returns null if it can't
+   * @see #incremental(String, Supplier, Function, boolean, Comparator)
+   */
+  public static <K, V> RelationIndex<K, V> incremental(
+      String name,
+      Supplier<? extends Iterable<V>> values,
+      Function<V, K> key,
+      boolean indexNullKeys,
+      Comparator<? super V> order,
+      Supplier<Map<K, List<V>>> builder) {
+    return new RelationIndex<>(name, values, key, indexNullKeys, order, builder);
+  }
+
+  /**
+   * @param name the name reported in the statistics
+   * @param builder builds the whole index
+   */
+  public static <K, V> RelationIndex<K, V> derived(String name, Supplier<Map<K, List<V>>> builder) {
+    return new RelationIndex<>(name, null, null, false, null, builder);
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public synchronized boolean isBuilt() {
+    return _buckets != null;
+  }
+
+  /**
+   * @return the values for the key, as an unmodifiable list that is empty if there are none
+   */
+  public synchronized List<V> get(K key) {
+    Bucket<V> bucket = ensureBuilt().get(key);
+    if (bucket == null) return Collections.emptyList();
+    bucket.shared = true;
+    if (bucket.view == null) bucket.view = Collections.unmodifiableList(bucket.values);
+    return bucket.view;
+  }
+
+  /**
+   * @return the values for the key, or null if there are none
+   */
+  public synchronized List<V> getOrNull(K key) {
+    Bucket<V> bucket = ensureBuilt().get(key);
+    if (bucket == null) return null;
+    bucket.shared = true;
+    return bucket.values;
+  }
+
+  public synchronized Set<K> keySet() {
+    return Collections.unmodifiableSet(ensureBuilt().keySet());
+  }
+
+  public synchronized void add(V value) {
+    if (_buckets == null) return;
+    if (_key == null) {
+      invalidate();
+      return;
+    }
+    K key = _key.apply(value);
+    if (key == null && !_indexNullKeys) return;
+    Bucket<V> bucket = _buckets.computeIfAbsent(key, _ -> new Bucket<>());
+    List<V> values = bucket.writable();
+    if (_order == null) {
+      values.add(value);
+    } else {
+      // After any equal values, as with a stable sort of the values in insertion order
+      int index = values.size();
+      while (index > 0 && _order.compare(values.get(index - 1), value) > 0) index--;
+      values.add(index, value);
+    }
+  }
+
+  public synchronized void remove(V value) {
+    if (_buckets == null) return;
+    if (_key == null) {
+      invalidate();
+      return;
+    }
+    K key = _key.apply(value);
+    if (key == null && !_indexNullKeys) return;
+    Bucket<V> bucket = _buckets.get(key);
+    // The key has changed since the value was indexed, so there is no telling where it is
+    if (bucket == null || !bucket.writable().remove(value)) {
+      invalidate();
+      return;
+    }
+    if (bucket.values.isEmpty()) _buckets.remove(key);
+  }
+
+  /** Removes a batch of values, going through each affected list of values once. */
+  public synchronized void removeAll(Collection<? extends V> values) {
+    if (_buckets == null) return;
+    if (_key == null) {
+      invalidate();
+      return;
+    }
+    Map<K, Set<V>> removedByKey = new HashMap<>();
+    for (V value : values) {
+      K key = _key.apply(value);
+      if (key == null && !_indexNullKeys) continue;
+      removedByKey.computeIfAbsent(key, _ -> new HashSet<>()).add(value);
+    }
+    for (Map.Entry<K, Set<V>> entry : removedByKey.entrySet()) {
+      Set<V> removed = entry.getValue();
+      Bucket<V> bucket = _buckets.get(entry.getKey());
+      if (bucket == null) {
+        invalidate();
+        return;
+      }
+      List<V> bucketValues = bucket.writable();
+      int size = bucketValues.size();
+      bucketValues.removeIf(removed::contains);
+      // Some keys have changed since the values were indexed, as in remove(V)
+      if (size - bucketValues.size() != removed.size()) {
+        invalidate();
+        return;
+      }
+      if (bucketValues.isEmpty()) _buckets.remove(entry.getKey());
+    }
+  }
+
+  /** Brings the index up to date after a value has been modified in place. */
+  public synchronized void update(V value) {
+    if (_buckets == null) return;
+    if (_key == null) {
+      invalidate();
+      return;
+    }
+    K key = _key.apply(value);
+    if (key == null && !_indexNullKeys) {
+      invalidate();
+      return;
+    }
+    Bucket<V> bucket = _buckets.get(key);
+    if (bucket == null || !containsInstance(bucket.values, value)) {
+      invalidate();
+      return;
+    }
+    if (_order != null && !isSorted(bucket.values)) bucket.writable().sort(_order);
+  }
+
+  public synchronized void invalidate() {
+    _buckets = null;
+  }
+
+  public synchronized RelationIndexStatistics getStatistics() {
+    return new RelationIndexStatistics(_name, _hits, _misses, _rebuilds);
+  }
+
+  private Map<K, Bucket<V>> ensureBuilt() {
+    if (_buckets != null) {
+      _hits++;
+      return _buckets;
+    }
+    _misses++;
+    if (_everBuilt) _rebuilds++;
+    _everBuilt = true;
+
+    Map<K, Bucket<V>> buckets = new HashMap<>();
+    Map<K, List<V>> built = _builder == null ? null : _builder.get();
+    if (built != null) {
+      for (Map.Entry<K, List<V>> entry : built.entrySet()) {
+        Bucket<V> bucket = new Bucket<>();
+        bucket.values = entry.getValue();
+        if (bucket.values instanceof Unmodifiable) bucket.view = bucket.values;
+        buckets.put(entry.getKey(), bucket);
+      }
+    } else {
+      for (V value : _values.get()) {
+        K key = _key.apply(value);
+        if (key == null && !_indexNullKeys) continue;
+        buckets.computeIfAbsent(key, _ -> new Bucket<>()).values.add(value);
+      }
+      if (_order != null) {
+        for (Bucket<V> bucket : buckets.values()) bucket.values.sort(_order);
+      }
+    }
+    _buckets = buckets;
+    return buckets;
+  }
+
+  private boolean isSorted(List<V> values) {
+    for (int i = 1; i < values.size(); i++) {
+      if (_order.compare(values.get(i - 1), values.get(i)) > 0) return false;
+    }
+    return true;
+  }
+
+  private static boolean containsInstance(List<?> values, Object value) {
+    for (Object v : values) {
+      if (v == value) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Marks lists that can't be modified, which a builder may return so that they are handed out as
+   * they are, rather than wrapped in an unmodifiable view that would hide their own methods.
+   */
+  interface Unmodifiable {}
+
+  private static final class Bucket<V> {
+
+    private List<V> values = new ArrayList<>();
+
+    /** True once {@link #values} has been handed out, after which it must not change */
+    private boolean shared = false;
+
+    /** An unmodifiable view of {@link #values}, kept for as long as they don't change */
+    private List<V> view = null;
+
+    public List<V> writable() {
+      if (shared) {
+        values = new ArrayList<>(values);
+        shared = false;
+        view = null;
+      }
+      return values;
+    }
+  }
+}
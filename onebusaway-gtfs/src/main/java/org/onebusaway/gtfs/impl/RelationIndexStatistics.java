@@ -0,0 +1,68 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+/**
+ * Usage counts of one of the lookup indexes of {@link GtfsRelationalDaoImpl}.
+ *
+ * @see GtfsRelationalDaoImpl#getIndexStatistics()
+ */
+public final class RelationIndexStatistics {
+
+  private final String _name;
+
+  private final long _hits;
+
+  private final long _misses;
+
+  private final long _rebuilds;
+
+  public RelationIndexStatistics(String name, long hits, long misses, long rebuilds) {
+    _name = name;
+    _hits = hits;
+    _misses = misses;
+    _rebuilds = rebuilds;
+  }
+
+  /**
+   * @return the name of the index, such as {@code stopTimesByTrip}
+   */
+  public String getName() {
+    return _name;
+  }
+
+  /**
+   * @return the number of lookups that were served by the already built index
+   */
+  public long getHits() {
+    return _hits;
+  }
+
+  /**
+   * @return the number of lookups that had to build the index first
+   */
+  public long getMisses() {
+    return _misses;
+  }
+
+  /**
+   * @return the number of times the index had to be built again after it had been invalidated
+   */
+  public long getRebuilds() {
+    return _rebuilds;
+  }
+
+  @Override
+  public String toString() {
+    return _name + " hits=" + _hits + " misses=" + _misses + " rebuilds=" + _rebuilds;
+  }
+}
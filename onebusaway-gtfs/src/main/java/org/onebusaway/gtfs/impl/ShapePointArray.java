@@ -13,11 +13,19 @@
  */
 package org.onebusaway.gtfs.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.AbstractList;
-import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import org.onebusaway.gtfs.impl.Columns.DoubleColumn;
+import org.onebusaway.gtfs.impl.Columns.IntColumn;
+import org.onebusaway.gtfs.impl.Columns.ObjectColumn;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ShapePoint;
 import org.onebusaway.gtfs.model.ShapePointProxy;
@@ -26,15 +34,65 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
 
   private int size = 0;
 
-  private AgencyAndId[] shapeIds = new AgencyAndId[0];
+  private final Columns columns;
 
-  private int[] sequences = new int[0];
+  private final ObjectColumn<AgencyAndId> shapeIds;
 
-  private double[] lats = new double[0];
+  private final IntColumn sequences;
 
-  private double[] lons = new double[0];
+  private final DoubleColumn lats;
 
-  private double[] distTraveled = new double[0];
+  private final DoubleColumn lons;
+
+  private final DoubleColumn distTraveled;
+
+  public ShapePointArray() {
+    this(false);
+  }
+
+  /**
+   * @param offHeap true to keep the columns in off-heap memory, storing the shape id of each point
+   *     as an index into a table of the distinct shape ids
+   */
+  public ShapePointArray(boolean offHeap) {
+    columns = new Columns(offHeap);
+    shapeIds = columns.newObjectColumn(true);
+    sequences = columns.newIntColumn();
+    lats = columns.newDoubleColumn();
+    lons = columns.newDoubleColumn();
+    distTraveled = columns.newDoubleColumn();
+  }
+
+  /**
+   * @return true if the columns are kept in off-heap memory
+   */
+  public boolean isOffHeap() {
+    return columns.isOffHeap();
+  }
+
+  /**
+   * @return the number of bytes of off-heap memory used by the columns
+   */
+  public long getOffHeapBytes() {
+    return columns.getOffHeapBytes();
+  }
+
+  /**
+   * Writes the shape points column by column, to be read back with {@link
+   * #readColumns(ObjectInput)}
+   */
+  public void writeColumns(ObjectOutput out) throws IOException {
+    out.writeInt(size);
+    columns.write(out, size);
+  }
+
+  /** Appends the shape points written by {@link #writeColumns(ObjectOutput)} */
+  public void readColumns(ObjectInput in) throws IOException, ClassNotFoundException {
+    int count = in.readInt();
+    ensureCapacity(size + count);
+    columns.read(in, size, count);
+    size += count;
+  }
 
   public void trimToSize() {
     setLength(size);
@@ -49,14 +107,43 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
     int index = size;
     size++;
     ensureCapacity(size);
-    shapeIds[index] = shapePoint.getShapeId();
-    sequences[index] = shapePoint.getSequence();
-    lats[index] = shapePoint.getLat();
-    lons[index] = shapePoint.getLon();
-    distTraveled[index] = shapePoint.getDistTraveled();
+    shapeIds.set(index, shapePoint.getShapeId());
+    sequences.set(index, shapePoint.getSequence());
+    lats.set(index, shapePoint.getLat());
+    lons.set(index, shapePoint.getLon());
+    distTraveled.set(index, shapePoint.getDistTraveled());
     return true;
   }
 
+  @Override
+  public boolean addAll(Collection<? extends ShapePoint> shapePoints) {
+    ensureCapacity(size + shapePoints.size());
+    for (ShapePoint shapePoint : shapePoints) add(shapePoint);
+    return !shapePoints.isEmpty();
+  }
+
+  /**
+   * Removes the shape points at the set indices in one pass, moving the others down in place. As
+   * the id of a shape point is its index, the ids of the shape points after a removed one change.
+   *
+   * @return the number of shape points removed
+   */
+  public int removeIndices(BitSet indices) {
+    int newSize = columns.compact(indices, size);
+    int removed = size - newSize;
+    size = newSize;
+    return removed;
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super ShapePoint> filter) {
+    BitSet indices = new BitSet(size);
+    for (int i = 0; i < size; i++) {
+      if (filter.test(get(i))) indices.set(i);
+    }
+    return removeIndices(indices) > 0;
+  }
+
   @Override
   public void clear() {
     size = 0;
@@ -88,18 +175,14 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
    ****/
 
   private void ensureCapacity(int capacity) {
-    if (shapeIds.length < capacity) {
-      int newLength = Math.max(8, shapeIds.length << 2);
+    if (columns.getLength() < capacity) {
+      int newLength = Math.max(capacity, Math.max(8, columns.getLength() << 2));
       setLength(newLength);
     }
   }
 
   private void setLength(int newLength) {
-    this.shapeIds = Arrays.copyOf(this.shapeIds, newLength);
-    this.sequences = Arrays.copyOf(this.sequences, newLength);
-    this.lats = Arrays.copyOf(this.lats, newLength);
-    this.lons = Arrays.copyOf(this.lons, newLength);
-    this.distTraveled = Arrays.copyOf(this.distTraveled, newLength);
+    columns.setLength(newLength);
   }
 
   private class ShapePointIterator implements Iterator<ShapePoint> {
@@ -148,62 +231,62 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
 
     @Override
     public AgencyAndId getShapeId() {
-      return shapeIds[index];
+      return shapeIds.get(index);
     }
 
     @Override
     public void setShapeId(AgencyAndId shapeId) {
-      shapeIds[index] = shapeId;
+      shapeIds.set(index, shapeId);
     }
 
     @Override
     public int getSequence() {
-      return sequences[index];
+      return sequences.get(index);
     }
 
     @Override
     public void setSequence(int sequence) {
-      sequences[index] = sequence;
+      sequences.set(index, sequence);
     }
 
     @Override
     public boolean isDistTraveledSet() {
-      return distTraveled[index] != ShapePoint.MISSING_VALUE;
+      return distTraveled.get(index) != ShapePoint.MISSING_VALUE;
     }
 
     @Override
     public double getDistTraveled() {
-      return distTraveled[index];
+      return distTraveled.get(index);
     }
 
     @Override
     public void setDistTraveled(double distTraveled) {
-      ShapePointArray.this.distTraveled[index] = distTraveled;
+      ShapePointArray.this.distTraveled.set(index, distTraveled);
     }
 
     @Override
     public void clearDistTraveled() {
-      distTraveled[index] = ShapePoint.MISSING_VALUE;
+      distTraveled.set(index, ShapePoint.MISSING_VALUE);
     }
 
     @Override
     public double getLat() {
-      return lats[index];
+      return lats.get(index);
     }
 
     @Override
     public void setLat(double lat) {
-      lats[index] = lat;
+      lats.set(index, lat);
     }
 
     @Override
     public double getLon() {
-      return lons[index];
+      return lons.get(index);
     }
 
     @Override
     public void setLon(double lon) {
-      lons[index] = lon;
+      lons.set(index, lon);
     }
   }
 }
@@ -13,90 +13,250 @@
  */
 package org.onebusaway.gtfs.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.AbstractList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+import org.onebusaway.gtfs.impl.Columns.DoubleColumn;
+import org.onebusaway.gtfs.impl.Columns.IntColumn;
+import org.onebusaway.gtfs.impl.Columns.ObjectColumn;
 import org.onebusaway.gtfs.model.*;
 
 public class StopTimeArray extends AbstractList<StopTime> {
 
   private int size = 0;
 
-  private Trip[] trips = new Trip[0];
+  private final Columns columns;
 
-  private StopLocation[] stops = new StopLocation[0];
+  private final ObjectColumn<Trip> trips;
 
-  private StopLocation[] locations = new StopLocation[0];
+  private final ObjectColumn<StopLocation> stops;
 
-  private StopLocation[] locationGroups = new StopLocation[0];
+  private final ObjectColumn<StopLocation> locations;
 
-  private int[] arrivalTimes = new int[0];
+  private final ObjectColumn<StopLocation> locationGroups;
 
-  private int[] departureTimes = new int[0];
+  private final IntColumn arrivalTimes;
 
-  private int[] timepoints = new int[0];
+  private final IntColumn departureTimes;
 
-  private int[] stopSequences = new int[0];
+  private final IntColumn timepoints;
 
-  private String[] stopHeadsigns = new String[0];
+  private final IntColumn stopSequences;
 
-  private int[] pickupTypes = new int[0];
+  private final ObjectColumn<String> stopHeadsigns;
 
-  private int[] dropOffTypes = new int[0];
+  private final IntColumn pickupTypes;
 
-  private double[] shapeDistTraveled = new double[0];
+  private final IntColumn dropOffTypes;
 
-  private BookingRule[] pickupBookingRules = new BookingRule[0];
+  private final DoubleColumn shapeDistTraveled;
 
-  private BookingRule[] dropOffBookingRules = new BookingRule[0];
+  private final ObjectColumn<BookingRule> pickupBookingRules;
 
-  private double[] meanOffsets = new double[0];
+  private final ObjectColumn<BookingRule> dropOffBookingRules;
 
-  private double[] safeOffsets = new double[0];
+  private final DoubleColumn meanOffsets;
 
-  private double[] meanFactors = new double[0];
+  private final DoubleColumn safeOffsets;
 
-  private double[] safeFactors = new double[0];
+  private final DoubleColumn meanFactors;
+
+  private final DoubleColumn safeFactors;
+
+  /** The stop times of each trip, as long as they stay sorted by trip */
+  private Map<Trip, List<StopTime>> tripSlices = null;
+
+  public StopTimeArray() {
+    this(false);
+  }
+
+  /**
+   * @param offHeap true to keep the columns in off-heap memory, storing the trip, stop, headsign
+   *     and booking rule of each stop time as an index into a table of the distinct values
+   */
+  public StopTimeArray(boolean offHeap) {
+    columns = new Columns(offHeap);
+    trips = columns.newObjectColumn(false);
+    stops = columns.newObjectColumn(false);
+    locations = columns.newObjectColumn(false);
+    locationGroups = columns.newObjectColumn(false);
+    arrivalTimes = columns.newIntColumn();
+    departureTimes = columns.newIntColumn();
+    timepoints = columns.newIntColumn();
+    stopSequences = columns.newIntColumn();
+    stopHeadsigns = columns.newObjectColumn(true);
+    pickupTypes = columns.newIntColumn();
+    dropOffTypes = columns.newIntColumn();
+    shapeDistTraveled = columns.newDoubleColumn();
+    pickupBookingRules = columns.newObjectColumn(false);
+    dropOffBookingRules = columns.newObjectColumn(false);
+    meanOffsets = columns.newDoubleColumn();
+    safeOffsets = columns.newDoubleColumn();
+    meanFactors = columns.newDoubleColumn();
+    safeFactors = columns.newDoubleColumn();
+  }
+
+  /**
+   * @return true if the columns are kept in off-heap memory
+   */
+  public boolean isOffHeap() {
+    return columns.isOffHeap();
+  }
+
+  /**
+   * @return the number of bytes of off-heap memory used by the columns
+   */
+  public long getOffHeapBytes() {
+    return columns.getOffHeapBytes();
+  }
+
+  /**
+   * Writes the stop times column by column, to be read back with {@link #readColumns(ObjectInput)}
+   */
+  public void writeColumns(ObjectOutput out) throws IOException {
+    out.writeInt(size);
+    columns.write(out, size);
+  }
+
+  /** Appends the stop times written by {@link #writeColumns(ObjectOutput)} */
+  public void readColumns(ObjectInput in) throws IOException, ClassNotFoundException {
+    int count = in.readInt();
+    tripSlices = null;
+    ensureCapacity(size + count);
+    columns.read(in, size, count);
+    size += count;
+  }
 
   public void trimToSize() {
     setLength(size);
   }
 
+  /**
+   * Sorts the stop times by trip, then by stop sequence, so that the stop times of each trip are
+   * next to each other and {@link #getStopTimesByTrip()} can return slices of the arrays. Trips are
+   * kept in the order of their first stop time. As the id of a stop time is its index, the ids
+   * change accordingly. Adding stop times or changing their trip or stop sequence afterwards
+   * discards the slices, but not the order.
+   */
+  public void sortByTrip() {
+    Grouping<Trip> grouping = new Grouping<>(trips, true);
+    columns.permute(grouping.indices, size);
+
+    tripSlices = new HashMap<>();
+    for (Map.Entry<Trip, Integer> entry : grouping.groups.entrySet()) {
+      int group = entry.getValue();
+      tripSlices.put(
+          entry.getKey(),
+          new StopTimeSlice(null, grouping.starts[group], grouping.starts[group + 1]));
+    }
+  }
+
+  /**
+   * @return true if the stop times of each trip are still available as slices of the arrays
+   * @see #sortByTrip()
+   */
+  public boolean isSortedByTrip() {
+    return tripSlices != null;
+  }
+
+  /**
+   * Groups the stop times by trip, reading the trip column directly. The stop times of each trip
+   * are in stop sequence order. They are only created as they are read from the returned lists.
+   * Once {@link #sortByTrip() sorted}, the lists are slices that are computed once.
+   */
+  public Map<Trip, List<StopTime>> getStopTimesByTrip() {
+    if (tripSlices != null) return new HashMap<>(tripSlices);
+    return new Grouping<>(trips, true).toMap();
+  }
+
+  /**
+   * Groups the stop times by stop, reading the stop column directly. The stop times of each stop
+   * are in the order they were added. They are only created as they are read from the returned
+   * lists.
+   */
+  public Map<StopLocation, List<StopTime>> getStopTimesByStop() {
+    return new Grouping<>(stops, false).toMap();
+  }
+
   /****
    * {@link Collection} Interface
    ****/
 
   @Override
   public boolean add(StopTime stopTime) {
+    tripSlices = null;
     int index = size;
     size++;
     ensureCapacity(size);
-    trips[index] = stopTime.getTrip();
-    stops[index] = stopTime.getStop();
-    locations[index] = stopTime.getLocation();
-    locationGroups[index] = stopTime.getLocationGroup();
-    arrivalTimes[index] = stopTime.getArrivalTime();
-    departureTimes[index] = stopTime.getDepartureTime();
-    timepoints[index] = stopTime.getTimepoint();
-    stopSequences[index] = stopTime.getStopSequence();
-    stopHeadsigns[index] = stopTime.getStopHeadsign();
-    pickupTypes[index] = stopTime.getPickupType();
-    dropOffTypes[index] = stopTime.getDropOffType();
-    shapeDistTraveled[index] = stopTime.getShapeDistTraveled();
-    pickupBookingRules[index] = stopTime.getPickupBookingRule();
-    dropOffBookingRules[index] = stopTime.getDropOffBookingRule();
-    safeOffsets[index] = stopTime.getSafeDurationOffset();
-    safeFactors[index] = stopTime.getSafeDurationFactor();
-    meanOffsets[index] = stopTime.getMeanDurationOffset();
-    meanFactors[index] = stopTime.getMeanDurationFactor();
+    trips.set(index, stopTime.getTrip());
+    stops.set(index, stopTime.getStop());
+    locations.set(index, stopTime.getLocation());
+    locationGroups.set(index, stopTime.getLocationGroup());
+    arrivalTimes.set(index, stopTime.getArrivalTime());
+    departureTimes.set(index, stopTime.getDepartureTime());
+    timepoints.set(index, stopTime.getTimepoint());
+    stopSequences.set(index, stopTime.getStopSequence());
+    stopHeadsigns.set(index, stopTime.getStopHeadsign());
+    pickupTypes.set(index, stopTime.getPickupType());
+    dropOffTypes.set(index, stopTime.getDropOffType());
+    shapeDistTraveled.set(index, stopTime.getShapeDistTraveled());
+    pickupBookingRules.set(index, stopTime.getPickupBookingRule());
+    dropOffBookingRules.set(index, stopTime.getDropOffBookingRule());
+    safeOffsets.set(index, stopTime.getSafeDurationOffset());
+    safeFactors.set(index, stopTime.getSafeDurationFactor());
+    meanOffsets.set(index, stopTime.getMeanDurationOffset());
+    meanFactors.set(index, stopTime.getMeanDurationFactor());
 
     return true;
   }
 
+  @Override
+  public boolean addAll(Collection<? extends StopTime> stopTimes) {
+    ensureCapacity(size + stopTimes.size());
+    for (StopTime stopTime : stopTimes) add(stopTime);
+    return !stopTimes.isEmpty();
+  }
+
+  /**
+   * Removes the stop times at the set indices in one pass, moving the others down in place. As the
+   * id of a stop time is its index, the ids of the stop times after a removed one change, and stop
+   * times taken from the array before no longer refer to the same values. Stop times that were
+   * {@link #sortByTrip() sorted} stay sorted, along with their slices.
+   *
+   * @return the number of stop times removed
+   */
+  public int removeIndices(BitSet indices) {
+    int newSize = columns.compact(indices, size);
+    int removed = size - newSize;
+    size = newSize;
+    if (removed > 0 && tripSlices != null) sliceByTrip();
+    return removed;
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super StopTime> filter) {
+    BitSet indices = new BitSet(size);
+    for (int i = 0; i < size; i++) {
+      if (filter.test(get(i))) indices.set(i);
+    }
+    return removeIndices(indices) > 0;
+  }
+
   @Override
   public void clear() {
+    tripSlices = null;
     size = 0;
     setLength(0);
   }
@@ -126,31 +286,154 @@ public class StopTimeArray extends AbstractList<StopTime> {
    ****/
 
   private void ensureCapacity(int capacity) {
-    if (trips.length < capacity) {
-      int newLength = Math.max(8, trips.length << 2);
+    if (columns.getLength() < capacity) {
+      int newLength = Math.max(capacity, Math.max(8, columns.getLength() << 2));
       setLength(newLength);
     }
   }
 
   private void setLength(int newLength) {
-    this.trips = Arrays.copyOf(this.trips, newLength);
-    this.stops = Arrays.copyOf(this.stops, newLength);
-    this.locationGroups = Arrays.copyOf(this.locationGroups, newLength);
-    this.locations = Arrays.copyOf(this.locations, newLength);
-    this.arrivalTimes = Arrays.copyOf(this.arrivalTimes, newLength);
-    this.departureTimes = Arrays.copyOf(this.departureTimes, newLength);
-    this.timepoints = Arrays.copyOf(this.timepoints, newLength);
-    this.stopSequences = Arrays.copyOf(this.stopSequences, newLength);
-    this.stopHeadsigns = Arrays.copyOf(this.stopHeadsigns, newLength);
-    this.pickupTypes = Arrays.copyOf(this.pickupTypes, newLength);
-    this.dropOffTypes = Arrays.copyOf(this.dropOffTypes, newLength);
-    this.shapeDistTraveled = Arrays.copyOf(this.shapeDistTraveled, newLength);
-    this.pickupBookingRules = Arrays.copyOf(this.pickupBookingRules, newLength);
-    this.dropOffBookingRules = Arrays.copyOf(this.dropOffBookingRules, newLength);
-    this.safeOffsets = Arrays.copyOf(this.safeOffsets, newLength);
-    this.safeFactors = Arrays.copyOf(this.safeFactors, newLength);
-    this.meanOffsets = Arrays.copyOf(this.meanOffsets, newLength);
-    this.meanFactors = Arrays.copyOf(this.meanFactors, newLength);
+    columns.setLength(newLength);
+  }
+
+  /** Slices the arrays into the stop times of each trip, which must be next to each other */
+  private void sliceByTrip() {
+    tripSlices = new HashMap<>();
+    int from = 0;
+    for (int i = 1; i <= size; i++) {
+      if (i == size || !Objects.equals(trips.get(i), trips.get(from))) {
+        tripSlices.put(trips.get(from), new StopTimeSlice(null, from, i));
+        from = i;
+      }
+    }
+  }
+
+  /** The indices of the stop times, laid out by the value of a column */
+  private class Grouping<K> {
+
+    /** The group of each value, numbered in the order of their first stop time */
+    private final Map<K, Integer> groups = new HashMap<>();
+
+    /** Where the indices of each group start, plus the end of the last group */
+    private final int[] starts;
+
+    private final int[] indices;
+
+    public Grouping(ObjectColumn<K> column, boolean sortByStopSequence) {
+      int[] groupOf = new int[size];
+      int[] counts = new int[16];
+      for (int i = 0; i < size; i++) {
+        Integer group = groups.get(column.get(i));
+        if (group == null) {
+          group = groups.size();
+          groups.put(column.get(i), group);
+          if (group == counts.length) counts = Arrays.copyOf(counts, counts.length * 2);
+        }
+        groupOf[i] = group;
+        counts[group]++;
+      }
+
+      // Lay out the indices of each group next to each other, keeping their relative order
+      starts = new int[groups.size() + 1];
+      for (int group = 0; group < groups.size(); group++) {
+        starts[group + 1] = starts[group] + counts[group];
+      }
+      int[] next = Arrays.copyOf(starts, groups.size());
+      indices = new int[size];
+      for (int i = 0; i < size; i++) indices[next[groupOf[i]]++] = i;
+
+      if (sortByStopSequence) {
+        for (int group = 0; group < groups.size(); group++) {
+          sortByStopSequence(indices, starts[group], starts[group + 1]);
+        }
+      }
+    }
+
+    public Map<K, List<StopTime>> toMap() {
+      Map<K, List<StopTime>> stopTimesByKey = new HashMap<>();
+      for (Map.Entry<K, Integer> entry : groups.entrySet()) {
+        int group = entry.getValue();
+        stopTimesByKey.put(
+            entry.getKey(), new StopTimeSlice(indices, starts[group], starts[group + 1]));
+      }
+      return stopTimesByKey;
+    }
+  }
+
+  /** A stable insertion sort, as the stop times of a trip are short and usually already sorted */
+  private void sortByStopSequence(int[] indices, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      int index = indices[i];
+      int stopSequence = stopSequences.get(index);
+      int j = i - 1;
+      while (j >= from && stopSequences.get(indices[j]) > stopSequence) {
+        indices[j + 1] = indices[j];
+        j--;
+      }
+      indices[j + 1] = index;
+    }
+  }
+
+  /**
+   * The stop times of a trip or stop, as returned by {@link #getStopTimesByTrip()} and {@link
+   * #getStopTimesByStop()}. Each {@link #get(int)} creates a new {@link StopTime} view, so callers
+   * that only need a few fields of many stop times can read them straight from the columns with the
+   * accessors of the slice instead.
+   */
+  public class StopTimeSlice extends AbstractList<StopTime>
+      implements RandomAccess, RelationIndex.Unmodifiable {
+
+    /** The indices of the stop times, or null if they are a range of the arrays */
+    private final int[] indices;
+
+    private final int from;
+
+    private final int to;
+
+    private StopTimeSlice(int[] indices, int from, int to) {
+      this.indices = indices;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public StopTime get(int index) {
+      return StopTimeArray.this.get(arrayIndex(index));
+    }
+
+    public StopLocation getStop(int index) {
+      return stops.get(arrayIndex(index));
+    }
+
+    public int getStopSequence(int index) {
+      return stopSequences.get(arrayIndex(index));
+    }
+
+    /**
+     * @return the arrival time, or {@link StopTime#MISSING_VALUE} if it isn't set
+     */
+    public int getArrivalTime(int index) {
+      return arrivalTimes.get(arrayIndex(index));
+    }
+
+    /**
+     * @return the departure time, or {@link StopTime#MISSING_VALUE} if it isn't set
+     */
+    public int getDepartureTime(int index) {
+      return departureTimes.get(arrayIndex(index));
+    }
+
+    private int arrayIndex(int index) {
+      if (index < 0 || index >= to - from) {
+        throw new IndexOutOfBoundsException(index);
+      }
+      return indices == null ? from + index : indices[from + index];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
   }
 
   private class StopTimeIterator implements Iterator<StopTime> {
@@ -199,222 +482,224 @@ public class StopTimeArray extends AbstractList<StopTime> {
 
     @Override
     public Trip getTrip() {
-      return trips[index];
+      return trips.get(index);
     }
 
     @Override
     public void setTrip(Trip trip) {
-      trips[index] = trip;
+      tripSlices = null;
+      trips.set(index, trip);
     }
 
     @Override
     public int getStopSequence() {
-      return stopSequences[index];
+      return stopSequences.get(index);
     }
 
     @Override
     public void setStopSequence(int stopSequence) {
-      stopSequences[index] = stopSequence;
+      tripSlices = null;
+      stopSequences.set(index, stopSequence);
     }
 
     @Override
     public StopLocation getStop() {
-      return stops[index];
+      return stops.get(index);
     }
 
     @Override
     public StopLocation getLocation() {
-      return locations[index];
+      return locations.get(index);
     }
 
     @Override
     public StopLocation getLocationGroup() {
-      return locationGroups[index];
+      return locationGroups.get(index);
     }
 
     @Override
     public void setStop(StopLocation stop) {
-      stops[index] = stop;
+      stops.set(index, stop);
     }
 
     @Override
     public void setLocation(StopLocation location) {
-      locations[index] = location;
+      locations.set(index, location);
     }
 
     @Override
     public void setLocationGroup(StopLocation group) {
-      locationGroups[index] = group;
+      locationGroups.set(index, group);
     }
 
     @Override
     public boolean isArrivalTimeSet() {
-      return arrivalTimes[index] != StopTime.MISSING_VALUE;
+      return arrivalTimes.get(index) != StopTime.MISSING_VALUE;
     }
 
     @Override
     public int getArrivalTime() {
-      return arrivalTimes[index];
+      return arrivalTimes.get(index);
     }
 
     @Override
     public void setArrivalTime(int arrivalTime) {
-      arrivalTimes[index] = arrivalTime;
+      arrivalTimes.set(index, arrivalTime);
     }
 
     @Override
     public void clearArrivalTime() {
-      arrivalTimes[index] = StopTime.MISSING_VALUE;
+      arrivalTimes.set(index, StopTime.MISSING_VALUE);
     }
 
     @Override
     public boolean isDepartureTimeSet() {
-      return departureTimes[index] != StopTime.MISSING_VALUE;
+      return departureTimes.get(index) != StopTime.MISSING_VALUE;
     }
 
     @Override
     public int getDepartureTime() {
-      return departureTimes[index];
+      return departureTimes.get(index);
     }
 
     @Override
     public void setDepartureTime(int departureTime) {
-      departureTimes[index] = departureTime;
+      departureTimes.set(index, departureTime);
     }
 
     @Override
     public void clearDepartureTime() {
-      departureTimes[index] = StopTime.MISSING_VALUE;
+      departureTimes.set(index, StopTime.MISSING_VALUE);
     }
 
     @Override
     public boolean isTimepointSet() {
-      return timepoints[index] != StopTime.MISSING_VALUE;
+      return timepoints.get(index) != StopTime.MISSING_VALUE;
     }
 
     @Override
     public int getTimepoint() {
-      return timepoints[index];
+      return timepoints.get(index);
     }
 
     @Override
     public void setTimepoint(int timepoint) {
-      timepoints[index] = timepoint;
+      timepoints.set(index, timepoint);
     }
 
     @Override
     public void clearTimepoint() {
-      timepoints[index] = StopTime.MISSING_VALUE;
+      timepoints.set(index, StopTime.MISSING_VALUE);
     }
 
     @Override
     public String getStopHeadsign() {
-      return stopHeadsigns[index];
+      return stopHeadsigns.get(index);
     }
 
     @Override
     public void setStopHeadsign(String headSign) {
-      stopHeadsigns[index] = headSign;
+      stopHeadsigns.set(index, headSign);
     }
 
     @Override
     public int getPickupType() {
-      return pickupTypes[index];
+      return pickupTypes.get(index);
     }
 
     @Override
     public void setPickupType(int pickupType) {
-      pickupTypes[index] = pickupType;
+      pickupTypes.set(index, pickupType);
     }
 
     @Override
     public int getDropOffType() {
-      return dropOffTypes[index];
+      return dropOffTypes.get(index);
     }
 
     @Override
     public void setDropOffType(int dropOffType) {
-      dropOffTypes[index] = dropOffType;
+      dropOffTypes.set(index, dropOffType);
     }
 
     @Override
     public boolean isShapeDistTraveledSet() {
-      return shapeDistTraveled[index] != StopTime.MISSING_VALUE;
+      return shapeDistTraveled.get(index) != StopTime.MISSING_VALUE;
     }
 
     @Override
     public double getShapeDistTraveled() {
-      return shapeDistTraveled[index];
+      return shapeDistTraveled.get(index);
     }
 
     @Override
     public void setShapeDistTraveled(double shapeDistTraveled) {
-      StopTimeArray.this.shapeDistTraveled[index] = shapeDistTraveled;
+      StopTimeArray.this.shapeDistTraveled.set(index, shapeDistTraveled);
     }
 
     @Override
     public void clearShapeDistTraveled() {
-      shapeDistTraveled[index] = StopTime.MISSING_VALUE;
+      shapeDistTraveled.set(index, StopTime.MISSING_VALUE);
     }
 
     @Override
     public BookingRule getPickupBookingRule() {
-      return pickupBookingRules[index];
+      return pickupBookingRules.get(index);
     }
 
     @Override
     public void setPickupBookingRule(BookingRule pickupBookingRule) {
-      pickupBookingRules[index] = pickupBookingRule;
+      pickupBookingRules.set(index, pickupBookingRule);
     }
 
     @Override
     public BookingRule getDropOffBookingRule() {
-      return dropOffBookingRules[index];
+      return dropOffBookingRules.get(index);
     }
 
     @Override
     public void setDropOffBookingRule(BookingRule dropOffBookingRule) {
-      dropOffBookingRules[index] = dropOffBookingRule;
+      dropOffBookingRules.set(index, dropOffBookingRule);
     }
 
     @Override
     public double getMeanDurationFactor() {
-      return meanOffsets[index];
+      return meanOffsets.get(index);
     }
 
     @Override
     public void setMeanDurationFactor(double meanDurationFactor) {
-      meanFactors[index] = meanDurationFactor;
+      meanFactors.set(index, meanDurationFactor);
     }
 
     @Override
     public double getMeanDurationOffset() {
-      return meanOffsets[index];
+      return meanOffsets.get(index);
     }
 
     @Override
     public void setMeanDurationOffset(double meanDurationOffset) {
-      meanOffsets[index] = meanDurationOffset;
+      meanOffsets.set(index, meanDurationOffset);
     }
 
     @Override
     public double getSafeDurationFactor() {
-      return safeFactors[index];
+      return safeFactors.get(index);
     }
 
     @Override
     public void setSafeDurationFactor(double safeDurationFactor) {
-      safeFactors[index] = safeDurationFactor;
+      safeFactors.set(index, safeDurationFactor);
     }
 
     @Override
     public double getSafeDurationOffset() {
-      return safeOffsets[index];
+      return safeOffsets.get(index);
     }
 
     @Override
     public void setSafeDurationOffset(double safeDurationOffset) {
-      safeOffsets[index] = safeDurationOffset;
+      safeOffsets.set(index, safeDurationOffset);
     }
   }
 }
@@ -14,7 +14,12 @@
  */
 package org.onebusaway.gtfs.impl.calendar;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.IntStream;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ServiceCalendar;
@@ -107,29 +112,12 @@ public class CalendarServiceDataFactoryImpl implements CalendarServiceDataFactor
 
     List<AgencyAndId> serviceIds = _dao.getAllServiceIds();
 
-    int index = 0;
-
+    // The dao isn't safe to use from several threads, so look everything up first
+    List<ServiceIdCalendars> calendars = new ArrayList<>(serviceIds.size());
     for (AgencyAndId serviceId : serviceIds) {
-
-      index++;
-
-      _log.info("serviceId=" + serviceId + " (" + index + "/" + serviceIds.size() + ")");
-
-      TimeZone serviceIdTimeZone = data.getTimeZoneForAgencyId(serviceId.getAgencyId());
-      if (serviceIdTimeZone == null) {
-        serviceIdTimeZone = TimeZone.getDefault();
-      }
-
-      Set<ServiceDate> activeDates = getServiceDatesForServiceId(serviceId, serviceIdTimeZone);
-
-      List<ServiceDate> serviceDates = new ArrayList<>(activeDates);
-      Collections.sort(serviceDates);
-
-      data.putServiceDatesForServiceId(serviceId, serviceDates);
-
       List<String> tripAgencyIds = tripAgencyIdsReferencingServiceId.get(serviceId);
 
-      Set<TimeZone> timeZones = new HashSet<>();
+      Set<TimeZone> timeZones = new LinkedHashSet<>();
       for (String tripAgencyId : tripAgencyIds) {
         TimeZone timeZone = timeZoneMapByAgencyId.get(tripAgencyId);
         if (timeZone == null) {
@@ -138,33 +126,59 @@ public class CalendarServiceDataFactoryImpl implements CalendarServiceDataFactor
         timeZones.add(timeZone);
       }
 
-      for (TimeZone timeZone : timeZones) {
+      calendars.add(
+          new ServiceIdCalendars(
+              serviceId,
+              _dao.getCalendarForServiceId(serviceId),
+              _dao.getCalendarDatesForServiceId(serviceId),
+              timeZones));
+    }
 
-        List<Date> dates = new ArrayList<>(serviceDates.size());
-        for (ServiceDate serviceDate : serviceDates) {
-          dates.add(serviceDate.getAsDate(timeZone));
-        }
+    long now = System.currentTimeMillis();
+    List<ServiceIdDates> serviceIdDates =
+        calendars.parallelStream().map(c -> getServiceDates(c, now)).toList();
 
-        LocalizedServiceId id = new LocalizedServiceId(serviceId, timeZone);
-        data.putDatesForLocalizedServiceId(id, dates);
+    // The start of each day in each time zone, shared by all service ids
+    Map<TimeZone, DayStarts> dayStartsByTimeZone = new HashMap<>();
+    for (ServiceIdCalendars c : calendars) {
+      for (TimeZone timeZone : c.timeZones()) {
+        dayStartsByTimeZone.computeIfAbsent(timeZone, tz -> new DayStarts(tz, serviceIdDates));
       }
     }
 
+    List<Map<TimeZone, List<Date>>> localizedDates =
+        IntStream.range(0, calendars.size())
+            .parallel()
+            .mapToObj(
+                i ->
+                    getLocalizedDates(calendars.get(i), serviceIdDates.get(i), dayStartsByTimeZone))
+            .toList();
+
+    for (int i = 0; i < calendars.size(); i++) {
+      AgencyAndId serviceId = calendars.get(i).serviceId();
+      _log.debug("serviceId={} ({}/{})", serviceId, i + 1, calendars.size());
+      data.putServiceDatesForServiceId(serviceId, serviceIdDates.get(i).serviceDates());
+      localizedDates
+          .get(i)
+          .forEach(
+              (timeZone, dates) ->
+                  data.putDatesForLocalizedServiceId(
+                      new LocalizedServiceId(serviceId, timeZone), dates));
+    }
+    _log.info("computed service dates for {} service ids", calendars.size());
+
     return data;
   }
 
   public Set<ServiceDate> getServiceDatesForServiceId(
       AgencyAndId serviceId, TimeZone serviceIdTimeZone) {
-    Set<ServiceDate> activeDates = new HashSet<>();
-    ServiceCalendar c = _dao.getCalendarForServiceId(serviceId);
-
-    if (c != null) {
-      addDatesFromCalendar(c, serviceIdTimeZone, activeDates);
-    }
-    for (ServiceCalendarDate cd : _dao.getCalendarDatesForServiceId(serviceId)) {
-      addAndRemoveDatesFromCalendarDate(cd, serviceIdTimeZone, activeDates);
-    }
-    return activeDates;
+    ServiceIdCalendars calendars =
+        new ServiceIdCalendars(
+            serviceId,
+            _dao.getCalendarForServiceId(serviceId),
+            _dao.getCalendarDatesForServiceId(serviceId),
+            Set.of());
+    return new HashSet<>(getServiceDates(calendars, System.currentTimeMillis()).serviceDates());
   }
 
   private void setTimeZonesForAgencies(CalendarServiceData data, Collection<Agency> allAgencies) {
@@ -177,79 +191,178 @@ public class CalendarServiceDataFactoryImpl implements CalendarServiceDataFactor
     }
   }
 
-  private void addDatesFromCalendar(
-      ServiceCalendar calendar, TimeZone timeZone, Set<ServiceDate> activeDates) {
-
-    /** We calculate service dates relative to noon so as to avoid any weirdness relative to DST. */
-    Date startDate = getServiceDateAsNoon(calendar.getStartDate(), timeZone);
-    Date endDate = getServiceDateAsNoon(calendar.getEndDate(), timeZone);
-
-    java.util.Calendar c = java.util.Calendar.getInstance(timeZone);
-    c.setTime(startDate);
-
-    while (true) {
-      Date date = c.getTime();
-      if (date.after(endDate)) break;
-
-      int day = c.get(java.util.Calendar.DAY_OF_WEEK);
-      boolean active =
-          switch (day) {
-            case java.util.Calendar.MONDAY -> calendar.getMonday() == 1;
-            case java.util.Calendar.TUESDAY -> calendar.getTuesday() == 1;
-            case java.util.Calendar.WEDNESDAY -> calendar.getWednesday() == 1;
-            case java.util.Calendar.THURSDAY -> calendar.getThursday() == 1;
-            case java.util.Calendar.FRIDAY -> calendar.getFriday() == 1;
-            case java.util.Calendar.SATURDAY -> calendar.getSaturday() == 1;
-            case java.util.Calendar.SUNDAY -> calendar.getSunday() == 1;
-            default -> false;
-          };
-
-      if (active) {
-        addServiceDate(activeDates, new ServiceDate(c), timeZone);
+  /**
+   * Expands the calendar and calendar dates of a service id into its sorted service dates, as a
+   * bitset over epoch days, which is safe to do for several service ids at once.
+   */
+  private ServiceIdDates getServiceDates(ServiceIdCalendars calendars, long now) {
+    ServiceCalendar calendar = calendars.calendar();
+    List<ServiceCalendarDate> calendarDates = calendars.calendarDates();
+
+    long firstDay = Long.MAX_VALUE;
+    long lastDay = Long.MIN_VALUE;
+    if (calendar != null) {
+      firstDay = calendar.getStartDate().toEpochDay();
+      lastDay = calendar.getEndDate().toEpochDay();
+    }
+    for (ServiceCalendarDate calendarDate : calendarDates) {
+      if (!isValid(calendarDate.getDate())) {
+        // Only a set of the dates themselves treats them like the feed does
+        return getServiceDatesAsSet(calendars, now);
       }
+      long day = calendarDate.getDate().toEpochDay();
+      firstDay = Math.min(firstDay, day);
+      lastDay = Math.max(lastDay, day);
+    }
+    if (firstDay > lastDay) {
+      return new ServiceIdDates(List.of(), new long[0]);
+    }
 
-      c.add(java.util.Calendar.DAY_OF_YEAR, 1);
+    BitSet days = new BitSet((int) (lastDay - firstDay + 1));
+    if (calendar != null) {
+      int weekdays = getWeekdayMask(calendar);
+      long endDay = calendar.getEndDate().toEpochDay();
+      for (long day = calendar.getStartDate().toEpochDay(); day <= endDay; day++) {
+        // 1970-01-01 was a Thursday
+        if ((weekdays & (1 << Math.floorMod(day + 3, 7))) != 0 && isIncluded(day, now)) {
+          days.set((int) (day - firstDay));
+        }
+      }
     }
+    for (ServiceCalendarDate calendarDate : calendarDates) {
+      long day = calendarDate.getDate().toEpochDay();
+      switch (calendarDate.getExceptionType()) {
+        case ServiceCalendarDate.EXCEPTION_TYPE_ADD:
+          if (isIncluded(day, now)) {
+            days.set((int) (day - firstDay));
+          }
+          break;
+        case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
+          days.clear((int) (day - firstDay));
+          break;
+        default:
+          _log.warn("unknown CalendarDate exception type: " + calendarDate.getExceptionType());
+          break;
+      }
+    }
+
+    List<ServiceDate> serviceDates = new ArrayList<>(days.cardinality());
+    long[] epochDays = new long[days.cardinality()];
+    for (int i = days.nextSetBit(0); i >= 0; i = days.nextSetBit(i + 1)) {
+      LocalDate date = LocalDate.ofEpochDay(firstDay + i);
+      epochDays[serviceDates.size()] = firstDay + i;
+      serviceDates.add(new ServiceDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+    }
+    return new ServiceIdDates(Collections.unmodifiableList(serviceDates), epochDays);
   }
 
-  private void addAndRemoveDatesFromCalendarDate(
-      ServiceCalendarDate calendarDate, TimeZone serviceIdTimeZone, Set<ServiceDate> activeDates) {
-
-    ServiceDate serviceDate = calendarDate.getDate();
-    Date targetDate = calendarDate.getDate().getAsDate();
-    Calendar c = Calendar.getInstance();
-    c.setTime(targetDate);
-
-    switch (calendarDate.getExceptionType()) {
-      case ServiceCalendarDate.EXCEPTION_TYPE_ADD:
-        addServiceDate(activeDates, serviceDate, serviceIdTimeZone);
-        break;
-      case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
-        activeDates.remove(serviceDate);
-        break;
-      default:
-        _log.warn("unknown CalendarDate exception type: " + calendarDate.getExceptionType());
-        break;
+  private ServiceIdDates getServiceDatesAsSet(ServiceIdCalendars calendars, long now) {
+    Set<ServiceDate> activeDates = new HashSet<>();
+    ServiceCalendar calendar = calendars.calendar();
+    if (calendar != null) {
+      long endDay = calendar.getEndDate().toEpochDay();
+      int weekdays = getWeekdayMask(calendar);
+      for (long day = calendar.getStartDate().toEpochDay(); day <= endDay; day++) {
+        if ((weekdays & (1 << Math.floorMod(day + 3, 7))) != 0 && isIncluded(day, now)) {
+          LocalDate date = LocalDate.ofEpochDay(day);
+          activeDates.add(
+              new ServiceDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+        }
+      }
+    }
+    for (ServiceCalendarDate calendarDate : calendars.calendarDates()) {
+      ServiceDate serviceDate = calendarDate.getDate();
+      switch (calendarDate.getExceptionType()) {
+        case ServiceCalendarDate.EXCEPTION_TYPE_ADD:
+          if (isIncluded(serviceDate.toEpochDay(), now)) {
+            activeDates.add(new ServiceDate(serviceDate));
+          }
+          break;
+        case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
+          activeDates.remove(serviceDate);
+          break;
+        default:
+          _log.warn("unknown CalendarDate exception type: " + calendarDate.getExceptionType());
+          break;
+      }
     }
+    List<ServiceDate> serviceDates = new ArrayList<>(activeDates);
+    Collections.sort(serviceDates);
+    return new ServiceIdDates(Collections.unmodifiableList(serviceDates), null);
   }
 
-  private void addServiceDate(
-      Set<ServiceDate> activeDates, ServiceDate serviceDate, TimeZone timeZone) {
-    if (_excludeFutureServiceDatesInDays > 0) {
-      int days =
-          (int)
-              ((serviceDate.getAsDate().getTime() - System.currentTimeMillis())
-                  / (24 * 60 * 60 * 1000));
-      if (days > _excludeFutureServiceDatesInDays) return;
+  private Map<TimeZone, List<Date>> getLocalizedDates(
+      ServiceIdCalendars calendars,
+      ServiceIdDates serviceIdDates,
+      Map<TimeZone, DayStarts> dayStartsByTimeZone) {
+    Map<TimeZone, List<Date>> datesByTimeZone = new LinkedHashMap<>();
+    for (TimeZone timeZone : calendars.timeZones()) {
+      DayStarts dayStarts = dayStartsByTimeZone.get(timeZone);
+      List<ServiceDate> serviceDates = serviceIdDates.serviceDates();
+      long[] epochDays = serviceIdDates.epochDays();
+      List<Date> dates = new ArrayList<>(serviceDates.size());
+      for (int i = 0; i < serviceDates.size(); i++) {
+        dates.add(
+            epochDays != null
+                ? new Date(dayStarts.getStart(epochDays[i]))
+                : serviceDates.get(i).getAsDate(timeZone));
+      }
+      datesByTimeZone.put(timeZone, dates);
     }
+    return datesByTimeZone;
+  }
 
-    activeDates.add(new ServiceDate(serviceDate));
+  /**
+   * @return the days of the week the calendar is active, with Monday as the lowest bit
+   */
+  private static int getWeekdayMask(ServiceCalendar calendar) {
+    int[] weekdays = {
+      calendar.getMonday(),
+      calendar.getTuesday(),
+      calendar.getWednesday(),
+      calendar.getThursday(),
+      calendar.getFriday(),
+      calendar.getSaturday(),
+      calendar.getSunday()
+    };
+    int mask = 0;
+    for (int i = 0; i < weekdays.length; i++) {
+      if (weekdays[i] == 1) {
+        mask |= 1 << i;
+      }
+    }
+    return mask;
   }
 
-  private static Date getServiceDateAsNoon(ServiceDate serviceDate, TimeZone timeZone) {
-    Calendar c = serviceDate.getAsCalendar(timeZone);
-    c.add(Calendar.HOUR_OF_DAY, 12);
-    return c.getTime();
+  /**
+   * @return false if the day is too far in the future, see {@link
+   *     #setExcludeFutureServiceDatesInDays(int)}
+   */
+  private boolean isIncluded(long epochDay, long now) {
+    if (_excludeFutureServiceDatesInDays > 0) {
+      long start =
+          LocalDate.ofEpochDay(epochDay)
+              .atTime(LocalTime.NOON)
+              .atZone(ZoneId.systemDefault())
+              .minusHours(12)
+              .toInstant()
+              .toEpochMilli();
+      int days = (int) ((start - now) / (24 * 60 * 60 * 1000));
+      return days <= _excludeFutureServiceDatesInDays;
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the service date is a valid date, which has the same epoch day as no other
+   */
+  private static boolean isValid(ServiceDate serviceDate) {
+    try {
+      LocalDate.of(serviceDate.getYear(), serviceDate.getMonth(), serviceDate.getDay());
+      return true;
+    } catch (DateTimeException ex) {
+      return false;
+    }
   }
 
   private Map<AgencyAndId, ServiceCalendar> getCalendarsByServiceId(
@@ -273,4 +386,49 @@ public class CalendarServiceDataFactoryImpl implements CalendarServiceDataFactor
     }
     return calendarDatesByServiceId;
   }
+
+  /** The calendars of a service id, and the time zones of the agencies of its trips */
+  private record ServiceIdCalendars(
+      AgencyAndId serviceId,
+      ServiceCalendar calendar,
+      List<ServiceCalendarDate> calendarDates,
+      Set<TimeZone> timeZones) {}
+
+  /**
+   * The sorted service dates of a service id, and their epoch days, or null if some of the dates
+   * aren't valid dates
+   */
+  private record ServiceIdDates(List<ServiceDate> serviceDates, long[] epochDays) {}
+
+  /** The start of each day a service id is active in a time zone, see {@link ServiceDate} */
+  private static class DayStarts {
+
+    private final long _firstDay;
+
+    private final long[] _starts;
+
+    DayStarts(TimeZone timeZone, List<ServiceIdDates> serviceIdDates) {
+      long firstDay = Long.MAX_VALUE;
+      long lastDay = Long.MIN_VALUE;
+      for (ServiceIdDates dates : serviceIdDates) {
+        long[] epochDays = dates.epochDays();
+        if (epochDays != null && epochDays.length > 0) {
+          firstDay = Math.min(firstDay, epochDays[0]);
+          lastDay = Math.max(lastDay, epochDays[epochDays.length - 1]);
+        }
+      }
+      _firstDay = firstDay;
+      _starts = new long[firstDay <= lastDay ? (int) (lastDay - firstDay + 1) : 0];
+      for (int i = 0; i < _starts.length; i++) {
+        LocalDate date = LocalDate.ofEpochDay(firstDay + i);
+        ServiceDate serviceDate =
+            new ServiceDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        _starts[i] = serviceDate.getAsDate(timeZone).getTime();
+      }
+    }
+
+    long getStart(long epochDay) {
+      return _starts[(int) (epochDay - _firstDay)];
+    }
+  }
 }
@@ -24,6 +24,7 @@ import java.util.Set;
 import java.util.TimeZone;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.calendar.*;
+import org.onebusaway.gtfs.model.calendar.ServiceDayIndex.LocalizedDays;
 import org.onebusaway.gtfs.services.calendar.CalendarService;
 import org.onebusaway.gtfs.services.calendar.CalendarServiceDataFactory;
 
@@ -83,6 +84,12 @@ public class CalendarServiceImpl implements CalendarService {
     return allData.getServiceIdsForDate(date);
   }
 
+  @Override
+  public boolean isServiceIdActiveOnDate(AgencyAndId serviceId, ServiceDate date) {
+    CalendarServiceData allData = getData();
+    return allData.getServiceDayIndex().isServiceIdActiveOnDate(serviceId, date);
+  }
+
   @Override
   public TimeZone getTimeZoneForAgencyId(String agencyId) {
     CalendarServiceData data = getData();
@@ -106,8 +113,11 @@ public class CalendarServiceImpl implements CalendarService {
   public boolean isLocalizedServiceIdActiveOnDate(
       LocalizedServiceId localizedServiceId, Date serviceDate) {
 
-    // TODO : Make this more efficient?
     CalendarServiceData data = getData();
+    LocalizedDays days = data.getServiceDayIndex().getLocalizedDays(localizedServiceId);
+    if (days != null) {
+      return days.contains(serviceDate.getTime());
+    }
     List<Date> dates = data.getDatesForLocalizedServiceId(localizedServiceId);
     return Collections.binarySearch(dates, serviceDate) >= 0;
   }
@@ -269,7 +279,11 @@ public class CalendarServiceImpl implements CalendarService {
     if (serviceDates == null) return resultsForServiceId;
 
     Date target = op.shiftTime(interval, from);
-    int index = search(serviceDates, op, 0, serviceDates.size(), target);
+    LocalizedDays days = allData.getServiceDayIndex().getLocalizedDays(serviceId);
+    int index =
+        days != null
+            ? search(days, op, target)
+            : search(serviceDates, op, 0, serviceDates.size(), target);
 
     if (index == serviceDates.size()) index--;
 
@@ -293,6 +307,19 @@ public class CalendarServiceImpl implements CalendarService {
     return resultsForServiceId;
   }
 
+  /**
+   * Finds the same index as {@link #search(List, ServiceIdOp, int, int, Date)} with the day index
+   * of the service dates.
+   */
+  private int search(LocalizedDays days, ServiceIdOp op, Date key) {
+    if (op.isReverse()) {
+      // Service dates are searched latest first
+      int index = days.lastIndexOnOrBefore(key.getTime());
+      return index < 0 ? days.size() : days.size() - 1 - index;
+    }
+    return days.firstIndexOnOrAfter(key.getTime());
+  }
+
   private int search(
       List<Date> serviceDates, ServiceIdOp op, int indexFrom, int indexTo, Date key) {
 
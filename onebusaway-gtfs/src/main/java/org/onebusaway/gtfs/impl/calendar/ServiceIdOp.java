@@ -32,6 +32,13 @@ public abstract class ServiceIdOp implements Comparator<Date> {
     _reverse = reverse;
   }
 
+  /**
+   * @return true if service dates are searched latest first
+   */
+  public boolean isReverse() {
+    return _reverse;
+  }
+
   public abstract int getFromTime(ServiceInterval interval);
 
   public abstract int getToTime(ServiceInterval interval);
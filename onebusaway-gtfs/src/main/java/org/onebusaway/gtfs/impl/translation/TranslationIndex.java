@@ -0,0 +1,237 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl.translation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.FeedInfo;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.translation.PropertyTranslation;
+
+/**
+ * The translations of one entity type into one language, indexed by the entity they apply to and by
+ * the field values they replace, so that translating an entity only looks at the translations that
+ * apply to it.
+ *
+ * <p>When several translations apply to the same property of an entity, the last one in the feed
+ * wins, as if they were all applied in order.
+ */
+class TranslationIndex {
+
+  /** Matches every entity, for types with a single entity, such as feed info */
+  private static final String ANY_ENTITY = "";
+
+  private static final int[] NONE = new int[0];
+
+  private final Class<?> _type;
+
+  private final PropertyTranslation[] _translations;
+
+  /** The property slot of each translation */
+  private final int[] _slots;
+
+  /** The setter of each property slot */
+  private final List<BiConsumer<Object, Object>> _setters = new ArrayList<>();
+
+  /** Positions of the translations by the key of the entity they apply to */
+  private final Map<String, int[]> _positionsByEntityKey = new HashMap<>();
+
+  /** The properties with translations that apply to entities with a particular value */
+  private final List<ValueTranslations> _valueTranslations = new ArrayList<>();
+
+  /** Copies an entity, or null if the type has no copy constructor */
+  private final MethodHandle _copyConstructor;
+
+  TranslationIndex(Class<?> type, List<PropertyTranslation> translations) {
+    _type = type;
+    _translations = translations.toArray(new PropertyTranslation[0]);
+    _slots = new int[_translations.length];
+
+    Map<String, Integer> slotsByProperty = new HashMap<>();
+    List<String> propertyNames = new ArrayList<>();
+    Map<String, List<Integer>> positionsByEntityKey = new HashMap<>();
+    Map<Integer, Map<String, List<Integer>>> positionsByValueBySlot = new LinkedHashMap<>();
+    for (int i = 0; i < _translations.length; i++) {
+      PropertyTranslation translation = _translations[i];
+      String propertyName = translation.getPropertyName();
+      int slot =
+          slotsByProperty.computeIfAbsent(
+              propertyName,
+              _ -> {
+                propertyNames.add(propertyName);
+                _setters.add(BeanWrapperFactory.getPropertySetter(type, propertyName));
+                return _setters.size() - 1;
+              });
+      _slots[i] = slot;
+
+      String entityKey = getEntityKey(type, translation);
+      if (entityKey != null) {
+        positionsByEntityKey.computeIfAbsent(entityKey, _ -> new ArrayList<>()).add(i);
+      }
+      if (translation.getPropertyValue() != null) {
+        positionsByValueBySlot
+            .computeIfAbsent(slot, _ -> new HashMap<>())
+            .computeIfAbsent(translation.getPropertyValue(), _ -> new ArrayList<>())
+            .add(i);
+      }
+    }
+
+    positionsByEntityKey.forEach((key, p) -> _positionsByEntityKey.put(key, ints(p)));
+    positionsByValueBySlot.forEach(
+        (slot, positionsByValue) -> {
+          String propertyName = propertyNames.get(slot);
+          Map<String, int[]> positions = new HashMap<>();
+          positionsByValue.forEach((value, p) -> positions.put(value, ints(p)));
+          _valueTranslations.add(
+              new ValueTranslations(
+                  BeanWrapperFactory.getPropertyGetter(type, propertyName), positions));
+        });
+    _copyConstructor = findCopyConstructor(type);
+  }
+
+  /**
+   * @return a copy of the instance with the translations that apply to it, or the instance itself
+   *     if none apply
+   * @throws ReflectiveOperationException if the instance can't be copied
+   */
+  @SuppressWarnings("unchecked")
+  <T> T translate(T instance) throws ReflectiveOperationException {
+    int[] applied = null;
+    String entityKey = getEntityKey(instance);
+    if (entityKey != null) {
+      applied = apply(applied, _positionsByEntityKey.getOrDefault(entityKey, NONE));
+    }
+    for (ValueTranslations valueTranslations : _valueTranslations) {
+      // Translations only replace string values, as String.equals() would only match those
+      if (valueTranslations.getter().apply(instance) instanceof String value) {
+        applied = apply(applied, valueTranslations.positionsByValue().getOrDefault(value, NONE));
+      }
+    }
+    if (applied == null) {
+      return instance;
+    }
+
+    if (_copyConstructor == null) {
+      throw new NoSuchMethodException(_type.getName() + ".<init>(" + _type.getName() + ")");
+    }
+    T translatedInstance;
+    try {
+      translatedInstance = (T) _copyConstructor.invoke(instance);
+    } catch (Throwable ex) {
+      throw new ReflectiveOperationException(ex);
+    }
+    for (int slot = 0; slot < applied.length; slot++) {
+      if (applied[slot] >= 0) {
+        String translation = _translations[applied[slot]].getTranslation();
+        _setters.get(slot).accept(translatedInstance, translation);
+      }
+    }
+    return translatedInstance;
+  }
+
+  /** Records the last translation for each property among the positions, in ascending order */
+  private int[] apply(int[] applied, int[] positions) {
+    for (int position : positions) {
+      if (applied == null) {
+        applied = new int[_setters.size()];
+        Arrays.fill(applied, -1);
+      }
+      int slot = _slots[position];
+      applied[slot] = Math.max(applied[slot], position);
+    }
+    return applied;
+  }
+
+  /**
+   * @return the key of the entity a translation applies to by its record id, or null if it only
+   *     applies by field value
+   */
+  static String getEntityKey(Class<?> type, PropertyTranslation translation) {
+    String id = translation.getEntityId();
+    if (type == FeedInfo.class) {
+      // only one
+      return ANY_ENTITY;
+    } else if (id == null) {
+      return null;
+    } else if (type == StopTime.class) {
+      String subId = translation.getEntitySubId();
+      try {
+        return subId == null ? null : stopTimeKey(id, Integer.parseInt(subId));
+      } catch (NumberFormatException _) {
+        return null;
+      }
+    } else if (type == Agency.class
+        || type == Stop.class
+        || type == Route.class
+        || type == Trip.class) {
+      return id;
+    }
+    return null;
+  }
+
+  /**
+   * @return the key of an entity to look up the translations that apply to it by record id, or null
+   *     if translations only apply to entities of its type by field value
+   */
+  static String getEntityKey(Object object) {
+    if (object instanceof Agency agency) {
+      return agency.getId();
+    } else if (object instanceof Stop stop) {
+      return stop.getId().getId();
+    } else if (object instanceof Route route) {
+      return route.getId().getId();
+    } else if (object instanceof Trip trip) {
+      return trip.getId().getId();
+    } else if (object instanceof StopTime time) {
+      return stopTimeKey(time.getTrip().getId().getId(), time.getStopSequence());
+    } else if (object instanceof FeedInfo) {
+      return ANY_ENTITY;
+    }
+    return null;
+  }
+
+  /** The stop sequence is last, so trip ids containing the separator can't collide */
+  private static String stopTimeKey(String tripId, int stopSequence) {
+    return tripId + '#' + stopSequence;
+  }
+
+  private static MethodHandle findCopyConstructor(Class<?> type) {
+    try {
+      return MethodHandles.publicLookup()
+          .findConstructor(type, MethodType.methodType(void.class, type))
+          .asType(MethodType.methodType(Object.class, Object.class));
+    } catch (ReflectiveOperationException _) {
+      return null;
+    }
+  }
+
+  private static int[] ints(List<Integer> values) {
+    return values.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private record ValueTranslations(
+      Function<Object, Object> getter, Map<String, int[]> positionsByValue) {}
+}
@@ -13,6 +13,8 @@
  */
 package org.onebusaway.gtfs.impl.translation;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
 import org.onebusaway.csv_entities.schema.EntitySchema;
 import org.onebusaway.csv_entities.schema.FieldMapping;
@@ -88,13 +90,18 @@ public class TranslationServiceDataFactoryImpl implements TranslationServiceData
     } else {
       data.setFeedLanguage(feedInfo.getLang());
     }
+    DefaultEntitySchemaFactory schemaFactory = GtfsEntitySchemaFactory.createEntitySchemaFactory();
+    Map<Class<?>, Map<String, String>> propertyNamesByType = new HashMap<>();
     for (Translation translation : _dao.getAllTranslations()) {
       Class<?> type = getEntityTypeForTableName(translation.getTableName());
       if (type == null) {
         _log.error("No entity type for table_name {}, skipping.", translation.getTableName());
         continue;
       }
-      String propertyName = getPropertyNameByClassAndCsvName(type, translation.getFieldName());
+      String propertyName =
+          propertyNamesByType
+              .computeIfAbsent(type, _ -> getPropertyNamesByCsvName(schemaFactory, type))
+              .get(translation.getFieldName());
       if (propertyName == null) {
         _log.error("No property for field_name {}, skipping.", translation.getFieldName());
         continue;
@@ -123,16 +130,15 @@ public class TranslationServiceDataFactoryImpl implements TranslationServiceData
     };
   }
 
-  private String getPropertyNameByClassAndCsvName(Class<?> type, String csvName) {
-    DefaultEntitySchemaFactory factory = GtfsEntitySchemaFactory.createEntitySchemaFactory();
+  private Map<String, String> getPropertyNamesByCsvName(
+      DefaultEntitySchemaFactory factory, Class<?> type) {
+    Map<String, String> propertyNames = new HashMap<>();
     EntitySchema schema = factory.getSchema(type);
     for (FieldMapping field : schema.getFields()) {
       if (field instanceof SingleFieldMapping mapping) {
-        if (csvName.equals(mapping.getCsvFieldName())) {
-          return mapping.getObjFieldName();
-        }
+        propertyNames.putIfAbsent(mapping.getCsvFieldName(), mapping.getObjFieldName());
       }
     }
-    return null;
+    return propertyNames;
   }
 }
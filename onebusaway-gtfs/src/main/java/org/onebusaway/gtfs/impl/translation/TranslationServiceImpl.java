@@ -14,14 +14,8 @@
 package org.onebusaway.gtfs.impl.translation;
 
 import java.util.List;
-import org.onebusaway.csv_entities.schema.BeanWrapper;
-import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
-import org.onebusaway.gtfs.model.Agency;
-import org.onebusaway.gtfs.model.FeedInfo;
-import org.onebusaway.gtfs.model.Route;
-import org.onebusaway.gtfs.model.Stop;
-import org.onebusaway.gtfs.model.StopTime;
-import org.onebusaway.gtfs.model.Trip;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.onebusaway.gtfs.model.translation.PropertyTranslation;
 import org.onebusaway.gtfs.model.translation.TranslationServiceData;
 import org.onebusaway.gtfs.services.translation.TranslationService;
@@ -31,6 +25,10 @@ import org.slf4j.LoggerFactory;
 /**
  * This class implements the GTFS Translations extension proposal, documented here:
  * http://bit.ly/gtfs-translations
+ *
+ * <p>The translations of each entity type into each language are indexed the first time they are
+ * needed (see {@link TranslationIndex}), so translating an entity doesn't depend on the number of
+ * translations in the feed.
  */
 public class TranslationServiceImpl implements TranslationService {
 
@@ -38,8 +36,11 @@ public class TranslationServiceImpl implements TranslationService {
 
   private TranslationServiceData _data;
 
+  private final Map<TypeAndLanguage, TranslationIndex> _indices = new ConcurrentHashMap<>();
+
   public void setData(TranslationServiceData data) {
     _data = data;
+    _indices.clear();
   }
 
   @Override
@@ -55,54 +56,20 @@ public class TranslationServiceImpl implements TranslationService {
       return instance;
     }
 
-    // Get cloned entity via typical OBA model constructor
-    T translatedInstance;
+    TranslationIndex index =
+        _indices.computeIfAbsent(
+            new TypeAndLanguage(type, language),
+            _ -> new TranslationIndex(type, translationsForClass));
     try {
-      translatedInstance = type.getConstructor(type).newInstance(instance);
-    } catch (Exception ex) {
+      return index.translate(instance);
+    } catch (ReflectiveOperationException ex) {
       _log.error(
           "Unable to process instance with entity type={} due to: {}",
           type.getName(),
           ex.getMessage());
       return instance;
     }
-
-    // Wrap instance, and set translated properties if applicable.
-    BeanWrapper wrapper = BeanWrapperFactory.wrap(translatedInstance);
-    for (PropertyTranslation translation : translationsForClass) {
-      String propertyName = translation.getPropertyName();
-      String translationStr = null;
-      if (objectIdMatches(
-          translatedInstance, translation.getEntityId(), translation.getEntitySubId())) {
-        translationStr = translation.getTranslation();
-      } else if (translation.getPropertyValue() != null
-          && translation.getPropertyValue().equals(wrapper.getPropertyValue(propertyName))) {
-        translationStr = translation.getTranslation();
-      }
-      if (translationStr != null) {
-        wrapper.setPropertyValue(propertyName, translationStr);
-      }
-    }
-
-    return wrapper.getWrappedInstance(type);
   }
 
-  private boolean objectIdMatches(Object object, String id, String subId) {
-    if (object instanceof Agency agency) {
-      return agency.getId().equals(id);
-    } else if (object instanceof Stop stop) {
-      return stop.getId().getId().equals(id);
-    } else if (object instanceof Route route) {
-      return route.getId().getId().equals(id);
-    } else if (object instanceof Trip trip) {
-      return trip.getId().getId().equals(id);
-    } else if (object instanceof StopTime time) {
-      return time.getTrip().getId().getId().equals(id)
-          && time.getStopSequence() == Integer.parseInt(subId);
-    } else if (object instanceof FeedInfo) {
-      // only one
-      return true;
-    }
-    return false;
-  }
+  private record TypeAndLanguage(Class<?> type, String language) {}
 }
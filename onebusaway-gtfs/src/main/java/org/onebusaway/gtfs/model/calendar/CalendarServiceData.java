@@ -38,6 +38,8 @@ public class CalendarServiceData implements Serializable {
 
   private Map<ServiceDate, Set<AgencyAndId>> _serviceIdsByDate = new HashMap<>();
 
+  private transient volatile ServiceDayIndex _serviceDayIndex;
+
   /**
    * @param agencyId
    * @return the time zone for the specified agencyId, or null if the agency was not found
@@ -73,6 +75,7 @@ public class CalendarServiceData implements Serializable {
     Collections.sort(serviceDates);
     serviceDates = Collections.unmodifiableList(serviceDates);
     _serviceDatesByServiceId.put(serviceId, serviceDates);
+    _serviceDayIndex = null;
     for (ServiceDate serviceDate : serviceDates) {
       Set<AgencyAndId> serviceIds = _serviceIdsByDate.get(serviceDate);
       if (serviceIds == null) {
@@ -90,6 +93,25 @@ public class CalendarServiceData implements Serializable {
   public void putDatesForLocalizedServiceId(LocalizedServiceId serviceId, List<Date> dates) {
     dates = Collections.unmodifiableList(new ArrayList<Date>(dates));
     _datesByLocalizedServiceId.put(serviceId, dates);
+    _serviceDayIndex = null;
+  }
+
+  /**
+   * @return an index of the days on which the services are active, built on first use and rebuilt
+   *     after the service dates change
+   */
+  public ServiceDayIndex getServiceDayIndex() {
+    ServiceDayIndex index = _serviceDayIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = _serviceDayIndex;
+        if (index == null) {
+          index = new ServiceDayIndex(this);
+          _serviceDayIndex = index;
+        }
+      }
+    }
+    return index;
   }
 
   public void makeReadOnly() {
@@ -18,6 +18,7 @@ import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -202,6 +203,17 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
     return new ServiceDate(c);
   }
 
+  /**
+   * @return the number of days since 1970-01-01, rolling over months and days that are out of range
+   *     the way {@link #getAsCalendar(TimeZone)} does
+   */
+  public long toEpochDay() {
+    if (month < 1 || month > 12) {
+      return LocalDate.of(year, 1, 1).plusMonths(month - 1).toEpochDay() + day - 1;
+    }
+    return LocalDate.of(year, month, 1).toEpochDay() + day - 1;
+  }
+
   /**
    * @param serviceDate
    * @return the number of days between this service date and the specified argument service date
@@ -0,0 +1,415 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model.calendar;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TimeZone;
+import org.onebusaway.gtfs.model.AgencyAndId;
+
+/**
+ * A compact index of the days on which services are active, built from a {@link
+ * CalendarServiceData}, see {@link CalendarServiceData#getServiceDayIndex()}.
+ *
+ * <p>Each service id has a bitset over days, so checking whether it is active on a service date is
+ * a single bit test, and each day has a bitset of the service ids active on it. The dates of each
+ * localized service id are indexed the same way, over the starts of the days in its time zone as
+ * computed by {@link ServiceDate#getAsDate(TimeZone)}, so that finding the first or last date
+ * around an instant scans the bits a word at a time instead of binary searching the dates.
+ */
+public final class ServiceDayIndex {
+
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+
+  private static final long HALF_DAY = DAY / 2;
+
+  /** The epoch day of the first bit of the service id bitsets */
+  private final long _firstDay;
+
+  private final Map<AgencyAndId, Integer> _ordinals = new HashMap<>();
+
+  private final AgencyAndId[] _serviceIds;
+
+  /** The days each service id is active, by ordinal */
+  private final long[][] _daysByOrdinal;
+
+  /** The ordinals of the service ids active each day, or null if there are none */
+  private final long[][] _ordinalsByDay;
+
+  private final Map<LocalizedServiceId, LocalizedDays> _localizedDays = new HashMap<>();
+
+  ServiceDayIndex(CalendarServiceData data) {
+    Set<AgencyAndId> serviceIds = data.getServiceIds();
+    _serviceIds = serviceIds.toArray(new AgencyAndId[0]);
+    _daysByOrdinal = new long[_serviceIds.length][];
+
+    long firstDay = Long.MAX_VALUE;
+    long lastDay = Long.MIN_VALUE;
+    for (AgencyAndId serviceId : _serviceIds) {
+      for (ServiceDate serviceDate : data.getServiceDatesForServiceId(serviceId)) {
+        long day = serviceDate.toEpochDay();
+        firstDay = Math.min(firstDay, day);
+        lastDay = Math.max(lastDay, day);
+      }
+    }
+    _firstDay = firstDay;
+    _ordinalsByDay = new long[firstDay <= lastDay ? (int) (lastDay - firstDay + 1) : 0][];
+
+    for (int ordinal = 0; ordinal < _serviceIds.length; ordinal++) {
+      AgencyAndId serviceId = _serviceIds[ordinal];
+      _ordinals.put(serviceId, ordinal);
+      List<ServiceDate> serviceDates = data.getServiceDatesForServiceId(serviceId);
+      long[] days = new long[0];
+      for (ServiceDate serviceDate : serviceDates) {
+        int day = (int) (serviceDate.toEpochDay() - _firstDay);
+        days = set(days, day);
+        long[] ordinals = _ordinalsByDay[day];
+        if (ordinals == null) {
+          ordinals = new long[words(_serviceIds.length)];
+          _ordinalsByDay[day] = ordinals;
+        }
+        set(ordinals, ordinal);
+      }
+      _daysByOrdinal[ordinal] = days;
+    }
+
+    indexLocalizedServiceIds(data);
+  }
+
+  /**
+   * @return true if the service id is active on the service date, false if it isn't or if the
+   *     service id is unknown
+   */
+  public boolean isServiceIdActiveOnDate(AgencyAndId serviceId, ServiceDate date) {
+    Integer ordinal = _ordinals.get(serviceId);
+    if (ordinal == null) {
+      return false;
+    }
+    long day = date.toEpochDay() - _firstDay;
+    return 0 <= day && day < Integer.MAX_VALUE && get(_daysByOrdinal[ordinal], (int) day);
+  }
+
+  /**
+   * @return an unmodifiable view of the service ids active on the service date
+   */
+  public Set<AgencyAndId> getServiceIdsOnDate(ServiceDate date) {
+    long day = date.toEpochDay() - _firstDay;
+    if (day < 0 || day >= _ordinalsByDay.length || _ordinalsByDay[(int) day] == null) {
+      return Collections.emptySet();
+    }
+    return new ServiceIdSet(_ordinalsByDay[(int) day]);
+  }
+
+  /**
+   * @return the indexed dates of the localized service id, or null if it is unknown or its dates
+   *     can't be indexed, because they aren't distinct starts of days in increasing order
+   */
+  public LocalizedDays getLocalizedDays(LocalizedServiceId serviceId) {
+    return _localizedDays.get(serviceId);
+  }
+
+  /**
+   * The dates of a localized service id, which are the starts of the days it is active in its time
+   * zone. Positions are indices in {@link CalendarServiceData#getDatesForLocalizedServiceId}.
+   */
+  public static final class LocalizedDays {
+
+    private final DayStarts _starts;
+
+    private final long[] _days;
+
+    /** The number of days set in the words before each word */
+    private final int[] _ranks;
+
+    private final int _size;
+
+    private LocalizedDays(DayStarts starts, long[] days) {
+      _starts = starts;
+      _days = days;
+      _ranks = new int[days.length];
+      int rank = 0;
+      for (int i = 0; i < days.length; i++) {
+        _ranks[i] = rank;
+        rank += Long.bitCount(days[i]);
+      }
+      _size = rank;
+    }
+
+    /**
+     * @return the number of dates
+     */
+    public int size() {
+      return _size;
+    }
+
+    /**
+     * @return true if the time is one of the dates
+     */
+    public boolean contains(long time) {
+      int day = _starts.floorDay(time);
+      return day >= 0 && _starts.getStart(day) == time && get(_days, day);
+    }
+
+    /**
+     * @return the position of the first date at or after the time, or {@link #size()} if there is
+     *     none
+     */
+    public int firstIndexOnOrAfter(long time) {
+      int day = _starts.floorDay(time);
+      if (day < 0 || _starts.getStart(day) != time) {
+        day++;
+      }
+      day = nextSetBit(_days, day);
+      return day < 0 ? _size : rank(day);
+    }
+
+    /**
+     * @return the position of the last date at or before the time, or -1 if there is none
+     */
+    public int lastIndexOnOrBefore(long time) {
+      int day = previousSetBit(_days, _starts.floorDay(time));
+      return day < 0 ? -1 : rank(day);
+    }
+
+    private int rank(int day) {
+      int word = day >>> 6;
+      return _ranks[word] + Long.bitCount(_days[word] & ((1L << day) - 1));
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void indexLocalizedServiceIds(CalendarServiceData data) {
+
+    // The days of the dates of each localized service id, and the range of days by time zone
+    Map<LocalizedServiceId, int[]> daysByServiceId = new HashMap<>();
+    Map<TimeZone, long[]> rangesByTimeZone = new HashMap<>();
+    for (LocalizedServiceId serviceId : data.getLocalizedServiceIds()) {
+      List<Date> dates = data.getDatesForLocalizedServiceId(serviceId);
+      if (dates.isEmpty()) {
+        continue;
+      }
+      ZoneId zone = serviceId.getTimeZone().toZoneId();
+      long[] epochDays = new long[dates.size()];
+      for (int i = 0; i < epochDays.length; i++) {
+        // Noon of the service date, see ServiceDate.getAsCalendar()
+        Instant noon = Instant.ofEpochMilli(dates.get(i).getTime() + HALF_DAY);
+        epochDays[i] = noon.atZone(zone).toLocalDate().toEpochDay();
+        if (i > 0 && epochDays[i] <= epochDays[i - 1]) {
+          epochDays = null;
+          break;
+        }
+      }
+      if (epochDays == null) {
+        continue;
+      }
+      long[] range =
+          rangesByTimeZone.computeIfAbsent(
+              serviceId.getTimeZone(), _ -> new long[] {Long.MAX_VALUE, Long.MIN_VALUE});
+      range[0] = Math.min(range[0], epochDays[0]);
+      range[1] = Math.max(range[1], epochDays[epochDays.length - 1]);
+      int[] days = new int[epochDays.length];
+      for (int i = 0; i < days.length; i++) {
+        days[i] = (int) epochDays[i];
+      }
+      daysByServiceId.put(serviceId, days);
+    }
+
+    Map<TimeZone, DayStarts> startsByTimeZone = new HashMap<>();
+    rangesByTimeZone.forEach(
+        (timeZone, range) ->
+            startsByTimeZone.put(timeZone, new DayStarts(timeZone.toZoneId(), range[0], range[1])));
+
+    daysByServiceId.forEach(
+        (serviceId, epochDays) -> {
+          DayStarts starts = startsByTimeZone.get(serviceId.getTimeZone());
+          List<Date> dates = data.getDatesForLocalizedServiceId(serviceId);
+          long[] days = new long[words(starts.size())];
+          for (int i = 0; i < epochDays.length; i++) {
+            int day = (int) (epochDays[i] - starts.getFirstDay());
+            if (starts.getStart(day) != dates.get(i).getTime()) {
+              // Not the start of the day, so only the dates themselves can answer queries
+              return;
+            }
+            set(days, day);
+          }
+          _localizedDays.put(serviceId, new LocalizedDays(starts, days));
+        });
+  }
+
+  private static int words(int bits) {
+    return (bits + 63) >>> 6;
+  }
+
+  private static boolean get(long[] bits, int index) {
+    int word = index >>> 6;
+    return word < bits.length && (bits[word] & (1L << index)) != 0;
+  }
+
+  /**
+   * @return the bits, grown if needed to hold the index
+   */
+  private static long[] set(long[] bits, int index) {
+    int word = index >>> 6;
+    if (word >= bits.length) {
+      bits = Arrays.copyOf(bits, word + 1);
+    }
+    bits[word] |= 1L << index;
+    return bits;
+  }
+
+  private static int nextSetBit(long[] bits, int from) {
+    int word = from >>> 6;
+    if (word >= bits.length) {
+      return -1;
+    }
+    long value = bits[word] & (-1L << from);
+    while (value == 0) {
+      if (++word == bits.length) {
+        return -1;
+      }
+      value = bits[word];
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(value);
+  }
+
+  private static int previousSetBit(long[] bits, int from) {
+    if (from < 0) {
+      return -1;
+    }
+    int word = from >>> 6;
+    if (word >= bits.length) {
+      word = bits.length - 1;
+      from = -1;
+    }
+    long value = bits[word] & (-1L >>> (63 - (from & 63)));
+    while (value == 0) {
+      if (word-- == 0) {
+        return -1;
+      }
+      value = bits[word];
+    }
+    return (word << 6) + 63 - Long.numberOfLeadingZeros(value);
+  }
+
+  /** The starts of a range of days in a time zone, as computed by {@link ServiceDate#getAsDate} */
+  private static final class DayStarts {
+
+    private final long _firstDay;
+
+    private final long[] _starts;
+
+    DayStarts(ZoneId zone, long firstDay, long lastDay) {
+      _firstDay = firstDay;
+      _starts = new long[(int) (lastDay - firstDay + 1)];
+      for (int i = 0; i < _starts.length; i++) {
+        LocalDate date = LocalDate.ofEpochDay(firstDay + i);
+        _starts[i] = date.atTime(LocalTime.NOON).atZone(zone).toInstant().toEpochMilli() - HALF_DAY;
+      }
+    }
+
+    long getFirstDay() {
+      return _firstDay;
+    }
+
+    int size() {
+      return _starts.length;
+    }
+
+    long getStart(int day) {
+      return _starts[day];
+    }
+
+    /**
+     * @return the last day that starts at or before the time, or -1 if there is none
+     */
+    int floorDay(long time) {
+      if (time < _starts[0]) {
+        return -1;
+      }
+      // Days are a day long, give or take a daylight saving time shift
+      long estimate = Math.floorDiv(time - _starts[0], DAY);
+      int day = (int) Math.min(estimate, _starts.length - 1);
+      while (day + 1 < _starts.length && _starts[day + 1] <= time) {
+        day++;
+      }
+      while (_starts[day] > time) {
+        day--;
+      }
+      return day;
+    }
+  }
+
+  private final class ServiceIdSet extends AbstractSet<AgencyAndId> {
+
+    private final long[] _bits;
+
+    private final int _size;
+
+    ServiceIdSet(long[] bits) {
+      _bits = bits;
+      int size = 0;
+      for (long word : bits) {
+        size += Long.bitCount(word);
+      }
+      _size = size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      Integer ordinal = _ordinals.get(o);
+      return ordinal != null && get(_bits, ordinal);
+    }
+
+    @Override
+    public int size() {
+      return _size;
+    }
+
+    @Override
+    public Iterator<AgencyAndId> iterator() {
+      return new Iterator<>() {
+
+        private int _next = nextSetBit(_bits, 0);
+
+        @Override
+        public boolean hasNext() {
+          return _next >= 0;
+        }
+
+        @Override
+        public AgencyAndId next() {
+          if (_next < 0) {
+            throw new NoSuchElementException();
+          }
+          AgencyAndId serviceId = _serviceIds[_next];
+          _next = nextSetBit(_bits, _next + 1);
+          return serviceId;
+        }
+      };
+    }
+  }
+}
@@ -89,6 +89,63 @@ public class GtfsEntitySchemaFactory {
     return comparators;
   }
 
+  /**
+   * The entity types that must be completely loaded before entities of a given type can be read,
+   * because the field mappings of that type resolve references to them (e.g. {@link StopTime} to
+   * {@link Trip} and {@link Stop}). {@link Agency} is an implicit dependency of every type, since
+   * the default agency id is used to construct ids, and is not listed. Entity types that are
+   * missing from the map have unknown dependencies.
+   */
+  public static Map<Class<?>, List<Class<?>>> getEntityDependencies() {
+    Map<Class<?>, List<Class<?>>> dependencies = new HashMap<>();
+    dependencies.put(Agency.class, List.of());
+    dependencies.put(Area.class, List.of());
+    dependencies.put(Block.class, List.of());
+    dependencies.put(BookingRule.class, List.of());
+    dependencies.put(DirectionEntry.class, List.of());
+    dependencies.put(Facility.class, List.of(Stop.class));
+    dependencies.put(
+        FacilityProperty.class, List.of(Facility.class, FacilityPropertyDefinition.class));
+    dependencies.put(FacilityPropertyDefinition.class, List.of());
+    dependencies.put(FareAttribute.class, List.of());
+    dependencies.put(FareLegRule.class, List.of(Area.class));
+    dependencies.put(FareMedium.class, List.of(RiderCategory.class));
+    dependencies.put(FareProduct.class, List.of(RiderCategory.class, FareMedium.class));
+    dependencies.put(FareRule.class, List.of(FareAttribute.class, Route.class));
+    dependencies.put(FareTransferRule.class, List.of());
+    dependencies.put(FeedInfo.class, List.of());
+    dependencies.put(Frequency.class, List.of(Trip.class));
+    dependencies.put(Icon.class, List.of());
+    dependencies.put(Level.class, List.of());
+    dependencies.put(Location.class, List.of());
+    dependencies.put(LocationGroup.class, List.of());
+    dependencies.put(
+        LocationGroupElement.class, List.of(LocationGroup.class, Stop.class, Location.class));
+    dependencies.put(Network.class, List.of());
+    dependencies.put(Notice.class, List.of());
+    dependencies.put(NoticeAssignment.class, List.of());
+    dependencies.put(Pathway.class, List.of(Stop.class));
+    dependencies.put(RiderCategory.class, List.of());
+    dependencies.put(Ridership.class, List.of());
+    dependencies.put(Route.class, List.of());
+    dependencies.put(RouteNetworkAssignment.class, List.of(Route.class));
+    dependencies.put(ServiceCalendar.class, List.of());
+    dependencies.put(ServiceCalendarDate.class, List.of());
+    dependencies.put(ShapePoint.class, List.of());
+    dependencies.put(Stop.class, List.of(Level.class));
+    dependencies.put(StopAreaElement.class, List.of(Area.class, Stop.class));
+    dependencies.put(
+        StopTime.class,
+        List.of(Trip.class, Stop.class, Location.class, LocationGroup.class, BookingRule.class));
+    dependencies.put(Timeframe.class, List.of());
+    dependencies.put(Transfer.class, List.of(Stop.class, Route.class, Trip.class));
+    dependencies.put(Translation.class, List.of());
+    dependencies.put(Trip.class, List.of(Route.class));
+    dependencies.put(TripSegment.class, List.of());
+    dependencies.put(Vehicle.class, List.of(Icon.class));
+    return dependencies;
+  }
+
   public static DefaultEntitySchemaFactory createEntitySchemaFactory() {
 
     DefaultEntitySchemaFactory factory = new DefaultEntitySchemaFactory();
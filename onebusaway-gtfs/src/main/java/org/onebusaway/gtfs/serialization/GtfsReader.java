@@ -15,6 +15,13 @@ package org.onebusaway.gtfs.serialization;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.onebusaway.csv_entities.CsvEntityContext;
 import org.onebusaway.csv_entities.CsvEntityReader;
 import org.onebusaway.csv_entities.CsvInputSource;
@@ -34,6 +41,14 @@ public class GtfsReader extends CsvEntityReader {
 
   public static final String KEY_CONTEXT = GtfsReader.class.getName() + ".context";
 
+  /** Number of parsed entities handed from a worker thread to the loading thread at once */
+  private static final int PARALLEL_BATCH_SIZE = 1024;
+
+  /** Number of batches a worker thread may parse ahead before waiting for the loading thread */
+  private static final int PARALLEL_QUEUE_CAPACITY = 64;
+
+  private static final List<Object> END_OF_ENTITIES = new ArrayList<>();
+
   private List<Class<?>> _entityClasses = new ArrayList<>();
 
   private GtfsReaderContextImpl _context = new GtfsReaderContextImpl();
@@ -42,7 +57,8 @@ public class GtfsReader extends CsvEntityReader {
 
   private List<Agency> _agencies = new ArrayList<>();
 
-  private Map<Class<?>, Map<String, String>> _agencyIdsByEntityClassAndId = new HashMap<>();
+  private Map<Class<?>, Map<String, String>> _agencyIdsByEntityClassAndId =
+      new ConcurrentHashMap<>();
 
   private String _defaultAgencyId;
 
@@ -50,6 +66,8 @@ public class GtfsReader extends CsvEntityReader {
 
   private boolean _overwriteDuplicates = false;
 
+  private int _parallelism = 1;
+
   public GtfsReader() {
 
     _entityClasses.add(Agency.class);
@@ -143,6 +161,13 @@ public class GtfsReader extends CsvEntityReader {
     _agencyIdMapping.put(fromAgencyId, toAgencyId);
   }
 
+  /**
+   * @return the agency id mappings added with {@link #addAgencyIdMapping(String, String)}
+   */
+  public Map<String, String> getAgencyIdMapping() {
+    return Collections.unmodifiableMap(_agencyIdMapping);
+  }
+
   public GtfsReaderContext getGtfsReaderContext() {
     return _context;
   }
@@ -167,6 +192,28 @@ public class GtfsReader extends CsvEntityReader {
     _overwriteDuplicates = overwriteDuplicates;
   }
 
+  public int getParallelism() {
+    return _parallelism;
+  }
+
+  /**
+   * When set to a value greater than one, {@link #run(CsvInputSource)} tokenizes and maps the files
+   * of independent entity types concurrently on that many worker threads. An entity type is only
+   * parsed once all the types it references have been loaded (see {@link
+   * GtfsEntitySchemaFactory#getEntityDependencies()}), and parsed entities are still passed to the
+   * entity handlers and the entity store from the calling thread, in the order of {@link
+   * #getEntityClasses()}, so the loaded feed is identical to a sequential read.
+   *
+   * <p>The entity store must allow entities of already loaded types to be looked up from other
+   * threads while further types are being saved, as {@link GtfsDaoImpl} does.
+   *
+   * @param parallelism the number of worker threads, 1 to read sequentially
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+    _parallelism = parallelism;
+  }
+
   public void readEntities(Class<?> entityClass, Reader reader)
       throws IOException, CsvEntityIOException {
     if (entityClass == Location.class) {
@@ -186,13 +233,19 @@ public class GtfsReader extends CsvEntityReader {
 
     List<Class<?>> classes = getEntityClasses();
 
+    checkVisitedEntityClasses(classes);
+
     _entityStore.open();
 
-    for (Class<?> entityClass : classes) {
-      _log.info("reading entities: " + entityClass.getName());
+    if (_parallelism > 1) {
+      runInParallel(source, classes);
+    } else {
+      for (Class<?> entityClass : classes) {
+        _log.info("reading entities: " + entityClass.getName());
 
-      readEntities(entityClass, source);
-      _entityStore.flush();
+        readEntities(entityClass, source);
+        _entityStore.flush();
+      }
     }
 
     _entityStore.close();
@@ -202,6 +255,21 @@ public class GtfsReader extends CsvEntityReader {
    * Protected Methods
    ****/
 
+  /**
+   * @return true if entities of the specified type can be parsed on a worker thread, false if they
+   *     must be read on the loading thread because they are not read through the regular CSV
+   *     pipeline
+   */
+  protected boolean isParallelReadSupported(Class<?> entityClass) {
+    return entityClass != Location.class;
+  }
+
+  /** Locations are read from GeoJSON, see {@link #readEntities(Class, Reader)} */
+  @Override
+  protected boolean isByteParsingSupported(Class<?> entityClass) {
+    return entityClass != Location.class;
+  }
+
   protected DefaultEntitySchemaFactory createEntitySchemaFactory() {
     return GtfsEntitySchemaFactory.createEntitySchemaFactory();
   }
@@ -230,10 +298,209 @@ public class GtfsReader extends CsvEntityReader {
     throw new EntityReferenceNotFoundException(entityType, entityId);
   }
 
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Entities that are streamed to visitors never reach the entity store, so make sure that no other
+   * entity type that is read needs to look them up. As when reading in parallel, a type without
+   * known dependencies might reference any type read before it.
+   */
+  private void checkVisitedEntityClasses(List<Class<?>> classes) {
+    Set<Class<?>> visited = getVisitedEntityClasses();
+    if (visited.isEmpty()) return;
+    if (visited.contains(Agency.class)) {
+      throw new IllegalStateException(
+          "agencies are referenced by all entities and can't be visited");
+    }
+    Map<Class<?>, List<Class<?>>> dependencies = GtfsEntitySchemaFactory.getEntityDependencies();
+    for (int i = 0; i < classes.size(); i++) {
+      Class<?> entityClass = classes.get(i);
+      if (visited.contains(entityClass)) continue;
+      List<Class<?>> known = dependencies.get(entityClass);
+      if (known == null) known = classes.subList(0, i);
+      for (Class<?> dependency : known) {
+        if (visited.contains(dependency)) {
+          throw new IllegalStateException(
+              dependency.getName()
+                  + " entities are referenced by "
+                  + entityClass.getName()
+                  + " entities and can't be visited");
+        }
+      }
+    }
+  }
+
+  private void runInParallel(CsvInputSource source, List<Class<?>> classes) throws IOException {
+
+    // Schemas are created lazily and cached without synchronization, so create them all up front
+    for (Class<?> entityClass : classes) getEntitySchemaFactory().getSchema(entityClass);
+
+    Map<Class<?>, List<Class<?>>> dependencies = GtfsEntitySchemaFactory.getEntityDependencies();
+    List<EntityTypeReader> readers = new ArrayList<>();
+    for (int i = 0; i < classes.size(); i++) {
+      Class<?> entityClass = classes.get(i);
+      List<Class<?>> previousClasses = classes.subList(0, i);
+      Set<Class<?>> required = new HashSet<>();
+      List<Class<?>> known = dependencies.get(entityClass);
+      if (known == null) {
+        required.addAll(previousClasses);
+      } else {
+        required.add(Agency.class);
+        required.addAll(known);
+        required.retainAll(previousClasses);
+      }
+      readers.add(new EntityTypeReader(entityClass, source, required));
+    }
+
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            _parallelism,
+            r -> {
+              Thread thread = new Thread(r, "gtfs-reader-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    try {
+      Set<Class<?>> loaded = new HashSet<>();
+      for (int i = 0; i < readers.size(); i++) {
+        for (EntityTypeReader candidate : readers.subList(i + 1, readers.size())) {
+          if (!candidate.isSubmitted() && loaded.containsAll(candidate.getRequired())) {
+            candidate.submit(executor);
+          }
+        }
+
+        EntityTypeReader reader = readers.get(i);
+        _log.info("reading entities: " + reader.getEntityClass().getName());
+        reader.load();
+        _entityStore.flush();
+        loaded.add(reader.getEntityClass());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /****
    * Private Internal Classes
    ****/
 
+  /**
+   * Parses the entities of a single type on a worker thread and hands them to the loading thread in
+   * batches. If the loading thread gets to the type before a worker has picked it up, the loading
+   * thread reads the type itself instead.
+   */
+  private class EntityTypeReader implements Runnable, EntityHandler {
+
+    private final Class<?> _entityClass;
+
+    private final CsvInputSource _source;
+
+    private final Set<Class<?>> _required;
+
+    private final AtomicBoolean _claimed = new AtomicBoolean();
+
+    private final BlockingQueue<List<Object>> _batches =
+        new ArrayBlockingQueue<>(PARALLEL_QUEUE_CAPACITY);
+
+    private List<Object> _batch = new ArrayList<>(PARALLEL_BATCH_SIZE);
+
+    private boolean _submitted = false;
+
+    private volatile Throwable _failure;
+
+    public EntityTypeReader(Class<?> entityClass, CsvInputSource source, Set<Class<?>> required) {
+      _entityClass = entityClass;
+      _source = source;
+      _required = required;
+    }
+
+    public Class<?> getEntityClass() {
+      return _entityClass;
+    }
+
+    public Set<Class<?>> getRequired() {
+      return _required;
+    }
+
+    public boolean isSubmitted() {
+      return _submitted;
+    }
+
+    public void submit(ExecutorService executor) {
+      _submitted = true;
+      if (isParallelReadSupported(_entityClass)) executor.execute(this);
+    }
+
+    /** Passes all entities of this type to the entity handlers, called from the loading thread. */
+    public void load() throws IOException {
+      if (_claimed.compareAndSet(false, true)) {
+        readEntities(_entityClass, _source);
+        return;
+      }
+      try {
+        while (true) {
+          List<Object> batch = _batches.take();
+          if (batch == END_OF_ENTITIES) break;
+          injectEntities(batch);
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while reading " + _entityClass.getName());
+      }
+      if (_failure instanceof IOException ex) throw ex;
+      if (_failure instanceof RuntimeException ex) throw ex;
+      if (_failure instanceof Error ex) throw ex;
+    }
+
+    @Override
+    public void run() {
+      if (!_claimed.compareAndSet(false, true)) return;
+      try {
+        readEntities(_entityClass, _source, this);
+        if (!_batch.isEmpty()) _batches.put(_batch);
+        _batches.put(END_OF_ENTITIES);
+      } catch (InterruptedException ex) {
+        // The loading thread has given up, so no one is waiting for the remaining entities
+        Thread.currentThread().interrupt();
+      } catch (Throwable ex) {
+        _failure = ex;
+        _batches.clear();
+        _batches.offer(END_OF_ENTITIES);
+      }
+    }
+
+    @Override
+    public void handleEntity(Object entity) {
+      _batch.add(entity);
+      if (_batch.size() == PARALLEL_BATCH_SIZE) {
+        putBatch(_batch);
+        _batch = new ArrayList<>(PARALLEL_BATCH_SIZE);
+      }
+    }
+
+    @Override
+    public void handleEntities(List<Object> entities) {
+      if (!_batch.isEmpty()) {
+        putBatch(_batch);
+        _batch = new ArrayList<>(PARALLEL_BATCH_SIZE);
+      }
+      putBatch(entities);
+    }
+
+    private void putBatch(List<Object> batch) {
+      try {
+        _batches.put(batch);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while reading " + _entityClass.getName());
+      }
+    }
+  }
+
   private class EntityHandlerImpl implements EntityHandler {
 
     public void handleEntity(Object entity) {
@@ -302,6 +569,18 @@ public class GtfsReader extends CsvEntityReader {
       }
     }
 
+    @Override
+    public void handleEntities(List<Object> entities) {
+      // Stop times and shape points need no bookkeeping, so the entity store can take the batch
+      // as a whole, which lets packed stores grow once per batch
+      Object first = entities.getFirst();
+      if (first instanceof StopTime || first instanceof ShapePoint) {
+        _entityStore.saveEntities(entities);
+      } else {
+        EntityHandler.super.handleEntities(entities);
+      }
+    }
+
     private void registerAgencyId(Class<?> entityType, AgencyAndId id) {
 
       Map<String, String> agencyIdsByEntityId = _agencyIdsByEntityClassAndId.get(entityType);
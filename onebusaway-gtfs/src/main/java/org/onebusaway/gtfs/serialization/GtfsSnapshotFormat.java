@@ -0,0 +1,84 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Constants of the binary snapshot format written by {@link GtfsSnapshotWriter} and read by {@link
+ * GtfsSnapshotReader}, and the checksum used to tell whether a snapshot is still current.
+ *
+ * <p>A snapshot starts with a header holding {@link #MAGIC}, {@link #VERSION} and the checksum of
+ * the source feed. The rest is a Java serialization stream holding the default agency id, the
+ * agency id mapping and then a block per entity type: the type name, the kind of block and its
+ * content. Entities are written as objects, apart from packed stop times and shape points, which
+ * are written column by column. The stream ends with an empty type name.
+ */
+public final class GtfsSnapshotFormat {
+
+  /** "OBAS" */
+  static final int MAGIC = 0x4f424153;
+
+  /** Changes whenever the layout of a snapshot, or of the packed columns, changes */
+  static final int VERSION = 1;
+
+  static final byte BLOCK_OBJECTS = 0;
+
+  static final byte BLOCK_STOP_TIME_COLUMNS = 1;
+
+  static final byte BLOCK_SHAPE_POINT_COLUMNS = 2;
+
+  private GtfsSnapshotFormat() {}
+
+  /**
+   * @param source a GTFS zip file, or a directory holding the GTFS files
+   * @return a SHA-256 checksum of the content of the file, or of the names and content of the files
+   *     in the directory
+   */
+  public static String checksum(File source) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+    if (source.isDirectory()) {
+      File[] files = source.listFiles(File::isFile);
+      if (files == null) throw new IOException("unable to list " + source);
+      Arrays.sort(files);
+      for (File file : files) {
+        digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        update(digest, file);
+      }
+    } else {
+      update(digest, source);
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, File file) throws IOException {
+    try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+}
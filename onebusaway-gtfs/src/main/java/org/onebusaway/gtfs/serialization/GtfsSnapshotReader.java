@@ -0,0 +1,302 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.onebusaway.gtfs.impl.GtfsDaoImpl;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.impl.ShapePointArray;
+import org.onebusaway.gtfs.impl.StopTimeArray;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.services.GenericMutableDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the entities of a snapshot written by {@link GtfsSnapshotWriter} into an entity store. The
+ * snapshot is memory-mapped rather than read through a buffer. If the target store packs stop times
+ * or shape points, their columns are read straight into the packed arrays.
+ *
+ * <p>Snapshots are Java serialization streams. Only the GTFS model classes and the JDK and GeoJSON
+ * types they are made of are deserialized, anything else is rejected with an {@link
+ * java.io.InvalidClassException}. Entity extensions of other types have to be allowed with {@link
+ * #addAllowedClasses(String)}.
+ *
+ * @see GtfsSnapshotFormat
+ */
+public class GtfsSnapshotReader {
+
+  private static final Logger _log = LoggerFactory.getLogger(GtfsSnapshotReader.class);
+
+  private static final String ALLOWED_CLASSES =
+      "org.onebusaway.gtfs.model.**;org.geojson.*;java.lang.*;java.util.*;java.time.*";
+
+  /** Far above what the GTFS model needs, but bounds what a malformed snapshot can allocate */
+  private static final String LIMITS = "maxdepth=64;maxarray=16777216";
+
+  private File _inputLocation;
+
+  private GenericMutableDao _entityStore = new GtfsDaoImpl();
+
+  private String _expectedSourceChecksum;
+
+  private String _sourceChecksum;
+
+  private String _defaultAgencyId;
+
+  private Map<String, String> _agencyIdMapping = Collections.emptyMap();
+
+  private final List<String> _allowedClasses = new ArrayList<>();
+
+  public void setInputLocation(File inputLocation) {
+    _inputLocation = inputLocation;
+  }
+
+  public GenericMutableDao getEntityStore() {
+    return _entityStore;
+  }
+
+  public void setEntityStore(GenericMutableDao entityStore) {
+    _entityStore = entityStore;
+  }
+
+  /**
+   * @param pattern classes to deserialize in addition to the GTFS model classes, such as entity
+   *     extension types, in the pattern syntax of {@link ObjectInputFilter.Config#createFilter}
+   */
+  public void addAllowedClasses(String pattern) {
+    _allowedClasses.add(pattern);
+  }
+
+  /**
+   * @param expectedSourceChecksum the checksum of the current source feed, as computed by {@link
+   *     GtfsSnapshotFormat#checksum(File)}, or null to skip the staleness check
+   */
+  public void setExpectedSourceChecksum(String expectedSourceChecksum) {
+    _expectedSourceChecksum = expectedSourceChecksum;
+  }
+
+  /**
+   * @return the source checksum recorded in the snapshot, or null if none was
+   */
+  public String getSourceChecksum() {
+    return _sourceChecksum;
+  }
+
+  /**
+   * @return the default agency id the source feed was read with
+   */
+  public String getDefaultAgencyId() {
+    return _defaultAgencyId;
+  }
+
+  /**
+   * @return the agency id mappings the source feed was read with
+   */
+  public Map<String, String> getAgencyIdMapping() {
+    return _agencyIdMapping;
+  }
+
+  /**
+   * @throws StaleSnapshotException if an expected source checksum was set and the snapshot was
+   *     written from a different source
+   */
+  public void run() throws IOException {
+    if (_inputLocation == null) throw new IllegalStateException("no input location");
+    try (FileChannel channel = FileChannel.open(_inputLocation.toPath(), StandardOpenOption.READ);
+        Arena arena = Arena.ofConfined()) {
+      MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+      read(new SegmentInputStream(segment));
+    }
+  }
+
+  private void read(InputStream in) throws IOException {
+    DataInputStream header = new DataInputStream(in);
+    if (header.readInt() != GtfsSnapshotFormat.MAGIC) {
+      throw new IOException("not a GTFS snapshot: " + _inputLocation);
+    }
+    int version = header.readInt();
+    if (version != GtfsSnapshotFormat.VERSION) {
+      throw new IOException("unsupported GTFS snapshot version: " + version);
+    }
+    String checksum = header.readUTF();
+    _sourceChecksum = checksum.isEmpty() ? null : checksum;
+    if (_expectedSourceChecksum != null && !_expectedSourceChecksum.equals(_sourceChecksum)) {
+      throw new StaleSnapshotException(_expectedSourceChecksum, _sourceChecksum);
+    }
+
+    ObjectInputStream objects = new ObjectInputStream(in);
+    objects.setObjectInputFilter(createFilter());
+    try {
+      readEntities(objects);
+    } catch (ClassNotFoundException ex) {
+      throw new IOException("unknown class in GTFS snapshot: " + ex.getMessage(), ex);
+    }
+  }
+
+  private ObjectInputFilter createFilter() {
+    StringBuilder filter = new StringBuilder(LIMITS).append(';').append(ALLOWED_CLASSES);
+    for (String pattern : _allowedClasses) filter.append(';').append(pattern);
+    return ObjectInputFilter.Config.createFilter(filter.append(";!*").toString());
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readEntities(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    _defaultAgencyId = (String) in.readObject();
+    _agencyIdMapping = Collections.unmodifiableMap((HashMap<String, String>) in.readObject());
+
+    _entityStore.open();
+    for (String className = in.readUTF(); !className.isEmpty(); className = in.readUTF()) {
+      byte kind = in.readByte();
+      _log.info("reading entities: {}", className);
+      switch (kind) {
+        case GtfsSnapshotFormat.BLOCK_OBJECTS -> {
+          int count = in.readInt();
+          List<Object> entities = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) entities.add(in.readObject());
+          _entityStore.saveEntities(entities);
+        }
+        case GtfsSnapshotFormat.BLOCK_STOP_TIME_COLUMNS -> readStopTimeColumns(in);
+        case GtfsSnapshotFormat.BLOCK_SHAPE_POINT_COLUMNS -> readShapePointColumns(in);
+        default -> throw new IOException("unknown block in GTFS snapshot: " + kind);
+      }
+      _entityStore.flush();
+    }
+    _entityStore.close();
+  }
+
+  private void readStopTimeColumns(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    if (_entityStore instanceof GtfsDaoImpl dao && dao.isPackStopTimes()) {
+      ((StopTimeArray) dao.getAllStopTimes()).readColumns(in);
+      if (dao instanceof GtfsRelationalDaoImpl relationalDao) {
+        relationalDao.clearCachesForEntityType(StopTime.class);
+      }
+      return;
+    }
+    StopTimeArray stopTimes = new StopTimeArray();
+    stopTimes.readColumns(in);
+    List<StopTime> copies = new ArrayList<>(stopTimes.size());
+    for (StopTime stopTime : stopTimes) copies.add(unpack(stopTime));
+    _entityStore.saveEntities(copies);
+  }
+
+  private void readShapePointColumns(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    if (_entityStore instanceof GtfsDaoImpl dao && dao.isPackShapePoints()) {
+      ((ShapePointArray) dao.getAllShapePoints()).readColumns(in);
+      if (dao instanceof GtfsRelationalDaoImpl relationalDao) {
+        relationalDao.clearCachesForEntityType(ShapePoint.class);
+      }
+      return;
+    }
+    ShapePointArray shapePoints = new ShapePointArray();
+    shapePoints.readColumns(in);
+    List<ShapePoint> copies = new ArrayList<>(shapePoints.size());
+    for (ShapePoint shapePoint : shapePoints) copies.add(unpack(shapePoint));
+    _entityStore.saveEntities(copies);
+  }
+
+  /**
+   * Copies a packed stop time, leaving its id for the entity store to generate, as the ids of
+   * packed stop times start at zero
+   */
+  private static StopTime unpack(StopTime packed) {
+    StopTime stopTime = new StopTime();
+    stopTime.setTrip(packed.getTrip());
+    stopTime.setStop(packed.getStop());
+    stopTime.setLocation(packed.getLocation());
+    stopTime.setLocationGroup(packed.getLocationGroup());
+    stopTime.setArrivalTime(packed.getArrivalTime());
+    stopTime.setDepartureTime(packed.getDepartureTime());
+    stopTime.setTimepoint(packed.getTimepoint());
+    stopTime.setStopSequence(packed.getStopSequence());
+    stopTime.setStopHeadsign(packed.getStopHeadsign());
+    stopTime.setPickupType(packed.getPickupType());
+    stopTime.setDropOffType(packed.getDropOffType());
+    stopTime.setShapeDistTraveled(packed.getShapeDistTraveled());
+    stopTime.setPickupBookingRule(packed.getPickupBookingRule());
+    stopTime.setDropOffBookingRule(packed.getDropOffBookingRule());
+    stopTime.setSafeDurationOffset(packed.getSafeDurationOffset());
+    stopTime.setSafeDurationFactor(packed.getSafeDurationFactor());
+    stopTime.setMeanDurationOffset(packed.getMeanDurationOffset());
+    stopTime.setMeanDurationFactor(packed.getMeanDurationFactor());
+    return stopTime;
+  }
+
+  private static ShapePoint unpack(ShapePoint packed) {
+    ShapePoint shapePoint = new ShapePoint();
+    shapePoint.setShapeId(packed.getShapeId());
+    shapePoint.setSequence(packed.getSequence());
+    shapePoint.setLat(packed.getLat());
+    shapePoint.setLon(packed.getLon());
+    shapePoint.setDistTraveled(packed.getDistTraveled());
+    return shapePoint;
+  }
+
+  /** Reads a memory-mapped file without copying it into a buffer first */
+  private static final class SegmentInputStream extends InputStream {
+
+    private final MemorySegment segment;
+
+    private long position = 0;
+
+    public SegmentInputStream(MemorySegment segment) {
+      this.segment = segment;
+    }
+
+    @Override
+    public int read() {
+      if (position >= segment.byteSize()) return -1;
+      return segment.get(ValueLayout.JAVA_BYTE, position++) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) return 0;
+      long remaining = segment.byteSize() - position;
+      if (remaining <= 0) return -1;
+      int count = (int) Math.min(len, remaining);
+      MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, segment.byteSize() - position));
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, segment.byteSize() - position);
+    }
+  }
+}
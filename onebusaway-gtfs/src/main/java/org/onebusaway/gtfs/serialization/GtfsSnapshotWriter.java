@@ -0,0 +1,134 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.onebusaway.gtfs.impl.ShapePointArray;
+import org.onebusaway.gtfs.impl.StopTimeArray;
+import org.onebusaway.gtfs.model.Notice;
+import org.onebusaway.gtfs.model.NoticeAssignment;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Translation;
+import org.onebusaway.gtfs.services.GtfsDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the entities of a loaded {@link GtfsDao} to a binary snapshot, which {@link
+ * GtfsSnapshotReader} loads again much faster than {@link GtfsReader} parses the original feed.
+ * References between entities are kept, so a route read back still refers to the same agency
+ * instance as the other routes of that agency.
+ *
+ * <p>The snapshot records the checksum of the feed it was loaded from, as computed by {@link
+ * GtfsSnapshotFormat#checksum(File)}, so that a stale snapshot can be detected on reading.
+ *
+ * @see GtfsSnapshotFormat
+ */
+public class GtfsSnapshotWriter {
+
+  private static final Logger _log = LoggerFactory.getLogger(GtfsSnapshotWriter.class);
+
+  private final List<Class<?>> _entityClasses = new ArrayList<>();
+
+  private File _outputLocation;
+
+  private String _sourceChecksum;
+
+  private String _defaultAgencyId;
+
+  private final Map<String, String> _agencyIdMapping = new HashMap<>();
+
+  public GtfsSnapshotWriter() {
+    _entityClasses.addAll(GtfsEntitySchemaFactory.getEntityClasses());
+    for (Class<?> entityClass : List.of(Notice.class, NoticeAssignment.class, Translation.class)) {
+      if (!_entityClasses.contains(entityClass)) _entityClasses.add(entityClass);
+    }
+  }
+
+  public List<Class<?>> getEntityClasses() {
+    return _entityClasses;
+  }
+
+  public void setOutputLocation(File outputLocation) {
+    _outputLocation = outputLocation;
+  }
+
+  /**
+   * @param sourceChecksum the checksum of the feed the entities were loaded from, or null if the
+   *     snapshot can't be checked for staleness
+   */
+  public void setSourceChecksum(String sourceChecksum) {
+    _sourceChecksum = sourceChecksum;
+  }
+
+  public void setDefaultAgencyId(String defaultAgencyId) {
+    _defaultAgencyId = defaultAgencyId;
+  }
+
+  public void addAgencyIdMapping(String fromAgencyId, String toAgencyId) {
+    _agencyIdMapping.put(fromAgencyId, toAgencyId);
+  }
+
+  /** Records the default agency id and agency id mappings the feed was read with */
+  public void setReaderSettings(GtfsReader reader) {
+    _defaultAgencyId = reader.getDefaultAgencyId();
+    _agencyIdMapping.putAll(reader.getAgencyIdMapping());
+  }
+
+  public void run(GtfsDao dao) throws IOException {
+    if (_outputLocation == null) throw new IllegalStateException("no output location");
+    try (OutputStream file = Files.newOutputStream(_outputLocation.toPath());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+      out.writeInt(GtfsSnapshotFormat.MAGIC);
+      out.writeInt(GtfsSnapshotFormat.VERSION);
+      out.writeUTF(_sourceChecksum == null ? "" : _sourceChecksum);
+
+      ObjectOutputStream objects = new ObjectOutputStream(out);
+      objects.writeObject(_defaultAgencyId);
+      objects.writeObject(new HashMap<>(_agencyIdMapping));
+      for (Class<?> entityClass : _entityClasses) {
+        writeEntities(objects, entityClass, dao.getAllEntitiesForType(entityClass));
+      }
+      objects.writeUTF("");
+      objects.flush();
+    }
+  }
+
+  private void writeEntities(ObjectOutputStream out, Class<?> entityClass, Collection<?> entities)
+      throws IOException {
+    _log.info("writing entities: {} count={}", entityClass.getName(), entities.size());
+    out.writeUTF(entityClass.getName());
+    if (entityClass == StopTime.class && entities instanceof StopTimeArray stopTimes) {
+      out.writeByte(GtfsSnapshotFormat.BLOCK_STOP_TIME_COLUMNS);
+      stopTimes.writeColumns(out);
+    } else if (entityClass == ShapePoint.class && entities instanceof ShapePointArray shapePoints) {
+      out.writeByte(GtfsSnapshotFormat.BLOCK_SHAPE_POINT_COLUMNS);
+      shapePoints.writeColumns(out);
+    } else {
+      out.writeByte(GtfsSnapshotFormat.BLOCK_OBJECTS);
+      out.writeInt(entities.size());
+      for (Object entity : entities) out.writeObject(entity);
+    }
+  }
+}
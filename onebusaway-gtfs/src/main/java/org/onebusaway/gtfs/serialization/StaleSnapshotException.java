@@ -0,0 +1,46 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Indicates that a GTFS snapshot was written from a different version of the source feed than the
+ * one expected, so the feed must be read again.
+ */
+public class StaleSnapshotException extends IOException {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  private final String expectedChecksum;
+
+  private final String actualChecksum;
+
+  public StaleSnapshotException(String expectedChecksum, String actualChecksum) {
+    super(
+        "stale snapshot: expected source checksum="
+            + expectedChecksum
+            + " actual="
+            + actualChecksum);
+    this.expectedChecksum = expectedChecksum;
+    this.actualChecksum = actualChecksum;
+  }
+
+  public String getExpectedChecksum() {
+    return expectedChecksum;
+  }
+
+  public String getActualChecksum() {
+    return actualChecksum;
+  }
+}
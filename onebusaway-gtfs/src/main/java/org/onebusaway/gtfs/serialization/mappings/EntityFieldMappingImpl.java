@@ -13,12 +13,20 @@
  */
 package org.onebusaway.gtfs.serialization.mappings;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import org.apache.commons.beanutils2.ConversionException;
 import org.apache.commons.beanutils2.Converter;
+import org.onebusaway.csv_entities.ByteCsvRow;
 import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.exceptions.MissingRequiredFieldException;
+import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
 import org.onebusaway.csv_entities.schema.AbstractFieldMapping;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import org.onebusaway.csv_entities.schema.CompilableFieldMapping;
+import org.onebusaway.csv_entities.schema.CompiledFieldMapping;
 import org.onebusaway.csv_entities.schema.FieldMapping;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.IdentityBean;
@@ -34,7 +42,8 @@ import org.onebusaway.gtfs.serialization.GtfsReaderContext;
  * @see IdentityBean
  * @see GtfsReaderContext#getEntity(Class, java.io.Serializable)
  */
-class EntityFieldMappingImpl extends AbstractFieldMapping implements ConverterFactory {
+class EntityFieldMappingImpl extends AbstractFieldMapping
+    implements ConverterFactory, CompilableFieldMapping {
 
   private Class<?> _objFieldType;
 
@@ -59,6 +68,33 @@ class EntityFieldMappingImpl extends AbstractFieldMapping implements ConverterFa
     object.setPropertyValue(_objFieldName, entity);
   }
 
+  /**
+   * Resolves the id with the converter of {@link #create(CsvEntityContext)}, so subclasses that
+   * only customize the converter are compiled as well.
+   */
+  @Override
+  public CompiledFieldMapping compile(List<String> csvFieldNames) {
+    BiConsumer<Object, Object> setter;
+    try {
+      setter = BeanWrapperFactory.getPropertySetter(_entityType, _objFieldName);
+    } catch (NoSuchPropertyException _) {
+      return null;
+    }
+    int index = csvFieldNames.lastIndexOf(_csvFieldName);
+    return (context, csvValues, object) -> {
+      CharSequence entityId =
+          index != -1 && index < csvValues.size()
+              ? ByteCsvRow.getCharSequence(csvValues, index)
+              : null;
+      if (entityId == null || entityId.isEmpty()) {
+        if (_required) throw new MissingRequiredFieldException(_entityType, _csvFieldName);
+        return;
+      }
+      Converter converter = create(context);
+      setter.accept(object, converter.convert(_objFieldType, entityId.toString()));
+    };
+  }
+
   @SuppressWarnings("unchecked")
   public void translateFromObjectToCSV(
       CsvEntityContext context, BeanWrapper object, Map<String, Object> csvValues) {
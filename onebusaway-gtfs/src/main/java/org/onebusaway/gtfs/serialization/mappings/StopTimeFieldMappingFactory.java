@@ -15,13 +15,21 @@ package org.onebusaway.gtfs.serialization.mappings;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import org.apache.commons.beanutils2.ConversionException;
 import org.apache.commons.beanutils2.Converter;
+import org.onebusaway.csv_entities.ByteCsvRow;
 import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.exceptions.MissingRequiredFieldException;
+import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
 import org.onebusaway.csv_entities.schema.AbstractFieldMapping;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import org.onebusaway.csv_entities.schema.CompilableFieldMapping;
+import org.onebusaway.csv_entities.schema.CompiledFieldMapping;
 import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
 import org.onebusaway.csv_entities.schema.FieldMapping;
 import org.onebusaway.csv_entities.schema.FieldMappingFactory;
@@ -82,6 +90,14 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
   }
 
   public static int getStringAsSeconds(String value) {
+    return getStringAsSeconds((CharSequence) value);
+  }
+
+  /**
+   * @param value a time such as 25:10:00, which may be a view of the raw bytes of a CSV field
+   * @return the time in seconds since midnight
+   */
+  public static int getStringAsSeconds(CharSequence value) {
     // strictly the value must match regexp: ^(-{0,1}\d+):(\d{2}):(\d{2})$.
     main:
     try {
@@ -146,10 +162,11 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
     } catch (Exception _) {
       // fall through
     }
-    throw new InvalidStopTimeException(value);
+    throw new InvalidStopTimeException(value.toString());
   }
 
-  private static class StopTimeFieldMapping extends AbstractFieldMapping implements Converter {
+  private static class StopTimeFieldMapping extends AbstractFieldMapping
+      implements Converter, CompilableFieldMapping {
 
     public StopTimeFieldMapping(
         Class<?> entityType, String csvFieldName, String objFieldName, boolean required) {
@@ -166,6 +183,28 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
       object.setPropertyValue(_objFieldName, convert(Integer.TYPE, value));
     }
 
+    @Override
+    public CompiledFieldMapping compile(List<String> csvFieldNames) {
+      BiConsumer<Object, Object> setter;
+      try {
+        setter = BeanWrapperFactory.getPropertySetter(_entityType, _objFieldName);
+      } catch (NoSuchPropertyException _) {
+        return null;
+      }
+      int index = csvFieldNames.lastIndexOf(_csvFieldName);
+      return (context, csvValues, object) -> {
+        CharSequence value =
+            index != -1 && index < csvValues.size()
+                ? ByteCsvRow.getCharSequence(csvValues, index)
+                : null;
+        if (value == null || value.isEmpty()) {
+          if (_required) throw new MissingRequiredFieldException(_entityType, _csvFieldName);
+          return;
+        }
+        setter.accept(object, getStringAsSeconds(value));
+      };
+    }
+
     @Override
     public void translateFromObjectToCSV(
         CsvEntityContext context, BeanWrapper object, Map<String, Object> csvValues) {
@@ -14,6 +14,7 @@
 package org.onebusaway.gtfs.services;
 
 import java.io.Serializable;
+import java.util.Collection;
 import org.onebusaway.gtfs.model.IdentityBean;
 
 public interface GenericMutableDao extends GenericDao {
@@ -22,12 +23,34 @@ public interface GenericMutableDao extends GenericDao {
 
   void saveEntity(Object entity);
 
+  /**
+   * Saves a batch of entities of a single type, as if {@link #saveEntity(Object)} had been called
+   * for each of them in order.
+   *
+   * @param entities the entities to save
+   */
+  default void saveEntities(Collection<?> entities) {
+    for (Object entity : entities) saveEntity(entity);
+  }
+
   void updateEntity(Object entity);
 
   void saveOrUpdateEntity(Object entity);
 
   <K extends Serializable, T extends IdentityBean<K>> void removeEntity(T entity);
 
+  /**
+   * Removes a batch of entities of a single type, as if {@link #removeEntity(IdentityBean)} had
+   * been called for each of them. Implementations may remove the whole batch in one pass, which
+   * also works for entities that can't be removed one at a time.
+   *
+   * @param entities the entities to remove
+   */
+  @SuppressWarnings("unchecked")
+  default void removeEntities(Collection<?> entities) {
+    for (Object entity : entities) removeEntity((IdentityBean<Serializable>) entity);
+  }
+
   <T> void clearAllEntitiesForType(Class<T> type);
 
   void flush();
@@ -78,6 +78,15 @@ public interface CalendarService {
    */
   public Set<AgencyAndId> getServiceIdsOnDate(ServiceDate date);
 
+  /**
+   * @param serviceId the target service id
+   * @param date the target service date
+   * @return true if the service id is active on the specified service date
+   */
+  public default boolean isServiceIdActiveOnDate(AgencyAndId serviceId, ServiceDate date) {
+    return getServiceIdsOnDate(date).contains(serviceId);
+  }
+
   /**
    * Returns the instantiated {@link TimeZone} for the specified agency id
    *
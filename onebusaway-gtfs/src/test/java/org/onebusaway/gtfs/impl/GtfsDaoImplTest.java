@@ -14,9 +14,13 @@
 package org.onebusaway.gtfs.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.onebusaway.gtfs.GtfsTestData;
 import org.onebusaway.gtfs.model.Agency;
@@ -125,4 +129,52 @@ public class GtfsDaoImplTest {
     Trip trip = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
     assertEquals(new AgencyAndId("BART", "WKDY"), trip.getServiceId());
   }
+
+  @Test
+  public void testPackOffHeap() throws IOException {
+    GtfsDaoImpl heap = new GtfsDaoImpl();
+    heap.setPackStopTimes(true);
+    heap.setPackShapePoints(true);
+    GtfsTestData.readGtfs(heap, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsDaoImpl offHeap = new GtfsDaoImpl();
+    offHeap.setPackStopTimes(true);
+    offHeap.setPackShapePoints(true);
+    offHeap.setPackOffHeap(true);
+    GtfsTestData.readGtfs(offHeap, GtfsTestData.getBartGtfs(), "BART");
+
+    assertTrue(offHeap.isPackOffHeap());
+    assertTrue(((StopTimeArray) offHeap.getAllStopTimes()).getOffHeapBytes() > 0);
+
+    List<StopTime> expected = new ArrayList<>(heap.getAllStopTimes());
+    List<StopTime> actual = new ArrayList<>(offHeap.getAllStopTimes());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getTrip(), actual.get(i).getTrip());
+      assertEquals(expected.get(i).getStop(), actual.get(i).getStop());
+      assertEquals(expected.get(i).getStopSequence(), actual.get(i).getStopSequence());
+      assertEquals(expected.get(i).getArrivalTime(), actual.get(i).getArrivalTime());
+      assertEquals(expected.get(i).getDepartureTime(), actual.get(i).getDepartureTime());
+      assertEquals(expected.get(i).getStopHeadsign(), actual.get(i).getStopHeadsign());
+      assertEquals(expected.get(i).getShapeDistTraveled(), actual.get(i).getShapeDistTraveled());
+    }
+
+    List<ShapePoint> expectedPoints = new ArrayList<>(heap.getAllShapePoints());
+    List<ShapePoint> actualPoints = new ArrayList<>(offHeap.getAllShapePoints());
+    assertEquals(expectedPoints.size(), actualPoints.size());
+    for (int i = 0; i < expectedPoints.size(); i++) {
+      assertEquals(expectedPoints.get(i).getShapeId(), actualPoints.get(i).getShapeId());
+      assertEquals(expectedPoints.get(i).getSequence(), actualPoints.get(i).getSequence());
+      assertEquals(expectedPoints.get(i).getLat(), actualPoints.get(i).getLat());
+      assertEquals(expectedPoints.get(i).getLon(), actualPoints.get(i).getLon());
+    }
+
+    StopTime stopTime = offHeap.getStopTimeForId(0);
+    stopTime.setStopHeadsign("changed");
+    stopTime.setArrivalTime(42);
+    assertEquals("changed", offHeap.getStopTimeForId(0).getStopHeadsign());
+    assertEquals(42, offHeap.getStopTimeForId(0).getArrivalTime());
+
+    assertThrows(IllegalStateException.class, () -> offHeap.setPackOffHeap(false));
+  }
 }
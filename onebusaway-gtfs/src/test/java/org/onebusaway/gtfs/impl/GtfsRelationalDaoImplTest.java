@@ -15,6 +15,9 @@
 package org.onebusaway.gtfs.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -160,4 +163,243 @@ public class GtfsRelationalDaoImplTest {
     List<Trip> trips = dao.getTripsForBlockId(new AgencyAndId(agencyId, "block.1"));
     assertEquals(2, trips.size());
   }
+
+  @Test
+  public void testPackedStopTimes() throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsRelationalDaoImpl packed = new GtfsRelationalDaoImpl();
+    packed.setPackStopTimes(true);
+    GtfsTestData.readGtfs(packed, GtfsTestData.getBartGtfs(), "BART");
+
+    for (Trip trip : dao.getAllTrips()) {
+      List<StopTime> expected = dao.getStopTimesForTrip(trip);
+      List<StopTime> actual = packed.getStopTimesForTrip(trip);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getStopSequence(), actual.get(i).getStopSequence());
+        assertEquals(expected.get(i).getArrivalTime(), actual.get(i).getArrivalTime());
+      }
+    }
+
+    Stop stop = dao.getStopForId(new AgencyAndId("BART", "DBRK"));
+    assertEquals(584, packed.getStopTimesForStop(stop).size());
+  }
+
+  @Test
+  public void testPackedStopTimesSortedByTrip() throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsRelationalDaoImpl sorted = new GtfsRelationalDaoImpl();
+    sorted.setPackStopTimes(true);
+    sorted.setSortPackedStopTimesByTrip(true);
+    GtfsTestData.readGtfs(sorted, GtfsTestData.getBartGtfs(), "BART");
+
+    // The stop times of each trip are now next to each other, in stop sequence order
+    StopTime previous = null;
+    for (StopTime stopTime : sorted.getAllStopTimes()) {
+      if (previous != null && previous.getTrip().equals(stopTime.getTrip())) {
+        assertTrue(previous.getStopSequence() < stopTime.getStopSequence());
+      }
+      previous = stopTime;
+    }
+
+    for (Trip trip : dao.getAllTrips()) {
+      List<StopTime> expected = dao.getStopTimesForTrip(trip);
+      List<StopTime> actual = sorted.getStopTimesForTrip(trip);
+      assertSame(actual, sorted.getStopTimesForTrip(trip));
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        StopTime stopTime = actual.get(i);
+        assertEquals(expected.get(i).getStopSequence(), stopTime.getStopSequence());
+        assertEquals(expected.get(i).getDepartureTime(), stopTime.getDepartureTime());
+        StopTime byId = sorted.getStopTimeForId(stopTime.getId());
+        assertEquals(stopTime.getStopSequence(), byId.getStopSequence());
+      }
+    }
+  }
+
+  @Test
+  public void testPackedStopTimeSlices() throws IOException {
+    GtfsRelationalDaoImpl packed = new GtfsRelationalDaoImpl();
+    packed.setPackStopTimes(true);
+    packed.setSortPackedStopTimesByTrip(true);
+    GtfsTestData.readGtfs(packed, GtfsTestData.getBartGtfs(), "BART");
+
+    for (Trip trip : packed.getAllTrips()) {
+      assertSliceMatches(packed.getStopTimesForTrip(trip));
+    }
+    int stopsWithStopTimes = 0;
+    for (Stop stop : packed.getAllStops()) {
+      List<StopTime> stopTimes = packed.getStopTimesForStop(stop);
+      // Stops without stop times get an empty list rather than a slice
+      if (stopTimes.isEmpty()) continue;
+      assertSliceMatches(stopTimes);
+      stopsWithStopTimes++;
+    }
+    assertTrue(stopsWithStopTimes > 0);
+  }
+
+  private static void assertSliceMatches(List<StopTime> stopTimes) {
+    StopTimeArray.StopTimeSlice slice = (StopTimeArray.StopTimeSlice) stopTimes;
+    for (int i = 0; i < slice.size(); i++) {
+      StopTime stopTime = slice.get(i);
+      assertSame(stopTime.getStop(), slice.getStop(i));
+      assertEquals(stopTime.getStopSequence(), slice.getStopSequence(i));
+      assertEquals(stopTime.getArrivalTime(), slice.getArrivalTime(i));
+      assertEquals(stopTime.getDepartureTime(), slice.getDepartureTime(i));
+    }
+    assertThrows(IndexOutOfBoundsException.class, () -> slice.getStop(slice.size()));
+  }
+
+  @Test
+  public void testRemovePackedEntities() throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    for (boolean offHeap : new boolean[] {false, true}) {
+      GtfsRelationalDaoImpl packed = new GtfsRelationalDaoImpl();
+      packed.setPackStopTimes(true);
+      packed.setPackShapePoints(true);
+      packed.setPackOffHeap(offHeap);
+      packed.setSortPackedStopTimesByTrip(true);
+      GtfsTestData.readGtfs(packed, GtfsTestData.getBartGtfs(), "BART");
+
+      Trip removed = dao.getAllTrips().iterator().next();
+      int stopTimeCount = packed.getAllStopTimes().size();
+      List<StopTime> stopTimes = packed.getStopTimesForTrip(removed);
+      assertThrows(
+          UnsupportedOperationException.class, () -> packed.removeEntity(stopTimes.get(0)));
+      packed.removeEntities(stopTimes);
+
+      assertEquals(stopTimeCount - stopTimes.size(), packed.getAllStopTimes().size());
+      assertTrue(packed.getStopTimesForTrip(removed).isEmpty());
+      for (Trip trip : dao.getAllTrips()) {
+        if (trip.equals(removed)) continue;
+        List<StopTime> expected = dao.getStopTimesForTrip(trip);
+        List<StopTime> actual = packed.getStopTimesForTrip(trip);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+          StopTime stopTime = actual.get(i);
+          assertEquals(expected.get(i).getStopSequence(), stopTime.getStopSequence());
+          assertEquals(expected.get(i).getArrivalTime(), stopTime.getArrivalTime());
+          assertEquals(expected.get(i).getStop(), stopTime.getStop());
+          StopTime byId = packed.getStopTimeForId(stopTime.getId());
+          assertEquals(trip, byId.getTrip());
+          assertEquals(stopTime.getStopSequence(), byId.getStopSequence());
+        }
+      }
+
+      AgencyAndId shapeId = dao.getAllShapeIds().get(0);
+      int shapePointCount = packed.getAllShapePoints().size();
+      List<ShapePoint> shapePoints = packed.getShapePointsForShapeId(shapeId);
+      assertFalse(shapePoints.isEmpty());
+      packed.removeEntities(shapePoints);
+      assertEquals(shapePointCount - shapePoints.size(), packed.getAllShapePoints().size());
+      assertTrue(packed.getShapePointsForShapeId(shapeId).isEmpty());
+      for (AgencyAndId otherId : dao.getAllShapeIds()) {
+        if (otherId.equals(shapeId)) continue;
+        assertEquals(
+            dao.getShapePointsForShapeId(otherId).size(),
+            packed.getShapePointsForShapeId(otherId).size());
+      }
+    }
+  }
+
+  @Test
+  public void testIndexesKeptUpToDate() {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+
+    Route route = new Route();
+    route.setId(new AgencyAndId("X", "R"));
+    dao.saveEntity(route);
+    Trip tripA = trip(dao, "A", route);
+    Trip tripB = trip(dao, "B", route);
+
+    StopTime st2 = stopTime(dao, tripA, 2);
+    StopTime st0 = stopTime(dao, tripA, 0);
+
+    List<StopTime> stopTimes = dao.getStopTimesForTrip(tripA);
+    assertEquals(List.of(st0, st2), stopTimes);
+    assertEquals(List.of(tripA, tripB), dao.getTripsForRoute(route));
+
+    StopTime st1 = stopTime(dao, tripA, 1);
+    assertEquals(List.of(st0, st1, st2), dao.getStopTimesForTrip(tripA));
+    // Lists that were handed out before are left alone, so they can be iterated while removing
+    assertEquals(List.of(st0, st2), stopTimes);
+
+    for (StopTime stopTime : dao.getStopTimesForTrip(tripA)) dao.removeEntity(stopTime);
+    assertTrue(dao.getStopTimesForTrip(tripA).isEmpty());
+
+    dao.removeEntity(tripB);
+    assertEquals(List.of(tripA), dao.getTripsForRoute(route));
+
+    Route other = new Route();
+    other.setId(new AgencyAndId("X", "O"));
+    dao.saveEntity(other);
+    tripA.setRoute(other);
+    dao.updateEntity(tripA);
+    assertTrue(dao.getTripsForRoute(route).isEmpty());
+    assertEquals(List.of(tripA), dao.getTripsForRoute(other));
+
+    for (RelationIndexStatistics statistics : dao.getIndexStatistics()) {
+      if (statistics.getName().equals("stopTimesByTrip")) {
+        assertEquals(1, statistics.getMisses());
+        assertEquals(0, statistics.getRebuilds());
+        assertEquals(3, statistics.getHits());
+      }
+    }
+  }
+
+  @Test
+  public void testClearCachesForEntityType() {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+
+    Route route = new Route();
+    route.setId(new AgencyAndId("X", "R"));
+    dao.saveEntity(route);
+    Trip trip = trip(dao, "A", route);
+    StopTime stopTime = stopTime(dao, trip, 0);
+
+    assertEquals(List.of(trip), dao.getTripsForRoute(route));
+    assertEquals(List.of(stopTime), dao.getStopTimesForTrip(trip));
+
+    Trip copy = new Trip(trip);
+    copy.setId(new AgencyAndId("X", "B"));
+    dao.saveEntity(copy);
+    stopTime.setTrip(copy);
+    dao.clearCachesForEntityType(StopTime.class);
+
+    assertEquals(List.of(trip, copy), dao.getTripsForRoute(route));
+    assertTrue(dao.getStopTimesForTrip(trip).isEmpty());
+    assertEquals(List.of(stopTime), dao.getStopTimesForTrip(copy));
+
+    for (RelationIndexStatistics statistics : dao.getIndexStatistics()) {
+      if (statistics.getName().equals("tripsByRoute")) {
+        assertEquals(0, statistics.getRebuilds());
+      } else if (statistics.getName().equals("stopTimesByTrip")) {
+        assertEquals(1, statistics.getRebuilds());
+      } else {
+        assertFalse(statistics.getMisses() > 0, statistics.toString());
+      }
+    }
+  }
+
+  private static Trip trip(GtfsRelationalDaoImpl dao, String id, Route route) {
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("X", id));
+    trip.setRoute(route);
+    dao.saveEntity(trip);
+    return trip;
+  }
+
+  private static StopTime stopTime(GtfsRelationalDaoImpl dao, Trip trip, int stopSequence) {
+    StopTime stopTime = new StopTime();
+    stopTime.setTrip(trip);
+    stopTime.setStopSequence(stopSequence);
+    dao.saveEntity(stopTime);
+    return stopTime;
+  }
 }
@@ -20,7 +20,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -220,6 +223,86 @@ public class CalendarServiceDataFactoryImplSyntheticTest {
     assertEquals(serviceDates, Arrays.asList(cd1.getDate(), cd2.getDate(), cd3.getDate()));
   }
 
+  @Test
+  public void testYearOfServiceDates() {
+
+    CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl();
+
+    Agency agencyA = agency("A", "America/Los_Angeles");
+    Agency agencyB = agency("B", "Australia/Sydney");
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    factory.setGtfsDao(dao);
+    saveEntities(dao, agencyA, agencyB);
+
+    // A leap year with daylight saving time shifts in both time zones
+    ServiceDate dStart = new ServiceDate(2012, 1, 1);
+    ServiceDate dEnd = new ServiceDate(2012, 12, 31);
+    String[] days = {"1111100", "0000011", "1010101", "0000000", "1111111"};
+    for (int i = 0; i < days.length; i++) {
+      AgencyAndId serviceId = new AgencyAndId("A", "s" + i);
+      saveEntities(
+          dao,
+          calendar(serviceId, dStart, dEnd, days[i]),
+          calendarDate(
+              serviceId, new ServiceDate(2012, 3, 11), ServiceCalendarDate.EXCEPTION_TYPE_REMOVE),
+          calendarDate(
+              serviceId, new ServiceDate(2013, 1, 5), ServiceCalendarDate.EXCEPTION_TYPE_ADD),
+          trip("A", "a" + i, serviceId),
+          trip("B", "b" + i, serviceId));
+    }
+    // Not a date, which is kept as is
+    AgencyAndId serviceId = new AgencyAndId("A", "invalid");
+    saveEntities(
+        dao,
+        calendar(serviceId, dStart, dEnd, "1111100"),
+        calendarDate(
+            serviceId, new ServiceDate(2012, 2, 30), ServiceCalendarDate.EXCEPTION_TYPE_ADD),
+        trip("A", "invalid", serviceId));
+
+    CalendarServiceData data = factory.createData();
+
+    assertEquals(days.length + 1, data.getServiceIds().size());
+    for (AgencyAndId id : data.getServiceIds()) {
+      List<ServiceDate> expected = new ArrayList<>();
+      ServiceCalendar calendar = dao.getCalendarForServiceId(id);
+      for (ServiceDate date = dStart; date.compareTo(dEnd) <= 0; date = date.next()) {
+        int day = date.getAsCalendar(TimeZone.getTimeZone("UTC")).get(Calendar.DAY_OF_WEEK);
+        int active =
+            switch (day) {
+              case Calendar.MONDAY -> calendar.getMonday();
+              case Calendar.TUESDAY -> calendar.getTuesday();
+              case Calendar.WEDNESDAY -> calendar.getWednesday();
+              case Calendar.THURSDAY -> calendar.getThursday();
+              case Calendar.FRIDAY -> calendar.getFriday();
+              case Calendar.SATURDAY -> calendar.getSaturday();
+              default -> calendar.getSunday();
+            };
+        if (active == 1 && !date.equals(new ServiceDate(2012, 3, 11))) {
+          expected.add(date);
+        }
+      }
+      expected.add(
+          id.equals(serviceId) ? new ServiceDate(2012, 2, 30) : new ServiceDate(2013, 1, 5));
+      Collections.sort(expected);
+      List<ServiceDate> serviceDates = data.getServiceDatesForServiceId(id);
+      assertEquals(expected, serviceDates, id.toString());
+
+      for (String agencyId : List.of("A", "B")) {
+        TimeZone tz = data.getTimeZoneForAgencyId(agencyId);
+        List<Date> dates = data.getDatesForLocalizedServiceId(new LocalizedServiceId(id, tz));
+        if (id.equals(serviceId) && agencyId.equals("B")) {
+          assertNull(dates);
+          continue;
+        }
+        assertEquals(serviceDates.size(), dates.size());
+        for (int i = 0; i < dates.size(); i++) {
+          assertEquals(serviceDates.get(i).getAsDate(tz), dates.get(i));
+        }
+      }
+    }
+  }
+
   @Test
   public void testBadTimezone() throws IOException {
 
@@ -14,6 +14,7 @@
 package org.onebusaway.gtfs.impl.translation;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.IOException;
 import java.util.List;
@@ -26,7 +27,10 @@ import org.onebusaway.gtfs.model.FeedInfo;
 import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Translation;
 import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.translation.PropertyTranslation;
+import org.onebusaway.gtfs.model.translation.TranslationServiceData;
 
 public class TranslationServiceImplTest {
 
@@ -95,6 +99,49 @@ public class TranslationServiceImplTest {
         ts.getTranslatedEntity("en", FeedInfo.class, feedInfo).getPublisherUrl());
   }
 
+  @Test
+  public void testTranslationsByFieldValue() {
+    TranslationServiceData data = new TranslationServiceData();
+    data.setFeedLanguage("en");
+    data.putTranslation(Stop.class, "es", translation("name", "Main St", null, "Calle Main"));
+    data.putTranslation(Stop.class, "es", translation("name", null, "A", "Parada A"));
+    data.putTranslation(Stop.class, "es", translation("desc", "Corner", null, "Esquina"));
+    data.putTranslation(Stop.class, "es", translation("name", "Main St", null, "Calle Mayor"));
+    TranslationServiceImpl ts = new TranslationServiceImpl();
+    ts.setData(data);
+
+    Stop a = stop("A", "Main St");
+    a.setDesc("Corner");
+    Stop translatedA = ts.getTranslatedEntity("es", Stop.class, a);
+    // The last translation that applies wins, whether it applies by id or by value
+    assertEquals("Calle Mayor", translatedA.getName());
+    assertEquals("Esquina", translatedA.getDesc());
+    assertEquals("Main St", a.getName());
+
+    Stop b = stop("B", "Main St");
+    assertEquals("Calle Mayor", ts.getTranslatedEntity("es", Stop.class, b).getName());
+
+    Stop c = stop("C", "Elm St");
+    assertSame(c, ts.getTranslatedEntity("es", Stop.class, c));
+    assertSame(c, ts.getTranslatedEntity("fr", Stop.class, c));
+  }
+
+  private static PropertyTranslation translation(
+      String propertyName, String fieldValue, String recordId, String text) {
+    Translation translation = new Translation();
+    translation.setFieldValue(fieldValue);
+    translation.setRecordId(recordId);
+    translation.setTranslation(text);
+    return new PropertyTranslation(propertyName, translation);
+  }
+
+  private static Stop stop(String id, String name) {
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId("agency", id));
+    stop.setName(name);
+    return stop;
+  }
+
   private AgencyAndId aid(String id) {
     return new AgencyAndId("agency", id);
   }
@@ -0,0 +1,139 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model.calendar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.calendar.ServiceDayIndex.LocalizedDays;
+
+public class ServiceDayIndexTest {
+
+  private final TimeZone tz = TimeZone.getTimeZone("America/Los_Angeles");
+
+  @Test
+  public void testServiceIds() {
+    Random random = new Random(42);
+    CalendarServiceData data = new CalendarServiceData();
+    List<AgencyAndId> serviceIds = new ArrayList<>();
+    for (int i = 0; i < 70; i++) {
+      AgencyAndId serviceId = new AgencyAndId("A", "s" + i);
+      serviceIds.add(serviceId);
+      data.putServiceDatesForServiceId(serviceId, randomServiceDates(random));
+    }
+    ServiceDayIndex index = data.getServiceDayIndex();
+
+    ServiceDate date = new ServiceDate(2010, 1, 1);
+    for (int day = -5; day < 400; day++) {
+      ServiceDate serviceDate = date.shift(day);
+      Set<AgencyAndId> expected = new HashSet<>(data.getServiceIdsForDate(serviceDate));
+      assertEquals(expected, index.getServiceIdsOnDate(serviceDate));
+      for (AgencyAndId serviceId : serviceIds) {
+        assertEquals(
+            expected.contains(serviceId), index.isServiceIdActiveOnDate(serviceId, serviceDate));
+      }
+    }
+    assertFalse(index.isServiceIdActiveOnDate(new AgencyAndId("A", "dne"), date));
+  }
+
+  @Test
+  public void testLocalizedDays() {
+    Random random = new Random(42);
+    CalendarServiceData data = new CalendarServiceData();
+    for (int i = 0; i < 20; i++) {
+      LocalizedServiceId serviceId = new LocalizedServiceId(new AgencyAndId("A", "s" + i), tz);
+      List<Date> dates = new ArrayList<>();
+      for (ServiceDate serviceDate : randomServiceDates(random)) {
+        dates.add(serviceDate.getAsDate(tz));
+      }
+      data.putDatesForLocalizedServiceId(serviceId, dates);
+    }
+
+    long start = new ServiceDate(2009, 12, 25).getAsDate(tz).getTime();
+    long end = new ServiceDate(2011, 1, 10).getAsDate(tz).getTime();
+    for (LocalizedServiceId serviceId : data.getLocalizedServiceIds()) {
+      List<Date> dates = data.getDatesForLocalizedServiceId(serviceId);
+      LocalizedDays days = data.getServiceDayIndex().getLocalizedDays(serviceId);
+      assertNotNull(days);
+      assertEquals(dates.size(), days.size());
+      for (Date date : dates) {
+        assertTrue(days.contains(date.getTime()));
+        assertFalse(days.contains(date.getTime() + 1));
+      }
+      for (int i = 0; i < 2000; i++) {
+        long time = start + (long) (random.nextDouble() * (end - start));
+        if (i % 2 == 0) {
+          // Exactly the start of a day, which may or may not be active
+          time = new ServiceDate(new Date(time)).getAsDate(tz).getTime();
+        }
+        assertEquals(firstIndexOnOrAfter(dates, time), days.firstIndexOnOrAfter(time));
+        assertEquals(lastIndexOnOrBefore(dates, time), days.lastIndexOnOrBefore(time));
+      }
+    }
+  }
+
+  @Test
+  public void testDatesThatAreNotStartsOfDays() {
+    CalendarServiceData data = new CalendarServiceData();
+    LocalizedServiceId serviceId = new LocalizedServiceId(new AgencyAndId("A", "1"), tz);
+    Date date = new ServiceDate(2010, 3, 14).getAsDate(tz);
+    data.putDatesForLocalizedServiceId(serviceId, List.of(new Date(date.getTime() + 60_000)));
+    assertNull(data.getServiceDayIndex().getLocalizedDays(serviceId));
+
+    // Putting dates again rebuilds the index
+    data.putDatesForLocalizedServiceId(serviceId, List.of(date));
+    assertTrue(data.getServiceDayIndex().getLocalizedDays(serviceId).contains(date.getTime()));
+  }
+
+  /** Random dates in 2010, which has daylight saving time shifts in March and November */
+  private static List<ServiceDate> randomServiceDates(Random random) {
+    List<ServiceDate> serviceDates = new ArrayList<>();
+    ServiceDate date = new ServiceDate(2010, 1, 1);
+    double density = random.nextDouble();
+    for (int day = 0; day < 365; day++) {
+      if (random.nextDouble() < density) {
+        serviceDates.add(date.shift(day));
+      }
+    }
+    return serviceDates;
+  }
+
+  private static int firstIndexOnOrAfter(List<Date> dates, long time) {
+    for (int i = 0; i < dates.size(); i++) {
+      if (dates.get(i).getTime() >= time) {
+        return i;
+      }
+    }
+    return dates.size();
+  }
+
+  private static int lastIndexOnOrBefore(List<Date> dates, long time) {
+    for (int i = dates.size() - 1; i >= 0; i--) {
+      if (dates.get(i).getTime() <= time) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
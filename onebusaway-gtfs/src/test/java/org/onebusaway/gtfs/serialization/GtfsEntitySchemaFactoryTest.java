@@ -2,11 +2,16 @@ package org.onebusaway.gtfs.serialization;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
+import org.onebusaway.csv_entities.schema.CompilableFieldMapping;
+import org.onebusaway.csv_entities.schema.EntitySchema;
+import org.onebusaway.csv_entities.schema.FieldMapping;
+import org.onebusaway.gtfs.model.StopTime;
 
 public class GtfsEntitySchemaFactoryTest {
 
@@ -18,4 +23,22 @@ public class GtfsEntitySchemaFactoryTest {
         classes.stream().filter(c -> !seen.add(c)).collect(Collectors.toList());
     assertThat(duplicates).isEmpty();
   }
+
+  @Test
+  public void testStopTimeMappingsCompile() {
+    EntitySchema schema =
+        GtfsEntitySchemaFactory.createEntitySchemaFactory().getSchema(StopTime.class);
+    List<String> columns = new ArrayList<>();
+    for (FieldMapping mapping : schema.getFields()) mapping.getCSVFieldNames(columns);
+
+    List<String> uncompiled = new ArrayList<>();
+    for (FieldMapping mapping : schema.getFields()) {
+      if (!(mapping instanceof CompilableFieldMapping compilable)
+          || compilable.compile(columns) == null) {
+        mapping.getCSVFieldNames(uncompiled);
+      }
+    }
+    assertThat(uncompiled).isEmpty();
+    assertThat(schema.getValidators()).isEmpty();
+  }
 }
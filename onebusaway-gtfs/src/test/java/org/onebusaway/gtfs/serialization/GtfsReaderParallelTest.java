@@ -0,0 +1,206 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopLocation;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+import org.onebusaway.gtfs.services.MockGtfs;
+
+public class GtfsReaderParallelTest {
+
+  @Test
+  public void testCaltrain() throws IOException {
+    assertSameAsSequential(GtfsTestData.getCaltrainGtfs(), "Caltrain");
+  }
+
+  @Test
+  public void testBart() throws IOException {
+    assertSameAsSequential(GtfsTestData.getBartGtfs(), "BART");
+  }
+
+  @Test
+  public void testTestAgency() throws IOException {
+    assertSameAsSequential(GtfsTestData.getTestAgencyGtfs(), "agency");
+  }
+
+  @Test
+  public void testFaresV2() throws IOException {
+    assertSameAsSequential(GtfsTestData.getTurlockFaresV2(), "1642");
+  }
+
+  @Test
+  public void testChunked() throws IOException {
+    assertSameAsSequential(GtfsTestData.getCaltrainGtfs(), "Caltrain", r -> r.setChunkSize(100));
+  }
+
+  @Test
+  public void testChunkedAndParallel() throws IOException {
+    assertSameAsSequential(
+        GtfsTestData.getBartGtfs(),
+        "BART",
+        r -> {
+          r.setParallelism(4);
+          r.setChunkSize(100);
+        });
+  }
+
+  @Test
+  public void testParseBytesFromZip() throws IOException {
+    assertSameAsSequential(GtfsTestData.getBartGtfs(), "BART", r -> r.setParseBytes(true));
+  }
+
+  @Test
+  public void testParseBytesFromDirectory() throws IOException {
+    assertSameAsSequential(GtfsTestData.getTurlockFaresV2(), "1642", r -> r.setParseBytes(true));
+  }
+
+  @Test
+  public void testParseBytesWithLocations() throws IOException {
+    assertSameAsSequential(
+        GtfsTestData.getBrownCountyFlex(),
+        "1",
+        r -> {
+          r.setParallelism(4);
+          r.setParseBytes(true);
+        });
+  }
+
+  @Test
+  public void testChunkedIntoPackedStore() throws IOException {
+    File path = GtfsTestData.getCaltrainGtfs();
+    GtfsRelationalDaoImpl expected = new GtfsRelationalDaoImpl();
+    expected.setPackStopTimes(true);
+    expected.setPackShapePoints(true);
+    read(path, "Caltrain", expected, _ -> {});
+    GtfsRelationalDaoImpl actual = new GtfsRelationalDaoImpl();
+    actual.setPackStopTimes(true);
+    actual.setPackShapePoints(true);
+    read(path, "Caltrain", actual, r -> r.setChunkSize(64));
+
+    List<StopTime> expectedStopTimes = new ArrayList<>(expected.getAllStopTimes());
+    List<StopTime> actualStopTimes = new ArrayList<>(actual.getAllStopTimes());
+    assertEquals(expectedStopTimes.size(), actualStopTimes.size());
+    for (int i = 0; i < expectedStopTimes.size(); i++) {
+      StopTime a = expectedStopTimes.get(i);
+      StopTime b = actualStopTimes.get(i);
+      assertEquals(a.getTrip().getId(), b.getTrip().getId());
+      assertEquals(a.getStop().getId(), b.getStop().getId());
+      assertEquals(a.getStopSequence(), b.getStopSequence());
+      assertEquals(a.getArrivalTime(), b.getArrivalTime());
+    }
+    assertEquals(expected.getAllShapePoints().size(), actual.getAllShapePoints().size());
+  }
+
+  @Test
+  public void testReferencesResolveToLoadedEntities() throws IOException {
+    GtfsRelationalDao dao =
+        read(GtfsTestData.getCaltrainGtfs(), "Caltrain", r -> r.setParallelism(4));
+    for (StopTime stopTime : dao.getAllStopTimes()) {
+      assertSame(dao.getTripForId(stopTime.getTrip().getId()), stopTime.getTrip());
+      assertSame(dao.getStopForId(stopTime.getStop().getId()), stopTime.getStop());
+    }
+  }
+
+  @Test
+  public void testFailureOnWorkerThreadIsRethrown() throws IOException {
+    MockGtfs gtfs = MockGtfs.create();
+    gtfs.putMinimal();
+    gtfs.putCalendarDates("sid0=20250101,2025010x");
+
+    GtfsReader reader = new GtfsReader();
+    reader.setParallelism(4);
+    assertThrows(CsvEntityIOException.class, () -> gtfs.read(reader));
+  }
+
+  private static void assertSameAsSequential(File path, String agencyId) throws IOException {
+    assertSameAsSequential(path, agencyId, r -> r.setParallelism(4));
+  }
+
+  private static void assertSameAsSequential(
+      File path, String agencyId, Consumer<GtfsReader> configuration) throws IOException {
+    GtfsRelationalDao expected = read(path, agencyId, _ -> {});
+    GtfsRelationalDao actual = read(path, agencyId, configuration);
+
+    for (Class<?> entityClass : new GtfsReader().getEntityClasses()) {
+      List<?> expectedEntities = new ArrayList<>(expected.getAllEntitiesForType(entityClass));
+      List<?> actualEntities = new ArrayList<>(actual.getAllEntitiesForType(entityClass));
+      assertEquals(expectedEntities, actualEntities, entityClass.getName());
+    }
+
+    for (Stop stop : expected.getAllStops()) {
+      Stop other = actual.getStopForId(stop.getId());
+      assertEquals(stop.getLat(), other.getLat());
+      assertEquals(stop.getLon(), other.getLon());
+    }
+
+    for (Trip trip : expected.getAllTrips()) {
+      List<StopTime> expectedStopTimes = expected.getStopTimesForTrip(trip);
+      List<StopTime> actualStopTimes =
+          actual.getStopTimesForTrip(actual.getTripForId(trip.getId()));
+      assertEquals(expectedStopTimes.size(), actualStopTimes.size());
+      for (int i = 0; i < expectedStopTimes.size(); i++) {
+        StopTime a = expectedStopTimes.get(i);
+        StopTime b = actualStopTimes.get(i);
+        assertEquals(a.getId(), b.getId());
+        assertEquals(idOf(a.getStop()), idOf(b.getStop()));
+        assertEquals(idOf(a.getLocation()), idOf(b.getLocation()));
+        assertEquals(idOf(a.getLocationGroup()), idOf(b.getLocationGroup()));
+        assertEquals(a.getStopSequence(), b.getStopSequence());
+        assertEquals(a.getArrivalTime(), b.getArrivalTime());
+        assertEquals(a.getDepartureTime(), b.getDepartureTime());
+      }
+    }
+  }
+
+  /** Flex stop times refer to a location or location group instead of a stop */
+  private static AgencyAndId idOf(StopLocation stopLocation) {
+    return stopLocation == null ? null : stopLocation.getId();
+  }
+
+  private static GtfsRelationalDao read(
+      File path, String agencyId, Consumer<GtfsReader> configuration) throws IOException {
+    return read(path, agencyId, new GtfsRelationalDaoImpl(), configuration);
+  }
+
+  private static GtfsRelationalDao read(
+      File path, String agencyId, GtfsRelationalDaoImpl dao, Consumer<GtfsReader> configuration)
+      throws IOException {
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId(agencyId);
+    configuration.accept(reader);
+    reader.setInputLocation(path);
+    reader.setEntityStore(dao);
+    try {
+      reader.run();
+    } finally {
+      reader.close();
+    }
+    return dao;
+  }
+}
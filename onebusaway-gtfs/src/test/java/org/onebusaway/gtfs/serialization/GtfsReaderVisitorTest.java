@@ -0,0 +1,123 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+public class GtfsReaderVisitorTest {
+
+  @Test
+  public void testSequential() throws IOException {
+    assertVisitsAllEntities(_ -> {});
+  }
+
+  @Test
+  public void testParallelAndChunked() throws IOException {
+    assertVisitsAllEntities(
+        r -> {
+          r.setParallelism(4);
+          r.setChunkSize(100);
+        });
+  }
+
+  @Test
+  public void testReferencedTypeCantBeVisited() throws IOException {
+    GtfsReader reader = new GtfsReader();
+    reader.addEntityVisitor(Trip.class, _ -> {});
+    reader.setInputLocation(GtfsTestData.getCaltrainGtfs());
+    try {
+      assertThrows(IllegalStateException.class, reader::run);
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testTypeWithUnknownDependenciesAfterVisitedType() throws IOException {
+    GtfsReader reader = new GtfsReader();
+    List<Class<?>> entityClasses = new ArrayList<>(reader.getEntityClasses());
+    entityClasses.add(UnknownEntity.class);
+    reader.setEntityClasses(entityClasses);
+    reader.addEntityVisitor(ShapePoint.class, _ -> {});
+    reader.setInputLocation(GtfsTestData.getCaltrainGtfs());
+    try {
+      assertThrows(IllegalStateException.class, reader::run);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void assertVisitsAllEntities(Consumer<GtfsReader> configuration)
+      throws IOException {
+    File path = GtfsTestData.getCaltrainGtfs();
+
+    GtfsRelationalDaoImpl expected = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(expected, path, "Caltrain");
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    List<StopTime> stopTimes = new ArrayList<>();
+    int[] shapePoints = new int[1];
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("Caltrain");
+    configuration.accept(reader);
+    reader.addEntityVisitor(
+        StopTime.class,
+        stopTime -> {
+          assertSame(dao.getTripForId(stopTime.getTrip().getId()), stopTime.getTrip());
+          assertSame(dao.getStopForId(stopTime.getStop().getId()), stopTime.getStop());
+          stopTimes.add(stopTime);
+        });
+    reader.addEntityVisitor(ShapePoint.class, _ -> shapePoints[0]++);
+    reader.setInputLocation(path);
+    reader.setEntityStore(dao);
+    try {
+      reader.run();
+    } finally {
+      reader.close();
+    }
+
+    assertTrue(dao.getAllStopTimes().isEmpty());
+    assertTrue(dao.getAllShapePoints().isEmpty());
+    assertEquals(expected.getAllTrips().size(), dao.getAllTrips().size());
+    assertEquals(expected.getAllShapePoints().size(), shapePoints[0]);
+
+    List<StopTime> expectedStopTimes = new ArrayList<>(expected.getAllStopTimes());
+    assertEquals(expectedStopTimes.size(), stopTimes.size());
+    for (int i = 0; i < stopTimes.size(); i++) {
+      StopTime a = expectedStopTimes.get(i);
+      StopTime b = stopTimes.get(i);
+      assertEquals(a.getTrip().getId(), b.getTrip().getId());
+      assertEquals(a.getStop().getId(), b.getStop().getId());
+      assertEquals(a.getStopSequence(), b.getStopSequence());
+      assertEquals(a.getArrivalTime(), b.getArrivalTime());
+    }
+  }
+
+  /** An entity type that might reference any type read before it */
+  private static class UnknownEntity {}
+}
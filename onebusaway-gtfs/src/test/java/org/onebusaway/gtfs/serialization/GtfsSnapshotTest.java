@@ -0,0 +1,196 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+public class GtfsSnapshotTest {
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    assertRoundTrip(false, false);
+  }
+
+  @Test
+  public void testRoundTripPacked() throws IOException {
+    assertRoundTrip(true, true);
+  }
+
+  @Test
+  public void testRoundTripPackedIntoUnpacked() throws IOException {
+    assertRoundTrip(true, false);
+  }
+
+  @Test
+  public void testRoundTripUnpackedIntoPacked() throws IOException {
+    assertRoundTrip(false, true);
+  }
+
+  @Test
+  public void testStaleSnapshot() throws IOException {
+    File source = GtfsTestData.getBartGtfs();
+    File snapshot = writeSnapshot(source, read(source, false));
+
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(snapshot);
+    reader.setEntityStore(new GtfsRelationalDaoImpl());
+    reader.setExpectedSourceChecksum(GtfsSnapshotFormat.checksum(GtfsTestData.getCaltrainGtfs()));
+    assertThrows(StaleSnapshotException.class, reader::run);
+  }
+
+  @Test
+  public void testRejectsClassesOutsideModel() throws IOException {
+    File snapshot = File.createTempFile("gtfs-", ".snapshot");
+    snapshot.deleteOnExit();
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(snapshot))) {
+      out.writeInt(GtfsSnapshotFormat.MAGIC);
+      out.writeInt(GtfsSnapshotFormat.VERSION);
+      out.writeUTF("");
+      ObjectOutputStream objects = new ObjectOutputStream(out);
+      objects.writeObject("BART");
+      objects.writeObject(new HashMap<>(Map.of("AirBART", URI.create("http://example.com"))));
+      objects.writeUTF("");
+      objects.flush();
+    }
+
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(snapshot);
+    reader.setEntityStore(new GtfsRelationalDaoImpl());
+    assertThrows(InvalidClassException.class, reader::run);
+
+    reader.addAllowedClasses("java.net.URI");
+    reader.run();
+    assertEquals("BART", reader.getDefaultAgencyId());
+  }
+
+  @Test
+  public void testNotASnapshot() {
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(GtfsTestData.getBartGtfs());
+    assertThrows(IOException.class, reader::run);
+  }
+
+  @Test
+  public void testChecksumOfDirectory() throws IOException {
+    String checksum = GtfsSnapshotFormat.checksum(GtfsTestData.getTestAgencyGtfs());
+    assertEquals(checksum, GtfsSnapshotFormat.checksum(GtfsTestData.getTestAgencyGtfs()));
+    assertTrue(!checksum.equals(GtfsSnapshotFormat.checksum(GtfsTestData.getTurlockFaresV2())));
+  }
+
+  private void assertRoundTrip(boolean packSource, boolean packTarget) throws IOException {
+    File source = GtfsTestData.getBartGtfs();
+    GtfsRelationalDaoImpl expected = read(source, packSource);
+    File snapshot = writeSnapshot(source, expected);
+
+    GtfsRelationalDaoImpl actual = new GtfsRelationalDaoImpl();
+    actual.setPackStopTimes(packTarget);
+    actual.setPackShapePoints(packTarget);
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(snapshot);
+    reader.setEntityStore(actual);
+    reader.setExpectedSourceChecksum(GtfsSnapshotFormat.checksum(source));
+    reader.run();
+
+    assertEquals("BART", reader.getDefaultAgencyId());
+    assertEquals(Map.of("AirBART", "BART"), reader.getAgencyIdMapping());
+    assertNotNull(reader.getSourceChecksum());
+
+    assertEquals(expected.getAllAgencies().size(), actual.getAllAgencies().size());
+    assertEquals(expected.getAllRoutes().size(), actual.getAllRoutes().size());
+    assertEquals(expected.getAllStops().size(), actual.getAllStops().size());
+    assertEquals(expected.getAllTrips().size(), actual.getAllTrips().size());
+    assertEquals(expected.getAllStopTimes().size(), actual.getAllStopTimes().size());
+    assertEquals(expected.getAllShapePoints().size(), actual.getAllShapePoints().size());
+    assertEquals(expected.getAllCalendars().size(), actual.getAllCalendars().size());
+    assertEquals(expected.getAllCalendarDates().size(), actual.getAllCalendarDates().size());
+    assertEquals(expected.getAllFareRules().size(), actual.getAllFareRules().size());
+
+    for (Route route : actual.getAllRoutes()) {
+      assertSame(actual.getAgencyForId(route.getAgency().getId()), route.getAgency());
+    }
+
+    for (Trip expectedTrip : expected.getAllTrips()) {
+      Trip trip = actual.getTripForId(expectedTrip.getId());
+      assertSame(actual.getRouteForId(expectedTrip.getRoute().getId()), trip.getRoute());
+      List<StopTime> expectedStopTimes = expected.getStopTimesForTrip(expectedTrip);
+      List<StopTime> stopTimes = actual.getStopTimesForTrip(trip);
+      assertEquals(expectedStopTimes.size(), stopTimes.size());
+      for (int i = 0; i < stopTimes.size(); i++) {
+        StopTime expectedStopTime = expectedStopTimes.get(i);
+        StopTime stopTime = stopTimes.get(i);
+        assertSame(trip, stopTime.getTrip());
+        assertSame(actual.getStopForId(expectedStopTime.getStop().getId()), stopTime.getStop());
+        assertEquals(expectedStopTime.getArrivalTime(), stopTime.getArrivalTime());
+        assertEquals(expectedStopTime.getDepartureTime(), stopTime.getDepartureTime());
+        assertEquals(expectedStopTime.getStopSequence(), stopTime.getStopSequence());
+      }
+    }
+
+    for (AgencyAndId shapeId : expected.getAllShapeIds()) {
+      List<ShapePoint> expectedPoints = expected.getShapePointsForShapeId(shapeId);
+      List<ShapePoint> points = actual.getShapePointsForShapeId(shapeId);
+      assertEquals(expectedPoints.size(), points.size());
+      for (int i = 0; i < points.size(); i++) {
+        assertEquals(expectedPoints.get(i).getLat(), points.get(i).getLat());
+        assertEquals(expectedPoints.get(i).getLon(), points.get(i).getLon());
+      }
+    }
+  }
+
+  private static GtfsRelationalDaoImpl read(File source, boolean pack) throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(pack);
+    dao.setPackShapePoints(pack);
+    GtfsReader reader = new GtfsReader();
+    reader.setInputLocation(source);
+    reader.setEntityStore(dao);
+    reader.setDefaultAgencyId("BART");
+    reader.addAgencyIdMapping("AirBART", "BART");
+    reader.run();
+    return dao;
+  }
+
+  private static File writeSnapshot(File source, GtfsRelationalDaoImpl dao) throws IOException {
+    File snapshot = File.createTempFile("gtfs-", ".snapshot");
+    snapshot.deleteOnExit();
+    GtfsSnapshotWriter writer = new GtfsSnapshotWriter();
+    writer.setOutputLocation(snapshot);
+    writer.setSourceChecksum(GtfsSnapshotFormat.checksum(source));
+    writer.setDefaultAgencyId("BART");
+    writer.addAgencyIdMapping("AirBART", "BART");
+    writer.run(dao);
+    return snapshot;
+  }
+}
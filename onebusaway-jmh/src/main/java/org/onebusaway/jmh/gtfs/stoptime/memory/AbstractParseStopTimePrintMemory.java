@@ -2,6 +2,8 @@ package org.onebusaway.jmh.gtfs.stoptime.memory;
 
 import java.io.File;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.impl.ShapePointArray;
+import org.onebusaway.gtfs.impl.StopTimeArray;
 import org.onebusaway.gtfs.serialization.GtfsReader;
 import org.onebusaway.jmh.gtfs.stoptime.StopTimeSingleShotBenchmark;
 import org.onebusaway.jmh.util.MemoryPrinter;
@@ -12,23 +14,34 @@ public class AbstractParseStopTimePrintMemory {
 
   public static GtfsRelationalDaoImpl runPrint(boolean internStrings, Class<?> cls)
       throws Exception {
-    GtfsRelationalDaoImpl run = run(internStrings, cls);
+    return runPrint(internStrings, false, cls);
+  }
+
+  public static GtfsRelationalDaoImpl runPrint(boolean internStrings, boolean offHeap, Class<?> cls)
+      throws Exception {
+    GtfsRelationalDaoImpl run = run(internStrings, offHeap, cls);
 
     IO.println("Memory parser after cleanup.");
 
     System.gc();
     MemoryPrinter.printMemoryUsage();
 
-    printTable(internStrings);
+    printTable(internStrings, offHeap, run);
 
     return run;
   }
 
   public static GtfsRelationalDaoImpl run(boolean internStrings, Class<?> cls) throws Exception {
+    return run(internStrings, false, cls);
+  }
+
+  public static GtfsRelationalDaoImpl run(boolean internStrings, boolean offHeap, Class<?> cls)
+      throws Exception {
     GtfsRelationalDaoImpl entityStore = new GtfsRelationalDaoImpl();
     try {
       entityStore.setPackShapePoints(true);
       entityStore.setPackStopTimes(true);
+      entityStore.setPackOffHeap(offHeap);
 
       IO.println("Read file " + cls.getSimpleName());
 
@@ -50,7 +63,7 @@ public class AbstractParseStopTimePrintMemory {
     }
   }
 
-  public static void printTable(boolean intern) {
+  public static void printTable(boolean intern, boolean offHeap, GtfsRelationalDaoImpl store) {
     StringBuilder builder = new StringBuilder();
 
     Runtime runtime = Runtime.getRuntime();
@@ -59,10 +72,28 @@ public class AbstractParseStopTimePrintMemory {
     long freeMemory = runtime.freeMemory(); // Free memory within the allocated JVM memory
     long usedMemory = totalMemory - freeMemory; // Used memory within the allocated JVM memory
 
-    builder.append("| String intern  | Mem total | Mem used  | \n");
-    builder.append("| -------------------- | ------------------|-------------------|\n");
+    long offHeapMemory = 0;
+    if (store.getAllStopTimes() instanceof StopTimeArray stopTimes) {
+      offHeapMemory += stopTimes.getOffHeapBytes();
+    }
+    if (store.getAllShapePoints() instanceof ShapePointArray shapePoints) {
+      offHeapMemory += shapePoints.getOffHeapBytes();
+    }
+
+    builder.append("| String intern  | Off-heap | Mem total | Mem used  | Mem off-heap | \n");
+    builder.append("| -------------- | -------- | --------- | --------- | ------------ |\n");
     builder.append(
-        "| " + intern + " | " + toMegabytes(totalMemory) + " | " + toMegabytes(usedMemory) + " | ");
+        "| "
+            + intern
+            + " | "
+            + offHeap
+            + " | "
+            + toMegabytes(totalMemory)
+            + " | "
+            + toMegabytes(usedMemory)
+            + " | "
+            + toMegabytes(offHeapMemory)
+            + " | ");
 
     IO.println(builder);
   }
@@ -0,0 +1,14 @@
+package org.onebusaway.jmh.gtfs.stoptime.memory;
+
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.StopTime;
+
+public class ParseStopTimeOffHeapPrintMemory extends AbstractParseStopTimePrintMemory {
+
+  void main() throws Exception {
+    IO.println(ParseStopTimeOffHeapPrintMemory.class.getName());
+    GtfsRelationalDaoImpl store = runPrint(false, true, StopTime.class);
+
+    IO.println("Got " + store.getAllStopTimes().size());
+  }
+}